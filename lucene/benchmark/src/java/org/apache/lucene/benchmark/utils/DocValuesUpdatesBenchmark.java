@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Measures the cost of numeric doc values updates that touch few documents
+ * of a large segment, such as counters, when the updated fields are
+ * rewritten in full on every reopen and when updates are written to sparse
+ * overlays (see {@link IndexWriterConfig#setMaxDocValuesOverlayRatio}).
+ * Each round updates the counters of a few random documents and opens a
+ * near-real-time reader. For each configuration, this prints the number of
+ * rounds per second and the number of bytes that the updates wrote to the
+ * directory.
+ * <p>
+ * Usage: <code>java org.apache.lucene.benchmark.utils.DocValuesUpdatesBenchmark indexPath [numDocs] [updatesPerRound] [rounds]</code>
+ */
+public class DocValuesUpdatesBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: java " + DocValuesUpdatesBenchmark.class.getName() + " indexPath [numDocs] [updatesPerRound] [rounds]");
+      System.exit(1);
+    }
+    final Path path = Files.createDirectories(Paths.get(args[0]));
+    final int numDocs = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+    final int updatesPerRound = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+    System.out.println("config\trounds/sec\tMB written");
+    for (double ratio : new double[] {0, 0.01, 0.1}) {
+      final AtomicLong bytesWritten = new AtomicLong();
+      final long nanos = run(path, ratio, numDocs, updatesPerRound, rounds, bytesWritten);
+      final double roundsPerSec = rounds / (nanos / 1000000000.0);
+      final String config = ratio == 0 ? "full-rewrite" : "overlays(" + ratio + ")";
+      System.out.println(String.format(Locale.ROOT, "%s\t%.1f\t%.1f", config, roundsPerSec, bytesWritten.get() / 1024. / 1024.));
+    }
+  }
+
+  /** Run {@code rounds} rounds of updates and return the elapsed time in nanoseconds. */
+  private static long run(Path path, double ratio, int numDocs, int updatesPerRound, int rounds, AtomicLong bytesWritten) throws IOException {
+    IOUtils.rm(path);
+    final IndexWriterConfig iwc = new IndexWriterConfig(new StandardAnalyzer());
+    iwc.setMaxDocValuesOverlayRatio(ratio);
+    final AtomicLong bytes = new AtomicLong();
+    try (Directory dir = new CountingDirectory(FSDirectory.open(path), bytes);
+        IndexWriter writer = new IndexWriter(dir, iwc)) {
+      final Document doc = new Document();
+      final StringField id = new StringField("id", "", Field.Store.NO);
+      final NumericDocValuesField counter = new NumericDocValuesField("counter", 0);
+      doc.add(id);
+      doc.add(counter);
+      for (int i = 0; i < numDocs; ++i) {
+        id.setStringValue(Integer.toString(i));
+        writer.addDocument(doc);
+      }
+      writer.forceMerge(1);
+      writer.commit();
+
+      // only count the bytes that updates write
+      bytes.set(0);
+      final Random random = new Random(42);
+      final long[] counters = new long[numDocs];
+      DirectoryReader reader = DirectoryReader.open(writer);
+      final long startNanos = System.nanoTime();
+      for (int round = 0; round < rounds; ++round) {
+        for (int i = 0; i < updatesPerRound; ++i) {
+          final int docID = random.nextInt(numDocs);
+          writer.updateNumericDocValue(new Term("id", Integer.toString(docID)), "counter", ++counters[docID]);
+        }
+        final DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer);
+        if (newReader != null) {
+          reader.close();
+          reader = newReader;
+        }
+      }
+      final long elapsed = System.nanoTime() - startNanos;
+      reader.close();
+      bytesWritten.set(bytes.get());
+      return elapsed;
+    }
+  }
+
+  /** A {@link Directory} that counts the bytes of the files that are written. */
+  private static class CountingDirectory extends FilterDirectory {
+
+    private final AtomicLong bytesWritten;
+
+    CountingDirectory(Directory in, AtomicLong bytesWritten) {
+      super(in);
+      this.bytesWritten = bytesWritten;
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+      return new CountingIndexOutput(in.createOutput(name, context));
+    }
+
+    private class CountingIndexOutput extends IndexOutput {
+
+      private final IndexOutput out;
+
+      CountingIndexOutput(IndexOutput out) {
+        super("CountingIndexOutput(" + out + ")", out.getName());
+        this.out = out;
+      }
+
+      @Override
+      public void writeByte(byte b) throws IOException {
+        out.writeByte(b);
+      }
+
+      @Override
+      public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        out.writeBytes(b, offset, length);
+      }
+
+      @Override
+      public long getFilePointer() {
+        return out.getFilePointer();
+      }
+
+      @Override
+      public long getChecksum() throws IOException {
+        return out.getChecksum();
+      }
+
+      @Override
+      public void close() throws IOException {
+        bytesWritten.addAndGet(out.getFilePointer());
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Measures how indexing throughput of small documents scales with the
+ * number of indexing threads, which is mostly bound by the cost of
+ * obtaining and releasing per-thread writers. Each round indexes the same
+ * total number of tiny documents into a {@link RAMDirectory}, without
+ * merges, using 1, 2, 4, ... up to the maximum number of threads, and
+ * prints the throughput and the speedup over one thread.
+ * <p>
+ * Usage: <code>java org.apache.lucene.benchmark.utils.IndexingThreadsBenchmark [maxThreads] [numDocs] [iterations]</code>
+ */
+public class IndexingThreadsBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+    final int numDocs = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+    final int iters = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    // warm up
+    run(Math.min(4, maxThreads), numDocs / 4);
+
+    System.out.println("threads\tdocs/sec\tspeedup");
+    double baseline = -1;
+    for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2) {
+      long bestNanos = Long.MAX_VALUE;
+      for (int i = 0; i < iters; ++i) {
+        bestNanos = Math.min(bestNanos, run(numThreads, numDocs));
+      }
+      final double docsPerSec = numDocs / (bestNanos / 1000000000.0);
+      if (baseline == -1) {
+        baseline = docsPerSec;
+      }
+      System.out.println(String.format(Locale.ROOT, "%d\t%.0f\t%.2f", numThreads, docsPerSec, docsPerSec / baseline));
+    }
+  }
+
+  /** Index {@code numDocs} documents with {@code numThreads} threads and return the elapsed time in nanoseconds. */
+  private static long run(int numThreads, int numDocs) throws Exception {
+    final IndexWriterConfig iwc = new IndexWriterConfig(new StandardAnalyzer());
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setRAMBufferSizeMB(256);
+    try (RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, iwc)) {
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicReference<Throwable> error = new AtomicReference<>();
+      final Thread[] threads = new Thread[numThreads];
+      for (int t = 0; t < numThreads; ++t) {
+        final int docsPerThread = numDocs / numThreads + (t < numDocs % numThreads ? 1 : 0);
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              final Document doc = new Document();
+              final StringField id = new StringField("id", "", Field.Store.NO);
+              final NumericDocValuesField value = new NumericDocValuesField("value", 0);
+              doc.add(id);
+              doc.add(value);
+              start.await();
+              for (int i = 0; i < docsPerThread; ++i) {
+                id.setStringValue(Integer.toString(i));
+                value.setLongValue(i);
+                writer.addDocument(doc);
+              }
+            } catch (Throwable t) {
+              error.compareAndSet(null, t);
+            }
+          }
+        };
+        threads[t].start();
+      }
+      final long startNanos = System.nanoTime();
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      final long elapsed = System.nanoTime() - startNanos;
+      if (error.get() != null) {
+        throw new RuntimeException(error.get());
+      }
+      return elapsed;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Measures the throughput of decoding blocks of 128 packed integers for every
+ * number of bits per value, which is how postings blocks are decoded. For each
+ * number of bits per value, this prints the time it takes to decode a block
+ * and to decode a block and then compute its prefix sum (delta-decoding).
+ * <p>
+ * Usage: <code>java org.apache.lucene.benchmark.utils.PackedDecodeBenchmark [iterations]</code>
+ */
+public class PackedDecodeBenchmark {
+
+  private static final int BLOCK_SIZE = 128;
+  private static final int BLOCKS = 1024;
+
+  public static void main(String[] args) {
+    final int iters = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    System.out.println("bpv\tdecode ns/block\tdecode+prefixSum ns/block");
+    long sink = 0;
+    for (int bpv = 1; bpv <= 32; ++bpv) {
+      final PackedInts.Decoder decoder = PackedInts.getDecoder(PackedInts.Format.PACKED, PackedInts.VERSION_CURRENT, bpv);
+      final int iterations = BLOCK_SIZE / decoder.byteValueCount();
+      final byte[] encoded = encodeBlocks(bpv, iterations);
+      final int blockBytes = iterations * decoder.byteBlockCount();
+      final int[] values = new int[BLOCK_SIZE];
+
+      // warm up both loops before timing them
+      for (int i = 0; i < 5; ++i) {
+        sink += run(decoder, encoded, blockBytes, values, iterations, false);
+        sink += run(decoder, encoded, blockBytes, values, iterations, true);
+      }
+
+      long decodeNanos = Long.MAX_VALUE;
+      long prefixSumNanos = Long.MAX_VALUE;
+      for (int i = 0; i < iters; ++i) {
+        long start = System.nanoTime();
+        sink += run(decoder, encoded, blockBytes, values, iterations, false);
+        decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+        start = System.nanoTime();
+        sink += run(decoder, encoded, blockBytes, values, iterations, true);
+        prefixSumNanos = Math.min(prefixSumNanos, System.nanoTime() - start);
+      }
+      System.out.println(String.format(Locale.ROOT, "%d\t%.1f\t%.1f", bpv,
+          (double) decodeNanos / BLOCKS, (double) prefixSumNanos / BLOCKS));
+    }
+    // make sure the JIT cannot drop the decoding
+    System.out.println("checksum=" + sink);
+  }
+
+  private static byte[] encodeBlocks(int bpv, int iterations) {
+    final PackedInts.Encoder encoder = PackedInts.getEncoder(PackedInts.Format.PACKED, PackedInts.VERSION_CURRENT, bpv);
+    final int blockBytes = iterations * encoder.byteBlockCount();
+    final byte[] encoded = new byte[BLOCKS * blockBytes];
+    final Random random = new Random(bpv);
+    final int[] values = new int[BLOCK_SIZE];
+    final long max = (1L << bpv) - 1;
+    for (int block = 0; block < BLOCKS; ++block) {
+      for (int i = 0; i < BLOCK_SIZE; ++i) {
+        values[i] = (int) (random.nextLong() & max);
+      }
+      encoder.encode(values, 0, encoded, block * blockBytes, iterations);
+    }
+    return encoded;
+  }
+
+  private static long run(PackedInts.Decoder decoder, byte[] encoded, int blockBytes, int[] values, int iterations, boolean prefixSum) {
+    long sum = 0;
+    for (int block = 0; block < BLOCKS; ++block) {
+      decoder.decode(encoded, block * blockBytes, values, 0, iterations);
+      if (prefixSum) {
+        int doc = 0;
+        for (int i = 0; i < BLOCK_SIZE; ++i) {
+          doc += values[i];
+          values[i] = doc;
+        }
+      }
+      sum += values[BLOCK_SIZE - 1];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * Measures the cost of flushing segments that have stored fields, without an
+ * index sort, with an index sort whose stored fields go through temporary
+ * files, and with an index sort whose stored fields are buffered in memory
+ * (see {@link IndexWriterConfig#setStoredFieldsSortBufferMB}). Documents
+ * look like time-series events: a timestamp that is used as the sort key
+ * and arrives slightly out of order, an id and a stored message. For each
+ * configuration, this prints the indexing throughput, including flushes,
+ * and the number of bytes that were written to the directory.
+ * <p>
+ * Usage: <code>java org.apache.lucene.benchmark.utils.SortedFlushBenchmark indexPath [numDocs] [docsPerSegment] [iterations]</code>
+ */
+public class SortedFlushBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: java " + SortedFlushBenchmark.class.getName() + " indexPath [numDocs] [docsPerSegment] [iterations]");
+      System.exit(1);
+    }
+    final Path path = Files.createDirectories(Paths.get(args[0]));
+    final int numDocs = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+    final int docsPerSegment = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+    final int iters = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+    System.out.println("config\tdocs/sec\tMB written");
+    for (String config : new String[] {"unsorted", "sorted-tmp-files", "sorted-buffered"}) {
+      long bestNanos = Long.MAX_VALUE;
+      long bytesWritten = 0;
+      for (int i = 0; i < iters; ++i) {
+        final AtomicLong bytes = new AtomicLong();
+        bestNanos = Math.min(bestNanos, run(path, config, numDocs, docsPerSegment, bytes));
+        bytesWritten = bytes.get();
+      }
+      final double docsPerSec = numDocs / (bestNanos / 1000000000.0);
+      System.out.println(String.format(Locale.ROOT, "%s\t%.0f\t%.1f", config, docsPerSec, bytesWritten / 1024. / 1024.));
+    }
+  }
+
+  /** Index {@code numDocs} documents and return the elapsed time in nanoseconds. */
+  private static long run(Path path, String config, int numDocs, int docsPerSegment, AtomicLong bytesWritten) throws IOException {
+    IOUtils.rm(path);
+    final IndexWriterConfig iwc = new IndexWriterConfig(new StandardAnalyzer());
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setUseCompoundFile(false);
+    iwc.setMaxBufferedDocs(docsPerSegment);
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    switch (config) {
+      case "unsorted":
+        break;
+      case "sorted-tmp-files":
+        iwc.setIndexSort(new Sort(new SortField("timestamp", SortField.Type.LONG)));
+        iwc.setStoredFieldsSortBufferMB(0);
+        break;
+      case "sorted-buffered":
+        iwc.setIndexSort(new Sort(new SortField("timestamp", SortField.Type.LONG)));
+        iwc.setStoredFieldsSortBufferMB(1024);
+        break;
+      default:
+        throw new AssertionError(config);
+    }
+
+    final Random random = new Random(42);
+    final long startNanos = System.nanoTime();
+    try (Directory dir = new CountingDirectory(FSDirectory.open(path), bytesWritten);
+        IndexWriter writer = new IndexWriter(dir, iwc)) {
+      final Document doc = new Document();
+      final NumericDocValuesField timestamp = new NumericDocValuesField("timestamp", 0);
+      final StringField id = new StringField("id", "", Field.Store.YES);
+      final StoredField message = new StoredField("message", "");
+      doc.add(timestamp);
+      doc.add(id);
+      doc.add(message);
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < numDocs; ++i) {
+        // events arrive up to a few seconds late
+        timestamp.setLongValue(1000L * i - random.nextInt(5000));
+        id.setStringValue(Integer.toString(i));
+        sb.setLength(0);
+        for (int j = 10 + random.nextInt(50); j > 0; --j) {
+          sb.append("event").append(random.nextInt(1000)).append(' ');
+        }
+        message.setStringValue(sb.toString());
+        writer.addDocument(doc);
+      }
+      writer.commit();
+    }
+    return System.nanoTime() - startNanos;
+  }
+
+  /** A {@link Directory} that counts the bytes of the files that are written, including temporary files. */
+  private static class CountingDirectory extends FilterDirectory {
+
+    private final AtomicLong bytesWritten;
+
+    CountingDirectory(Directory in, AtomicLong bytesWritten) {
+      super(in);
+      this.bytesWritten = bytesWritten;
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+      return new CountingIndexOutput(in.createOutput(name, context));
+    }
+
+    @Override
+    public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+      return new CountingIndexOutput(in.createTempOutput(prefix, suffix, context));
+    }
+
+    private class CountingIndexOutput extends IndexOutput {
+
+      private final IndexOutput out;
+
+      CountingIndexOutput(IndexOutput out) {
+        super("CountingIndexOutput(" + out + ")", out.getName());
+        this.out = out;
+      }
+
+      @Override
+      public void writeByte(byte b) throws IOException {
+        out.writeByte(b);
+      }
+
+      @Override
+      public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        out.writeBytes(b, offset, length);
+      }
+
+      @Override
+      public long getFilePointer() {
+        return out.getFilePointer();
+      }
+
+      @Override
+      public long getChecksum() throws IOException {
+        return out.getChecksum();
+      }
+
+      @Override
+      public void close() throws IOException {
+        bytesWritten.addAndGet(out.getFilePointer());
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.benchmark.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.lucene.benchmark.byTask.tasks.WriteLineDocTask;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.Version;
+
+/**
+ * Compares compression modes of {@link CompressingStoredFieldsFormat} on
+ * documents of a line file (see {@link WriteLineDocTask}), such as the
+ * enwiki line docs: every line is a document whose tab-separated values are
+ * stored fields. For each compression mode, this writes all documents to a
+ * single segment and prints the size of the stored fields files, the
+ * compression throughput, and the average latency of fetching random
+ * documents. Segments are written with the stored fields format directly,
+ * without an {@link org.apache.lucene.index.IndexWriter}, so that nothing
+ * else is measured.
+ * <p>
+ * Usage: <code>java org.apache.lucene.benchmark.utils.StoredFieldsCompressionBenchmark lineFile indexPath [numDocs] [chunkSize] [numFetches]</code>
+ */
+public class StoredFieldsCompressionBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: java " + StoredFieldsCompressionBenchmark.class.getName() + " lineFile indexPath [numDocs] [chunkSize] [numFetches]");
+      System.exit(1);
+    }
+    final Path lineFile = Paths.get(args[0]);
+    final Path path = Files.createDirectories(Paths.get(args[1]));
+    final int maxDocs = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+    final int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : 1 << 14;
+    final int numFetches = args.length > 4 ? Integer.parseInt(args[4]) : 100000;
+
+    final List<String[]> docs = readDocs(lineFile, maxDocs);
+    long rawBytes = 0;
+    for (String[] doc : docs) {
+      for (String value : doc) {
+        rawBytes += value.getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+    System.out.println(String.format(Locale.ROOT, "%d docs, %.1f MB, chunkSize=%d", docs.size(), rawBytes / 1024. / 1024., chunkSize));
+
+    System.out.println("mode\tMB\tratio\tcompress MB/s\tfetch us/doc");
+    for (CompressionMode mode : new CompressionMode[] {
+        CompressionMode.FAST,
+        CompressionMode.FAST_DECOMPRESSION,
+        CompressionMode.FAST_DECOMPRESSION_WITH_DICTIONARY,
+        CompressionMode.HIGH_COMPRESSION}) {
+      final StoredFieldsFormat format = new CompressingStoredFieldsFormat("Benchmark", mode, chunkSize, 1024, 1024);
+      IOUtils.rm(path);
+      try (Directory dir = FSDirectory.open(path)) {
+        final SegmentInfo si = new SegmentInfo(dir, Version.LATEST, "_0", docs.size(), false, Codec.getDefault(),
+            Collections.emptyMap(), StringHelper.randomId(), Collections.emptyMap(), null);
+        final FieldInfos fieldInfos = fieldInfos(docs);
+
+        final long writeNanos = write(format, dir, si, fieldInfos, docs);
+        long size = 0;
+        for (String file : dir.listAll()) {
+          size += dir.fileLength(file);
+        }
+        final long fetchNanos = fetch(format, dir, si, fieldInfos, numFetches);
+
+        System.out.println(String.format(Locale.ROOT, "%s\t%.1f\t%.3f\t%.1f\t%.2f",
+            mode, size / 1024. / 1024., (double) size / rawBytes,
+            (rawBytes / 1024. / 1024.) / (writeNanos / 1000000000.0), fetchNanos / 1000.0 / numFetches));
+      }
+    }
+  }
+
+  private static List<String[]> readDocs(Path lineFile, int maxDocs) throws IOException {
+    final List<String[]> docs = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(lineFile, StandardCharsets.UTF_8)) {
+      String line;
+      while (docs.size() < maxDocs && (line = reader.readLine()) != null) {
+        if (line.startsWith(WriteLineDocTask.FIELDS_HEADER_INDICATOR)) {
+          continue;
+        }
+        docs.add(line.split(Character.toString(WriteLineDocTask.SEP)));
+      }
+    }
+    return docs;
+  }
+
+  private static FieldInfos fieldInfos(List<String[]> docs) {
+    int numFields = 0;
+    for (String[] doc : docs) {
+      numFields = Math.max(numFields, doc.length);
+    }
+    final FieldInfo[] infos = new FieldInfo[numFields];
+    for (int i = 0; i < numFields; ++i) {
+      infos[i] = new FieldInfo("field" + i, i, false, true, false, IndexOptions.NONE, DocValuesType.NONE,
+          -1, Collections.emptyMap(), 0, 0);
+    }
+    return new FieldInfos(infos);
+  }
+
+  /** Write all documents and return the elapsed time in nanoseconds. */
+  private static long write(StoredFieldsFormat format, Directory dir, SegmentInfo si, FieldInfos fieldInfos, List<String[]> docs) throws IOException {
+    final long startNanos = System.nanoTime();
+    try (StoredFieldsWriter writer = format.fieldsWriter(dir, si, IOContext.DEFAULT)) {
+      for (String[] doc : docs) {
+        writer.startDocument();
+        for (int i = 0; i < doc.length; ++i) {
+          writer.writeField(fieldInfos.fieldInfo(i), new StoredField(fieldInfos.fieldInfo(i).name, doc[i]));
+        }
+        writer.finishDocument();
+      }
+      writer.finish(fieldInfos, docs.size());
+    }
+    return System.nanoTime() - startNanos;
+  }
+
+  /** Fetch random documents and return the elapsed time in nanoseconds. */
+  private static long fetch(StoredFieldsFormat format, Directory dir, SegmentInfo si, FieldInfos fieldInfos, int numFetches) throws IOException {
+    final Random random = new Random(42);
+    try (StoredFieldsReader reader = format.fieldsReader(dir, si, fieldInfos, IOContext.READ)) {
+      // warm up
+      for (int i = 0; i < numFetches; ++i) {
+        reader.visitDocument(random.nextInt(si.maxDoc()), new DocumentStoredFieldVisitor());
+      }
+      final long startNanos = System.nanoTime();
+      for (int i = 0; i < numFetches; ++i) {
+        reader.visitDocument(random.nextInt(si.maxDoc()), new DocumentStoredFieldVisitor());
+      }
+      return System.nanoTime() - startNanos;
+    }
+  }
+}
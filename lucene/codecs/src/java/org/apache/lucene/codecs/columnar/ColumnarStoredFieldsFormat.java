@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.columnar;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+
+/**
+ * A {@link StoredFieldsFormat} that groups the values of a chunk of
+ * documents by field, and compresses the values of every field separately.
+ * <p>
+ * Like {@link CompressingStoredFieldsFormat}, documents are written in
+ * chunks of at least <tt>chunkSize</tt> bytes. But the values of each field
+ * in a chunk form their own compressed stream (a column), and the order of
+ * the fields of every document is recorded in another compressed stream.
+ * When a {@link StoredFieldVisitor} only needs a few fields of documents
+ * that have many stored fields, only the streams of these fields are
+ * decompressed and decoded. The trade-off is that fields do not share
+ * redundancy with other fields, and that loading all fields of a document
+ * requires decompressing all streams of its chunk.
+ * <p>
+ * File format:
+ * <ul>
+ * <li>Data (.fdc) --&gt; Header, &lt;Chunk&gt;<sup>ChunkCount</sup>, ChunkIndex, ChunkIndexPointer, Footer</li>
+ * <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ * <li>Chunk --&gt; DocBase, ChunkDocs, FieldsLength, FieldsCompressedLength, ColumnCount,
+ *     &lt;FieldNumberDelta, ColumnLength, ColumnCompressedLength&gt;<sup>ColumnCount</sup>,
+ *     CompressedFields, &lt;CompressedColumn&gt;<sup>ColumnCount</sup></li>
+ * <li>CompressedFields --&gt; the compressed representation of
+ *     &lt;FieldCount&gt;<sup>ChunkDocs</sup>, &lt;FieldNumAndType&gt;<sup>sum(FieldCount)</sup>:
+ *     the field numbers and types of the values of every document, in order</li>
+ * <li>CompressedColumn --&gt; the compressed representation of
+ *     &lt;ValuesLength&gt;<sup>ChunkDocs</sup>, &lt;Value&gt;<sup>sum(ValueCount)</sup>:
+ *     the values of a single field for every document of the chunk</li>
+ * <li>FieldNumAndType --&gt; a {@link DataOutput#writeVLong VLong}, whose 3 last bits are the type and
+ *     other bits are the field number</li>
+ * <li>Value --&gt; {@link DataOutput#writeString String} | ValueLength &lt;Byte&gt;<sup>ValueLength</sup> |
+ *     {@link DataOutput#writeZInt ZInt} | {@link DataOutput#writeInt Int} (float bits) |
+ *     {@link DataOutput#writeZLong ZLong} | {@link DataOutput#writeLong Long} (double bits), depending on the type</li>
+ * <li>ChunkIndex --&gt; ChunkCount, &lt;DocBaseDelta, StartPointerDelta&gt;<sup>ChunkCount</sup></li>
+ * <li>ChunkIndexPointer --&gt; the start pointer of the chunk index, as a {@link DataOutput#writeLong Long}</li>
+ * <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ * Other integers are {@link DataOutput#writeVInt VInts} and {@link DataOutput#writeVLong VLongs}.
+ * @lucene.experimental
+ */
+public final class ColumnarStoredFieldsFormat extends StoredFieldsFormat {
+
+  /** Extension of the data file */
+  public static final String DATA_EXTENSION = "fdc";
+
+  static final String CODEC_NAME = "ColumnarStoredFieldsData";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  static final int         STRING = 0x00;
+  static final int       BYTE_ARR = 0x01;
+  static final int    NUMERIC_INT = 0x02;
+  static final int  NUMERIC_FLOAT = 0x03;
+  static final int   NUMERIC_LONG = 0x04;
+  static final int NUMERIC_DOUBLE = 0x05;
+
+  static final int TYPE_BITS = 3;
+  static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+  /** Default minimum number of bytes of a chunk. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 15;
+  /** Default maximum number of documents in a chunk. */
+  public static final int DEFAULT_MAX_DOCS_PER_CHUNK = 1024;
+
+  private final CompressionMode compressionMode;
+  private final int chunkSize;
+  private final int maxDocsPerChunk;
+
+  /** Create a new instance that uses {@link CompressionMode#FAST} and default chunk sizes. */
+  public ColumnarStoredFieldsFormat() {
+    this(CompressionMode.FAST, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_DOCS_PER_CHUNK);
+  }
+
+  /**
+   * Create a new instance. Segments must be read with the same
+   * <code>compressionMode</code> as they were written with.
+   *
+   * @param compressionMode the {@link CompressionMode} that compresses streams of fields
+   * @param chunkSize the minimum number of bytes of a single chunk of stored documents
+   * @param maxDocsPerChunk the maximum number of documents in a single chunk
+   */
+  public ColumnarStoredFieldsFormat(CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be >= 1");
+    }
+    if (maxDocsPerChunk < 1) {
+      throw new IllegalArgumentException("maxDocsPerChunk must be >= 1");
+    }
+    this.compressionMode = compressionMode;
+    this.chunkSize = chunkSize;
+    this.maxDocsPerChunk = maxDocsPerChunk;
+  }
+
+  @Override
+  public StoredFieldsReader fieldsReader(Directory directory, SegmentInfo si, FieldInfos fn, IOContext context) throws IOException {
+    return new ColumnarStoredFieldsReader(directory, si, fn, context, compressionMode);
+  }
+
+  @Override
+  public StoredFieldsWriter fieldsWriter(Directory directory, SegmentInfo si, IOContext context) throws IOException {
+    return new ColumnarStoredFieldsWriter(directory, si, context, compressionMode, chunkSize, maxDocsPerChunk);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(compressionMode=" + compressionMode
+        + ", chunkSize=" + chunkSize + ", maxDocsPerChunk=" + maxDocsPerChunk + ")";
+  }
+}
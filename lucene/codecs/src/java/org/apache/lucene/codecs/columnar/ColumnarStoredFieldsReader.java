@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.columnar;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.BYTE_ARR;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.CODEC_NAME;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.DATA_EXTENSION;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_DOUBLE;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_FLOAT;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_INT;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_LONG;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.STRING;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.TYPE_BITS;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.TYPE_MASK;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.VERSION_CURRENT;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.VERSION_START;
+
+/**
+ * {@link StoredFieldsReader} impl for {@link ColumnarStoredFieldsFormat}.
+ * <p>
+ * The field numbers and types of the current chunk are always decompressed,
+ * but the values of a field are only decompressed the first time that a
+ * {@link StoredFieldVisitor} needs this field in the current chunk.
+ */
+final class ColumnarStoredFieldsReader extends StoredFieldsReader {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ColumnarStoredFieldsReader.class);
+
+  private final FieldInfos fieldInfos;
+  private final int maxDoc;
+  private final IndexInput dataIn;
+  private final CompressionMode compressionMode;
+  private final Decompressor decompressor;
+  private final int[] docBases; // first doc ID of every chunk
+  private final long[] startPointers; // start pointer of every chunk
+  private boolean closed;
+
+  // state of the current chunk
+  private int chunk = -1;
+  private int chunkDocBase;
+  private int chunkDocs;
+  private final BytesRef fields = new BytesRef(); // decompressed field numbers and types
+  private int[] docFieldCounts = new int[0];
+  private int[] docFieldStarts = new int[0]; // start offsets in fields, per doc
+  private int numColumns;
+  private int[] fieldToColumn = new int[0]; // column index + 1, per field number
+  private int[] columnLengths = new int[0];
+  private long[] columnStartPointers = new long[0];
+  private BytesRef[] columnValues = new BytesRef[0]; // lazily decompressed
+  private int[][] columnDocStarts = new int[0][]; // start offsets in column values, per doc
+  private boolean[] columnLoaded = new boolean[0];
+
+  // state of the current visit
+  private int visitCount;
+  private int[] columnVisit = new int[0]; // the visit that positioned each column
+  private ByteArrayDataInput[] columnIn = new ByteArrayDataInput[0];
+  private final ByteArrayDataInput fieldsIn = new ByteArrayDataInput();
+  private final ByteArrayDataInput rescanIn = new ByteArrayDataInput();
+
+  /** Used by clone. */
+  private ColumnarStoredFieldsReader(ColumnarStoredFieldsReader reader) {
+    this.fieldInfos = reader.fieldInfos;
+    this.maxDoc = reader.maxDoc;
+    this.dataIn = reader.dataIn.clone();
+    this.compressionMode = reader.compressionMode;
+    this.decompressor = reader.decompressor.clone();
+    this.docBases = reader.docBases;
+    this.startPointers = reader.startPointers;
+    this.closed = false;
+  }
+
+  ColumnarStoredFieldsReader(Directory d, SegmentInfo si, FieldInfos fn, IOContext context, CompressionMode compressionMode) throws IOException {
+    this.fieldInfos = fn;
+    this.maxDoc = si.maxDoc();
+    this.compressionMode = compressionMode;
+    this.decompressor = compressionMode.newDecompressor();
+    final String fileName = IndexFileNames.segmentFileName(si.name, "", DATA_EXTENSION);
+    boolean success = false;
+    IndexInput in = d.openInput(fileName, context);
+    try {
+      CodecUtil.checkIndexHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT, si.getId(), "");
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(in);
+
+      in.seek(in.length() - CodecUtil.footerLength() - Long.BYTES);
+      final long indexPointer = in.readLong();
+      if (indexPointer < 0 || indexPointer >= in.getFilePointer()) {
+        throw new CorruptIndexException("Invalid chunk index pointer: " + indexPointer, in);
+      }
+      in.seek(indexPointer);
+      final int numChunks = in.readVInt();
+      docBases = new int[numChunks];
+      startPointers = new long[numChunks];
+      int docBase = 0;
+      long startPointer = 0;
+      for (int i = 0; i < numChunks; ++i) {
+        docBase += in.readVInt();
+        startPointer += in.readVLong();
+        docBases[i] = docBase;
+        startPointers[i] = startPointer;
+      }
+      if (numChunks > 0 && docBase >= maxDoc) {
+        throw new CorruptIndexException("Invalid docBase: " + docBase + ", maxDoc=" + maxDoc, in);
+      }
+      this.dataIn = in;
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(in);
+      }
+    }
+  }
+
+  /**
+   * @throws AlreadyClosedException if this FieldsReader is closed
+   */
+  private void ensureOpen() throws AlreadyClosedException {
+    if (closed) {
+      throw new AlreadyClosedException("this FieldsReader is closed");
+    }
+  }
+
+  /** Close the underlying {@link IndexInput}. */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      IOUtils.close(dataIn);
+      closed = true;
+    }
+  }
+
+  /** Load the header and the field numbers and types of the <code>i</code>-th chunk. */
+  private void loadChunk(int i) throws IOException {
+    dataIn.seek(startPointers[i]);
+    chunkDocBase = dataIn.readVInt();
+    chunkDocs = dataIn.readVInt();
+    if (chunkDocBase != docBases[i] || chunkDocs <= 0 || chunkDocBase + chunkDocs > maxDoc
+        || (i + 1 < docBases.length && chunkDocBase + chunkDocs != docBases[i + 1])) {
+      throw new CorruptIndexException("Corrupted: docBase=" + chunkDocBase + ", chunkDocs=" + chunkDocs + ", maxDoc=" + maxDoc, dataIn);
+    }
+    final int fieldsLength = dataIn.readVInt();
+    final int fieldsCompressedLength = dataIn.readVInt();
+
+    numColumns = dataIn.readVInt();
+    if (columnLengths.length < numColumns) {
+      final int newLength = ArrayUtil.oversize(numColumns, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      columnLengths = new int[newLength];
+      columnStartPointers = new long[newLength];
+      columnValues = Arrays.copyOf(columnValues, newLength);
+      columnDocStarts = Arrays.copyOf(columnDocStarts, newLength);
+      columnLoaded = new boolean[newLength];
+      columnVisit = new int[newLength];
+      columnIn = Arrays.copyOf(columnIn, newLength);
+    }
+    Arrays.fill(fieldToColumn, 0);
+    final int[] columnCompressedLengths = new int[numColumns];
+    int fieldNumber = 0;
+    for (int c = 0; c < numColumns; ++c) {
+      fieldNumber += dataIn.readVInt();
+      if (fieldNumber >= fieldToColumn.length) {
+        fieldToColumn = ArrayUtil.grow(fieldToColumn, fieldNumber + 1);
+      }
+      fieldToColumn[fieldNumber] = c + 1;
+      columnLengths[c] = dataIn.readVInt();
+      columnCompressedLengths[c] = dataIn.readVInt();
+      columnLoaded[c] = false;
+      columnVisit[c] = 0;
+    }
+
+    long startPointer = dataIn.getFilePointer() + fieldsCompressedLength;
+    for (int c = 0; c < numColumns; ++c) {
+      columnStartPointers[c] = startPointer;
+      startPointer += columnCompressedLengths[c];
+    }
+
+    decompressor.decompress(dataIn, fieldsLength, 0, fieldsLength, fields);
+    fieldsIn.reset(fields.bytes, fields.offset, fields.length);
+    if (docFieldCounts.length < chunkDocs) {
+      docFieldCounts = new int[ArrayUtil.oversize(chunkDocs, Integer.BYTES)];
+      docFieldStarts = new int[docFieldCounts.length];
+    }
+    for (int doc = 0; doc < chunkDocs; ++doc) {
+      docFieldCounts[doc] = fieldsIn.readVInt();
+    }
+    for (int doc = 0; doc < chunkDocs; ++doc) {
+      docFieldStarts[doc] = fieldsIn.getPosition() - fields.offset;
+      for (int j = 0; j < docFieldCounts[doc]; ++j) {
+        fieldsIn.readVLong();
+      }
+    }
+    if (fieldsIn.eof() == false) {
+      throw new CorruptIndexException("Corrupted: read " + (fieldsIn.getPosition() - fields.offset) + " bytes of field numbers and types out of " + fieldsLength, dataIn);
+    }
+    chunk = i;
+  }
+
+  /** Decompress the values of the <code>c</code>-th column of the current chunk. */
+  private void loadColumn(int c) throws IOException {
+    dataIn.seek(columnStartPointers[c]);
+    if (columnValues[c] == null) {
+      columnValues[c] = new BytesRef();
+    }
+    final BytesRef values = columnValues[c];
+    decompressor.decompress(dataIn, columnLengths[c], 0, columnLengths[c], values);
+    if (columnDocStarts[c] == null || columnDocStarts[c].length < chunkDocs) {
+      columnDocStarts[c] = new int[ArrayUtil.oversize(chunkDocs, Integer.BYTES)];
+    }
+    final int[] docStarts = columnDocStarts[c];
+    if (columnIn[c] == null) {
+      columnIn[c] = new ByteArrayDataInput();
+    }
+    final ByteArrayDataInput in = columnIn[c];
+    in.reset(values.bytes, values.offset, values.length);
+    // read lengths, then replace them in-place with start offsets
+    for (int doc = 0; doc < chunkDocs; ++doc) {
+      docStarts[doc] = in.readVInt();
+    }
+    int start = in.getPosition();
+    for (int doc = 0; doc < chunkDocs; ++doc) {
+      final int length = docStarts[doc];
+      docStarts[doc] = start;
+      start += length;
+    }
+    if (start != values.offset + values.length) {
+      throw new CorruptIndexException("Corrupted: column values end at " + start + " instead of " + (values.offset + values.length), dataIn);
+    }
+    columnLoaded[c] = true;
+  }
+
+  private int column(int fieldNumber) throws IOException {
+    final int c = fieldNumber < fieldToColumn.length ? fieldToColumn[fieldNumber] - 1 : -1;
+    if (c < 0) {
+      throw new CorruptIndexException("Corrupted: no values for field number " + fieldNumber + " in chunk " + chunk, dataIn);
+    }
+    return c;
+  }
+
+  @Override
+  public void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException {
+    ensureOpen();
+    if (chunk == -1 || docID < chunkDocBase || docID >= chunkDocBase + chunkDocs) {
+      int i = Arrays.binarySearch(docBases, docID);
+      if (i < 0) {
+        i = -2 - i;
+      }
+      if (i < 0 || docID >= maxDoc) {
+        throw new IllegalArgumentException("docID out of range: " + docID + " (maxDoc=" + maxDoc + ")");
+      }
+      loadChunk(i);
+    }
+
+    final int doc = docID - chunkDocBase;
+    final int numStoredFields = docFieldCounts[doc];
+    if (++visitCount == 0) {
+      // overflow: make sure that no column looks positioned
+      Arrays.fill(columnVisit, 0);
+      visitCount = 1;
+    }
+    fieldsIn.setPosition(fields.offset + docFieldStarts[doc]);
+
+    for (int fieldIDX = 0; fieldIDX < numStoredFields; fieldIDX++) {
+      final long infoAndBits = fieldsIn.readVLong();
+      final int fieldNumber = (int) (infoAndBits >>> TYPE_BITS);
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(fieldNumber);
+
+      final int bits = (int) (infoAndBits & TYPE_MASK);
+      assert bits <= NUMERIC_DOUBLE: "bits=" + Integer.toHexString(bits);
+
+      switch(visitor.needsField(fieldInfo)) {
+        case YES:
+          readField(positionColumn(doc, fieldNumber, fieldIDX), visitor, fieldInfo, bits);
+          break;
+        case NO:
+          final int c = column(fieldNumber);
+          if (columnVisit[c] == visitCount) {
+            // values of this field are being read: keep the column in sync
+            skipField(columnIn[c], bits);
+          }
+          break;
+        case STOP:
+          return;
+      }
+    }
+  }
+
+  /**
+   * Return the values of field <code>fieldNumber</code>, positioned on the
+   * value of the <code>fieldIDX</code>-th stored field of <code>doc</code>.
+   */
+  private DataInput positionColumn(int doc, int fieldNumber, int fieldIDX) throws IOException {
+    final int c = column(fieldNumber);
+    final ByteArrayDataInput in;
+    if (columnVisit[c] != visitCount) {
+      if (columnLoaded[c] == false) {
+        loadColumn(c);
+      }
+      in = columnIn[c];
+      in.setPosition(columnDocStarts[c][doc]);
+      // skip values of this field that come earlier in the document
+      rescanIn.reset(fields.bytes, fields.offset + docFieldStarts[doc], fields.length - docFieldStarts[doc]);
+      for (int j = 0; j < fieldIDX; ++j) {
+        final long infoAndBits = rescanIn.readVLong();
+        if ((infoAndBits >>> TYPE_BITS) == fieldNumber) {
+          skipField(in, (int) (infoAndBits & TYPE_MASK));
+        }
+      }
+      columnVisit[c] = visitCount;
+    } else {
+      in = columnIn[c];
+    }
+    return in;
+  }
+
+  private static void readField(DataInput in, StoredFieldVisitor visitor, FieldInfo info, int bits) throws IOException {
+    switch (bits) {
+      case BYTE_ARR:
+        int length = in.readVInt();
+        byte[] data = new byte[length];
+        in.readBytes(data, 0, length);
+        visitor.binaryField(info, data);
+        break;
+      case STRING:
+        length = in.readVInt();
+        data = new byte[length];
+        in.readBytes(data, 0, length);
+        visitor.stringField(info, data);
+        break;
+      case NUMERIC_INT:
+        visitor.intField(info, in.readZInt());
+        break;
+      case NUMERIC_FLOAT:
+        visitor.floatField(info, Float.intBitsToFloat(in.readInt()));
+        break;
+      case NUMERIC_LONG:
+        visitor.longField(info, in.readZLong());
+        break;
+      case NUMERIC_DOUBLE:
+        visitor.doubleField(info, Double.longBitsToDouble(in.readLong()));
+        break;
+      default:
+        throw new AssertionError("Unknown type flag: " + Integer.toHexString(bits));
+    }
+  }
+
+  private static void skipField(DataInput in, int bits) throws IOException {
+    switch (bits) {
+      case BYTE_ARR:
+      case STRING:
+        final int length = in.readVInt();
+        in.skipBytes(length);
+        break;
+      case NUMERIC_INT:
+        in.readZInt();
+        break;
+      case NUMERIC_FLOAT:
+        in.readInt();
+        break;
+      case NUMERIC_LONG:
+        in.readZLong();
+        break;
+      case NUMERIC_DOUBLE:
+        in.readLong();
+        break;
+      default:
+        throw new AssertionError("Unknown type flag: " + Integer.toHexString(bits));
+    }
+  }
+
+  @Override
+  public StoredFieldsReader clone() {
+    ensureOpen();
+    return new ColumnarStoredFieldsReader(this);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED
+        + RamUsageEstimator.sizeOf(docBases)
+        + RamUsageEstimator.sizeOf(startPointers);
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(dataIn);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(mode=" + compressionMode + ",chunks=" + docBases.length + ")";
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.columnar;
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.StoredFieldsWriter;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.BYTE_ARR;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.CODEC_NAME;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.DATA_EXTENSION;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_DOUBLE;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_FLOAT;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_INT;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.NUMERIC_LONG;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.STRING;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.TYPE_BITS;
+import static org.apache.lucene.codecs.columnar.ColumnarStoredFieldsFormat.VERSION_CURRENT;
+
+/**
+ * {@link StoredFieldsWriter} impl for {@link ColumnarStoredFieldsFormat}.
+ */
+final class ColumnarStoredFieldsWriter extends StoredFieldsWriter {
+
+  /** Buffered values of a single field for the current chunk. */
+  private static final class Column {
+    final int fieldNumber;
+    final GrowableByteArrayDataOutput values = new GrowableByteArrayDataOutput(64);
+    int[] docEnds = new int[16]; // end offsets in values, per doc of the chunk
+    int numDocs; // number of docs whose end offset is recorded
+    boolean inChunk; // whether this field has values in the current chunk
+
+    Column(int fieldNumber) {
+      this.fieldNumber = fieldNumber;
+    }
+
+    /** Record end offsets of all docs before <code>doc</code>. */
+    void advance(int doc) {
+      if (docEnds.length < doc) {
+        docEnds = ArrayUtil.grow(docEnds, doc);
+      }
+      while (numDocs < doc) {
+        docEnds[numDocs++] = values.getPosition();
+      }
+    }
+
+    void reset() {
+      values.reset();
+      numDocs = 0;
+      inChunk = false;
+    }
+  }
+
+  private IndexOutput dataOut;
+  private Compressor compressor;
+  private final int chunkSize;
+  private final int maxDocsPerChunk;
+
+  private Column[] columns = new Column[0]; // indexed by field number
+  private Column[] chunkColumns = new Column[0]; // columns that have values in the current chunk
+  private int numChunkColumns;
+
+  private final GrowableByteArrayDataOutput bufferedFields; // field numbers and types
+  private int[] numStoredFields = new int[16]; // number of stored fields, per doc of the chunk
+  private int numStoredFieldsInDoc;
+  private int bufferedBytes; // total number of buffered bytes in the current chunk
+  private int docBase; // doc ID at the beginning of the chunk
+  private int numBufferedDocs; // docBase + numBufferedDocs == current doc ID
+
+  private final GrowableByteArrayDataOutput scratch; // uncompressed streams
+  private final GrowableByteArrayDataOutput compressed; // compressed streams of the current chunk
+  private int[] compressedLengths = new int[16];
+  private int[] uncompressedLengths = new int[16];
+
+  private int numChunks;
+  private int[] chunkDocBases = new int[16];
+  private long[] chunkStartPointers = new long[16];
+
+  ColumnarStoredFieldsWriter(Directory directory, SegmentInfo si, IOContext context,
+      CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk) throws IOException {
+    this.chunkSize = chunkSize;
+    this.maxDocsPerChunk = maxDocsPerChunk;
+    this.bufferedFields = new GrowableByteArrayDataOutput(128);
+    this.scratch = new GrowableByteArrayDataOutput(chunkSize);
+    this.compressed = new GrowableByteArrayDataOutput(chunkSize);
+
+    boolean success = false;
+    try {
+      dataOut = directory.createOutput(IndexFileNames.segmentFileName(si.name, "", DATA_EXTENSION), context);
+      CodecUtil.writeIndexHeader(dataOut, CODEC_NAME, VERSION_CURRENT, si.getId(), "");
+      compressor = compressionMode.newCompressor();
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      IOUtils.close(dataOut, compressor);
+    } finally {
+      dataOut = null;
+      compressor = null;
+    }
+  }
+
+  @Override
+  public void startDocument() throws IOException {
+  }
+
+  @Override
+  public void finishDocument() throws IOException {
+    if (numBufferedDocs == numStoredFields.length) {
+      numStoredFields = ArrayUtil.grow(numStoredFields, numBufferedDocs + 1);
+    }
+    numStoredFields[numBufferedDocs] = numStoredFieldsInDoc;
+    numStoredFieldsInDoc = 0;
+    ++numBufferedDocs;
+    if (triggerFlush()) {
+      flush();
+    }
+  }
+
+  private Column column(int fieldNumber) {
+    if (fieldNumber >= columns.length) {
+      columns = Arrays.copyOf(columns, ArrayUtil.oversize(fieldNumber + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+    }
+    Column column = columns[fieldNumber];
+    if (column == null) {
+      column = columns[fieldNumber] = new Column(fieldNumber);
+    }
+    if (column.inChunk == false) {
+      column.inChunk = true;
+      if (numChunkColumns == chunkColumns.length) {
+        chunkColumns = Arrays.copyOf(chunkColumns, ArrayUtil.oversize(numChunkColumns + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+      }
+      chunkColumns[numChunkColumns++] = column;
+    }
+    return column;
+  }
+
+  @Override
+  public void writeField(FieldInfo info, IndexableField field) throws IOException {
+
+    ++numStoredFieldsInDoc;
+
+    int bits = 0;
+    final BytesRef bytes;
+    final String string;
+
+    Number number = field.numericValue();
+    if (number != null) {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        bits = NUMERIC_INT;
+      } else if (number instanceof Long) {
+        bits = NUMERIC_LONG;
+      } else if (number instanceof Float) {
+        bits = NUMERIC_FLOAT;
+      } else if (number instanceof Double) {
+        bits = NUMERIC_DOUBLE;
+      } else {
+        throw new IllegalArgumentException("cannot store numeric type " + number.getClass());
+      }
+      string = null;
+      bytes = null;
+    } else {
+      bytes = field.binaryValue();
+      if (bytes != null) {
+        bits = BYTE_ARR;
+        string = null;
+      } else {
+        bits = STRING;
+        string = field.stringValue();
+        if (string == null) {
+          throw new IllegalArgumentException("field " + field.name() + " is stored but does not have binaryValue, stringValue nor numericValue");
+        }
+      }
+    }
+
+    final int fieldsStart = bufferedFields.getPosition();
+    bufferedFields.writeVLong((((long) info.number) << TYPE_BITS) | bits);
+    bufferedBytes += bufferedFields.getPosition() - fieldsStart;
+
+    final Column column = column(info.number);
+    column.advance(numBufferedDocs);
+    final GrowableByteArrayDataOutput out = column.values;
+    final int valuesStart = out.getPosition();
+    if (bytes != null) {
+      out.writeVInt(bytes.length);
+      out.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+    } else if (string != null) {
+      out.writeString(string);
+    } else {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        out.writeZInt(number.intValue());
+      } else if (number instanceof Long) {
+        out.writeZLong(number.longValue());
+      } else if (number instanceof Float) {
+        out.writeInt(Float.floatToIntBits(number.floatValue()));
+      } else if (number instanceof Double) {
+        out.writeLong(Double.doubleToLongBits(number.doubleValue()));
+      } else {
+        throw new AssertionError("Cannot get here");
+      }
+    }
+    bufferedBytes += out.getPosition() - valuesStart;
+  }
+
+  private boolean triggerFlush() {
+    return bufferedBytes >= chunkSize || // chunks of at least chunkSize bytes
+        numBufferedDocs >= maxDocsPerChunk;
+  }
+
+  /** Compress <code>scratch</code> to <code>compressed</code> and record lengths of the <code>i</code>-th stream. */
+  private void compressScratch(int i) throws IOException {
+    compressedLengths = ArrayUtil.grow(compressedLengths, i + 1);
+    uncompressedLengths = ArrayUtil.grow(uncompressedLengths, i + 1);
+    final int start = compressed.getPosition();
+    compressor.compress(scratch.getBytes(), 0, scratch.getPosition(), compressed);
+    compressedLengths[i] = compressed.getPosition() - start;
+    uncompressedLengths[i] = scratch.getPosition();
+    scratch.reset();
+  }
+
+  private void flush() throws IOException {
+    // columns are written in field number order
+    Arrays.sort(chunkColumns, 0, numChunkColumns, (a, b) -> Integer.compare(a.fieldNumber, b.fieldNumber));
+
+    // field numbers and types
+    for (int i = 0; i < numBufferedDocs; ++i) {
+      scratch.writeVInt(numStoredFields[i]);
+    }
+    scratch.writeBytes(bufferedFields.getBytes(), 0, bufferedFields.getPosition());
+    compressScratch(0);
+
+    // values
+    for (int i = 0; i < numChunkColumns; ++i) {
+      final Column column = chunkColumns[i];
+      column.advance(numBufferedDocs);
+      int prevEnd = 0;
+      for (int doc = 0; doc < numBufferedDocs; ++doc) {
+        scratch.writeVInt(column.docEnds[doc] - prevEnd);
+        prevEnd = column.docEnds[doc];
+      }
+      scratch.writeBytes(column.values.getBytes(), 0, column.values.getPosition());
+      compressScratch(1 + i);
+    }
+
+    // record the chunk in the index
+    chunkDocBases = ArrayUtil.grow(chunkDocBases, numChunks + 1);
+    chunkStartPointers = ArrayUtil.grow(chunkStartPointers, numChunks + 1);
+    chunkDocBases[numChunks] = docBase;
+    chunkStartPointers[numChunks] = dataOut.getFilePointer();
+    ++numChunks;
+
+    // write the chunk
+    dataOut.writeVInt(docBase);
+    dataOut.writeVInt(numBufferedDocs);
+    dataOut.writeVInt(uncompressedLengths[0]);
+    dataOut.writeVInt(compressedLengths[0]);
+    dataOut.writeVInt(numChunkColumns);
+    int prevFieldNumber = 0;
+    for (int i = 0; i < numChunkColumns; ++i) {
+      final int fieldNumber = chunkColumns[i].fieldNumber;
+      dataOut.writeVInt(fieldNumber - prevFieldNumber);
+      dataOut.writeVInt(uncompressedLengths[1 + i]);
+      dataOut.writeVInt(compressedLengths[1 + i]);
+      prevFieldNumber = fieldNumber;
+    }
+    dataOut.writeBytes(compressed.getBytes(), 0, compressed.getPosition());
+
+    // reset
+    for (int i = 0; i < numChunkColumns; ++i) {
+      chunkColumns[i].reset();
+      chunkColumns[i] = null;
+    }
+    numChunkColumns = 0;
+    compressed.reset();
+    bufferedFields.reset();
+    bufferedBytes = 0;
+    docBase += numBufferedDocs;
+    numBufferedDocs = 0;
+  }
+
+  @Override
+  public void finish(FieldInfos fis, int numDocs) throws IOException {
+    if (numBufferedDocs > 0) {
+      flush();
+    } else {
+      assert bufferedFields.getPosition() == 0;
+    }
+    if (docBase != numDocs) {
+      throw new RuntimeException("Wrote " + docBase + " docs, finish called with numDocs=" + numDocs);
+    }
+    final long indexPointer = dataOut.getFilePointer();
+    dataOut.writeVInt(numChunks);
+    int prevDocBase = 0;
+    long prevStartPointer = 0;
+    for (int i = 0; i < numChunks; ++i) {
+      dataOut.writeVInt(chunkDocBases[i] - prevDocBase);
+      dataOut.writeVLong(chunkStartPointers[i] - prevStartPointer);
+      prevDocBase = chunkDocBases[i];
+      prevStartPointer = chunkStartPointers[i];
+    }
+    dataOut.writeLong(indexPointer);
+    CodecUtil.writeFooter(dataOut);
+  }
+}
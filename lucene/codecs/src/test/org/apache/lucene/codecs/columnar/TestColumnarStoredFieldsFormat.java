@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.columnar;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BaseStoredFieldsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+public class TestColumnarStoredFieldsFormat extends BaseStoredFieldsFormatTestCase {
+
+  private final Codec codec = new ColumnarStoredFieldsCodec(TestUtil.nextInt(random(), 1, 1 << 15), TestUtil.nextInt(random(), 1, 512));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  /** Load random subsets of the fields of documents that have many multi-valued fields of mixed types. */
+  public void testLoadSubsetOfFields() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setCodec(getCodec());
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwConf);
+
+    final int numFields = TestUtil.nextInt(random(), 2, 30);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      final int numValues = random().nextInt(3 * numFields);
+      for (int j = 0; j < numValues; ++j) {
+        final String name = "f" + random().nextInt(numFields);
+        switch (random().nextInt(6)) {
+          case 0:
+            doc.add(new StoredField(name, TestUtil.randomSimpleString(random(), 20)));
+            break;
+          case 1:
+            doc.add(new StoredField(name, new BytesRef(TestUtil.randomSimpleString(random(), 20))));
+            break;
+          case 2:
+            doc.add(new StoredField(name, random().nextInt()));
+            break;
+          case 3:
+            doc.add(new StoredField(name, random().nextLong()));
+            break;
+          case 4:
+            doc.add(new StoredField(name, random().nextFloat()));
+            break;
+          default:
+            doc.add(new StoredField(name, random().nextDouble()));
+            break;
+        }
+      }
+      iw.addDocument(doc);
+    }
+    final DirectoryReader reader = iw.getReader();
+    iw.close();
+
+    for (int iter = 0; iter < 100; ++iter) {
+      final int docID = random().nextInt(numDocs);
+      final Set<String> fieldsToLoad = new HashSet<>();
+      final int numFieldsToLoad = random().nextInt(numFields + 1);
+      for (int i = 0; i < numFieldsToLoad; ++i) {
+        fieldsToLoad.add("f" + random().nextInt(numFields));
+      }
+      final List<IndexableField> expected = new ArrayList<>(reader.document(docID).getFields());
+      expected.removeIf(f -> fieldsToLoad.contains(f.name()) == false);
+      final List<IndexableField> actual = reader.document(docID, fieldsToLoad).getFields();
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); ++i) {
+        assertEquals(expected.get(i).name(), actual.get(i).name());
+        assertEquals(expected.get(i).numericValue(), actual.get(i).numericValue());
+        assertEquals(expected.get(i).binaryValue(), actual.get(i).binaryValue());
+        assertEquals(expected.get(i).stringValue(), actual.get(i).stringValue());
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+}
@@ -20,6 +20,8 @@ package org.apache.lucene.codecs;
 import java.io.Closeable;
 import java.io.IOException;
 
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.SegmentReadState;
@@ -65,6 +67,19 @@ public abstract class PostingsReaderBase implements Closeable, Accountable {
   /** Must fully consume state, since after this call that
    *  TermState may be reused. */
   public abstract PostingsEnum postings(FieldInfo fieldInfo, BlockTermState state, PostingsEnum reuse, int flags) throws IOException;
+
+  /** Return {@link Impacts} for the given term. Like for
+   *  {@link #postings}, the returned instance must not rely on
+   *  {@code state} after this call. The default implementation
+   *  only exposes an upper bound of the term frequency across all
+   *  documents, which is computed from term statistics. */
+  public Impacts impacts(FieldInfo fieldInfo, BlockTermState state) throws IOException {
+    if (fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) < 0) {
+      // all documents have a frequency of 1
+      return Impacts.singleLevel(1);
+    }
+    return Impacts.singleLevel(Impacts.maxFreq(state.docFreq, state.totalTermFreq));
+  }
   
   /** 
    * Checks consistency of this reader.
@@ -39,6 +39,25 @@ public abstract class StoredFieldsReader implements Cloneable, Closeable, Accoun
   /** Visit the stored fields for document <code>docID</code> */
   public abstract void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException;
 
+  /**
+   * Visit the stored fields of several documents: {@code visitors[i]} visits
+   * the stored fields of document {@code docIDs[i]}. Doc IDs must be sorted
+   * in non-decreasing order. This is useful to fetch the top hits of a
+   * query, since implementations may then decode blocks of documents that
+   * contain several of these documents only once.
+   * <p>
+   * The default implementation calls {@link #visitDocument} for each
+   * document.
+   */
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("got " + docIDs.length + " doc IDs but " + visitors.length + " visitors");
+    }
+    for (int i = 0; i < docIDs.length; ++i) {
+      visitDocument(docIDs[i], visitors[i]);
+    }
+  }
+
   @Override
   public abstract StoredFieldsReader clone();
   
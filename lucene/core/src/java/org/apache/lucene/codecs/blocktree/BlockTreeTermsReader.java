@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.function.Function;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.FieldsProducer;
@@ -36,7 +37,10 @@ import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.PrefixQuery;  // javadocs
 import org.apache.lucene.search.TermRangeQuery;  // javadocs
+import org.apache.lucene.store.BufferedIndexInput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory; // javadocs
+import org.apache.lucene.store.RandomAccessInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
@@ -117,9 +121,31 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   static final String TERMS_INDEX_EXTENSION = "tip";
   final static String TERMS_INDEX_CODEC_NAME = "BlockTreeTermsIndex";
 
+  /**
+   * How the FST terms index of a field is loaded when a segment is opened.
+   * @lucene.experimental
+   */
+  public enum FSTLoadMode {
+    /** Copy the terms index into heap memory. */
+    ON_HEAP,
+    /** Read the terms index from the terms index file on demand, which saves
+     *  heap but is only efficient if the file is memory-mapped. */
+    OFF_HEAP,
+    /** Read the terms index of primary-key fields, whose terms each match a
+     *  single document that has no other term, off-heap if the terms index
+     *  file supports random access natively, such as with {@link MMapDirectory},
+     *  and load it on heap otherwise. Primary keys have the largest terms
+     *  indices, and lookups by primary key only visit a few nodes of it. */
+    AUTO
+  }
+
   // Open input to the main terms dict file (_X.tib)
   final IndexInput termsIn;
 
+  // Open input to the terms index file (_X.tip) if any field reads its terms
+  // index off-heap, null otherwise
+  private final IndexInput indexIn;
+
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
   // Reads the terms dict entries, to gather state to
@@ -140,10 +166,18 @@ public final class BlockTreeTermsReader extends FieldsProducer {
 
   final boolean anyAutoPrefixTerms;
 
-  /** Sole constructor. */
+  /** Create a new reader that loads the terms index of all fields on heap. */
   public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state) throws IOException {
+    this(postingsReader, state, field -> FSTLoadMode.ON_HEAP);
+  }
+
+  /** Create a new reader that loads the terms index of every field as
+   *  {@code fstLoadMode} returns for the field's name.
+   *  @lucene.experimental */
+  public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state, Function<String, FSTLoadMode> fstLoadMode) throws IOException {
     boolean success = false;
     IndexInput indexIn = null;
+    boolean anyOffHeapIndex = false;
     
     this.postingsReader = postingsReader;
     this.segment = state.segmentInfo.name;
@@ -231,15 +265,23 @@ public final class BlockTreeTermsReader extends FieldsProducer {
           throw new CorruptIndexException("invalid sumTotalTermFreq: " + sumTotalTermFreq + " sumDocFreq: " + sumDocFreq, termsIn);
         }
         final long indexStartFP = indexIn.readVLong();
+        final boolean offHeapIndex = isOffHeapIndex(fstLoadMode.apply(fieldInfo.name), indexIn, numTerms, sumDocFreq, docCount);
+        anyOffHeapIndex |= offHeapIndex;
         FieldReader previous = fields.put(fieldInfo.name,       
                                           new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, sumDocFreq, docCount,
-                                                          indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+                                                          indexStartFP, longsSize, indexIn, offHeapIndex, minTerm, maxTerm));
         if (previous != null) {
           throw new CorruptIndexException("duplicate field: " + fieldInfo.name, termsIn);
         }
       }
       
-      indexIn.close();
+      if (anyOffHeapIndex) {
+        // off-heap terms indices read from this input until we are closed
+        this.indexIn = indexIn;
+      } else {
+        this.indexIn = null;
+        indexIn.close();
+      }
       success = true;
     } finally {
       if (!success) {
@@ -249,6 +291,22 @@ public final class BlockTreeTermsReader extends FieldsProducer {
     }
   }
 
+  private static boolean isOffHeapIndex(FSTLoadMode mode, IndexInput indexIn, long numTerms, long sumDocFreq, int docCount) {
+    switch (mode) {
+      case ON_HEAP:
+        return false;
+      case OFF_HEAP:
+        return true;
+      case AUTO:
+        final boolean primaryKey = numTerms == sumDocFreq && docCount == sumDocFreq;
+        // buffered inputs implement random access through their buffer, which
+        // would be refilled on every jump through the FST
+        return primaryKey && indexIn instanceof RandomAccessInput && indexIn instanceof BufferedIndexInput == false;
+      default:
+        throw new AssertionError();
+    }
+  }
+
   private static BytesRef readBytesRef(IndexInput in) throws IOException {
     BytesRef bytes = new BytesRef();
     bytes.length = in.readVInt();
@@ -273,7 +331,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(termsIn, postingsReader);
+      IOUtils.close(termsIn, indexIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
@@ -334,6 +392,11 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   public void checkIntegrity() throws IOException { 
     // term dictionary
     CodecUtil.checksumEntireFile(termsIn);
+
+    // terms index, if it is read off-heap
+    if (indexIn != null) {
+      CodecUtil.checksumEntireFile(indexIn);
+    }
       
     // postings
     postingsReader.checkIntegrity();
@@ -61,10 +61,11 @@ public final class FieldReader extends Terms implements Accountable {
   final BlockTreeTermsReader parent;
 
   final FST<BytesRef> index;
+  final boolean offHeapIndex;
   //private boolean DEBUG;
 
   FieldReader(BlockTreeTermsReader parent, FieldInfo fieldInfo, long numTerms, BytesRef rootCode, long sumTotalTermFreq, long sumDocFreq, int docCount,
-              long indexStartFP, int longsSize, IndexInput indexIn, BytesRef minTerm, BytesRef maxTerm) throws IOException {
+              long indexStartFP, int longsSize, IndexInput indexIn, boolean offHeapIndex, BytesRef minTerm, BytesRef maxTerm) throws IOException {
     assert numTerms > 0;
     this.fieldInfo = fieldInfo;
     //DEBUG = BlockTreeTermsReader.DEBUG && fieldInfo.name.equals("id");
@@ -78,6 +79,7 @@ public final class FieldReader extends Terms implements Accountable {
     this.longsSize = longsSize;
     this.minTerm = minTerm;
     this.maxTerm = maxTerm;
+    this.offHeapIndex = indexIn != null && offHeapIndex;
     // if (DEBUG) {
     //   System.out.println("BTTR: seg=" + segment + " field=" + fieldInfo.name + " rootBlockCode=" + rootCode + " divisor=" + indexDivisor);
     // }
@@ -88,7 +90,11 @@ public final class FieldReader extends Terms implements Accountable {
       final IndexInput clone = indexIn.clone();
       //System.out.println("start=" + indexStartFP + " field=" + fieldInfo.name);
       clone.seek(indexStartFP);
-      index = new FST<>(clone, ByteSequenceOutputs.getSingleton());
+      if (offHeapIndex) {
+        index = new FST<>(clone, ByteSequenceOutputs.getSingleton(), true);
+      } else {
+        index = new FST<>(clone, ByteSequenceOutputs.getSingleton());
+      }
         
       /*
         if (false) {
@@ -188,6 +194,13 @@ public final class FieldReader extends Terms implements Accountable {
     return new IntersectTermsEnum(this, compiled.automaton, compiled.runAutomaton, compiled.commonSuffixRef, startTerm, compiled.sinkState);
   }
     
+  /** Returns true if the terms index of this field is read from the terms
+   *  index file rather than loaded on heap.
+   *  @see BlockTreeTermsReader.FSTLoadMode */
+  public boolean isFSTOffHeap() {
+    return offHeapIndex;
+  }
+
   @Override
   public long ramBytesUsed() {
     return BASE_RAM_BYTES_USED + ((index!=null)? index.ramBytesUsed() : 0);
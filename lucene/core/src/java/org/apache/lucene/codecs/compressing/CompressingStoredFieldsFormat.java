@@ -50,6 +50,7 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
   private final int chunkSize;
   private final int maxDocsPerChunk;
   private final int blockSize;
+  private final int maxCachedChunks;
 
   /**
    * Create a new {@link CompressingStoredFieldsFormat} with an empty segment 
@@ -98,6 +99,20 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
    */
   public CompressingStoredFieldsFormat(String formatName, String segmentSuffix, 
                                        CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize) {
+    this(formatName, segmentSuffix, compressionMode, chunkSize, maxDocsPerChunk, blockSize, CompressingStoredFieldsReader.MAX_CACHED_CHUNKS);
+  }
+
+  /**
+   * Create a new {@link CompressingStoredFieldsFormat} whose readers cache up
+   * to <code>maxCachedChunks</code> decompressed chunks per segment, which
+   * are shared by concurrent searches. A value of <code>0</code> disables
+   * this cache.
+   *
+   * @see CompressingStoredFieldsFormat#CompressingStoredFieldsFormat(String, String, CompressionMode, int, int, int)
+   */
+  public CompressingStoredFieldsFormat(String formatName, String segmentSuffix, 
+                                       CompressionMode compressionMode, int chunkSize, int maxDocsPerChunk, int blockSize,
+                                       int maxCachedChunks) {
     this.formatName = formatName;
     this.segmentSuffix = segmentSuffix;
     this.compressionMode = compressionMode;
@@ -113,13 +128,17 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
       throw new IllegalArgumentException("blockSize must be >= 1");
     }
     this.blockSize = blockSize;
+    if (maxCachedChunks < 0) {
+      throw new IllegalArgumentException("maxCachedChunks must be >= 0");
+    }
+    this.maxCachedChunks = maxCachedChunks;
   }
 
   @Override
   public StoredFieldsReader fieldsReader(Directory directory, SegmentInfo si,
       FieldInfos fn, IOContext context) throws IOException {
     return new CompressingStoredFieldsReader(directory, si, segmentSuffix, fn, 
-        context, formatName, compressionMode);
+        context, formatName, compressionMode, maxCachedChunks);
   }
 
   @Override
@@ -132,7 +151,8 @@ public class CompressingStoredFieldsFormat extends StoredFieldsFormat {
   @Override
   public String toString() {
     return getClass().getSimpleName() + "(compressionMode=" + compressionMode
-        + ", chunkSize=" + chunkSize + ", maxDocsPerChunk=" + maxDocsPerChunk + ", blockSize=" + blockSize + ")";
+        + ", chunkSize=" + chunkSize + ", maxDocsPerChunk=" + maxDocsPerChunk + ", blockSize=" + blockSize
+        + ", maxCachedChunks=" + maxCachedChunks + ")";
   }
 
 }
@@ -163,6 +163,25 @@ public final class CompressingStoredFieldsIndexReader implements Cloneable, Acco
     return startPointers[block] + relativeStartPointer(block, relativeChunk);
   }
 
+  /**
+   * Return the start pointer of the chunk that follows the chunk that
+   * contains <code>docID</code>, or -1 if this chunk is the last one.
+   */
+  long getNextStartPointer(int docID) {
+    if (docID < 0 || docID >= maxDoc) {
+      throw new IllegalArgumentException("docID out of range [0-" + maxDoc + "]: " + docID);
+    }
+    final int block = block(docID);
+    final int relativeChunk = relativeChunk(block, docID - docBases[block]);
+    if (relativeChunk + 1 < docBasesDeltas[block].size()) {
+      return startPointers[block] + relativeStartPointer(block, relativeChunk + 1);
+    } else if (block + 1 < startPointers.length) {
+      return startPointers[block + 1];
+    } else {
+      return -1;
+    }
+  }
+
   @Override
   public CompressingStoredFieldsIndexReader clone() {
     return this;
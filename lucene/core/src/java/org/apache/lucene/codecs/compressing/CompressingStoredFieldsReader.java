@@ -36,14 +36,17 @@ import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.TYPE_BITS;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.TYPE_MASK;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_CURRENT;
+import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_DICTIONARY;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_CHUNK_STATS;
 import static org.apache.lucene.codecs.compressing.CompressingStoredFieldsWriter.VERSION_START;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.StoredFieldsReader;
@@ -76,6 +79,9 @@ import org.apache.lucene.util.packed.PackedInts;
  */
 public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
+  /** Default maximum number of decompressed chunks that are cached per segment, see {@link DecompressedChunkCache}. */
+  static final int MAX_CACHED_CHUNKS = 4;
+
   private final int version;
   private final FieldInfos fieldInfos;
   private final CompressingStoredFieldsIndexReader indexReader;
@@ -84,10 +90,13 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final int chunkSize;
   private final int packedIntsVersion;
   private final CompressionMode compressionMode;
+  private final BytesRef dictionary;
   private final Decompressor decompressor;
   private final int numDocs;
   private final boolean merging;
   private final BlockState state;
+  // null when merging since chunks are then decompressed eagerly, or if disabled
+  private final DecompressedChunkCache chunkCache;
   private final long numChunks; // number of compressed blocks written
   private final long numDirtyChunks; // number of incomplete compressed blocks written
   private boolean closed;
@@ -102,18 +111,29 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.chunkSize = reader.chunkSize;
     this.packedIntsVersion = reader.packedIntsVersion;
     this.compressionMode = reader.compressionMode;
+    this.dictionary = reader.dictionary;
     this.decompressor = reader.decompressor.clone();
     this.numDocs = reader.numDocs;
     this.numChunks = reader.numChunks;
     this.numDirtyChunks = reader.numDirtyChunks;
     this.merging = merging;
     this.state = new BlockState();
+    this.chunkCache = merging ? null : reader.chunkCache;
     this.closed = false;
   }
 
-  /** Sole constructor. */
+  /** Create a reader that caches up to 4 decompressed chunks. */
   public CompressingStoredFieldsReader(Directory d, SegmentInfo si, String segmentSuffix, FieldInfos fn,
       IOContext context, String formatName, CompressionMode compressionMode) throws IOException {
+    this(d, si, segmentSuffix, fn, context, formatName, compressionMode, MAX_CACHED_CHUNKS);
+  }
+
+  /** Create a reader that caches up to {@code maxCachedChunks} decompressed chunks, 0 to disable caching. */
+  public CompressingStoredFieldsReader(Directory d, SegmentInfo si, String segmentSuffix, FieldInfos fn,
+      IOContext context, String formatName, CompressionMode compressionMode, int maxCachedChunks) throws IOException {
+    if (maxCachedChunks < 0) {
+      throw new IllegalArgumentException("maxCachedChunks must be >= 0, got " + maxCachedChunks);
+    }
     this.compressionMode = compressionMode;
     final String segment = si.name;
     boolean success = false;
@@ -158,9 +178,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
       chunkSize = fieldsStream.readVInt();
       packedIntsVersion = fieldsStream.readVInt();
-      decompressor = compressionMode.newDecompressor();
       this.merging = false;
       this.state = new BlockState();
+      this.chunkCache = maxCachedChunks == 0 ? null : new DecompressedChunkCache(maxCachedChunks);
       
       if (version >= VERSION_CHUNK_STATS) {
         fieldsStream.seek(maxPointer);
@@ -172,6 +192,19 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       } else {
         numChunks = numDirtyChunks = -1;
       }
+
+      if (version >= VERSION_DICTIONARY) {
+        final int dictLength = fieldsStream.readVInt();
+        if (dictLength < 0) {
+          throw new CorruptIndexException("invalid dictionary length: " + dictLength, fieldsStream);
+        }
+        final byte[] dictBytes = new byte[dictLength];
+        fieldsStream.readBytes(dictBytes, 0, dictLength);
+        dictionary = new BytesRef(dictBytes);
+      } else {
+        dictionary = new BytesRef();
+      }
+      decompressor = compressionMode.newDecompressor(dictionary);
       
       // NOTE: data file is too costly to verify checksum against all the bytes on open,
       // but for now we at least verify proper structure of the checksum footer: which looks
@@ -493,11 +526,56 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       }
     }
 
+    /**
+     * Return the decompressed bytes of this block up to at least
+     * {@code end}, from the shared cache if possible. This block must not
+     * be sliced. Unless they are cached, the returned bytes are only valid
+     * until the next call.
+     */
+    private BytesRef decompress(int end) throws IOException {
+      assert sliced == false && merging == false;
+      if (chunkCache != null) {
+        final BytesRef cached = chunkCache.get(startPointer);
+        if (cached != null && cached.length >= end) {
+          return cached;
+        }
+        if (chunkCache.shouldCache(startPointer)) {
+          // decompress into a new array since the cache shares it with other readers
+          final BytesRef chunk = new BytesRef();
+          fieldsStream.seek(startPointer);
+          decompressor.decompress(fieldsStream, offsets[chunkDocs], 0, end, chunk);
+          assert chunk.length == end;
+          chunkCache.put(startPointer, chunk);
+          return chunk;
+        }
+      }
+      fieldsStream.seek(startPointer);
+      decompressor.decompress(fieldsStream, offsets[chunkDocs], 0, end, bytes);
+      assert bytes.length == end;
+      return bytes;
+    }
+
+    /**
+     * Decompress this block up to the end of the given docID, which has to
+     * be contained in the current block, and return the decompressed bytes,
+     * or null if documents of this block are decompressed on demand.
+     */
+    BytesRef decompressUpTo(int docID) throws IOException {
+      assert contains(docID);
+      final int end = offsets[docID - docBase + 1];
+      if (merging || sliced || end == 0) {
+        return null;
+      }
+      return decompress(end);
+    }
+
     /**
      * Get the serialized representation of the given docID. This docID has
-     * to be contained in the current block.
+     * to be contained in the current block. {@code chunk} holds bytes of
+     * this block that were decompressed by {@link #decompressUpTo}, or is
+     * null.
      */
-    SerializedDocument document(int docID) throws IOException {
+    SerializedDocument document(int docID, BytesRef chunk) throws IOException {
       if (contains(docID) == false) {
         throw new IllegalArgumentException();
       }
@@ -505,7 +583,6 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       final int index = docID - docBase;
       final int offset = offsets[index];
       final int length = offsets[index+1] - offset;
-      final int totalLength = offsets[chunkDocs];
       final int numStoredFields = this.numStoredFields[index];
 
       final DataInput documentInput;
@@ -556,10 +633,10 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
 
         };
       } else {
-        fieldsStream.seek(startPointer);
-        decompressor.decompress(fieldsStream, totalLength, offset, length, bytes);
-        assert bytes.length == length;
-        documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset, bytes.length);
+        if (chunk == null || chunk.length < offset + length) {
+          chunk = decompress(offset + length);
+        }
+        documentInput = new ByteArrayDataInput(chunk.bytes, chunk.offset + offset, length);
       }
 
       return new SerializedDocument(documentInput, length, numStoredFields);
@@ -573,15 +650,72 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       state.reset(docID);
     }
     assert state.contains(docID);
-    return state.document(docID);
+    return state.document(docID, null);
   }
 
   @Override
   public void visitDocument(int docID, StoredFieldVisitor visitor)
       throws IOException {
+    visitDocument(document(docID), visitor);
+  }
 
-    final SerializedDocument doc = document(docID);
+  @Override
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("got " + docIDs.length + " doc IDs but " + visitors.length + " visitors");
+    }
+    for (int i = 1; i < docIDs.length; ++i) {
+      if (docIDs[i] < docIDs[i - 1]) {
+        throw new IllegalArgumentException("doc IDs must be sorted, got " + docIDs[i - 1] + " before " + docIDs[i]);
+      }
+    }
+    prefetchChunks(docIDs);
+    for (int i = 0; i < docIDs.length; ) {
+      if (state.contains(docIDs[i]) == false) {
+        fieldsStream.seek(indexReader.getStartPointer(docIDs[i]));
+        state.reset(docIDs[i]);
+      }
+      // decompress the block once for all its documents
+      int end = i + 1;
+      while (end < docIDs.length && state.contains(docIDs[end])) {
+        end++;
+      }
+      final BytesRef chunk = state.decompressUpTo(docIDs[end - 1]);
+      for (int j = i; j < end; ++j) {
+        visitDocument(state.document(docIDs[j], chunk), visitors[j]);
+      }
+      i = end;
+    }
+  }
+
+  /**
+   * Hint the chunks that contain the given sorted doc IDs to the fields
+   * stream, so that they can be read concurrently rather than one after the
+   * other.
+   */
+  private void prefetchChunks(int[] docIDs) throws IOException {
+    if (docIDs.length < 2) {
+      return;
+    }
+    long prevStartPointer = -1;
+    for (int docID : docIDs) {
+      if (state.contains(docID)) {
+        continue;
+      }
+      final long startPointer = indexReader.getStartPointer(docID);
+      if (startPointer != prevStartPointer) {
+        long endPointer = indexReader.getNextStartPointer(docID);
+        if (endPointer == -1) {
+          endPointer = maxPointer;
+        }
+        assert endPointer > startPointer : "startPointer=" + startPointer + ", endPointer=" + endPointer;
+        fieldsStream.prefetch(startPointer, endPointer - startPointer);
+        prevStartPointer = startPointer;
+      }
+    }
+  }
 
+  private void visitDocument(SerializedDocument doc, StoredFieldVisitor visitor) throws IOException {
     for (int fieldIDX = 0; fieldIDX < doc.numStoredFields; fieldIDX++) {
       final long infoAndBits = doc.in.readVLong();
       final int fieldNumber = (int) (infoAndBits >>> TYPE_BITS);
@@ -654,14 +788,31 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     return packedIntsVersion;
   }
 
+  BytesRef getDictionary() {
+    return dictionary;
+  }
+
+  DecompressedChunkCache getChunkCache() {
+    return chunkCache;
+  }
+
   @Override
   public long ramBytesUsed() {
-    return indexReader.ramBytesUsed();
+    long bytesUsed = indexReader.ramBytesUsed() + dictionary.bytes.length;
+    if (chunkCache != null) {
+      bytesUsed += chunkCache.ramBytesUsed();
+    }
+    return bytesUsed;
   }
   
   @Override
   public Collection<Accountable> getChildResources() {
-    return Collections.singleton(Accountables.namedAccountable("stored field index", indexReader));
+    final List<Accountable> resources = new ArrayList<>();
+    resources.add(Accountables.namedAccountable("stored field index", indexReader));
+    if (chunkCache != null) {
+      resources.add(Accountables.namedAccountable("decompressed chunk cache", chunkCache));
+    }
+    return Collections.unmodifiableList(resources);
   }
 
   @Override
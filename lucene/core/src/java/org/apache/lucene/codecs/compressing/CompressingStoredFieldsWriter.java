@@ -75,7 +75,8 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
   static final String CODEC_SFX_DAT = "Data";
   static final int VERSION_START = 0;
   static final int VERSION_CHUNK_STATS = 1;
-  static final int VERSION_CURRENT = VERSION_CHUNK_STATS;
+  static final int VERSION_DICTIONARY = 2;
+  static final int VERSION_CURRENT = VERSION_DICTIONARY;
 
   private final String segment;
   private CompressingStoredFieldsIndexWriter indexWriter;
@@ -83,6 +84,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
 
   private Compressor compressor;
   private final CompressionMode compressionMode;
+  private BytesRef dictionary; // trained on the first chunk, then used by all chunks
   private final int chunkSize;
   private final int maxDocsPerChunk;
 
@@ -102,6 +104,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     this.segment = si.name;
     this.compressionMode = compressionMode;
     this.compressor = compressionMode.newCompressor();
+    this.dictionary = new BytesRef();
     this.chunkSize = chunkSize;
     this.maxDocsPerChunk = maxDocsPerChunk;
     this.docBase = 0;
@@ -233,6 +236,10 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     final boolean sliced = bufferedDocs.getPosition() >= 2 * chunkSize;
     writeHeader(docBase, numBufferedDocs, numStoredFields, lengths, sliced);
 
+    if (numChunks == 0) {
+      trainDictionary();
+    }
+
     // compress stored fields to fieldsStream
     if (sliced) {
       // big chunk, slice it
@@ -250,6 +257,18 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     numChunks++;
   }
   
+  /** Train the dictionary of this segment on the first chunk. */
+  private void trainDictionary() throws IOException {
+    assert dictionary.length == 0;
+    final BytesRef dictionary = compressionMode.trainDictionary(bufferedDocs.getBytes(), 0, bufferedDocs.getPosition());
+    if (dictionary.length > 0) {
+      final Compressor compressor = compressionMode.newCompressor(dictionary);
+      this.compressor.close();
+      this.compressor = compressor;
+      this.dictionary = dictionary;
+    }
+  }
+
   @Override
   public void writeField(FieldInfo info, IndexableField field)
       throws IOException {
@@ -474,6 +493,8 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
     indexWriter.finish(numDocs, fieldsStream.getFilePointer());
     fieldsStream.writeVLong(numChunks);
     fieldsStream.writeVLong(numDirtyChunks);
+    fieldsStream.writeVInt(dictionary.length);
+    fieldsStream.writeBytes(dictionary.bytes, dictionary.offset, dictionary.length);
     CodecUtil.writeFooter(fieldsStream);
     assert bufferedDocs.getPosition() == 0;
   }
@@ -566,6 +587,11 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
       } else if (matchingFieldsReader.getCompressionMode() == compressionMode && 
                  matchingFieldsReader.getChunkSize() == chunkSize && 
                  matchingFieldsReader.getPackedIntsVersion() == PackedInts.VERSION_CURRENT &&
+                 // chunks can only be copied if neither segment uses a dictionary, and
+                 // flushing pending docs would train the dictionary of this segment
+                 matchingFieldsReader.getDictionary().length == 0 &&
+                 dictionary.length == 0 &&
+                 (numChunks > 0 || numBufferedDocs == 0) &&
                  liveDocs == null &&
                  !tooDirty(matchingFieldsReader)) { 
         // optimized merge, raw byte copy
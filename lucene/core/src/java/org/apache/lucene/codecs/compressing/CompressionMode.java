@@ -113,6 +113,57 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * This compression mode is similar to {@link #FAST_DECOMPRESSION} but
+   * trains a dictionary on the first chunk of every segment, which is then
+   * stored once per segment and used to compress all chunks of the segment.
+   * This helps compress small chunks of documents that share content, like
+   * field names of JSON documents, while decompression remains as fast as
+   * {@link #FAST_DECOMPRESSION}.
+   */
+  public static final CompressionMode FAST_DECOMPRESSION_WITH_DICTIONARY = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new LZ4HighCompressor();
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return LZ4_DECOMPRESSOR;
+    }
+
+    @Override
+    public BytesRef trainDictionary(byte[] bytes, int off, int len) {
+      return DictionaryTrainer.train(bytes, off, len, Math.min(MAX_DICTIONARY_LENGTH, len / 2));
+    }
+
+    @Override
+    public Compressor newCompressor(BytesRef dictionary) {
+      if (dictionary.length == 0) {
+        return newCompressor();
+      }
+      return new LZ4HighWithDictionaryCompressor(dictionary);
+    }
+
+    @Override
+    public Decompressor newDecompressor(BytesRef dictionary) {
+      if (dictionary.length == 0) {
+        return newDecompressor();
+      }
+      return new LZ4WithDictionaryDecompressor(dictionary);
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_DECOMPRESSION_WITH_DICTIONARY";
+    }
+
+  };
+
+  /** Maximum length of the dictionaries of {@link #FAST_DECOMPRESSION_WITH_DICTIONARY}. */
+  static final int MAX_DICTIONARY_LENGTH = 8 * 1024;
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -126,6 +177,47 @@ public abstract class CompressionMode {
    */
   public abstract Decompressor newDecompressor();
 
+  /**
+   * Train a dictionary on a sample of the data to compress. The returned
+   * dictionary is stored once, and compressors and decompressors that are
+   * created with {@link #newCompressor(BytesRef)} and
+   * {@link #newDecompressor(BytesRef)} may use it to compress data better.
+   * <p>
+   * The default implementation returns an empty dictionary, which means
+   * that this compression mode does not use dictionaries.
+   */
+  public BytesRef trainDictionary(byte[] bytes, int off, int len) {
+    return new BytesRef();
+  }
+
+  /**
+   * Create a new {@link Compressor} instance that uses the given dictionary,
+   * as returned by {@link #trainDictionary}.
+   * <p>
+   * The default implementation only accepts empty dictionaries and returns
+   * {@link #newCompressor()}.
+   */
+  public Compressor newCompressor(BytesRef dictionary) {
+    if (dictionary.length != 0) {
+      throw new IllegalArgumentException(this + " does not support dictionaries");
+    }
+    return newCompressor();
+  }
+
+  /**
+   * Create a new {@link Decompressor} instance that uses the given dictionary,
+   * which must be the dictionary that data was compressed with.
+   * <p>
+   * The default implementation only accepts empty dictionaries and returns
+   * {@link #newDecompressor()}.
+   */
+  public Decompressor newDecompressor(BytesRef dictionary) {
+    if (dictionary.length != 0) {
+      throw new IllegalArgumentException(this + " does not support dictionaries");
+    }
+    return newDecompressor();
+  }
+
   private static final Decompressor LZ4_DECOMPRESSOR = new Decompressor() {
 
     @Override
@@ -190,6 +282,67 @@ public abstract class CompressionMode {
     }
   }
 
+  private static final class LZ4WithDictionaryDecompressor extends Decompressor {
+
+    private final byte[] dictionary;
+
+    LZ4WithDictionaryDecompressor(BytesRef dictionary) {
+      this.dictionary = BytesRef.deepCopyOf(dictionary).bytes;
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      final int dictLength = dictionary.length;
+      // add 7 padding bytes, this is not necessary but can help decompression run faster
+      if (bytes.bytes.length < dictLength + originalLength + 7) {
+        bytes.bytes = new byte[ArrayUtil.oversize(dictLength + originalLength + 7, 1)];
+      }
+      // matches may reference the dictionary, which must precede decompressed bytes
+      System.arraycopy(dictionary, 0, bytes.bytes, 0, dictLength);
+      final int decompressedLength = LZ4.decompress(in, dictLength + offset + length, bytes.bytes, dictLength) - dictLength;
+      if (decompressedLength > originalLength) {
+        throw new CorruptIndexException("Corrupted: lengths mismatch: " + decompressedLength + " > " + originalLength, in);
+      }
+      bytes.offset = dictLength + offset;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      return this;
+    }
+
+  }
+
+  private static final class LZ4HighWithDictionaryCompressor extends Compressor {
+
+    private final LZ4.HCHashTable ht;
+    private final int dictLength;
+    // the dictionary, followed by the bytes to compress
+    private byte[] buffer;
+
+    LZ4HighWithDictionaryCompressor(BytesRef dictionary) {
+      ht = new LZ4.HCHashTable();
+      dictLength = dictionary.length;
+      buffer = new byte[dictLength];
+      System.arraycopy(dictionary.bytes, dictionary.offset, buffer, 0, dictLength);
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out)
+        throws IOException {
+      buffer = ArrayUtil.grow(buffer, dictLength + len);
+      System.arraycopy(bytes, off, buffer, dictLength, len);
+      LZ4.compressHC(buffer, 0, dictLength, len, out, ht);
+    }
+
+    @Override
+    public void close() throws IOException {
+      // no-op
+    }
+  }
+
   private static final class DeflateDecompressor extends Decompressor {
 
     byte[] compressed;
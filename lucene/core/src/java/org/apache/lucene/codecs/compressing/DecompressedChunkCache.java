@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A bounded cache of recently used decompressed chunks of a stored fields
+ * file, keyed by the start pointer of their compressed data. It is shared
+ * by all clones of a {@link CompressingStoredFieldsReader}, so that
+ * concurrent searches that fetch documents of the same chunk only
+ * decompress it once. Since documents are decompressed from the start of
+ * their chunk, a cached chunk may only hold a prefix of its documents.
+ * Cached bytes are never modified.
+ * <p>
+ * Chunks are only cached the second time they are requested, so that
+ * chunks that are read once do not need a new array. Each chunk may only
+ * be cached in one slot, picked from its start pointer, and lookups and
+ * updates do not take any lock.
+ */
+final class DecompressedChunkCache implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(DecompressedChunkCache.class);
+  // per-entry overhead: the entry and the BytesRef
+  private static final long ENTRY_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Entry.class)
+      + RamUsageEstimator.shallowSizeOfInstance(BytesRef.class) + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+  private static final class Entry {
+    final long startPointer;
+    final BytesRef chunk;
+
+    Entry(long startPointer, BytesRef chunk) {
+      this.startPointer = startPointer;
+      this.chunk = chunk;
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> entries;
+  // start pointer + 1 of the chunk that was last requested for each slot, or 0
+  private final AtomicLongArray requested;
+
+  DecompressedChunkCache(final int maxChunks) {
+    if (maxChunks <= 0) {
+      throw new IllegalArgumentException("maxChunks must be > 0, got " + maxChunks);
+    }
+    this.entries = new AtomicReferenceArray<>(maxChunks);
+    this.requested = new AtomicLongArray(maxChunks);
+  }
+
+  private int slot(long startPointer) {
+    // start pointers are not uniformly distributed, so mix their bits
+    final long hash = startPointer * 0x9E3779B97F4A7C15L;
+    return (int) ((hash >>> 33) % entries.length());
+  }
+
+  /** Return the cached decompressed bytes of the chunk that starts at the given pointer, or null if it is not cached. */
+  BytesRef get(long startPointer) {
+    final Entry entry = entries.get(slot(startPointer));
+    if (entry != null && entry.startPointer == startPointer) {
+      return entry.chunk;
+    }
+    return null;
+  }
+
+  /**
+   * Record a request for the chunk that starts at the given pointer, which
+   * is not cached, or only partially. Returns true if it should be cached,
+   * because it was requested before.
+   */
+  boolean shouldCache(long startPointer) {
+    final int slot = slot(startPointer);
+    final Entry entry = entries.get(slot);
+    if (entry != null && entry.startPointer == startPointer) {
+      // a shorter prefix is cached
+      return true;
+    }
+    return requested.getAndSet(slot, startPointer + 1) == startPointer + 1;
+  }
+
+  /** Cache the decompressed bytes of the chunk that starts at the given pointer, unless a longer prefix of it is already cached. */
+  void put(long startPointer, BytesRef chunk) {
+    final int slot = slot(startPointer);
+    final Entry previous = entries.get(slot);
+    if (previous != null && previous.startPointer == startPointer && previous.chunk.length >= chunk.length) {
+      return;
+    }
+    // racing puts may replace each other, which is fine since cached bytes are immutable
+    entries.set(slot, new Entry(startPointer, chunk));
+  }
+
+  /** Return the number of cached chunks. */
+  int size() {
+    int size = 0;
+    for (int i = 0; i < entries.length(); ++i) {
+      if (entries.get(i) != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytesUsed = BASE_RAM_BYTES_USED
+        + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) entries.length() * RamUsageEstimator.NUM_BYTES_OBJECT_REF)
+        + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) requested.length() * Long.BYTES);
+    for (int i = 0; i < entries.length(); ++i) {
+      final Entry entry = entries.get(i);
+      if (entry != null) {
+        bytesUsed += ENTRY_RAM_BYTES_USED + entry.chunk.bytes.length;
+      }
+    }
+    return bytesUsed;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(size=" + size() + ")";
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Builds compression dictionaries out of samples of data.
+ * <p>
+ * The dictionary is made of segments of the sample that contain the most
+ * frequent sequences of {@link #DMER_LENGTH} bytes (d-mers). Segments are
+ * picked greedily: the segment whose distinct d-mers have the highest total
+ * frequency is picked first, then the frequencies of its d-mers are reset
+ * so that the next segment covers other content, and so on until the
+ * dictionary is full. This is a simplified version of the COVER algorithm.
+ */
+final class DictionaryTrainer {
+
+  /** Length of the sequences of bytes whose frequencies are computed. */
+  static final int DMER_LENGTH = 6;
+  /** Length of the segments of the sample that make the dictionary. */
+  static final int SEGMENT_LENGTH = 128;
+
+  private static final int HASH_BITS = 16;
+
+  private DictionaryTrainer() {}
+
+  private static int hash(byte[] bytes, int off) {
+    long v = 0;
+    for (int i = 0; i < DMER_LENGTH; ++i) {
+      v = (v << 8) | (bytes[off + i] & 0xFFL);
+    }
+    return (int) ((v * 0x9E3779B97F4A7C15L) >>> (64 - HASH_BITS));
+  }
+
+  /**
+   * Build a dictionary of at most {@code maxLength} bytes out of
+   * {@code bytes[off:off+len]}. The returned dictionary is empty if the
+   * sample has no repeated content.
+   */
+  static BytesRef train(byte[] bytes, int off, int len, int maxLength) {
+    final int numDmers = len - DMER_LENGTH + 1;
+    if (numDmers < SEGMENT_LENGTH || maxLength < SEGMENT_LENGTH) {
+      return new BytesRef();
+    }
+
+    final int[] hashes = new int[numDmers];
+    final int[] freqs = new int[1 << HASH_BITS];
+    for (int i = 0; i < numDmers; ++i) {
+      hashes[i] = hash(bytes, off + i);
+      freqs[hashes[i]]++;
+    }
+    for (int h = 0; h < freqs.length; ++h) {
+      if (freqs[h] == 1) {
+        // not repeated: useless in a dictionary
+        freqs[h] = 0;
+      }
+    }
+
+    final int dmersPerSegment = SEGMENT_LENGTH - DMER_LENGTH + 1;
+    final int maxSegments = maxLength / SEGMENT_LENGTH;
+    final int[] segments = new int[maxSegments];
+    final int[] active = new int[1 << HASH_BITS];
+    int numSegments = 0;
+    while (numSegments < maxSegments) {
+      Arrays.fill(active, 0);
+      long score = 0;
+      long bestScore = 0;
+      int bestStart = -1;
+      for (int i = 0; i < numDmers; ++i) {
+        if (active[hashes[i]]++ == 0) {
+          score += freqs[hashes[i]];
+        }
+        if (i >= dmersPerSegment) {
+          final int h = hashes[i - dmersPerSegment];
+          if (--active[h] == 0) {
+            score -= freqs[h];
+          }
+        }
+        if (score > bestScore) {
+          bestScore = score;
+          bestStart = Math.max(0, i - dmersPerSegment + 1);
+        }
+      }
+      if (bestStart == -1) {
+        // nothing repeated left
+        break;
+      }
+      segments[numSegments++] = bestStart;
+      for (int i = bestStart, end = Math.min(numDmers, bestStart + dmersPerSegment); i < end; ++i) {
+        freqs[hashes[i]] = 0;
+      }
+    }
+
+    // the most useful segments go last so that they are the closest to the
+    // compressed data
+    final byte[] dictionary = new byte[numSegments * SEGMENT_LENGTH];
+    for (int i = 0; i < numSegments; ++i) {
+      System.arraycopy(bytes, off + segments[i], dictionary, (numSegments - 1 - i) * SEGMENT_LENGTH, SEGMENT_LENGTH);
+    }
+    return new BytesRef(dictionary);
+  }
+
+}
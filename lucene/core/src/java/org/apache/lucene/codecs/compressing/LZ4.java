@@ -80,7 +80,9 @@ final class LZ4 {
    * Decompress at least <code>decompressedLen</code> bytes into
    * <code>dest[dOff:]</code>. Please note that <code>dest</code> must be large
    * enough to be able to hold <b>all</b> decompressed data (meaning that you
-   * need to know the total decompressed length).
+   * need to know the total decompressed length). Matches may reference bytes
+   * that precede <code>dOff</code>, which is how data that was compressed
+   * with a dictionary is decompressed.
    */
   public static int decompress(DataInput compressed, int decompressedLen, byte[] dest, int dOff) throws IOException {
     final int destEnd = dest.length;
@@ -411,7 +413,20 @@ final class LZ4 {
    * but can safely be reused.
    */
   public static void compressHC(byte[] src, int srcOff, int srcLen, DataOutput out, HCHashTable ht) throws IOException {
+    compressHC(src, srcOff, 0, srcLen, out, ht);
+  }
+
+  /**
+   * Compress <code>src[dictOff+dictLen:dictOff+dictLen+srcLen]</code> into
+   * <code>out</code> like {@link #compressHC(byte[], int, int, DataOutput, HCHashTable)},
+   * except that matches may also reference the dictionary that is stored in
+   * <code>src[dictOff:dictOff+dictLen]</code>. The dictionary is not written
+   * to <code>out</code>: it must be copied right before the decompressed
+   * bytes in order to decompress.
+   */
+  public static void compressHC(byte[] src, int dictOff, int dictLen, int srcLen, DataOutput out, HCHashTable ht) throws IOException {
 
+    final int srcOff = dictOff + dictLen;
     final int srcEnd = srcOff + srcLen;
     final int matchLimit = srcEnd - LAST_LITERALS;
     final int mfLimit = matchLimit - MIN_MATCH;
@@ -419,7 +434,8 @@ final class LZ4 {
     int sOff = srcOff;
     int anchor = sOff++;
 
-    ht.reset(srcOff);
+    // positions of the dictionary are hashed lazily by the first insert
+    ht.reset(dictOff);
     final Match match0 = new Match();
     final Match match1 = new Match();
     final Match match2 = new Match();
@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.lucene50;
 
 
 import java.io.IOException;
+import java.util.function.Function;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
@@ -29,7 +30,9 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.PostingsWriterBase;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat; // javadocs
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentWriteState;
@@ -196,10 +199,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *       <sup>NumSkipLevels-1</sup>, SkipLevel&gt;, SkipDatum?</li>
  *   <li>SkipLevel --&gt; &lt;SkipDatum&gt; <sup>TrimmedDocFreq/(PackedBlockSize^(Level + 1))</sup></li>
  *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
- *                        PayFPSkip?&gt;?, SkipChildLevelPointer?</li>
+ *                        PayFPSkip?&gt;?, MaxFreq?, SkipChildLevelPointer?</li>
  *   <li>PackedDocDeltaBlock, PackedFreqBlock --&gt; {@link PackedInts PackedInts}</li>
- *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
- *       --&gt; 
+ *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip,
+ *       MaxFreq --&gt; 
  *   {@link DataOutput#writeVInt VInt}</li>
  *   <li>SkipChildLevelPointer --&gt; {@link DataOutput#writeVLong VLong}</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
@@ -259,6 +262,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *       current term's TermFreqs, and stored as a difference sequence.</li>
  *   <li>PayByteUpto indicates the start offset of the current payload. It is equivalent to
  *       the sum of the payload lengths in the current block up to PosBlockOffset</li>
+ *   <li>MaxFreq is the maximum term frequency of the documents that are between the previous
+ *       SkipDatum of the same level (exclusive) and DocSkip (inclusive). It is only recorded
+ *       if frequencies are not omitted, and allows scorers to compute upper bounds of the
+ *       scores of whole blocks of documents without decoding them.</li>
  * </ul>
  * </dd>
  * </dl>
@@ -384,10 +391,12 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
 
   // Increment version to change it
   final static int VERSION_START = 0;
-  final static int VERSION_CURRENT = VERSION_START;
+  final static int VERSION_BLOCK_MAX_FREQ = 1;
+  final static int VERSION_CURRENT = VERSION_BLOCK_MAX_FREQ;
 
   private final int minTermBlockSize;
   private final int maxTermBlockSize;
+  private final Function<String, FSTLoadMode> fstLoadMode;
 
   /**
    * Fixed packed block size, number of integers encoded in 
@@ -397,7 +406,9 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
   public final static int BLOCK_SIZE = 128;
 
   /** Creates {@code Lucene50PostingsFormat} with default
-   *  settings. */
+   *  settings. The terms index of primary-key fields is
+   *  read off-heap when the index is memory-mapped.
+   *  @see FSTLoadMode#AUTO */
   public Lucene50PostingsFormat() {
     this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
   }
@@ -407,10 +418,28 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
    *  maxBlockSize} passed to block terms dictionary.
    *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
   public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    this(minTermBlockSize, maxTermBlockSize, field -> FSTLoadMode.AUTO);
+  }
+
+  /** Creates {@code Lucene50PostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize}, and that loads the terms index of
+   *  every field as {@code fstLoadMode} returns for the
+   *  field's name. This is a read-time option: it applies
+   *  to all segments that this instance opens, whatever
+   *  format instance wrote them. Note that segments are
+   *  opened with the format that their codec resolves to,
+   *  and that {@link PerFieldPostingsFormat} resolves
+   *  formats by name, to an instance that uses
+   *  {@link FSTLoadMode#AUTO} for all fields.
+   *  @see BlockTreeTermsReader#BlockTreeTermsReader(PostingsReaderBase,SegmentReadState,Function)
+   *  @lucene.experimental */
+  public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize, Function<String, FSTLoadMode> fstLoadMode) {
     super("Lucene50");
     BlockTreeTermsWriter.validateSettings(minTermBlockSize, maxTermBlockSize);
     this.minTermBlockSize = minTermBlockSize;
     this.maxTermBlockSize = maxTermBlockSize;
+    this.fstLoadMode = fstLoadMode;
   }
 
   @Override
@@ -442,7 +471,7 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
     PostingsReaderBase postingsReader = new Lucene50PostingsReader(state);
     boolean success = false;
     try {
-      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state);
+      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state, fstLoadMode);
       success = true;
       return ret;
     } finally {
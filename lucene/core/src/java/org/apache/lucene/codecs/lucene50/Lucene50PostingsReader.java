@@ -25,10 +25,12 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.IntBlockTermState;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.ArrayUtil;
@@ -44,6 +46,7 @@ import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.MAX_SKIP_
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.PAY_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.POS_CODEC;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.TERMS_CODEC;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_BLOCK_MAX_FREQ;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_CURRENT;
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_START;
 
@@ -140,6 +143,25 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
+  /**
+   * Turns the first {@code count} deltas of {@code buffer} into absolute
+   * values, starting from {@code base}.
+   */
+  static void prefixSum(int[] buffer, int count, int base) {
+    int sum = base;
+    for (int i = 0; i < count; ++i) {
+      sum += buffer[i];
+      buffer[i] = sum;
+    }
+  }
+
+  /**
+   * Whether skip data records the maximum term frequency of skipped blocks.
+   */
+  private boolean hasMaxFreqSkipData(boolean indexHasFreq) {
+    return indexHasFreq && version >= VERSION_BLOCK_MAX_FREQ;
+  }
+
   @Override
   public BlockTermState newTermState() {
     return new IntBlockTermState();
@@ -234,10 +256,28 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
+  @Override
+  public Impacts impacts(FieldInfo fieldInfo, BlockTermState state) throws IOException {
+    final IntBlockTermState termState = (IntBlockTermState) state;
+    final boolean indexHasFreq = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) >= 0;
+    if (indexHasFreq == false) {
+      // all documents have a frequency of 1
+      return Impacts.singleLevel(1);
+    }
+    final int maxFreq = Impacts.maxFreq(termState.docFreq, termState.totalTermFreq);
+    if (termState.docFreq <= BLOCK_SIZE || hasMaxFreqSkipData(indexHasFreq) == false) {
+      // no skip data, or skip data does not record max freqs
+      return Impacts.singleLevel(maxFreq);
+    }
+    return new BlockImpacts(fieldInfo, termState, maxFreq);
+  }
+
   final class BlockDocsEnum extends PostingsEnum {
     private final byte[] encoded;
     
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    // Holds absolute doc IDs: deltas are decoded and then prefix-summed
+    // once per block in refillDocs()
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
 
     private int docBufferUpto;
@@ -257,7 +297,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private long totalTermFreq;                       // sum of freqs in this posting list (or docFreq when omitted)
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
-    private int accum;                                // accumulator for doc deltas
+    private int accum;                                // last doc ID of the previous block, base for the prefix sum
     private int freq;                                 // freq we last read
 
     // Where this term's postings start in the .doc file:
@@ -353,8 +393,10 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       final int left = docFreq - docUpto;
       assert left > 0;
 
+      final int count;
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
+        count = BLOCK_SIZE;
 
         if (indexHasFreq) {
           if (needsFreq) {
@@ -364,12 +406,16 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           }
         }
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
+        count = 1;
       } else {
         // Read vInts:
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, indexHasFreq);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, indexHasFreq);
+        count = left;
       }
+      prefixSum(docBuffer, count, accum);
+      accum = docBuffer[count - 1];
       docBufferUpto = 0;
     }
 
@@ -382,10 +428,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
-      accum += docDeltaBuffer[docBufferUpto];
       docUpto++;
 
-      doc = accum;
+      doc = docBuffer[docBufferUpto];
       freq = freqBuffer[docBufferUpto];
       docBufferUpto++;
       return doc;
@@ -403,6 +448,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                            MAX_SKIP_LEVELS,
+                                           hasMaxFreqSkipData(indexHasFreq),
                                            indexHasPos,
                                            indexHasOffsets,
                                            indexHasPayloads);
@@ -441,13 +487,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
-      // Now scan... this is an inlined/pared down version
-      // of nextDoc():
+      // Now scan... doc IDs are already absolute so this is
+      // just a linear search over the buffer:
       while (true) {
-        accum += docDeltaBuffer[docBufferUpto];
         docUpto++;
 
-        if (accum >= target) {
+        if (docBuffer[docBufferUpto] >= target) {
           break;
         }
         docBufferUpto++;
@@ -457,8 +502,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       }
 
       freq = freqBuffer[docBufferUpto];
-      docBufferUpto++;
-      return doc = accum;
+      return doc = docBuffer[docBufferUpto++];
     }
     
     @Override
@@ -472,7 +516,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     
     private final byte[] encoded;
 
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    // Holds absolute doc IDs: deltas are decoded and then prefix-summed
+    // once per block in refillDocs()
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
     private final int[] posDeltaBuffer = new int[MAX_DATA_SIZE];
 
@@ -494,7 +540,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private long totalTermFreq;                       // number of positions in this posting list
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
-    private int accum;                                // accumulator for doc deltas
+    private int accum;                                // last doc ID of the previous block, base for the prefix sum
     private int freq;                                 // freq we last read
     private int position;                             // current position
 
@@ -597,16 +643,22 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       final int left = docFreq - docUpto;
       assert left > 0;
 
+      final int count;
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
         forUtil.readBlock(docIn, encoded, freqBuffer);
+        count = BLOCK_SIZE;
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
+        count = 1;
       } else {
         // Read vInts:
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, true);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, true);
+        count = left;
       }
+      prefixSum(docBuffer, count, accum);
+      accum = docBuffer[count - 1];
       docBufferUpto = 0;
     }
     
@@ -648,13 +700,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
-      accum += docDeltaBuffer[docBufferUpto];
+      doc = docBuffer[docBufferUpto];
       freq = freqBuffer[docBufferUpto];
       posPendingCount += freq;
       docBufferUpto++;
       docUpto++;
 
-      doc = accum;
       position = 0;
       return doc;
     }
@@ -668,6 +719,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                            MAX_SKIP_LEVELS,
+                                           hasMaxFreqSkipData(true),
                                            true,
                                            indexHasOffsets,
                                            indexHasPayloads);
@@ -708,13 +760,13 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       // Now scan... this is an inlined/pared down version
       // of nextDoc():
       while (true) {
-        accum += docDeltaBuffer[docBufferUpto];
+        doc = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
         docUpto++;
 
-        if (accum >= target) {
+        if (doc >= target) {
           break;
         }
         if (docUpto == docFreq) {
@@ -723,7 +775,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       }
 
       position = 0;
-      return doc = accum;
+      return doc;
     }
 
     // TODO: in theory we could avoid loading frq block
@@ -804,7 +856,9 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     
     private final byte[] encoded;
 
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    // Holds absolute doc IDs: deltas are decoded and then prefix-summed
+    // once per block in refillDocs()
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
     private final int[] posDeltaBuffer = new int[MAX_DATA_SIZE];
 
@@ -840,7 +894,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private long totalTermFreq;                       // number of positions in this posting list
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
-    private int accum;                                // accumulator for doc deltas
+    private int accum;                                // last doc ID of the previous block, base for the prefix sum
     private int freq;                                 // freq we last read
     private int position;                             // current position
 
@@ -973,15 +1027,21 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       final int left = docFreq - docUpto;
       assert left > 0;
 
+      final int count;
       if (left >= BLOCK_SIZE) {
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
         forUtil.readBlock(docIn, encoded, freqBuffer);
+        count = BLOCK_SIZE;
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
+        count = 1;
       } else {
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, true);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, true);
+        count = left;
       }
+      prefixSum(docBuffer, count, accum);
+      accum = docBuffer[count - 1];
       docBufferUpto = 0;
     }
     
@@ -1063,13 +1123,12 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         refillDocs();
       }
 
-      accum += docDeltaBuffer[docBufferUpto];
+      doc = docBuffer[docBufferUpto];
       freq = freqBuffer[docBufferUpto];
       posPendingCount += freq;
       docBufferUpto++;
       docUpto++;
 
-      doc = accum;
       position = 0;
       lastStartOffset = 0;
       return doc;
@@ -1084,6 +1143,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
           // Lazy init: first time this enum has ever been used for skipping
           skipper = new Lucene50SkipReader(docIn.clone(),
                                         MAX_SKIP_LEVELS,
+                                        hasMaxFreqSkipData(true),
                                         true,
                                         indexHasOffsets,
                                         indexHasPayloads);
@@ -1125,13 +1185,13 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
       // Now scan:
       while (true) {
-        accum += docDeltaBuffer[docBufferUpto];
+        doc = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
         docUpto++;
 
-        if (accum >= target) {
+        if (doc >= target) {
           break;
         }
         if (docUpto == docFreq) {
@@ -1141,7 +1201,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
       position = 0;
       lastStartOffset = 0;
-      return doc = accum;
+      return doc;
     }
 
     // TODO: in theory we could avoid loading frq block
@@ -1272,6 +1332,89 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
+  /**
+   * {@link Impacts} that are read from skip data. The skip reader is
+   * independent from the ones of the postings enums so that advancing
+   * impacts never moves the current position of a postings enum.
+   */
+  final class BlockImpacts extends Impacts {
+
+    private final boolean indexHasPos;
+    private final boolean indexHasOffsets;
+    private final boolean indexHasPayloads;
+
+    private final int docFreq;
+    private final long docTermStartFP;
+    private final long posTermStartFP;
+    private final long payTermStartFP;
+    private final long skipOffset;
+    private final int maxFreq; // upper bound of the freq across all docs
+
+    private Lucene50SkipReader skipper;
+    private int target = -1;
+    private int numSkipLevels; // number of skip levels that cover target
+
+    BlockImpacts(FieldInfo fieldInfo, IntBlockTermState termState, int maxFreq) {
+      indexHasPos = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+      indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
+      indexHasPayloads = fieldInfo.hasPayloads();
+      // copy what we need since the term state may be reused
+      docFreq = termState.docFreq;
+      docTermStartFP = termState.docStartFP;
+      posTermStartFP = indexHasPos ? termState.posStartFP : 0;
+      payTermStartFP = indexHasPos ? termState.payStartFP : 0;
+      skipOffset = termState.skipOffset;
+      this.maxFreq = maxFreq;
+      assert skipOffset != -1;
+    }
+
+    @Override
+    public void advanceShallow(int target) throws IOException {
+      assert target >= this.target : "targets must be non-decreasing: " + target + " < " + this.target;
+      if (skipper == null) {
+        // lazy init, no need to read skip data if only the global max freq is needed
+        skipper = new Lucene50SkipReader(docIn.clone(),
+                                         MAX_SKIP_LEVELS,
+                                         true,
+                                         indexHasPos,
+                                         indexHasOffsets,
+                                         indexHasPayloads);
+        skipper.init(docTermStartFP+skipOffset, docTermStartFP, posTermStartFP, payTermStartFP, docFreq);
+      }
+      this.target = target;
+      // skip entries record the last doc ID of each block so the first entry
+      // is never before doc 1, we bump the target to make sure that it gets loaded
+      final int skipTarget = Math.max(1, target);
+      skipper.skipTo(skipTarget);
+      numSkipLevels = skipper.getNumLevels(skipTarget);
+    }
+
+    @Override
+    public int numLevels() {
+      return numSkipLevels + 1;
+    }
+
+    @Override
+    public int getDocIdUpTo(int level) {
+      if (level < numSkipLevels) {
+        return skipper.getSkipDoc(level);
+      } else {
+        assert level == numSkipLevels;
+        return DocIdSetIterator.NO_MORE_DOCS;
+      }
+    }
+
+    @Override
+    public int getMaxFreq(int level) {
+      if (level < numSkipLevels) {
+        return skipper.getMaxFreq(level);
+      } else {
+        assert level == numSkipLevels;
+        return maxFreq;
+      }
+    }
+  }
+
   @Override
   public long ramBytesUsed() {
     return BASE_RAM_BYTES_USED;
@@ -82,6 +82,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
   private int payloadByteUpto;
 
   private int lastBlockDocID;
+  private int lastBlockMaxFreq;
   private long lastBlockPosFP;
   private long lastBlockPayFP;
   private int lastBlockPosBufferUpto;
@@ -183,7 +184,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
   @Override
   public int setField(FieldInfo fieldInfo) {
     super.setField(fieldInfo);
-    skipWriter.setField(writePositions, writeOffsets, writePayloads);
+    skipWriter.setField(writeFreqs, writePositions, writeOffsets, writePayloads);
     lastState = emptyState;
     if (writePositions) {
       if (writePayloads || writeOffsets) {
@@ -216,7 +217,7 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     // Should write skip data as well as postings list for
     // current block.
     if (lastBlockDocID != -1 && docBufferUpto == 0) {
-      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      skipWriter.bufferSkip(lastBlockDocID, lastBlockMaxFreq, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
     }
 
     final int docDelta = docID - lastDocID;
@@ -306,6 +307,15 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     // write them to skip file.
     if (docBufferUpto == BLOCK_SIZE) {
       lastBlockDocID = lastDocID;
+      if (writeFreqs) {
+        int maxFreq = 0;
+        for (int i = 0; i < BLOCK_SIZE; ++i) {
+          maxFreq = Math.max(maxFreq, freqBuffer[i]);
+        }
+        lastBlockMaxFreq = maxFreq;
+      } else {
+        lastBlockMaxFreq = 1;
+      }
       if (posOut != null) {
         if (payOut != null) {
           lastBlockPayFP = payOut.getFilePointer();
@@ -58,6 +58,7 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long payPointer[];
   private int posBufferUpto[];
   private int payloadByteUpto[];
+  private int maxFreq[];
 
   private long lastPosPointer;
   private long lastPayPointer;
@@ -65,9 +66,14 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasMaxFreq, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
     super(skipStream, maxSkipLevels, BLOCK_SIZE, 8);
     docPointer = new long[maxSkipLevels];
+    if (hasMaxFreq) {
+      maxFreq = new int[maxSkipLevels];
+    } else {
+      maxFreq = null;
+    }
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -142,6 +148,32 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /** Returns the number of levels whose current skip entry covers
+   *  {@code target}, which must be the target of the last call to
+   *  {@link MultiLevelSkipListReader#skipTo(int)}. Levels that are
+   *  exhausted or that do not exist for the current term are not
+   *  counted. */
+  int getNumLevels(int target) {
+    int numLevels = 0;
+    while (numLevels < maxNumberOfSkipLevels
+        && skipDoc[numLevels] >= target
+        && skipDoc[numLevels] != Integer.MAX_VALUE) {
+      numLevels++;
+    }
+    return numLevels;
+  }
+
+  /** Returns the last doc ID of the current skip entry on the given level. */
+  int getSkipDoc(int level) {
+    return skipDoc[level];
+  }
+
+  /** Returns the maximum term frequency of the documents that are covered
+   *  by the current skip entry on the given level. */
+  int getMaxFreq(int level) {
+    return maxFreq[level];
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -192,6 +224,10 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
         payPointer[level] += skipStream.readVLong();
       }
     }
+
+    if (maxFreq != null) {
+      maxFreq[level] = skipStream.readVInt();
+    }
     return delta;
   }
 }
@@ -41,6 +41,7 @@ import org.apache.lucene.codecs.MultiLevelSkipListWriter;
  * 2. its related file points(position, payload), 
  * 3. related numbers or uptos(position, payload).
  * 4. start offset.
+ * 5. the maximum term frequency since the previous skip point of the same level.
  *
  */
 final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
@@ -49,6 +50,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long[] lastSkipPosPointer;
   private long[] lastSkipPayPointer;
   private int[] lastPayloadByteUpto;
+  private int[] pendingMaxFreq;
 
   private final IndexOutput docOut;
   private final IndexOutput posOut;
@@ -60,6 +62,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   private long curPayPointer;
   private int curPosBufferUpto;
   private int curPayloadByteUpto;
+  private boolean fieldHasFreqs;
   private boolean fieldHasPositions;
   private boolean fieldHasOffsets;
   private boolean fieldHasPayloads;
@@ -72,6 +75,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     
     lastSkipDoc = new int[maxSkipLevels];
     lastSkipDocPointer = new long[maxSkipLevels];
+    pendingMaxFreq = new int[maxSkipLevels];
     if (posOut != null) {
       lastSkipPosPointer = new long[maxSkipLevels];
       if (payOut != null) {
@@ -81,7 +85,8 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
     }
   }
 
-  public void setField(boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+  public void setField(boolean fieldHasFreqs, boolean fieldHasPositions, boolean fieldHasOffsets, boolean fieldHasPayloads) {
+    this.fieldHasFreqs = fieldHasFreqs;
     this.fieldHasPositions = fieldHasPositions;
     this.fieldHasOffsets = fieldHasOffsets;
     this.fieldHasPayloads = fieldHasPayloads;
@@ -113,6 +118,7 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
       super.resetSkip();
       Arrays.fill(lastSkipDoc, 0);
       Arrays.fill(lastSkipDocPointer, lastDocFP);
+      Arrays.fill(pendingMaxFreq, 0);
       if (fieldHasPositions) {
         Arrays.fill(lastSkipPosPointer, lastPosFP);
         if (fieldHasPayloads) {
@@ -129,8 +135,12 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
   /**
    * Sets the values for the current skip data. 
    */
-  public void bufferSkip(int doc, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
+  public void bufferSkip(int doc, int maxFreq, int numDocs, long posFP, long payFP, int posBufferUpto, int payloadByteUpto) throws IOException {
     initSkip();
+    // every level accumulates the max freq until its next skip point is written
+    for (int level = 0; level < numberOfSkipLevels; ++level) {
+      pendingMaxFreq[level] = Math.max(pendingMaxFreq[level], maxFreq);
+    }
     this.curDoc = doc;
     this.curDocPointer = docOut.getFilePointer();
     this.curPosPointer = posFP;
@@ -165,5 +175,10 @@ final class Lucene50SkipWriter extends MultiLevelSkipListWriter {
         lastSkipPayPointer[level] = curPayPointer;
       }
     }
+
+    if (fieldHasFreqs) {
+      skipBuffer.writeVInt(pendingMaxFreq[level]);
+    }
+    pendingMaxFreq[level] = 0;
   }
 }
@@ -420,6 +420,28 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
+  /**
+   * Prefetch the values of the given sorted doc IDs from a dense slice that is
+   * read with a {@link DirectReader}, merging the ranges of nearby documents.
+   */
+  private static void prefetchValues(RandomAccessInput slice, long sliceLength, int bitsPerValue, int[] docIDs) throws IOException {
+    long start = 0, end = 0;
+    for (int docID : docIDs) {
+      final long offset = ((long) docID * bitsPerValue) >>> 3;
+      if (offset > end) {
+        if (end > start) {
+          slice.prefetch(start, end - start);
+        }
+        start = offset;
+      }
+      // DirectReader reads up to a long at the value's byte offset
+      end = Math.max(end, Math.min(sliceLength, offset + Long.BYTES));
+    }
+    if (end > start) {
+      slice.prefetch(start, end - start);
+    }
+  }
+
   private NumericDocValues getNumeric(NumericEntry entry) throws IOException {
     if (entry.docsWithFieldOffset == -2) {
       // empty
@@ -480,6 +502,11 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
               public long longValue() throws IOException {
                 return table[(int) values.get(doc)];
               }
+
+              @Override
+              public void prefetch(int[] docIDs) throws IOException {
+                prefetchValues(slice, entry.valuesLength, entry.bitsPerValue, docIDs);
+              }
             };
           } else {
             final long mul = entry.gcd;
@@ -489,6 +516,11 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
               public long longValue() throws IOException {
                 return mul * values.get(doc) + delta;
               }
+
+              @Override
+              public void prefetch(int[] docIDs) throws IOException {
+                prefetchValues(slice, entry.valuesLength, entry.bitsPerValue, docIDs);
+              }
             };
           }
         }
@@ -812,8 +844,10 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
       return DocValues.emptySorted();
     }
 
+    final RandomAccessInput slice;
     final LongValues ords;
     if (entry.bitsPerValue == 0) {
+      slice = null;
       ords = new LongValues() {
         @Override
         public long get(long index) {
@@ -821,7 +855,7 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
         }
       };
     } else {
-      final RandomAccessInput slice = data.randomAccessSlice(entry.ordsOffset, entry.ordsLength);
+      slice = data.randomAccessSlice(entry.ordsOffset, entry.ordsLength);
       ords = DirectReader.getInstance(slice, entry.bitsPerValue);
     }
 
@@ -864,6 +898,13 @@ final class Lucene70DocValuesProducer extends DocValuesProducer implements Close
         public int ordValue() {
           return (int) ords.get(doc);
         }
+
+        @Override
+        public void prefetch(int[] docIDs) throws IOException {
+          if (slice != null) {
+            prefetchValues(slice, entry.ordsLength, entry.bitsPerValue, docIDs);
+          }
+        }
       };
     } else {
       // sparse
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * A delete by query that is resolved in the background, one segment at a
+ * time, against point-in-time readers of the segments that existed when the
+ * delete was issued. Matching documents are buffered in a fixed-size buffer
+ * and applied to the live docs of their segment whenever this buffer is
+ * full, so the memory that this delete needs does not depend on the number
+ * of matching documents.
+ *
+ * @see IndexWriter#deleteDocumentsInBackground
+ */
+final class BackgroundQueryDelete implements Runnable {
+
+  /** Maximum number of matching documents that are buffered before they are applied to the live docs of their segment. */
+  static final int BUFFER_SIZE = 4096;
+
+  final Query query;
+  final long seqNo;
+  private final IndexWriter writer;
+  // point-in-time readers of the segments to resolve the query against
+  private final List<SegmentReader> readers;
+  // segments that have not been resolved yet, guarded by the writer
+  final Set<SegmentCommitInfo> pendingSegments = new HashSet<>();
+  // guarded by the writer
+  boolean started, aborted;
+
+  BackgroundQueryDelete(IndexWriter writer, Query query, long seqNo, List<SegmentReader> readers) {
+    this.writer = writer;
+    this.query = query;
+    this.seqNo = seqNo;
+    this.readers = readers;
+    for (SegmentReader reader : readers) {
+      pendingSegments.add(reader.getSegmentInfo());
+    }
+  }
+
+  @Override
+  public void run() {
+    if (writer.startBackgroundDelete(this) == false) {
+      return;
+    }
+    long delCount = 0;
+    Throwable exc = null;
+    try {
+      final int[] buffer = new int[BUFFER_SIZE];
+      for (SegmentReader reader : readers) {
+        delCount += resolve(reader, buffer);
+      }
+    } catch (Throwable t) {
+      exc = t;
+    } finally {
+      writer.finishBackgroundDelete(this, delCount, exc);
+    }
+  }
+
+  /** Delete the documents of the given segment that match the query and return how many documents were deleted. */
+  private long resolve(SegmentReader reader, int[] buffer) throws IOException {
+    final SegmentCommitInfo info = reader.getSegmentInfo();
+    final ReadersAndUpdates rld = writer.acquireForBackgroundDelete(this, info);
+    try {
+      if (rld == null) {
+        // the segment was dropped or the delete was aborted
+        return 0;
+      }
+      final IndexSearcher searcher = new IndexSearcher(reader);
+      searcher.setQueryCache(null);
+      final Weight weight = searcher.createNormalizedWeight(query, false);
+      final Scorer scorer = weight.scorer(reader.getContext());
+      if (scorer == null) {
+        return 0;
+      }
+      final DocIdSetIterator it = scorer.iterator();
+      final Bits liveDocs = reader.getLiveDocs();
+      long delCount = 0;
+      int count = 0;
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        if (liveDocs != null && liveDocs.get(doc) == false) {
+          continue;
+        }
+        buffer[count++] = doc;
+        if (count == buffer.length) {
+          final int deleted = writer.applyBackgroundDeletes(this, rld, buffer, count);
+          if (deleted == -1) {
+            return delCount;
+          }
+          delCount += deleted;
+          count = 0;
+        }
+      }
+      if (count > 0) {
+        delCount += Math.max(0, writer.applyBackgroundDeletes(this, rld, buffer, count));
+      }
+      return delCount;
+    } finally {
+      writer.releaseForBackgroundDelete(this, info, rld);
+    }
+  }
+
+  /** Release the point-in-time readers of this delete. */
+  void decRefReaders() throws IOException {
+    Throwable th = null;
+    for (SegmentReader reader : readers) {
+      try {
+        reader.decRef();
+      } catch (Throwable t) {
+        if (th == null) {
+          th = t;
+        } else {
+          th.addSuppressed(t);
+        }
+      }
+    }
+    IOUtils.reThrow(th);
+  }
+
+  @Override
+  public String toString() {
+    return "BackgroundQueryDelete(query=" + query + " seqNo=" + seqNo + ")";
+  }
+}
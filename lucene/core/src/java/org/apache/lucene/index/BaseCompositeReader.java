@@ -118,6 +118,31 @@ public abstract class BaseCompositeReader<R extends IndexReader> extends Composi
     subReaders[i].document(docID - starts[i], visitor);    // dispatch to subreader
   }
 
+  @Override
+  public final void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    ensureOpen();
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("got " + docIDs.length + " doc IDs but " + visitors.length + " visitors");
+    }
+    for (int from = 0; from < docIDs.length; ) {
+      final int i = readerIndex(docIDs[from]);
+      int to = from + 1;
+      while (to < docIDs.length && docIDs[to] < starts[i + 1]) {
+        if (docIDs[to] < docIDs[to - 1]) {
+          throw new IllegalArgumentException("doc IDs must be sorted, got " + docIDs[to - 1] + " before " + docIDs[to]);
+        }
+        to++;
+      }
+      final int[] subDocIDs = new int[to - from];
+      for (int j = from; j < to; ++j) {
+        subDocIDs[j - from] = docIDs[j] - starts[i];
+      }
+      // dispatch the documents of each subreader at once
+      subReaders[i].document(subDocIDs, Arrays.copyOfRange(visitors, from, to));
+      from = to;
+    }
+  }
+
   @Override
   public final int docFreq(Term term) throws IOException {
     ensureOpen();
@@ -22,8 +22,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -35,10 +41,13 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /* Tracks the stream of {@link BufferedDeletes}.
  * When DocumentsWriterPerThread flushes, its buffered
@@ -53,7 +62,20 @@ import org.apache.lucene.util.PriorityQueue;
  * Each packet is assigned a generation, and each flushed or
  * merged segment is also assigned a generation, so we can
  * track which BufferedDeletes packets to apply to any given
- * segment. */
+ * segment.
+ *
+ * Applying deletes and updates has three steps. {@link #startApply}
+ * picks the packets that apply to each segment and opens point-in-time
+ * readers of the segments, under IndexWriter's lock. {@link #resolve}
+ * then resolves deletes and doc values updates to docIDs without
+ * holding IndexWriter's lock or this stream's monitor, per segment and
+ * concurrently if an executor is configured. Finally
+ * {@link #finishApply} applies the docIDs under IndexWriter's lock and
+ * the lock of each affected segment's ReadersAndUpdates; this step
+ * cannot run without IndexWriter's lock since it changes the
+ * SegmentCommitInfos that IndexWriter checkpoints and commits.
+ * Segments stay reserved from start to finish so that they are
+ * resolved by one thread at a time. */
 
 class BufferedUpdatesStream implements Accountable {
 
@@ -65,15 +87,22 @@ class BufferedUpdatesStream implements Accountable {
   // will be correct:
   private long nextGen = 1;
 
-  // used only by assert
-  private BytesRef lastDeleteTerm;
+  // segments whose deletes and updates are being resolved
+  private final Set<SegmentCommitInfo> resolvingSegments = new HashSet<>();
 
   private final InfoStream infoStream;
+  // resolves query deletes and doc values updates of several segments concurrently, or null
+  private final Executor executor;
   private final AtomicLong bytesUsed = new AtomicLong();
   private final AtomicInteger numTerms = new AtomicInteger();
 
   public BufferedUpdatesStream(InfoStream infoStream) {
+    this(infoStream, null);
+  }
+
+  public BufferedUpdatesStream(InfoStream infoStream, Executor executor) {
     this.infoStream = infoStream;
+    this.executor = executor;
   }
 
   // Appends a new packet of buffered deletes to the stream,
@@ -147,52 +176,87 @@ class BufferedUpdatesStream implements Accountable {
     }
   };
   
-  /** Resolves the buffered deleted Term/Query/docIDs, into
-   *  actual deleted docIDs in the liveDocs MutableBits for
-   *  each SegmentReader. */
-  public synchronized ApplyDeletesResult applyDeletesAndUpdates(IndexWriter.ReaderPool pool, List<SegmentCommitInfo> infos) throws IOException {
+  /** Buffered deletes and updates that are being applied to some segments,
+   *  from {@link #startApply} to {@link #finishApply}. */
+  static final class PendingApply {
+    // Current gen, for the merged segment:
+    final long gen;
+    final long t0;
+    final List<SegmentCommitInfo> infos;
+    // null if there is nothing to apply
+    final SegmentState[] segStates;
+    final List<SegmentResolution> resolutions;
+    final CoalescedUpdates coalescedUpdates;
+    long termVisitedCount;
+
+    // used only by assert
+    private BytesRef lastDeleteTerm;
+
+    PendingApply(long gen, long t0, List<SegmentCommitInfo> infos, SegmentState[] segStates,
+                 List<SegmentResolution> resolutions, CoalescedUpdates coalescedUpdates) {
+      this.gen = gen;
+      this.t0 = t0;
+      this.infos = infos;
+      this.segStates = segStates;
+      this.resolutions = resolutions;
+      this.coalescedUpdates = coalescedUpdates;
+    }
+
+    // used only by assert
+    boolean checkDeleteTerm(BytesRef term) {
+      if (term != null) {
+        assert lastDeleteTerm == null || term.compareTo(lastDeleteTerm) >= 0: "lastTerm=" + lastDeleteTerm + " vs term=" + term;
+      }
+      // TODO: we re-use term now in our merged iterable, but we shouldn't clone, instead copy for this assert
+      lastDeleteTerm = term == null ? null : BytesRef.deepCopyOf(term);
+      return true;
+    }
+  }
+
+  /** Picks the buffered deleted Term/Query/docIDs and doc values updates
+   *  that apply to each of the given segments and opens point-in-time
+   *  readers of these segments, which stay reserved until {@link
+   *  #finishApply} is called. Must be called under IndexWriter's lock,
+   *  and only if none of the segments {@link #isResolving is being
+   *  resolved}. */
+  public synchronized PendingApply startApply(IndexWriter.ReaderPool pool, List<SegmentCommitInfo> infos) throws IOException {
     final long t0 = System.currentTimeMillis();
 
     final long gen = nextGen++;
 
     if (infos.size() == 0) {
-      return new ApplyDeletesResult(false, gen, null);
+      return new PendingApply(gen, t0, infos, null, null, null);
     }
 
-    // We only init these on demand, when we find our first deletes that need to be applied:
-    SegmentState[] segStates = null;
-
-    long totDelCount = 0;
-    long totTermVisitedCount = 0;
-
-    boolean success = false;
-
-    ApplyDeletesResult result = null;
+    assert checkDeleteStats();
+    assert isResolving(infos) == false;
 
-    try {
+    if (!any()) {
       if (infoStream.isEnabled("BD")) {
-        infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: open segment readers took %d msec", System.currentTimeMillis()-t0));
+        infoStream.message("BD", "applyDeletes: no segments; skipping");
       }
+      return new PendingApply(gen, t0, infos, null, null, null);
+    }
 
-      assert checkDeleteStats();
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD", "applyDeletes: infos=" + infos + " packetCount=" + updates.size());
+    }
 
-      if (!any()) {
-        if (infoStream.isEnabled("BD")) {
-          infoStream.message("BD", "applyDeletes: no segments; skipping");
-        }
-        return new ApplyDeletesResult(false, gen, null);
-      }
+    infos = sortByDelGen(infos);
 
-      if (infoStream.isEnabled("BD")) {
-        infoStream.message("BD", "applyDeletes: infos=" + infos + " packetCount=" + updates.size());
-      }
+    // We only init these on demand, when we find our first deletes that need to be applied:
+    SegmentState[] segStates = null;
 
-      infos = sortByDelGen(infos);
+    CoalescedUpdates coalescedUpdates = null;
+    int infosIDX = infos.size()-1;
+    int delIDX = updates.size()-1;
 
-      CoalescedUpdates coalescedUpdates = null;
-      int infosIDX = infos.size()-1;
-      int delIDX = updates.size()-1;
+    // Query deletes and doc values updates to resolve per segment once
+    // we know which packets apply to which segments:
+    final List<SegmentResolution> resolutions = new ArrayList<>();
 
+    boolean success = false;
+    try {
       // Backwards merge sort the segment delGens with the packet delGens in the buffered stream:
       while (infosIDX >= 0) {
         final FrozenBufferedUpdates packet = delIDX >= 0 ? updates.get(delIDX) : null;
@@ -222,30 +286,15 @@ class BufferedUpdatesStream implements Accountable {
             segStates = openSegmentStates(pool, infos);
           }
 
-          SegmentState segState = segStates[infosIDX];
-
           // Lock order: IW -> BD -> RP
           assert pool.infoIsLive(info);
-          int delCount = 0;
-          final DocValuesFieldUpdates.Container dvUpdates = new DocValuesFieldUpdates.Container();
-
-          // first apply segment-private deletes/updates
-          delCount += applyQueryDeletes(packet.queriesIterable(), segState);
-          applyDocValuesUpdates(Arrays.asList(packet.numericDVUpdates), segState, dvUpdates);
-          applyDocValuesUpdates(Arrays.asList(packet.binaryDVUpdates), segState, dvUpdates);
 
-          // ... then coalesced deletes/updates, so that if there is an update that appears in both, the coalesced updates (carried from
-          // updates ahead of the segment-privates ones) win:
-          if (coalescedUpdates != null) {
-            delCount += applyQueryDeletes(coalescedUpdates.queriesIterable(), segState);
-            applyDocValuesUpdatesList(coalescedUpdates.numericDVUpdates, segState, dvUpdates);
-            applyDocValuesUpdatesList(coalescedUpdates.binaryDVUpdates, segState, dvUpdates);
-          }
-          if (dvUpdates.any()) {
-            segState.rld.writeFieldUpdates(info.info.dir, dvUpdates);
-          }
-
-          totDelCount += delCount;
+          // segment-private deletes/updates are resolved before the coalesced ones,
+          // so that if there is an update that appears in both, the coalesced updates
+          // (carried from updates ahead of the segment-privates ones) win:
+          final SegmentResolution resolution = new SegmentResolution(segStates[infosIDX], packet, coalescedUpdates);
+          segStates[infosIDX].resolution = resolution;
+          resolutions.add(resolution);
 
           /*
            * Since we are on a segment private del packet we must not
@@ -260,57 +309,103 @@ class BufferedUpdatesStream implements Accountable {
             if (segStates == null) {
               segStates = openSegmentStates(pool, infos);
             }
-            SegmentState segState = segStates[infosIDX];
             // Lock order: IW -> BD -> RP
             assert pool.infoIsLive(info);
-            int delCount = 0;
-            delCount += applyQueryDeletes(coalescedUpdates.queriesIterable(), segState);
-            DocValuesFieldUpdates.Container dvUpdates = new DocValuesFieldUpdates.Container();
-            applyDocValuesUpdatesList(coalescedUpdates.numericDVUpdates, segState, dvUpdates);
-            applyDocValuesUpdatesList(coalescedUpdates.binaryDVUpdates, segState, dvUpdates);
-            if (dvUpdates.any()) {
-              segState.rld.writeFieldUpdates(info.info.dir, dvUpdates);
-            }
-
-            totDelCount += delCount;
+            final SegmentResolution resolution = new SegmentResolution(segStates[infosIDX], null, coalescedUpdates);
+            segStates[infosIDX].resolution = resolution;
+            resolutions.add(resolution);
           }
 
           infosIDX--;
         }
       }
 
-      // Now apply all term deletes:
-      if (coalescedUpdates != null && coalescedUpdates.totalTermCount != 0) {
-        if (segStates == null) {
-          segStates = openSegmentStates(pool, infos);
-        }
-        totTermVisitedCount += applyTermDeletes(coalescedUpdates, segStates);
+      if (coalescedUpdates != null && coalescedUpdates.totalTermCount != 0 && segStates == null) {
+        segStates = openSegmentStates(pool, infos);
       }
+      success = true;
+    } finally {
+      if (success == false && segStates != null) {
+        closeSegmentStates(pool, segStates);
+      }
+    }
 
-      assert checkDeleteStats();
+    if (segStates != null) {
+      resolvingSegments.addAll(infos);
+      if (infoStream.isEnabled("BD")) {
+        infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: open segment readers took %d msec", System.currentTimeMillis()-t0));
+      }
+    }
 
-      success = true;
+    return new PendingApply(gen, t0, infos, segStates, resolutions, coalescedUpdates);
+  }
 
-    } finally {
-      if (segStates != null) {
-        result = closeSegmentStates(pool, segStates, success, gen);
+  /** Resolves the deletes and doc values updates of the given pending
+   *  apply to docIDs. This does not need IndexWriter's lock and does not
+   *  take this stream's monitor. */
+  public void resolve(PendingApply pending) throws IOException {
+    if (pending.segStates == null) {
+      return;
+    }
+
+    if (pending.resolutions.isEmpty() == false) {
+      resolveAll(pending.resolutions);
+    }
+
+    // Now resolve all term deletes:
+    if (pending.coalescedUpdates != null && pending.coalescedUpdates.totalTermCount != 0) {
+      final long termDeletesStartNS = System.nanoTime();
+      pending.termVisitedCount += resolveTermDeletes(pending);
+      if (infoStream.isEnabled("BD")) {
+        infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: term deletes took %.1f msec",
+                                               (System.nanoTime()-termDeletesStartNS)/1000000.));
       }
     }
+  }
 
-    if (result == null) {
-      result = new ApplyDeletesResult(false, gen, null);      
+  /** Applies the resolved deletes and doc values updates of the given
+   *  pending apply to its segments that are still live, if resolving
+   *  succeeded, then releases the segments. Must be called under
+   *  IndexWriter's lock, once {@link #startApply} returned. */
+  public ApplyDeletesResult finishApply(IndexWriter.ReaderPool pool, PendingApply pending, boolean success) throws IOException {
+    if (pending.segStates == null) {
+      return new ApplyDeletesResult(false, pending.gen, null);
+    }
+
+    final ApplyDeletesResult result;
+    try {
+      result = applySegmentStates(pool, pending, success);
+    } finally {
+      synchronized (this) {
+        resolvingSegments.removeAll(pending.infos);
+      }
     }
 
     if (infoStream.isEnabled("BD")) {
       infoStream.message("BD",
                          String.format(Locale.ROOT,
-                                       "applyDeletes took %d msec for %d segments, %d newly deleted docs (query deletes), %d visited terms, allDeleted=%s",
-                                       System.currentTimeMillis()-t0, infos.size(), totDelCount, totTermVisitedCount, result.allDeleted));
+                                       "applyDeletes took %d msec for %d segments, %d visited terms, allDeleted=%s",
+                                       System.currentTimeMillis()-pending.t0, pending.infos.size(), pending.termVisitedCount, result.allDeleted));
     }
 
     return result;
   }
 
+  /** Returns true if the deletes and updates of any of the given segments are being resolved. */
+  public synchronized boolean isResolving(List<SegmentCommitInfo> infos) {
+    for (SegmentCommitInfo info : infos) {
+      if (resolvingSegments.contains(info)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns true if the deletes and updates of any segment are being resolved. */
+  public synchronized boolean isResolving() {
+    return resolvingSegments.isEmpty() == false;
+  }
+
   private List<SegmentCommitInfo> sortByDelGen(List<SegmentCommitInfo> infos) {
     infos = new ArrayList<>(infos);
     // Smaller delGens come first:
@@ -370,8 +465,14 @@ class BufferedUpdatesStream implements Accountable {
   static class SegmentState {
     final long delGen;
     final ReadersAndUpdates rld;
+    // point-in-time reader: its live docs do not change while we resolve deletes without IndexWriter's lock
     final SegmentReader reader;
-    final int startDelCount;
+    final Bits liveDocs;
+
+    // query deletes and doc values updates to resolve, or null
+    SegmentResolution resolution;
+    // resolved term deletes, or null
+    FixedBitSet termDeletes;
 
     TermsEnum termsEnum;
     PostingsEnum postingsEnum;
@@ -380,16 +481,53 @@ class BufferedUpdatesStream implements Accountable {
 
     public SegmentState(IndexWriter.ReaderPool pool, SegmentCommitInfo info) throws IOException {
       rld = pool.get(info, true);
-      startDelCount = rld.getPendingDeleteCount();
-      reader = rld.getReader(IOContext.READ);
+      reader = rld.getReadOnlyClone(IOContext.READ);
+      liveDocs = reader.getLiveDocs();
       delGen = info.getBufferedDeletesGen();
     }
 
-    public void finish(IndexWriter.ReaderPool pool) throws IOException {
+    /** Applies the resolved deletes and doc values updates to this segment
+     *  while holding the lock of its {@link ReadersAndUpdates}; returns the
+     *  number of newly deleted documents. */
+    long apply() throws IOException {
+      synchronized (rld) {
+        long delCount = 0;
+        if (resolution != null) {
+          delCount += resolution.apply();
+        }
+        if (termDeletes != null) {
+          delCount += delete(termDeletes);
+        }
+        return delCount;
+      }
+    }
+
+    /** Deletes the given documents, unless they were deleted already; returns the number of newly deleted documents. */
+    long delete(FixedBitSet docs) throws IOException {
+      if (!any) {
+        rld.initWritableLiveDocs();
+        any = true;
+      }
+      long delCount = 0;
+      final DocIdSetIterator it = new BitSetIterator(docs, 0);
+      for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+        if (rld.delete(doc)) {
+          delCount++;
+        }
+      }
+      return delCount;
+    }
+
+    public void finish(IndexWriter.ReaderPool pool, boolean live) throws IOException {
       try {
-        rld.release(reader);
+        reader.decRef();
       } finally {
-        pool.release(rld);
+        if (live) {
+          pool.release(rld);
+        } else {
+          // The segment was dropped while we resolved its deletes: only release our reference
+          rld.decRef();
+        }
       }
     }
   }
@@ -421,7 +559,7 @@ class BufferedUpdatesStream implements Accountable {
         for(int j=0;j<numReaders;j++) {
           if (segStates[j] != null) {
             try {
-              segStates[j].finish(pool);
+              segStates[j].finish(pool, true);
             } catch (Throwable th) {
               // suppress so we keep throwing original exc
             }
@@ -433,30 +571,47 @@ class BufferedUpdatesStream implements Accountable {
     return segStates;
   }
 
-  /** Close segment states previously opened with openSegmentStates. */
-  private ApplyDeletesResult closeSegmentStates(IndexWriter.ReaderPool pool, SegmentState[] segStates, boolean success, long gen) throws IOException {
-    int numReaders = segStates.length;
+  /** Closes segment states previously opened with openSegmentStates, after a failure. */
+  private void closeSegmentStates(IndexWriter.ReaderPool pool, SegmentState[] segStates) {
+    for (SegmentState segState : segStates) {
+      try {
+        segState.finish(pool, true);
+      } catch (Throwable th) {
+        // suppress so we keep throwing original exc
+      }
+    }
+  }
+
+  /** Applies the resolved deletes and updates to the segments that are
+   *  still live if resolving succeeded, then closes the segment states. */
+  private ApplyDeletesResult applySegmentStates(IndexWriter.ReaderPool pool, PendingApply pending, boolean success) throws IOException {
+    final long startNS = System.nanoTime();
     Throwable firstExc = null;
     List<SegmentCommitInfo> allDeleted = null;
     long totDelCount = 0;
-    for (int j=0;j<numReaders;j++) {
-      SegmentState segState = segStates[j];
-      if (success) {
-        totDelCount += segState.rld.getPendingDeleteCount() - segState.startDelCount;
-        segState.reader.getSegmentInfo().setBufferedDeletesGen(gen);
-        int fullDelCount = segState.rld.info.getDelCount() + segState.rld.getPendingDeleteCount();
-        assert fullDelCount <= segState.rld.info.info.maxDoc();
-        if (fullDelCount == segState.rld.info.info.maxDoc()) {
-          if (allDeleted == null) {
-            allDeleted = new ArrayList<>();
+    for (SegmentState segState : pending.segStates) {
+      // Lock order: IW -> RP
+      final boolean live = pool.isLive(segState.rld.info);
+      if (success && firstExc == null && live) {
+        try {
+          totDelCount += segState.apply();
+          segState.rld.info.setBufferedDeletesGen(pending.gen);
+          int fullDelCount = segState.rld.info.getDelCount() + segState.rld.getPendingDeleteCount();
+          assert fullDelCount <= segState.rld.info.info.maxDoc();
+          if (fullDelCount == segState.rld.info.info.maxDoc()) {
+            if (allDeleted == null) {
+              allDeleted = new ArrayList<>();
+            }
+            allDeleted.add(segState.rld.info);
           }
-          allDeleted.add(segState.reader.getSegmentInfo());
+        } catch (Throwable th) {
+          firstExc = th;
         }
       }
       try {
-        segStates[j].finish(pool);
+        segState.finish(pool, live);
       } catch (Throwable th) {
-        if (firstExc != null) {
+        if (firstExc == null) {
           firstExc = th;
         }
       }
@@ -468,14 +623,20 @@ class BufferedUpdatesStream implements Accountable {
     }
 
     if (infoStream.isEnabled("BD")) {
-      infoStream.message("BD", "applyDeletes: " + totDelCount + " new deleted documents");
+      for (SegmentResolution resolution : pending.resolutions) {
+        infoStream.message("BD", "applyDeletes: " + resolution);
+      }
+      infoStream.message("BD", String.format(Locale.ROOT, "applyDeletes: %d new deleted documents, applied in %.1f msec",
+                                             totDelCount, (System.nanoTime()-startNS)/1000000.));
     }
 
-    return new ApplyDeletesResult(totDelCount > 0, gen, allDeleted);      
+    return new ApplyDeletesResult(totDelCount > 0, pending.gen, allDeleted);
   }
 
   /** Merge sorts the deleted terms and all segments to resolve terms to docIDs for deletion. */
-  private synchronized long applyTermDeletes(CoalescedUpdates updates, SegmentState[] segStates) throws IOException {
+  private long resolveTermDeletes(PendingApply pending) throws IOException {
+    final CoalescedUpdates updates = pending.coalescedUpdates;
+    final SegmentState[] segStates = pending.segStates;
 
     long startNS = System.nanoTime();
 
@@ -513,10 +674,10 @@ class BufferedUpdatesStream implements Accountable {
           }
         }
 
-        assert checkDeleteTerm(null);
+        assert pending.checkDeleteTerm(null);
       }
 
-      assert checkDeleteTerm(term);
+      assert pending.checkDeleteTerm(term);
 
       delTermVisitedCount++;
 
@@ -556,7 +717,7 @@ class BufferedUpdatesStream implements Accountable {
         if (state.delGen < delGen) {
 
           // we don't need term frequencies for this
-          final Bits acceptDocs = state.rld.getLiveDocs();
+          final Bits acceptDocs = state.liveDocs;
           state.postingsEnum = state.termsEnum.postings(state.postingsEnum, PostingsEnum.NONE);
 
           assert state.postingsEnum != null;
@@ -569,9 +730,8 @@ class BufferedUpdatesStream implements Accountable {
             if (acceptDocs != null && acceptDocs.get(docID) == false) {
               continue;
             }
-            if (!state.any) {
-              state.rld.initWritableLiveDocs();
-              state.any = true;
+            if (state.termDeletes == null) {
+              state.termDeletes = new FixedBitSet(state.reader.maxDoc());
             }
 
             // NOTE: there is no limit check on the docID
@@ -579,7 +739,7 @@ class BufferedUpdatesStream implements Accountable {
             // because on flush we apply all Term deletes to
             // each segment.  So all Term deleting here is
             // against prior segments:
-            state.rld.delete(docID);
+            state.termDeletes.set(docID);
           }
         }
 
@@ -594,7 +754,7 @@ class BufferedUpdatesStream implements Accountable {
 
     if (infoStream.isEnabled("BD")) {
       infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyTermDeletes took %.1f msec for %d segments and %d packets; %d del terms visited; %d seg terms visited",
+                         String.format(Locale.ROOT, "resolveTermDeletes took %.1f msec for %d segments and %d packets; %d del terms visited; %d seg terms visited",
                                        (System.nanoTime()-startNS)/1000000.,
                                        numReaders,
                                        updates.terms.size(),
@@ -604,18 +764,9 @@ class BufferedUpdatesStream implements Accountable {
     return delTermVisitedCount;
   }
 
-  private synchronized void applyDocValuesUpdatesList(List<List<DocValuesUpdate>> updates, 
-      SegmentState segState, DocValuesFieldUpdates.Container dvUpdatesContainer) throws IOException {
-    // we walk backwards through the segments, appending deletion packets to the coalesced updates, so we must apply the packets in reverse
-    // so that newer packets override older ones:
-    for(int idx=updates.size()-1;idx>=0;idx--) {
-      applyDocValuesUpdates(updates.get(idx), segState, dvUpdatesContainer);
-    }
-  }
-
   // DocValues updates
-  private synchronized void applyDocValuesUpdates(List<DocValuesUpdate> updates, 
-      SegmentState segState, DocValuesFieldUpdates.Container dvUpdatesContainer) throws IOException {
+  private static void applyDocValuesUpdates(List<? extends DocValuesUpdate> updates, SegmentState segState,
+      Bits acceptDocs, DocValuesFieldUpdates.Container dvUpdatesContainer) throws IOException {
     Fields fields = segState.reader.fields();
 
     // TODO: we can process the updates per DV field, from last to first so that
@@ -665,7 +816,6 @@ class BufferedUpdatesStream implements Accountable {
 
       if (termsEnum.seekExact(term.bytes())) {
         // we don't need term frequencies for this
-        final Bits acceptDocs = segState.rld.getLiveDocs();
         postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
 
         DocValuesFieldUpdates dvUpdates = dvUpdatesContainer.getUpdates(update.field, update.type);
@@ -695,11 +845,11 @@ class BufferedUpdatesStream implements Accountable {
     }
   }
 
-  // Delete by query
-  private static long applyQueryDeletes(Iterable<QueryAndLimit> queriesIter, SegmentState segState) throws IOException {
-    long delCount = 0;
+  // Delete by query: returns the docs to delete, or null if there are none
+  private static FixedBitSet resolveQueryDeletes(List<QueryAndLimit> queries, SegmentState segState) throws IOException {
+    FixedBitSet toDelete = null;
     final LeafReaderContext readerContext = segState.reader.getContext();
-    for (QueryAndLimit ent : queriesIter) {
+    for (QueryAndLimit ent : queries) {
       Query query = ent.query;
       int limit = ent.limit;
       final IndexSearcher searcher = new IndexSearcher(readerContext.reader());
@@ -718,28 +868,172 @@ class BufferedUpdatesStream implements Accountable {
             continue;
           }
 
-          if (!segState.any) {
-            segState.rld.initWritableLiveDocs();
-            segState.any = true;
+          if (toDelete == null) {
+            toDelete = new FixedBitSet(readerContext.reader().maxDoc());
           }
-          if (segState.rld.delete(doc)) {
-            delCount++;
+          toDelete.set(doc);
+        }
+      }
+    }
+
+    return toDelete;
+  }
+
+  /** Resolves the query deletes and doc values updates of all given segments,
+   *  concurrently if this stream has an executor. */
+  private void resolveAll(List<SegmentResolution> resolutions) throws IOException {
+    final long startNS = System.nanoTime();
+    if (executor == null || resolutions.size() == 1) {
+      for (SegmentResolution resolution : resolutions) {
+        resolution.resolve();
+      }
+    } else {
+      final List<FutureTask<Void>> tasks = new ArrayList<>();
+      for (SegmentResolution resolution : resolutions.subList(1, resolutions.size())) {
+        final FutureTask<Void> task = new FutureTask<>(() -> {
+          resolution.resolve();
+          return null;
+        });
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          task.run();
+        }
+        tasks.add(task);
+      }
+
+      // the current thread resolves the first segment while the executor takes care of the other ones
+      Throwable exc = null;
+      try {
+        resolutions.get(0).resolve();
+      } catch (Throwable t) {
+        exc = t;
+      }
+
+      // wait for all tasks, even if one of them failed, since segment states
+      // must not be closed while they are still in use
+      InterruptedException interrupted = null;
+      for (FutureTask<Void> task : tasks) {
+        while (true) {
+          try {
+            task.get();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = e;
+          } catch (ExecutionException e) {
+            if (exc == null) {
+              exc = e.getCause();
+            } else {
+              exc.addSuppressed(e.getCause());
+            }
+            break;
           }
         }
       }
+      if (interrupted != null) {
+        throw new ThreadInterruptedException(interrupted);
+      }
+      IOUtils.reThrow(exc);
     }
 
-    return delCount;
+    if (infoStream.isEnabled("BD")) {
+      infoStream.message("BD", String.format(Locale.ROOT,
+                                             "applyDeletes: resolved query deletes and doc values updates of %d segments in %.1f msec (%s)",
+                                             resolutions.size(), (System.nanoTime()-startNS)/1000000., executor == null ? "sequential" : "concurrent"));
+    }
   }
 
-  // used only by assert
-  private boolean checkDeleteTerm(BytesRef term) {
-    if (term != null) {
-      assert lastDeleteTerm == null || term.compareTo(lastDeleteTerm) >= 0: "lastTerm=" + lastDeleteTerm + " vs term=" + term;
+  /** Query deletes and doc values updates that apply to one segment. These
+   *  are resolved to docIDs against a point-in-time reader of the segment,
+   *  possibly by an executor thread concurrently with other segments, and
+   *  without holding IndexWriter's lock. They are then applied under
+   *  IndexWriter's lock and the lock of the segment's ReadersAndUpdates. */
+  private static final class SegmentResolution {
+    final SegmentState segState;
+    final int packetCount;
+    final List<QueryAndLimit> queries = new ArrayList<>();
+    // in the order in which they must be applied so that the newest update wins
+    final List<List<? extends DocValuesUpdate>> dvUpdates = new ArrayList<>();
+    final Bits liveDocs;
+    final DocValuesFieldUpdates.Container dvUpdatesContainer = new DocValuesFieldUpdates.Container();
+    FixedBitSet toDelete;
+    long resolveNS;
+    long delCount;
+
+    // copies the packets that apply so far: the coalesced updates keep growing afterwards
+    SegmentResolution(SegmentState segState, FrozenBufferedUpdates privatePacket, CoalescedUpdates coalescedUpdates) {
+      this.segState = segState;
+      int packetCount = 0;
+      if (privatePacket != null) {
+        packetCount++;
+        for (QueryAndLimit ent : privatePacket.queriesIterable()) {
+          queries.add(ent);
+        }
+        dvUpdates.add(Arrays.asList(privatePacket.numericDVUpdates));
+        dvUpdates.add(Arrays.asList(privatePacket.binaryDVUpdates));
+      }
+      if (coalescedUpdates != null) {
+        packetCount += coalescedUpdates.numericDVUpdates.size();
+        for (QueryAndLimit ent : coalescedUpdates.queriesIterable()) {
+          queries.add(ent);
+        }
+        // we walk backwards through the segments, appending deletion packets to the coalesced updates, so we must apply the packets in reverse
+        // so that newer packets override older ones:
+        for (int idx = coalescedUpdates.numericDVUpdates.size()-1; idx >= 0; idx--) {
+          dvUpdates.add(coalescedUpdates.numericDVUpdates.get(idx));
+        }
+        for (int idx = coalescedUpdates.binaryDVUpdates.size()-1; idx >= 0; idx--) {
+          dvUpdates.add(coalescedUpdates.binaryDVUpdates.get(idx));
+        }
+      }
+      this.packetCount = packetCount;
+      this.liveDocs = segState.liveDocs;
+    }
+
+    /** Resolves query deletes and doc values updates to docIDs; does not need IndexWriter's lock. */
+    void resolve() throws IOException {
+      final long startNS = System.nanoTime();
+      toDelete = resolveQueryDeletes(queries, segState);
+      final Bits acceptDocs;
+      if (toDelete == null) {
+        acceptDocs = liveDocs;
+      } else {
+        // do not update documents that are about to be deleted
+        final FixedBitSet toDelete = this.toDelete;
+        acceptDocs = new Bits() {
+          @Override
+          public boolean get(int index) {
+            return toDelete.get(index) == false && (liveDocs == null || liveDocs.get(index));
+          }
+
+          @Override
+          public int length() {
+            return toDelete.length();
+          }
+        };
+      }
+      for (List<? extends DocValuesUpdate> updates : dvUpdates) {
+        applyDocValuesUpdates(updates, segState, acceptDocs, dvUpdatesContainer);
+      }
+      resolveNS = System.nanoTime() - startNS;
+    }
+
+    /** Applies resolved deletes and doc values updates; must be called under IndexWriter's lock. */
+    long apply() throws IOException {
+      if (toDelete != null) {
+        delCount = segState.delete(toDelete);
+      }
+      if (dvUpdatesContainer.any()) {
+        segState.rld.writeFieldUpdates(segState.rld.info.info.dir, dvUpdatesContainer);
+      }
+      return delCount;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "seg=%s packets=%d queries=%d resolved in %.1f msec, %d new deleted documents, doc values updates=%s",
+                           segState.rld.info.info.name, packetCount, queries.size(), resolveNS/1000000., delCount, dvUpdatesContainer.any());
     }
-    // TODO: we re-use term now in our merged iterable, but we shouldn't clone, instead copy for this assert
-    lastDeleteTerm = term == null ? null : BytesRef.deepCopyOf(term);
-    return true;
   }
 
   // only for assert
@@ -82,6 +82,14 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     checkBounds(docID);
     getFieldsReader().visitDocument(docID, visitor);
   }
+
+  @Override
+  public final void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    for (int docID : docIDs) {
+      checkBounds(docID);
+    }
+    getFieldsReader().visitDocuments(docIDs, visitors);
+  }
   
   @Override
   public final Fields getTermVectors(int docID) throws IOException {
@@ -21,12 +21,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.index.MergePolicy.OneMerge;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.CollectionUtil;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LatencyTracker;
 import org.apache.lucene.util.ThreadInterruptedException;
 
 /** A {@link MergeScheduler} that runs each merge using a
@@ -55,6 +57,10 @@ import org.apache.lucene.util.ThreadInterruptedException;
  *  disk for backwards compatibility.  To enable default
  *  settings for spinning or solid state disks for such
  *  operating systems, use {@link #setDefaultMaxMergesAndThreads(boolean)}.
+ *
+ *  <p>In addition to merge backlog, the IO throttle can watch the
+ *  latencies of searches, or of any other operation, that are recorded into
+ *  a {@link LatencyTracker}, see {@link #setLatencyThrottle}.</p>
  */ 
 
 public class ConcurrentMergeScheduler extends MergeScheduler {
@@ -116,6 +122,40 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
 
   private double forceMergeMBPerSec = Double.POSITIVE_INFINITY;
 
+  /** How often to check latencies when the latency throttle is enabled */
+  private static final long LATENCY_CHECK_INTERVAL_NS = 1000000000L;
+
+  /** How long without any recorded latency before we consider searches idle */
+  private static final long LATENCY_IDLE_NS = 5 * LATENCY_CHECK_INTERVAL_NS;
+
+  /** Floor for the fraction of the IO write rate that merges may use when latencies are too high */
+  private static final double MIN_LATENCY_FACTOR = 1.0 / 64;
+
+  /** Latencies to watch, or null if the latency throttle is disabled */
+  private volatile LatencyTracker latencyTracker;
+
+  /** Percentile of the watched latencies that is compared to {@link #maxLatencyNS} */
+  private double latencyPercentile;
+
+  /** Backoff when the {@link #latencyPercentile} of latencies goes above this */
+  private long maxLatencyNS;
+
+  /** Fraction of {@link #targetMBPerSec} that merges may currently use given the watched latencies */
+  private double latencyFactor = 1.0;
+
+  /** True if no latency was recorded recently, in which case merges run at full speed */
+  private boolean latencyIdle;
+
+  /** Outcome of the last latency check, see {@link #getLatencyThrottleDecision} */
+  private String latencyDecision;
+
+  private long lastLatencyCount;
+  private long lastLatencyCountChangeNS;
+  private volatile long nextLatencyCheckNS;
+
+  /** Executor used to merge the formats of each merge concurrently, or null */
+  private Executor intraMergeExecutor;
+
   /** Sole constructor, with all settings set to default
    *  values. */
   public ConcurrentMergeScheduler() {
@@ -220,15 +260,170 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
   }
 
   /** Returns the currently set per-merge IO writes rate limit, if {@link #enableAutoIOThrottle}
-   *  was called, else {@code Double.POSITIVE_INFINITY}. */
+   *  was called, else {@code Double.POSITIVE_INFINITY}. This takes the latency
+   *  throttle into account if it is enabled. */
   public synchronized double getIORateLimitMBPerSec() {
     if (doAutoIOThrottle) {
-      return targetMBPerSec;
+      return getAutoIORateMBPerSec();
     } else {
       return Double.POSITIVE_INFINITY;
     }
   }
 
+  /**
+   * Also throttle merges based on latencies, typically of searches, that
+   * the application records into the given {@link LatencyTracker}. About
+   * once per second while merges are running, the given percentile of the
+   * latencies that were recorded since the last check is compared to
+   * {@code maxLatencyMS}: the IO write rate of background merges is halved
+   * when latencies are above this threshold, and progressively restored to
+   * the rate that {@link #enableAutoIOThrottle auto IO throttling} computes
+   * when they are back under it. If no latency has been recorded for a few
+   * seconds, searches are considered idle and background merges are not
+   * rate limited, so that they can catch up.
+   * <p>
+   * This only applies when auto IO throttling is enabled, and does not
+   * apply to forced merges, whose rate is set by
+   * {@link #setForceMergeMBPerSec}. Pass a null tracker to disable the
+   * latency throttle, which is the default.
+   *
+   * @param tracker the latencies to watch, or null
+   * @param percentile the percentile of latencies to watch, eg. 99
+   * @param maxLatencyMS the latency above which merges should back off
+   */
+  public synchronized void setLatencyThrottle(LatencyTracker tracker, double percentile, long maxLatencyMS) {
+    if (tracker != null) {
+      if (percentile <= 0 || percentile > 100) {
+        throw new IllegalArgumentException("percentile must be in (0, 100], got " + percentile);
+      }
+      if (maxLatencyMS <= 0) {
+        throw new IllegalArgumentException("maxLatencyMS must be > 0, got " + maxLatencyMS);
+      }
+      latencyPercentile = percentile;
+      maxLatencyNS = maxLatencyMS * 1000000L;
+      lastLatencyCount = tracker.getCount();
+      lastLatencyCountChangeNS = nextLatencyCheckNS = System.nanoTime();
+    }
+    latencyTracker = tracker;
+    latencyFactor = 1.0;
+    latencyIdle = false;
+    latencyDecision = tracker == null ? "disabled" : "none";
+    updateMergeThreads();
+  }
+
+  /** Returns the fraction of the auto IO throttle rate that background
+   *  merges may currently use given the latencies watched by the latency
+   *  throttle: 1 if the latency throttle is disabled or if latencies are
+   *  under the threshold, {@code Double.POSITIVE_INFINITY} if searches are
+   *  idle.
+   *
+   *  @see #setLatencyThrottle */
+  public synchronized double getLatencyThrottleFactor() {
+    if (latencyTracker == null) {
+      return 1.0;
+    } else if (latencyIdle) {
+      return Double.POSITIVE_INFINITY;
+    } else {
+      return latencyFactor;
+    }
+  }
+
+  /** Returns the outcome of the last check of the latency throttle: {@code
+   *  "above"}, {@code "near"} or {@code "below"} the max latency, {@code
+   *  "idle"} if no latency was recorded recently, {@code "none"} if no check
+   *  ran yet, or {@code "disabled"}.
+   *
+   *  @see #setLatencyThrottle */
+  public synchronized String getLatencyThrottleDecision() {
+    return latencyTracker == null ? "disabled" : latencyDecision;
+  }
+
+  /** Returns the rate of big background merges when auto IO throttling is enabled. */
+  private double getAutoIORateMBPerSec() {
+    assert Thread.holdsLock(this);
+    if (latencyTracker == null) {
+      return targetMBPerSec;
+    } else if (latencyIdle) {
+      return Double.POSITIVE_INFINITY;
+    } else {
+      return Math.max(MIN_MERGE_MB_PER_SEC, targetMBPerSec * latencyFactor);
+    }
+  }
+
+  /** Called by merges as they write bytes; checks latencies at most once per
+   *  {@link #LATENCY_CHECK_INTERVAL_NS} and updates merge rates accordingly. */
+  private void maybeUpdateLatencyThrottle() {
+    if (latencyTracker != null) {
+      final long now = System.nanoTime();
+      // only take the lock when a check is due: this is called on every pause
+      if (now - nextLatencyCheckNS >= 0) {
+        updateLatencyThrottle(now);
+      }
+    }
+  }
+
+  // package-private for testing
+  synchronized void updateLatencyThrottle(long now) {
+    final LatencyTracker tracker = latencyTracker;
+    if (tracker == null || now - nextLatencyCheckNS < 0) {
+      return;
+    }
+    nextLatencyCheckNS = now + LATENCY_CHECK_INTERVAL_NS;
+
+    final double prevRate = getAutoIORateMBPerSec();
+    final long count = tracker.getCount();
+    if (count != lastLatencyCount) {
+      final int numLatencies = (int) Math.min(Integer.MAX_VALUE, count - lastLatencyCount);
+      final long latencyNS = tracker.getPercentile(latencyPercentile, numLatencies);
+      lastLatencyCount = count;
+      lastLatencyCountChangeNS = now;
+      latencyIdle = false;
+      final String decision;
+      if (latencyNS > maxLatencyNS) {
+        latencyFactor = Math.max(MIN_LATENCY_FACTOR, latencyFactor / 2);
+        decision = "above";
+      } else if (latencyNS < maxLatencyNS * 0.8) {
+        latencyFactor = Math.min(1.0, latencyFactor * 1.25);
+        decision = "below";
+      } else {
+        decision = "near";
+      }
+      latencyDecision = decision;
+      if (verbose()) {
+        message(String.format(Locale.ROOT, "latency throttle: p%.1f=%.1f msec over %d operations is %s max %.1f msec; latency factor=%.3f",
+                              latencyPercentile, latencyNS / 1000000.0, numLatencies, decision, maxLatencyNS / 1000000.0, latencyFactor));
+      }
+    } else if (latencyIdle == false && now - lastLatencyCountChangeNS >= LATENCY_IDLE_NS) {
+      latencyIdle = true;
+      latencyFactor = 1.0;
+      latencyDecision = "idle";
+      if (verbose()) {
+        message(String.format(Locale.ROOT, "latency throttle: no operations in the last %.1f sec; unthrottle merges to catch up",
+                              nsToSec(now - lastLatencyCountChangeNS)));
+      }
+    }
+
+    if (getAutoIORateMBPerSec() != prevRate) {
+      updateMergeThreads();
+      targetMBPerSecChanged();
+    }
+  }
+
+  /** Set the executor that is used to merge the stored fields, term vectors,
+   *  norms, postings, doc values and points of each merge concurrently, or
+   *  null (the default) to merge them one after another in the merge thread.
+   *  This executor is shared by all running merges, so its number of threads
+   *  bounds the extra concurrency across merges. The caller is responsible
+   *  for shutting it down after the {@link IndexWriter} is closed. */
+  public synchronized void setIntraMergeExecutor(Executor executor) {
+    this.intraMergeExecutor = executor;
+  }
+
+  @Override
+  public synchronized Executor getIntraMergeExecutor(OneMerge merge) {
+    return intraMergeExecutor;
+  }
+
   /** Returns {@code maxThreadCount}.
    *
    * @see #setMaxMergesAndThreads(int, int) */
@@ -301,6 +496,9 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     if (verbose()) {
       message = new StringBuilder();
       message.append(String.format(Locale.ROOT, "updateMergeThreads ioThrottle=%s targetMBPerSec=%.1f MB/sec", doAutoIOThrottle, targetMBPerSec));
+      if (latencyTracker != null) {
+        message.append(String.format(Locale.ROOT, " latencyThrottle=%s", latencyIdle ? "idle" : String.format(Locale.ROOT, "%.3f", latencyFactor)));
+      }
     } else {
       message = null;
     }
@@ -324,7 +522,7 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         // Don't rate limit small merges:
         newMBPerSec = Double.POSITIVE_INFINITY;
       } else {
-        newMBPerSec = targetMBPerSec;
+        newMBPerSec = getAutoIORateMBPerSec();
       }
 
       double curMBPerSec = merge.rateLimiter.getMBPerSec();
@@ -339,7 +537,7 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         message.append(String.format(Locale.ROOT, "merge thread %s estSize=%.1f MB (written=%.1f MB) runTime=%.1fs (stopped=%.1fs, paused=%.1fs) rate=%s\n",
                                      mergeThread.getName(),
                                      bytesToMB(merge.estimatedMergeBytes),
-                                     bytesToMB(merge.rateLimiter.totalBytesWritten),
+                                     bytesToMB(merge.rateLimiter.getTotalBytesWritten()),
                                      nsToSec(now - mergeStartNS),
                                      nsToSec(merge.rateLimiter.getTotalStoppedNS()),
                                      nsToSec(merge.rateLimiter.getTotalPausedNS()),
@@ -509,6 +707,7 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         // merge:
         final MergeThread merger = getMergeThread(writer, merge);
         mergeThreads.add(merger);
+        merge.rateLimiter.pauseListener = this::maybeUpdateLatencyThrottle;
 
         if (verbose()) {
           message("    launch new thread [" + merger.getName() + "]");
@@ -691,7 +890,8 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     StringBuilder sb = new StringBuilder(getClass().getSimpleName() + ": ");
     sb.append("maxThreadCount=").append(maxThreadCount).append(", ");    
     sb.append("maxMergeCount=").append(maxMergeCount).append(", ");    
-    sb.append("ioThrottle=").append(doAutoIOThrottle);
+    sb.append("ioThrottle=").append(doAutoIOThrottle).append(", ");
+    sb.append("intraMergeExecutor=").append(intraMergeExecutor);
     return sb.toString();
   }
 
@@ -792,7 +992,7 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     if (newMerge.maxNumSegments != -1) {
       rate = forceMergeMBPerSec;
     } else {
-      rate = targetMBPerSec;
+      rate = getAutoIORateMBPerSec();
     }
     newMerge.rateLimiter.setMBPerSec(rate);
     targetMBPerSecChanged();
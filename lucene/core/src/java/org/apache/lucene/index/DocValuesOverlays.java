@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.util.Arrays;
+
+/**
+ * Describes the sparse overlays of an updated doc values field: the
+ * generation that holds the values of the field as of its last full write,
+ * called the base generation, and the generations, from oldest to newest,
+ * that only hold the values of the documents that were updated since then.
+ * The values of a document are those of the newest generation that has a
+ * value for it. The newest overlay is also the
+ * {@link FieldInfo#getDocValuesGen() doc values generation} of the field.
+ * <p>
+ * This information is stored as an attribute of the {@link FieldInfo},
+ * which is written with the field infos of each update.
+ *
+ * @see IndexWriterConfig#setMaxDocValuesOverlayRatio(double)
+ */
+final class DocValuesOverlays {
+
+  /** {@link FieldInfo} attribute that stores the overlays of a field. */
+  static final String OVERLAYS_KEY = DocValuesOverlays.class.getSimpleName() + ".overlays";
+
+  private static final long[] EMPTY_LONGS = new long[0];
+  private static final int[] EMPTY_INTS = new int[0];
+
+  /** Generation that holds the full values of the field. */
+  final long baseGen;
+  /** Generations of the overlays, from oldest to newest. */
+  final long[] gens;
+  /** Number of documents in each overlay. */
+  final int[] numDocs;
+
+  private DocValuesOverlays(long baseGen, long[] gens, int[] numDocs) {
+    assert gens.length == numDocs.length;
+    this.baseGen = baseGen;
+    this.gens = gens;
+    this.numDocs = numDocs;
+  }
+
+  /** Create an empty stack of overlays on top of the given generation. */
+  static DocValuesOverlays empty(long baseGen) {
+    return new DocValuesOverlays(baseGen, EMPTY_LONGS, EMPTY_INTS);
+  }
+
+  /** Return the overlays of the given field, or null if it has none. */
+  static DocValuesOverlays get(FieldInfo fi) {
+    final String value = fi.getAttribute(OVERLAYS_KEY);
+    if (value == null) {
+      return null;
+    }
+    try {
+      final int sep = value.indexOf(';');
+      final long baseGen = Long.parseLong(value.substring(0, sep));
+      final String[] overlays = value.substring(sep + 1).split(",");
+      final long[] gens = new long[overlays.length];
+      final int[] numDocs = new int[overlays.length];
+      for (int i = 0; i < overlays.length; ++i) {
+        final int colon = overlays[i].indexOf(':');
+        gens[i] = Long.parseLong(overlays[i].substring(0, colon));
+        numDocs[i] = Integer.parseInt(overlays[i].substring(colon + 1));
+      }
+      if (gens[gens.length - 1] != fi.getDocValuesGen()) {
+        throw new IllegalStateException("newest overlay of field \"" + fi.name + "\" is generation " + gens[gens.length - 1]
+            + " but its doc values generation is " + fi.getDocValuesGen());
+      }
+      return new DocValuesOverlays(baseGen, gens, numDocs);
+    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalStateException("invalid attribute " + OVERLAYS_KEY + "=" + value + " for field \"" + fi.name + "\"", e);
+    }
+  }
+
+  /** Remove the overlays of the given field, which is rewritten in full. */
+  static void clear(FieldInfo fi) {
+    fi.attributes().remove(OVERLAYS_KEY);
+  }
+
+  /** Record these overlays on the given field. */
+  void set(FieldInfo fi) {
+    assert gens.length > 0;
+    assert gens[gens.length - 1] == fi.getDocValuesGen();
+    final StringBuilder sb = new StringBuilder();
+    sb.append(baseGen).append(';');
+    for (int i = 0; i < gens.length; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(gens[i]).append(':').append(numDocs[i]);
+    }
+    fi.putAttribute(OVERLAYS_KEY, sb.toString());
+  }
+
+  /** Return a copy of these overlays with a new overlay on top. */
+  DocValuesOverlays push(long gen, int numDocs) {
+    final long[] newGens = Arrays.copyOf(gens, gens.length + 1);
+    newGens[gens.length] = gen;
+    final int[] newNumDocs = Arrays.copyOf(this.numDocs, this.numDocs.length + 1);
+    newNumDocs[this.numDocs.length] = numDocs;
+    return new DocValuesOverlays(baseGen, newGens, newNumDocs);
+  }
+
+  /** Return the number of overlays. */
+  int size() {
+    return gens.length;
+  }
+
+  /** Return the total number of documents in the overlays, counting documents that were updated several times once per overlay. */
+  long totalNumDocs() {
+    long total = 0;
+    for (int n : numDocs) {
+      total += n;
+    }
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    return "DocValuesOverlays(baseGen=" + baseGen + " gens=" + Arrays.toString(gens) + " numDocs=" + Arrays.toString(numDocs) + ")";
+  }
+}
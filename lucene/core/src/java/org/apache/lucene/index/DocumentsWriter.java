@@ -34,6 +34,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BlockRecycler;
 import org.apache.lucene.util.InfoStream;
 
 /**
@@ -118,6 +119,8 @@ final class DocumentsWriter implements Closeable, Accountable {
   private volatile boolean pendingChangesInCurrentFullFlush;
 
   final DocumentsWriterPerThreadPool perThreadPool;
+  /** Indexing buffers of flushed DWPTs that new DWPTs reuse, or null if buffers are not recycled. */
+  final BlockRecycler blockRecycler;
   final FlushPolicy flushPolicy;
   final DocumentsWriterFlushControl flushControl;
   private final IndexWriter writer;
@@ -130,6 +133,8 @@ final class DocumentsWriter implements Closeable, Accountable {
     this.config = config;
     this.infoStream = config.getInfoStream();
     this.perThreadPool = config.getIndexerThreadPool();
+    final double maxRecycledBufferMB = config.getMaxRecycledBufferMB();
+    this.blockRecycler = maxRecycledBufferMB > 0 ? new BlockRecycler((long) (maxRecycledBufferMB * 1024 * 1024)) : null;
     flushPolicy = config.getFlushPolicy();
     this.writer = writer;
     this.events = new ConcurrentLinkedQueue<>();
@@ -409,7 +414,7 @@ final class DocumentsWriter implements Closeable, Accountable {
       final FieldInfos.Builder infos = new FieldInfos.Builder(writer.globalFieldNumberMap);
       state.dwpt = new DocumentsWriterPerThread(writer, writer.newSegmentName(), directoryOrig,
                                                 directory, config, infoStream, deleteQueue, infos,
-                                                writer.pendingNumDocs, writer.enableTestPoints);
+                                                writer.pendingNumDocs, blockRecycler, writer.enableTestPoints);
     }
   }
 
@@ -573,6 +578,8 @@ final class DocumentsWriter implements Closeable, Accountable {
           break;
         }
       } finally {
+        // the segment is written or the DWPT aborted, its buffers may be reused
+        flushingDWPT.releaseBuffers();
         flushControl.doAfterFlush(flushingDWPT);
       }
      
@@ -34,6 +34,7 @@ import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.TrackingDirectoryWrapper;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BlockRecycler;
 import org.apache.lucene.util.ByteBlockPool.Allocator;
 import org.apache.lucene.util.ByteBlockPool.DirectTrackingAllocator;
 import org.apache.lucene.util.Counter;
@@ -125,6 +126,7 @@ class DocumentsWriterPerThread {
       }
 
       pendingUpdates.clear();
+      releaseBuffers();
     } finally {
       if (infoStream.isEnabled("DWPT")) {
         infoStream.message("DWPT", "done abort");
@@ -153,13 +155,15 @@ class DocumentsWriterPerThread {
   private final NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
   final Allocator byteBlockAllocator;
   final IntBlockPool.Allocator intBlockAllocator;
+  private final BlockRecycler.ByteBlockAllocator recyclingByteBlockAllocator;
+  private final BlockRecycler.IntBlockAllocator recyclingIntBlockAllocator;
   private final AtomicLong pendingNumDocs;
   private final LiveIndexWriterConfig indexWriterConfig;
   private final boolean enableTestPoints;
   private final IndexWriter indexWriter;
   
   public DocumentsWriterPerThread(IndexWriter writer, String segmentName, Directory directoryOrig, Directory directory, LiveIndexWriterConfig indexWriterConfig, InfoStream infoStream, DocumentsWriterDeleteQueue deleteQueue,
-                                  FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs, boolean enableTestPoints) throws IOException {
+                                  FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs, BlockRecycler blockRecycler, boolean enableTestPoints) throws IOException {
     this.indexWriter = writer;
     this.directoryOrig = directoryOrig;
     this.directory = new TrackingDirectoryWrapper(directory);
@@ -171,9 +175,16 @@ class DocumentsWriterPerThread {
     this.docState.similarity = indexWriterConfig.getSimilarity();
     this.pendingNumDocs = pendingNumDocs;
     bytesUsed = Counter.newCounter();
-    byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+    if (blockRecycler != null) {
+      byteBlockAllocator = recyclingByteBlockAllocator = blockRecycler.newByteBlockAllocator(bytesUsed);
+      intBlockAllocator = recyclingIntBlockAllocator = blockRecycler.newIntBlockAllocator(bytesUsed);
+    } else {
+      byteBlockAllocator = new DirectTrackingAllocator(bytesUsed);
+      intBlockAllocator = new IntBlockAllocator(bytesUsed);
+      recyclingByteBlockAllocator = null;
+      recyclingIntBlockAllocator = null;
+    }
     pendingUpdates = new BufferedUpdates(segmentName);
-    intBlockAllocator = new IntBlockAllocator(bytesUsed);
     this.deleteQueue = deleteQueue;
     assert numDocsInRAM == 0 : "num docs " + numDocsInRAM;
     deleteSlice = deleteQueue.newSlice();
@@ -189,6 +200,10 @@ class DocumentsWriterPerThread {
     this.enableTestPoints = enableTestPoints;
   }
   
+  LiveIndexWriterConfig getIndexWriterConfig() {
+    return indexWriterConfig;
+  }
+
   public FieldInfos.Builder getFieldInfosBuilder() {
     return fieldInfos;
   }
@@ -592,6 +607,15 @@ class DocumentsWriterPerThread {
     return bytesUsed.get() + pendingUpdates.bytesUsed.get();
   }
 
+  /** Hands the byte and int blocks of this DWPT over to the {@link BlockRecycler}
+   *  if there is one. Must only be called once this DWPT flushed or aborted. */
+  void releaseBuffers() {
+    if (recyclingByteBlockAllocator != null) {
+      recyclingByteBlockAllocator.release();
+      recyclingIntBlockAllocator.release();
+    }
+  }
+
   /* Initial chunks size of the shared byte[] blocks used to
      store postings data */
   final static int BYTE_BLOCK_NOT_MASK = ~BYTE_BLOCK_MASK;
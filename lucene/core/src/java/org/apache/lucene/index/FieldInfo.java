@@ -310,7 +310,7 @@ public final class FieldInfo {
   /**
    * Get a codec attribute value, or null if it does not exist
    */
-  public String getAttribute(String key) {
+  public synchronized String getAttribute(String key) {
     return attributes.get(key);
   }
   
@@ -324,7 +324,7 @@ public final class FieldInfo {
    * If a value already exists for the field, it will be replaced with 
    * the new value.
    */
-  public String putAttribute(String key, String value) {
+  public synchronized String putAttribute(String key, String value) {
     return attributes.put(key, value);
   }
   
@@ -61,4 +61,9 @@ public abstract class FilterNumericDocValues extends NumericDocValues {
   public long longValue() throws IOException {
     return in.longValue();
   }
+
+  @Override
+  public void prefetch(int[] docIDs) throws IOException {
+    in.prefetch(docIDs);
+  }
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * Information about the maximum term frequency that documents may have in
+ * upcoming ranges of doc IDs for a given term. Scorers use this information
+ * in order to compute upper bounds of the scores that documents may have, and
+ * skip over ranges of documents that cannot be competitive.
+ * <p>
+ * Information is exposed as a list of levels. Level {@code 0} describes the
+ * smallest range of doc IDs that contains the last target that has been
+ * passed to {@link #advanceShallow(int)}, and each following level describes
+ * a wider range. The last level always describes all documents up to
+ * {@link DocIdSetIterator#NO_MORE_DOCS}.
+ *
+ * @see TermsEnum#impacts()
+ * @lucene.experimental
+ */
+public abstract class Impacts {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected Impacts() {
+  }
+
+  /**
+   * Shallow-advance to {@code target}, so that following calls to
+   * {@link #getDocIdUpTo(int)} and {@link #getMaxFreq(int)} describe ranges
+   * of doc IDs that start at {@code target}. This is typically cheaper than
+   * advancing a {@link PostingsEnum} since it only reads skip data. Targets
+   * must be passed in non-decreasing order.
+   */
+  public abstract void advanceShallow(int target) throws IOException;
+
+  /**
+   * Return the number of levels on which information is available. This is
+   * always greater than or equal to {@code 1}.
+   */
+  public abstract int numLevels();
+
+  /**
+   * Return the maximum inclusive doc ID until which the information of the
+   * given level is valid. Levels are sorted by increasing doc ID, and the last
+   * level always returns {@link DocIdSetIterator#NO_MORE_DOCS}.
+   */
+  public abstract int getDocIdUpTo(int level);
+
+  /**
+   * Return an upper bound of the term frequency of documents between the last
+   * target that has been passed to {@link #advanceShallow(int)} and
+   * {@link #getDocIdUpTo(int) getDocIdUpTo(level)} included.
+   */
+  public abstract int getMaxFreq(int level);
+
+  /**
+   * Return an {@link Impacts} instance that only has a single level, which
+   * reports {@code maxFreq} as an upper bound of the term frequency across
+   * all documents.
+   */
+  public static Impacts singleLevel(final int maxFreq) {
+    if (maxFreq < 1) {
+      throw new IllegalArgumentException("maxFreq must be at least 1, got " + maxFreq);
+    }
+    return new Impacts() {
+
+      @Override
+      public void advanceShallow(int target) {}
+
+      @Override
+      public int numLevels() {
+        return 1;
+      }
+
+      @Override
+      public int getDocIdUpTo(int level) {
+        return DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public int getMaxFreq(int level) {
+        return maxFreq;
+      }
+
+    };
+  }
+
+  /**
+   * Compute an upper bound of the term frequency of any document from term
+   * statistics. Since every document that contains a term contains it at
+   * least once, no document may have a frequency that is greater than
+   * {@code totalTermFreq - docFreq + 1}. A {@code totalTermFreq} of
+   * {@code -1} means that the information is not available, in which case
+   * {@link Integer#MAX_VALUE} is returned.
+   */
+  public static int maxFreq(int docFreq, long totalTermFreq) {
+    if (totalTermFreq == -1) {
+      return Integer.MAX_VALUE;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, totalTermFreq - docFreq + 1));
+  }
+
+}
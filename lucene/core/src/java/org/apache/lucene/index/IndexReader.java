@@ -340,6 +340,24 @@ public abstract class IndexReader implements Closeable {
    *  #document(int)}.  If you want to load a subset, use
    *  {@link DocumentStoredFieldVisitor}.  */
   public abstract void document(int docID, StoredFieldVisitor visitor) throws IOException;
+
+  /**
+   * Expert: visits the fields of several stored documents: {@code visitors[i]}
+   * visits the fields of document {@code docIDs[i]}. Doc IDs must be sorted in
+   * non-decreasing order, which allows implementations to read documents that
+   * are stored next to each other at once, e.g. when fetching the top hits of
+   * a query. The default implementation calls
+   * {@link #document(int, StoredFieldVisitor)} for each document.
+   * @lucene.experimental
+   */
+  public void document(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("got " + docIDs.length + " doc IDs but " + visitors.length + " visitors");
+    }
+    for (int i = 0; i < docIDs.length; ++i) {
+      document(docIDs[i], visitors[i]);
+    }
+  }
   
   /**
    * Returns the stored fields of the <code>n</code><sup>th</sup>
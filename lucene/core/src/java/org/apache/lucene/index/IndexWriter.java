@@ -33,8 +33,13 @@ import java.util.Map.Entry;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -320,6 +325,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
   private boolean stopMerges;
   private boolean didMessageState;
 
+  // Deletes by query that are resolved in the background and
+  // are running or waiting to run
+  private final Set<BackgroundQueryDelete> backgroundDeletes = new HashSet<>();
+  private Throwable backgroundDeleteException;
+
   final AtomicInteger flushCount = new AtomicInteger();
   final AtomicInteger flushDeletesCount = new AtomicInteger();
 
@@ -460,11 +470,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
             // if we flushed anything.
             flushCount.incrementAndGet();
           }
+          anyChanges |= maybeApplyDeletes(applyAllDeletes);
           // Prevent segmentInfos from changing while opening the
           // reader; in theory we could instead do similar retry logic,
           // just like we do when loading segments_N
           synchronized(this) {
-            anyChanges |= maybeApplyDeletes(applyAllDeletes);
             if (writeAllDeletes) {
               // Must move the deletes to disk:
               readerPool.commit(segmentInfos);
@@ -533,6 +543,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       return true;
     }
 
+    /** Returns true if the given segment is still part of the index. */
+    public synchronized boolean isLive(SegmentCommitInfo info) {
+      return segmentInfos.indexOf(info) != -1;
+    }
+
     public synchronized void drop(SegmentCommitInfo info) throws IOException {
       final ReadersAndUpdates rld = readerMap.get(info);
       if (rld != null) {
@@ -817,7 +832,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       mergeScheduler.setInfoStream(infoStream);
       codec = config.getCodec();
 
-      bufferedUpdatesStream = new BufferedUpdatesStream(infoStream);
+      bufferedUpdatesStream = new BufferedUpdatesStream(infoStream, config.getApplyDeletesExecutor());
       poolReaders = config.getReaderPooling();
 
       OpenMode mode = config.getOpenMode();
@@ -1454,7 +1469,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     if (segmentInfos.indexOf(info) != -1) {
       ReadersAndUpdates rld = readerPool.get(info, false);
       if (rld != null) {
-        synchronized(bufferedUpdatesStream) {
+        synchronized(rld) {
           rld.initWritableLiveDocs();
           if (rld.delete(docID)) {
             final int fullDelCount = rld.info.getDelCount() + rld.getPendingDeleteCount();
@@ -1555,6 +1570,300 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
 
+  /**
+   * Deletes the document(s) matching the provided query, like {@link
+   * #deleteDocuments(Query...)}, but resolves the query in the background
+   * instead of buffering it until the next flush. This first flushes all
+   * buffered documents and deletes, then the given executor runs the query
+   * against a point-in-time view of the segments, one segment at a time,
+   * and applies matches to the live docs of each segment in batches of
+   * bounded size. This is useful for queries that match many documents,
+   * which would otherwise be resolved all at once while a flush or a
+   * near-real-time reopen waits.
+   *
+   * <p>The delete is ordered like any other operation by the returned
+   * sequence number: it deletes matching documents that were added
+   * before this call, but never documents that are added or updated
+   * after it returns, even before the background resolution is done.
+   *
+   * <p>Near-real-time readers that are opened while the delete is being
+   * resolved may see some of its deletions but not others. Commits,
+   * including the one of {@link #close}, wait for all background deletes
+   * to be resolved, and throw the exception that a background delete hit,
+   * if any. Merges of segments that a background delete has not resolved
+   * yet wait for it before they complete, so the executor must eventually
+   * run the delete: if it rejects it, the delete is resolved in the
+   * calling thread.
+   *
+   * @return The <a href="#sequence_number">sequence number</a>
+   * for this operation
+   *
+   * @param executor the executor that resolves the query
+   * @param query the query to identify the documents to be deleted
+   * @throws CorruptIndexException if the index is corrupt
+   * @throws IOException if there is a low-level IO error
+   */
+  public long deleteDocumentsInBackground(Executor executor, Query query) throws IOException {
+    ensureOpen();
+    if (executor == null) {
+      throw new NullPointerException("executor must not be null");
+    }
+    if (query == null) {
+      throw new NullPointerException("query must not be null");
+    }
+
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "flush at deleteDocumentsInBackground");
+    }
+    doBeforeFlush();
+    BackgroundQueryDelete delete = null;
+    boolean anyChanges = false;
+    long seqNo;
+    try {
+      synchronized (fullFlushLock) {
+        boolean success = false;
+        try {
+          seqNo = docWriter.flushAllThreads();
+          if (seqNo < 0) {
+            anyChanges = true;
+            seqNo = -seqNo;
+          } else {
+            // prevent double increment since docWriter#doFlush increments the flushcount
+            // if we flushed anything.
+            flushCount.incrementAndGet();
+          }
+          // The full flush prevents segments with documents that are
+          // added after this point from being published until the
+          // readers of the delete are opened:
+          anyChanges |= maybeApplyDeletes(true);
+          delete = newBackgroundDelete(query, seqNo);
+          success = true;
+        } finally {
+          docWriter.finishFullFlush(this, success);
+          if (success) {
+            processEvents(false, true);
+            doAfterFlush();
+          } else if (infoStream.isEnabled("IW")) {
+            infoStream.message("IW", "hit exception during deleteDocumentsInBackground");
+          }
+        }
+      }
+    } catch (AbortingException | VirtualMachineError tragedy) {
+      tragicEvent(tragedy, "deleteDocumentsInBackground");
+      // dead code but javac disagrees:
+      return -1;
+    }
+
+    // Submit before merging since merges of the segments of this delete
+    // wait for it, possibly in this thread with a serial merge scheduler:
+    try {
+      executor.execute(delete);
+    } catch (RejectedExecutionException e) {
+      delete.run();
+    }
+    if (anyChanges) {
+      maybeMerge(config.getMergePolicy(), MergeTrigger.FULL_FLUSH, UNBOUNDED_MAX_MERGE_SEGMENTS);
+    }
+    return seqNo;
+  }
+
+  /** Opens point-in-time readers of the current segments for a new background delete and registers it. */
+  private synchronized BackgroundQueryDelete newBackgroundDelete(Query query, long seqNo) throws IOException {
+    final List<SegmentReader> readers = new ArrayList<>();
+    boolean success = false;
+    try {
+      for (SegmentCommitInfo info : segmentInfos) {
+        final ReadersAndUpdates rld = readerPool.get(info, true);
+        try {
+          readers.add(rld.getReadOnlyClone(IOContext.READ));
+        } finally {
+          readerPool.release(rld);
+        }
+      }
+      final BackgroundQueryDelete delete = new BackgroundQueryDelete(this, query, seqNo, readers);
+      backgroundDeletes.add(delete);
+      success = true;
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "register " + delete + " for segments " + segString());
+      }
+      return delete;
+    } finally {
+      if (success == false) {
+        for (SegmentReader reader : readers) {
+          try {
+            reader.decRef();
+          } catch (Throwable t) {
+            // ignore, we are already throwing an exception
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns false if the given background delete was aborted before it started. */
+  synchronized boolean startBackgroundDelete(BackgroundQueryDelete delete) {
+    if (delete.aborted) {
+      return false;
+    }
+    delete.started = true;
+    return true;
+  }
+
+  /** Returns the {@link ReadersAndUpdates} that a background delete
+   *  applies deletions of the given segment to, or null if the segment
+   *  is no longer live or if the delete was aborted. The caller must then
+   *  call {@link #releaseForBackgroundDelete}. */
+  synchronized ReadersAndUpdates acquireForBackgroundDelete(BackgroundQueryDelete delete, SegmentCommitInfo info) {
+    if (delete.aborted || segmentInfos.indexOf(info) == -1) {
+      return null;
+    }
+    return readerPool.get(info, true);
+  }
+
+  /** Deletes the first {@code count} documents of {@code docs} from the
+   *  segment of {@code rld} and returns the number of documents that were
+   *  not deleted yet, or -1 if the segment is no longer live or if the
+   *  delete was aborted. */
+  synchronized int applyBackgroundDeletes(BackgroundQueryDelete delete, ReadersAndUpdates rld, int[] docs, int count) throws IOException {
+    if (delete.aborted || segmentInfos.indexOf(rld.info) == -1) {
+      return -1;
+    }
+    int delCount = 0;
+    synchronized(rld) {
+      rld.initWritableLiveDocs();
+      for (int i = 0; i < count; ++i) {
+        if (rld.delete(docs[i])) {
+          delCount++;
+        }
+      }
+    }
+    if (delCount > 0) {
+      // Must bump changeCount so if no other changes
+      // happened, we still commit this change:
+      changed();
+    }
+    return delCount;
+  }
+
+  /** Marks the given segment as resolved by a background delete and
+   *  releases the {@link ReadersAndUpdates} that was acquired for it, if
+   *  any. */
+  synchronized void releaseForBackgroundDelete(BackgroundQueryDelete delete, SegmentCommitInfo info, ReadersAndUpdates rld) throws IOException {
+    try {
+      if (rld != null) {
+        if (segmentInfos.indexOf(info) == -1) {
+          // The segment is no longer live: only release our reference
+          rld.decRef();
+        } else {
+          final boolean allDeleted = rld.info.getDelCount() + rld.getPendingDeleteCount() == info.info.maxDoc();
+          readerPool.release(rld);
+          // If a merge has already registered for this
+          // segment, we leave it in the readerPool; the
+          // merge will skip merging it and will then drop
+          // it once it's done:
+          if (allDeleted && keepFullyDeletedSegments == false && mergingSegments.contains(info) == false) {
+            if (infoStream.isEnabled("IW")) {
+              infoStream.message("IW", "drop 100% deleted segment " + segString(info));
+            }
+            segmentInfos.remove(info);
+            pendingNumDocs.addAndGet(-info.info.maxDoc());
+            readerPool.drop(info);
+            checkpoint();
+          }
+        }
+      }
+    } finally {
+      delete.pendingSegments.remove(info);
+      notifyAll();
+    }
+  }
+
+  /** Unregisters a background delete that is done, successfully or not. */
+  synchronized void finishBackgroundDelete(BackgroundQueryDelete delete, long delCount, Throwable exc) {
+    try {
+      delete.decRefReaders();
+    } catch (Throwable t) {
+      if (exc == null) {
+        exc = t;
+      } else {
+        exc.addSuppressed(t);
+      }
+    }
+    delete.pendingSegments.clear();
+    backgroundDeletes.remove(delete);
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "finished " + delete + ": " + delCount + " deleted docs" + (delete.aborted ? "; aborted" : "") + (exc == null ? "" : "; exc=" + exc));
+    }
+    if (exc != null && delete.aborted == false) {
+      if (backgroundDeleteException == null) {
+        backgroundDeleteException = exc;
+      } else {
+        backgroundDeleteException.addSuppressed(exc);
+      }
+    }
+    notifyAll();
+  }
+
+  /** Returns true if any background delete has not resolved one of the given segments yet. */
+  private synchronized boolean hasPendingBackgroundDeletes(List<SegmentCommitInfo> segments) {
+    for (BackgroundQueryDelete delete : backgroundDeletes) {
+      for (SegmentCommitInfo info : segments) {
+        if (delete.pendingSegments.contains(info)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Waits for all background deletes to be resolved and throws the
+   *  first exception that one of them hit, if any. */
+  private synchronized void waitForBackgroundDeletes() throws IOException {
+    while (backgroundDeletes.isEmpty() == false) {
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "now wait for " + backgroundDeletes.size() + " background delete/s");
+      }
+      doWait();
+    }
+    if (backgroundDeleteException != null) {
+      final Throwable exc = backgroundDeleteException;
+      backgroundDeleteException = null;
+      IOUtils.reThrow(exc);
+    }
+  }
+
+  /** Aborts background deletes and waits for running ones to stop.
+   *  Deletions that they already applied are kept. */
+  private synchronized void abortBackgroundDeletes() throws IOException {
+    Throwable th = null;
+    for (Iterator<BackgroundQueryDelete> it = backgroundDeletes.iterator(); it.hasNext(); ) {
+      final BackgroundQueryDelete delete = it.next();
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "now abort " + delete);
+      }
+      delete.aborted = true;
+      if (delete.started == false) {
+        // it will never run
+        it.remove();
+        delete.pendingSegments.clear();
+        try {
+          delete.decRefReaders();
+        } catch (Throwable t) {
+          if (th == null) {
+            th = t;
+          }
+        }
+      }
+    }
+    // Running deletes stop at the next batch of deletions
+    while (backgroundDeletes.isEmpty() == false) {
+      doWait();
+    }
+    backgroundDeleteException = null;
+    notifyAll();
+    IOUtils.reThrow(th);
+  }
+
   /**
    * Updates a document by first deleting the document(s)
    * containing <code>term</code> and then adding the new
@@ -2147,6 +2456,34 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return mergingSegments;
   }
 
+  /** Returns a copy of the list of live segments. */
+  synchronized List<SegmentCommitInfo> listOfSegmentCommitInfos() {
+    return new ArrayList<>(segmentInfos.asList());
+  }
+
+  /** Drops the given segments and all their documents without merging
+   *  them, and returns the number of segments that were dropped. Segments
+   *  that are no longer live or that are being merged are skipped. */
+  synchronized int dropSegments(Collection<SegmentCommitInfo> infos) throws IOException {
+    ensureOpen(false);
+    int dropped = 0;
+    for (SegmentCommitInfo info : infos) {
+      if (segmentInfos.indexOf(info) != -1 && mergingSegments.contains(info) == false) {
+        if (infoStream.isEnabled("IW")) {
+          infoStream.message("IW", "drop segment " + segString(info));
+        }
+        segmentInfos.remove(info);
+        pendingNumDocs.addAndGet(-info.info.maxDoc());
+        readerPool.drop(info);
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      checkpoint();
+    }
+    return dropped;
+  }
+
   /**
    * Expert: the {@link MergeScheduler} calls this method to retrieve the next
    * merge requested by the MergePolicy
@@ -2210,6 +2547,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
     
     try {
+      abortBackgroundDeletes();
       abortMerges();
 
       rateLimiters.close();
@@ -2226,6 +2564,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       docWriter.close(); // mark it as closed first to prevent subsequent indexing actions/flushes 
       docWriter.abort(this); // don't sync on IW here
       synchronized(this) {
+        // Threads that resolve deletes must release their segments first:
+        waitForResolvingDeletes();
 
         if (pendingCommit != null) {
           pendingCommit.rollbackCommit(directory);
@@ -2363,6 +2703,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           try {
             // Abort any running merges
             abortMerges();
+            // Threads that resolve deletes must release their segments first:
+            waitForResolvingDeletes();
             // Let merges run again
             stopMerges = false;
             // Remove all segments
@@ -2770,7 +3112,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
    * to call this method multiple times, each time with a small set of readers.
    * In principle, if you use a merge policy with a {@code mergeFactor} or
    * {@code maxMergeAtOnce} parameter, you should pass that many readers in one
-   * call.
+   * call. {@link #addIndexes(Executor, int, CodecReader...)} merges the given
+   * readers into several segments concurrently instead.
    * 
    * @return The <a href="#sequence_number">sequence number</a>
    * for this operation
@@ -2783,7 +3126,46 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
    *           if addIndexes would cause the index to exceed {@link #MAX_DOCS}
    */
   public long addIndexes(CodecReader... readers) throws IOException {
+    return addIndexes(null, 1, readers);
+  }
+
+  /**
+   * Merges the provided indexes into this index, like
+   * {@link #addIndexes(CodecReader...)}, but into up to {@code maxSegments}
+   * new segments that may be merged concurrently.
+   *
+   * <p>
+   * The readers are split into groups of consecutive readers that have about
+   * the same number of documents, and each group is merged into its own new
+   * segment, so that documents keep their order. The calling thread merges
+   * the groups that the given executor did not start yet, and this method
+   * returns once all groups are merged. The new segments are only added to
+   * the index once all groups have been merged successfully: either all
+   * provided documents are added, or none of them.
+   *
+   * <p>
+   * The size and throughput of each new segment are reported to the
+   * {@link InfoStream} of this writer.
+   *
+   * @param executor the executor that merges groups concurrently, or
+   *          {@code null} to merge all groups in the calling thread
+   * @param maxSegments the maximum number of new segments
+   * @param readers the readers to add
+   * @return The <a href="#sequence_number">sequence number</a>
+   * for this operation
+   *
+   * @throws CorruptIndexException
+   *           if the index is corrupt
+   * @throws IOException
+   *           if there is a low-level IO error
+   * @throws IllegalArgumentException
+   *           if addIndexes would cause the index to exceed {@link #MAX_DOCS}
+   */
+  public long addIndexes(Executor executor, int maxSegments, CodecReader... readers) throws IOException {
     ensureOpen();
+    if (maxSegments < 1) {
+      throw new IllegalArgumentException("maxSegments must be >= 1, got " + maxSegments);
+    }
 
     // long so we can detect int overflow:
     long numDocs = 0;
@@ -2798,7 +3180,6 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       }
       flush(false, true);
 
-      String mergedName = newSegmentName();
       for (CodecReader leaf : readers) {
         numDocs += leaf.numDocs();
         Sort leafIndexSort = leaf.getIndexSort();
@@ -2810,76 +3191,24 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       // Best-effort up front check:
       testReserveDocs(numDocs);
 
-      final IOContext context = new IOContext(new MergeInfo(Math.toIntExact(numDocs), -1, false, UNBOUNDED_MAX_MERGE_SEGMENTS));
-
-      // TODO: somehow we should fix this merge so it's
-      // abortable so that IW.close(false) is able to stop it
-      TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(directory);
-
-      SegmentInfo info = new SegmentInfo(directoryOrig, Version.LATEST, mergedName, -1,
-                                         false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), config.getIndexSort());
-
-      SegmentMerger merger = new SegmentMerger(Arrays.asList(readers), info, infoStream, trackingDir,
-                                               globalFieldNumberMap, 
-                                               context);
-      
-      rateLimiters.set(new MergeRateLimiter(null));
-
-      if (!merger.shouldMerge()) {
+      final List<SegmentCommitInfo> infos;
+      try {
+        infos = mergeReaderGroups(executor, groupReaders(readers, maxSegments));
+      } catch (MergePolicy.MergeAbortedException e) {
+        // we are rolling back
         return docWriter.deleteQueue.getNextSequenceNumber();
       }
-
-      merger.merge();                // merge 'em
-
-      SegmentCommitInfo infoPerCommit = new SegmentCommitInfo(info, 0, -1L, -1L, -1L);
-
-      info.setFiles(new HashSet<>(trackingDir.getCreatedFiles()));
-      trackingDir.clearCreatedFiles();
-                                         
-      setDiagnostics(info, SOURCE_ADDINDEXES_READERS);
-
-      final MergePolicy mergePolicy = config.getMergePolicy();
-      boolean useCompoundFile;
-      synchronized(this) { // Guard segmentInfos
-        if (stopMerges) {
-          // Safe: these files must exist
-          deleteNewFiles(infoPerCommit.files());
-
-          return docWriter.deleteQueue.getNextSequenceNumber();
-        }
-        ensureOpen();
-        useCompoundFile = mergePolicy.useCompoundFile(segmentInfos, infoPerCommit, this);
-      }
-
-      // Now create the compound file if needed
-      if (useCompoundFile) {
-        Collection<String> filesToDelete = infoPerCommit.files();
-        TrackingDirectoryWrapper trackingCFSDir = new TrackingDirectoryWrapper(mergeDirectory);
-        // TODO: unlike merge, on exception we arent sniping any trash cfs files here?
-        // createCompoundFile tries to cleanup, but it might not always be able to...
-        try {
-          createCompoundFile(infoStream, trackingCFSDir, info, context);
-        } finally {
-          // delete new non cfs files directly: they were never
-          // registered with IFD
-          deleteNewFiles(filesToDelete);
-        }
-        info.setUseCompoundFile(true);
+      if (infos.isEmpty()) {
+        return docWriter.deleteQueue.getNextSequenceNumber();
       }
 
-      // Have codec write SegmentInfo.  Must do this after
-      // creating CFS so that 1) .si isn't slurped into CFS,
-      // and 2) .si reflects useCompoundFile=true change
-      // above:
-      codec.segmentInfoFormat().write(trackingDir, info, context);
-
-      info.addFiles(trackingDir.getCreatedFiles());
-
-      // Register the new segment
+      // Register the new segments
       synchronized(this) {
         if (stopMerges) {
-          // Safe: these files must exist
-          deleteNewFiles(infoPerCommit.files());
+          for (SegmentCommitInfo infoPerCommit : infos) {
+            // Safe: these files must exist
+            deleteNewFiles(infoPerCommit.files());
+          }
 
           return docWriter.deleteQueue.getNextSequenceNumber();
         }
@@ -2888,7 +3217,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         // Now reserve the docs, just before we update SIS:
         reserveDocs(numDocs);
       
-        segmentInfos.add(infoPerCommit);
+        segmentInfos.addAll(infos);
         seqNo = docWriter.deleteQueue.getNextSequenceNumber();
         checkpoint();
       }
@@ -2902,6 +3231,185 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return seqNo;
   }
 
+  /** Splits the given readers into at most {@code maxGroups} groups of
+   *  consecutive readers that have about the same number of documents. */
+  private static List<List<CodecReader>> groupReaders(CodecReader[] readers, int maxGroups) {
+    long totalDocs = 0;
+    for (CodecReader leaf : readers) {
+      totalDocs += leaf.maxDoc();
+    }
+    final List<List<CodecReader>> groups = new ArrayList<>();
+    List<CodecReader> group = new ArrayList<>();
+    long docs = 0;
+    for (CodecReader leaf : readers) {
+      group.add(leaf);
+      docs += leaf.maxDoc();
+      // close the current group once the groups so far hold their share of the documents
+      if (groups.size() + 1 < maxGroups && (double) docs * maxGroups >= (double) totalDocs * (groups.size() + 1)) {
+        groups.add(group);
+        group = new ArrayList<>();
+      }
+    }
+    if (group.isEmpty() == false || groups.isEmpty()) {
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  /** Merges each group of readers into a new segment, and returns the new
+   *  segments in the order of the groups. Groups that have no documents do
+   *  not produce segments. The given executor, if not null, merges groups
+   *  concurrently with the calling thread. If any group fails to merge, the
+   *  files of all new segments are deleted. */
+  private List<SegmentCommitInfo> mergeReaderGroups(Executor executor, List<List<CodecReader>> groups) throws IOException {
+    final AtomicInteger numMerged = new AtomicInteger();
+    final List<FutureTask<SegmentCommitInfo>> tasks = new ArrayList<>();
+    for (List<CodecReader> group : groups) {
+      final String segmentName = newSegmentName();
+      tasks.add(new FutureTask<>(() -> mergeReaders(group, segmentName, numMerged, groups.size())));
+    }
+    if (executor != null) {
+      for (FutureTask<SegmentCommitInfo> task : tasks.subList(1, tasks.size())) {
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          // the calling thread merges this group below
+        }
+      }
+    }
+
+    // merge the groups that the executor did not start yet: running a task
+    // that already started or completed is a no-op
+    for (FutureTask<SegmentCommitInfo> task : tasks) {
+      task.run();
+    }
+
+    // wait for all tasks, even if one of them failed, so that the files of
+    // all new segments can be deleted
+    final List<SegmentCommitInfo> infos = new ArrayList<>();
+    Throwable exc = null;
+    InterruptedException interrupted = null;
+    for (FutureTask<SegmentCommitInfo> task : tasks) {
+      while (true) {
+        try {
+          SegmentCommitInfo infoPerCommit = task.get();
+          if (infoPerCommit != null) {
+            infos.add(infoPerCommit);
+          }
+          break;
+        } catch (InterruptedException e) {
+          interrupted = e;
+        } catch (ExecutionException e) {
+          if (exc == null) {
+            exc = e.getCause();
+          } else {
+            exc.addSuppressed(e.getCause());
+          }
+          break;
+        }
+      }
+    }
+    if (exc != null || interrupted != null) {
+      for (SegmentCommitInfo infoPerCommit : infos) {
+        // Safe: these files must exist
+        deleteNewFiles(infoPerCommit.files());
+      }
+      if (interrupted != null) {
+        throw new ThreadInterruptedException(interrupted);
+      }
+      IOUtils.reThrow(exc);
+    }
+    return infos;
+  }
+
+  /** Merges the given readers into a new segment that is not registered
+   *  yet, or returns null if the readers have no documents. */
+  private SegmentCommitInfo mergeReaders(List<CodecReader> readers, String mergedName, AtomicInteger numMerged, int numGroups) throws IOException {
+    final long startNS = System.nanoTime();
+
+    long numDocs = 0;
+    for (CodecReader leaf : readers) {
+      numDocs += leaf.numDocs();
+    }
+
+    final IOContext context = new IOContext(new MergeInfo(Math.toIntExact(numDocs), -1, false, UNBOUNDED_MAX_MERGE_SEGMENTS));
+
+    // TODO: somehow we should fix this merge so it's
+    // abortable so that IW.close(false) is able to stop it
+    TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(directory);
+
+    SegmentInfo info = new SegmentInfo(directoryOrig, Version.LATEST, mergedName, -1,
+                                       false, codec, Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), config.getIndexSort());
+
+    SegmentMerger merger = new SegmentMerger(readers, info, infoStream, trackingDir,
+                                             globalFieldNumberMap, 
+                                             context, null);
+
+    // This may run on the caller's executor, so the rate limiter is passed
+    // explicitly rather than set on the current thread:
+    final MergeRateLimiter rateLimiter = new MergeRateLimiter(null);
+
+    if (!merger.shouldMerge()) {
+      return null;
+    }
+
+    merger.merge();                // merge 'em
+
+    SegmentCommitInfo infoPerCommit = new SegmentCommitInfo(info, 0, -1L, -1L, -1L);
+
+    info.setFiles(new HashSet<>(trackingDir.getCreatedFiles()));
+    trackingDir.clearCreatedFiles();
+                                       
+    setDiagnostics(info, SOURCE_ADDINDEXES_READERS);
+
+    final MergePolicy mergePolicy = config.getMergePolicy();
+    boolean useCompoundFile;
+    synchronized(this) { // Guard segmentInfos
+      if (stopMerges) {
+        // Safe: these files must exist
+        deleteNewFiles(infoPerCommit.files());
+
+        throw new MergePolicy.MergeAbortedException("addIndexes of segment " + mergedName + " was aborted");
+      }
+      ensureOpen();
+      useCompoundFile = mergePolicy.useCompoundFile(segmentInfos, infoPerCommit, this);
+    }
+
+    // Now create the compound file if needed
+    if (useCompoundFile) {
+      Collection<String> filesToDelete = infoPerCommit.files();
+      TrackingDirectoryWrapper trackingCFSDir = new TrackingDirectoryWrapper(addMergeRateLimiters(directory, () -> rateLimiter));
+      // TODO: unlike merge, on exception we arent sniping any trash cfs files here?
+      // createCompoundFile tries to cleanup, but it might not always be able to...
+      try {
+        createCompoundFile(infoStream, trackingCFSDir, info, context);
+      } finally {
+        // delete new non cfs files directly: they were never
+        // registered with IFD
+        deleteNewFiles(filesToDelete);
+      }
+      info.setUseCompoundFile(true);
+    }
+
+    // Have codec write SegmentInfo.  Must do this after
+    // creating CFS so that 1) .si isn't slurped into CFS,
+    // and 2) .si reflects useCompoundFile=true change
+    // above:
+    codec.segmentInfoFormat().write(trackingDir, info, context);
+
+    info.addFiles(trackingDir.getCreatedFiles());
+
+    if (infoStream.isEnabled("IW")) {
+      final double sec = (System.nanoTime() - startNS) / 1000000000.0;
+      final double segmentMB = infoPerCommit.sizeInBytes() / 1024. / 1024.;
+      infoStream.message("IW", String.format(Locale.ROOT, "addIndexes: merged %d readers into segment %s (%d of %d): %d docs, %.3f MB in %.3f sec (%.3f MB/sec)",
+                                             readers.size(), mergedName, numMerged.incrementAndGet(), numGroups,
+                                             numDocs, segmentMB, sec, segmentMB / sec));
+    }
+
+    return infoPerCommit;
+  }
+
   /** Copies the segment files as-is into the IndexWriter's directory. */
   private SegmentCommitInfo copySegmentAsIs(SegmentCommitInfo info, String segName, IOContext context) throws IOException {
     
@@ -3027,8 +3535,12 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
             processEvents(false, true);
             flushSuccess = true;
 
+            maybeApplyDeletes(true);
+
             synchronized(this) {
-              maybeApplyDeletes(true);
+              // Deletes in the background are ordered before this
+              // commit, which must include all their deletions:
+              waitForBackgroundDeletes();
 
               readerPool.commit(segmentInfos);
 
@@ -3398,8 +3910,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           processEvents(false, true);
         }
       }
+      anyChanges |= maybeApplyDeletes(applyAllDeletes);
       synchronized(this) {
-        anyChanges |= maybeApplyDeletes(applyAllDeletes);
         doAfterFlush();
         success = true;
         return anyChanges;
@@ -3417,7 +3929,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
   
-  final synchronized boolean maybeApplyDeletes(boolean applyAllDeletes) throws IOException {
+  final boolean maybeApplyDeletes(boolean applyAllDeletes) throws IOException {
     if (applyAllDeletes) {
       if (infoStream.isEnabled("IW")) {
         infoStream.message("IW", "apply all deletes during flush");
@@ -3430,35 +3942,90 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return false;
   }
   
-  final synchronized boolean applyAllDeletesAndUpdates() throws IOException {
+  final boolean applyAllDeletesAndUpdates() throws IOException {
     flushDeletesCount.incrementAndGet();
-    final BufferedUpdatesStream.ApplyDeletesResult result;
-    if (infoStream.isEnabled("IW")) {
-      infoStream.message("IW", "now apply all deletes for all segments maxDoc=" + (docWriter.getNumDocs() + segmentInfos.totalMaxDoc()));
+    final BufferedUpdatesStream.ApplyDeletesResult result = applyDeletesAndUpdates(null);
+    synchronized(this) {
+      if (result.anyDeletes) {
+        checkpoint();
+      }
+      if (!keepFullyDeletedSegments && result.allDeleted != null) {
+        if (infoStream.isEnabled("IW")) {
+          infoStream.message("IW", "drop 100% deleted segments: " + segString(result.allDeleted));
+        }
+        for (SegmentCommitInfo info : result.allDeleted) {
+          // If a merge has already registered for this
+          // segment, we leave it in the readerPool; the
+          // merge will skip merging it and will then drop
+          // it once it's done. Another thread may also have
+          // dropped it since we applied the deletes:
+          if (!mergingSegments.contains(info) && segmentInfos.indexOf(info) != -1) {
+            segmentInfos.remove(info);
+            pendingNumDocs.addAndGet(-info.info.maxDoc());
+            readerPool.drop(info);
+          }
+        }
+        checkpoint();
+      }
+      bufferedUpdatesStream.prune(segmentInfos);
     }
-    result = bufferedUpdatesStream.applyDeletesAndUpdates(readerPool, segmentInfos.asList());
-    if (result.anyDeletes) {
-      checkpoint();
+    return result.anyDeletes;
+  }
+
+  /** Applies buffered deletes and updates to the given segments, or to
+   *  all segments if {@code segments} is null. They are resolved to
+   *  docIDs without holding this writer's lock, unless the caller holds
+   *  it already, and then applied under this writer's lock and the lock
+   *  of each affected segment's {@link ReadersAndUpdates}. */
+  private BufferedUpdatesStream.ApplyDeletesResult applyDeletesAndUpdates(List<SegmentCommitInfo> segments) throws IOException {
+    final BufferedUpdatesStream.PendingApply pending;
+    synchronized(this) {
+      // Segments are resolved by one thread at a time, else older deletes
+      // and updates could be applied after newer ones:
+      while (bufferedUpdatesStream.isResolving(segments == null ? segmentInfos.asList() : segments)) {
+        if (infoStream.isEnabled("IW")) {
+          infoStream.message("IW", "wait for deletes that are being resolved by another thread");
+        }
+        doWait();
+      }
+      if (segments == null) {
+        if (infoStream.isEnabled("IW")) {
+          infoStream.message("IW", "now apply all deletes for all segments maxDoc=" + (docWriter.getNumDocs() + segmentInfos.totalMaxDoc()));
+        }
+        segments = segmentInfos.asList();
+      }
+      // Lock order: IW -> BD
+      pending = bufferedUpdatesStream.startApply(readerPool, segments);
     }
-    if (!keepFullyDeletedSegments && result.allDeleted != null) {
+    boolean success = false;
+    try {
+      bufferedUpdatesStream.resolve(pending);
+      success = true;
+    } finally {
+      if (success == false) {
+        finishApply(pending, false);
+      }
+    }
+    return finishApply(pending, true);
+  }
+
+  private synchronized BufferedUpdatesStream.ApplyDeletesResult finishApply(BufferedUpdatesStream.PendingApply pending, boolean success) throws IOException {
+    try {
+      return bufferedUpdatesStream.finishApply(readerPool, pending, success);
+    } finally {
+      // Wake up threads that wait for these segments:
+      notifyAll();
+    }
+  }
+
+  /** Waits for threads that resolve deletes without holding this writer's lock to apply them. */
+  private synchronized void waitForResolvingDeletes() {
+    while (bufferedUpdatesStream.isResolving()) {
       if (infoStream.isEnabled("IW")) {
-        infoStream.message("IW", "drop 100% deleted segments: " + segString(result.allDeleted));
-      }
-      for (SegmentCommitInfo info : result.allDeleted) {
-        // If a merge has already registered for this
-        // segment, we leave it in the readerPool; the
-        // merge will skip merging it and will then drop
-        // it once it's done:
-        if (!mergingSegments.contains(info)) {
-          segmentInfos.remove(info);
-          pendingNumDocs.addAndGet(-info.info.maxDoc());
-          readerPool.drop(info);
-        }
+        infoStream.message("IW", "now wait for deletes that are being resolved");
       }
-      checkpoint();
+      doWait();
     }
-    bufferedUpdatesStream.prune(segmentInfos);
-    return result.anyDeletes;
   }
 
   // for testing only
@@ -3719,6 +4286,17 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
 
     testPoint("startCommitMerge");
 
+    // Deletions that a background delete, or a thread that resolves
+    // buffered deletes, applies to the merged segments after the merge
+    // is committed would be lost:
+    while (tragedy == null && merge.rateLimiter.getAbort() == false
+           && (hasPendingBackgroundDeletes(merge.segments) || bufferedUpdatesStream.isResolving(merge.segments))) {
+      if (infoStream.isEnabled("IW")) {
+        infoStream.message("IW", "commitMerge: wait for background or resolving deletes of " + segString(merge.segments));
+      }
+      doWait();
+    }
+
     if (tragedy != null) {
       throw new IllegalStateException("this writer hit an unrecoverable error; cannot complete merge", tragedy);
     }
@@ -4090,8 +4668,8 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       infoStream.message("IW", "now apply deletes for " + merge.segments.size() + " merging segments");
     }
 
-    // Lock order: IW -> BD
-    final BufferedUpdatesStream.ApplyDeletesResult result = bufferedUpdatesStream.applyDeletesAndUpdates(readerPool, merge.segments);
+    // We hold this writer's lock, so deletes are resolved under it:
+    final BufferedUpdatesStream.ApplyDeletesResult result = applyDeletesAndUpdates(merge.segments);
     
     if (result.anyDeletes) {
       checkpoint();
@@ -4236,7 +4814,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     
     IOContext context = new IOContext(merge.getStoreMergeInfo());
 
-    final TrackingDirectoryWrapper dirWrapper = new TrackingDirectoryWrapper(mergeDirectory);
+    // Formats may be merged on the merge scheduler's intra-merge executor, so
+    // the rate limiter is tied to this merge rather than to the current thread:
+    final TrackingDirectoryWrapper dirWrapper = new TrackingDirectoryWrapper(addMergeRateLimiters(directory, () -> merge.rateLimiter));
 
     if (infoStream.isEnabled("IW")) {
       infoStream.message("IW", "merging " + segString(merge.segments));
@@ -4327,7 +4907,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       final SegmentMerger merger = new SegmentMerger(mergeReaders,
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
-                                                     context);
+                                                     context, mergeScheduler.getIntraMergeExecutor(merge));
 
       merge.rateLimiter.checkAbort();
 
@@ -5056,6 +5636,13 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
   /** Wraps the incoming {@link Directory} so that we assign a per-thread
    *  {@link MergeRateLimiter} to all created {@link IndexOutput}s. */
   private Directory addMergeRateLimiters(Directory in) {
+    return addMergeRateLimiters(in, rateLimiters::get);
+  }
+
+  /** Wraps the incoming {@link Directory} so that we assign the
+   *  {@link MergeRateLimiter} returned by the given supplier to all created
+   *  {@link IndexOutput}s. */
+  private Directory addMergeRateLimiters(Directory in, Supplier<MergeRateLimiter> rateLimiterSupplier) {
     return new FilterDirectory(in) {
       @Override
       public IndexOutput createOutput(String name, IOContext context) throws IOException {
@@ -5069,7 +5656,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
         // somewhere that is failing to pass down the right IOContext:
         assert context.context == IOContext.Context.MERGE: "got context=" + context.context;
 
-        MergeRateLimiter rateLimiter = rateLimiters.get();
+        MergeRateLimiter rateLimiter = rateLimiterSupplier.get();
         assert rateLimiter != null;
 
         return new RateLimitedIndexOutput(rateLimiter, in.createOutput(name, context));
@@ -20,6 +20,7 @@ package org.apache.lucene.index;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -104,6 +105,17 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   
   /** Default value for whether calls to {@link IndexWriter#close()} include a commit. */
   public final static boolean DEFAULT_COMMIT_ON_CLOSE = true;
+
+  /** Default value is 0, which means that indexing buffers are not recycled.
+   *  Change using {@link #setMaxRecycledBufferMB(double)}. */
+  public final static double DEFAULT_MAX_RECYCLED_BUFFER_MB = 0.0;
+
+  /** Default value is 16 MB. Change using {@link #setStoredFieldsSortBufferMB(double)}. */
+  public final static double DEFAULT_STORED_FIELDS_SORT_BUFFER_MB = 16.0;
+
+  /** Default value is 0, which means that doc values updates always rewrite the updated fields.
+   *  Change using {@link #setMaxDocValuesOverlayRatio(double)}. */
+  public final static double DEFAULT_MAX_DOC_VALUES_OVERLAY_RATIO = 0.0;
   
   // indicates whether this config instance is already attached to a writer.
   // not final so that it can be cloned properly.
@@ -458,6 +470,84 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return this;
   }
 
+  /**
+   * Sets the {@link Executor} that resolves buffered delete-by-query and doc
+   * values updates against several segments concurrently when deletes are
+   * applied, e.g. on NRT reopen, flush or merge. Only resolving docIDs runs
+   * on this executor: the calling thread waits for it and then applies the
+   * deletes and updates under {@link IndexWriter}'s lock. The default is
+   * <code>null</code>, which means that segments are resolved one at a time
+   * by the thread that applies deletes.
+   */
+  public IndexWriterConfig setApplyDeletesExecutor(Executor executor) {
+    this.applyDeletesExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Sets the maximum amount of memory, in MB, of indexing buffers that are
+   * kept for reuse once the per-thread writer that used them flushed or
+   * aborted. By default, these buffers are left to the garbage collector
+   * and the next per-thread writers allocate new ones, which can cause long
+   * collections of the old generation with large RAM buffers. Setting this
+   * to a value close to {@link #getRAMBufferSizeMB()} lets new per-thread
+   * writers reuse the byte and int blocks of flushed ones instead. This
+   * memory is held by the writer in addition to the RAM buffer, but it does
+   * not count towards triggering flushes.
+   * <p>
+   * The default is {@link #DEFAULT_MAX_RECYCLED_BUFFER_MB}.
+   */
+  public IndexWriterConfig setMaxRecycledBufferMB(double maxRecycledBufferMB) {
+    if (maxRecycledBufferMB < 0 || Double.isNaN(maxRecycledBufferMB)) {
+      throw new IllegalArgumentException("maxRecycledBufferMB must be >= 0, got " + maxRecycledBufferMB);
+    }
+    this.maxRecycledBufferMB = maxRecycledBufferMB;
+    return this;
+  }
+
+  /**
+   * Sets the maximum amount of memory, in MB, that each per-thread writer may
+   * use to buffer stored fields when an {@link #setIndexSort index sort} is
+   * configured. Stored fields that fit in this buffer are written once, in
+   * sorted order, when the segment is flushed. Beyond this size, they are
+   * written to a temporary file which is rewritten in sorted order on flush,
+   * which roughly doubles the I/O of stored fields. This buffer counts
+   * towards {@link #getRAMBufferSizeMB()}. Set to 0 to always use temporary
+   * files. The given value must be less than 2GB (2048MB).
+   * <p>
+   * The default is {@link #DEFAULT_STORED_FIELDS_SORT_BUFFER_MB}.
+   */
+  public IndexWriterConfig setStoredFieldsSortBufferMB(double storedFieldsSortBufferMB) {
+    if (storedFieldsSortBufferMB < 0 || storedFieldsSortBufferMB >= 2048 || Double.isNaN(storedFieldsSortBufferMB)) {
+      throw new IllegalArgumentException("storedFieldsSortBufferMB must be >= 0 and less than 2048MB, got " + storedFieldsSortBufferMB);
+    }
+    this.storedFieldsSortBufferMB = storedFieldsSortBufferMB;
+    return this;
+  }
+
+  /**
+   * Sets how many documents, relatively to the number of documents of a
+   * segment, the doc values updates of a field may hold in sparse overlays
+   * before they are compacted. By default, each time that numeric or binary
+   * doc values updates are written to a segment, all values of the updated
+   * fields are rewritten in a new generation, even if only a few documents
+   * were updated. If this ratio is greater than 0, the updated documents are
+   * instead written to a new overlay that only holds their values, and which
+   * is merged with the previous values of the field at read time. Once the
+   * overlays of a field would hold more than {@code ratio * maxDoc}
+   * documents, or too many overlays are stacked, the field is rewritten in
+   * full again. Merges always drop overlays.
+   * <p>
+   * The default is {@link #DEFAULT_MAX_DOC_VALUES_OVERLAY_RATIO}.
+   */
+  public IndexWriterConfig setMaxDocValuesOverlayRatio(double ratio) {
+    if (ratio < 0 || Double.isNaN(ratio)) {
+      throw new IllegalArgumentException("ratio must be >= 0, got " + ratio);
+    }
+    this.maxDocValuesOverlayRatio = ratio;
+    return this;
+  }
+
   /** We only allow sorting on these types */
   private static final EnumSet<SortField.Type> ALLOWED_INDEX_SORT_TYPES = EnumSet.of(SortField.Type.STRING,
                                                                                      SortField.Type.LONG,
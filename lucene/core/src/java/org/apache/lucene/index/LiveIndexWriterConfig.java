@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -104,6 +105,18 @@ public class LiveIndexWriterConfig {
   /** The field names involved in the index sort */
   protected Set<String> indexSortFields = Collections.emptySet();
 
+  /** Executor that resolves buffered deletes and updates of several segments concurrently, or null. */
+  protected Executor applyDeletesExecutor = null;
+
+  /** Maximum amount of memory of indexing buffers that are kept for reuse after a flush. */
+  protected double maxRecycledBufferMB = IndexWriterConfig.DEFAULT_MAX_RECYCLED_BUFFER_MB;
+
+  /** Maximum amount of memory used to buffer stored fields of a sorted segment until it is flushed. */
+  protected double storedFieldsSortBufferMB = IndexWriterConfig.DEFAULT_STORED_FIELDS_SORT_BUFFER_MB;
+
+  /** Maximum ratio of documents that the sparse overlays of doc values updates may hold before they are compacted. */
+  protected double maxDocValuesOverlayRatio = IndexWriterConfig.DEFAULT_MAX_DOC_VALUES_OVERLAY_RATIO;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -470,6 +483,47 @@ public class LiveIndexWriterConfig {
     return indexSortFields;
   }
 
+  /**
+   * Returns the {@link Executor} that is used to resolve buffered
+   * delete-by-query and doc values updates against several segments
+   * concurrently, or <code>null</code> if they are resolved by the thread
+   * that applies deletes.
+   */
+  public Executor getApplyDeletesExecutor() {
+    return applyDeletesExecutor;
+  }
+
+  /**
+   * Returns the maximum amount of memory, in MB, of indexing buffers that are
+   * kept for reuse after a flush.
+   *
+   * @see IndexWriterConfig#setMaxRecycledBufferMB(double)
+   */
+  public double getMaxRecycledBufferMB() {
+    return maxRecycledBufferMB;
+  }
+
+  /**
+   * Returns the maximum amount of memory, in MB, that is used to buffer the
+   * stored fields of a segment that is sorted on flush.
+   *
+   * @see IndexWriterConfig#setStoredFieldsSortBufferMB(double)
+   */
+  public double getStoredFieldsSortBufferMB() {
+    return storedFieldsSortBufferMB;
+  }
+
+  /**
+   * Returns the maximum ratio of documents of a segment that the sparse
+   * overlays of doc values updates of a field may hold before they are
+   * compacted, or 0 if updated fields are always rewritten in full.
+   *
+   * @see IndexWriterConfig#setMaxDocValuesOverlayRatio(double)
+   */
+  public double getMaxDocValuesOverlayRatio() {
+    return maxDocValuesOverlayRatio;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -493,6 +547,10 @@ public class LiveIndexWriterConfig {
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
     sb.append("indexSort=").append(getIndexSort()).append("\n");
+    sb.append("applyDeletesExecutor=").append(getApplyDeletesExecutor()).append("\n");
+    sb.append("maxRecycledBufferMB=").append(getMaxRecycledBufferMB()).append("\n");
+    sb.append("storedFieldsSortBufferMB=").append(getStoredFieldsSortBufferMB()).append("\n");
+    sb.append("maxDocValuesOverlayRatio=").append(getMaxDocValuesOverlayRatio()).append("\n");
     return sb.toString();
   }
 }
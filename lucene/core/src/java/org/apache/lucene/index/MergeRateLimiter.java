@@ -17,6 +17,8 @@
 package org.apache.lucene.index;
 
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.lucene.store.RateLimiter;
 import org.apache.lucene.util.ThreadInterruptedException;
 
@@ -28,13 +30,15 @@ import static org.apache.lucene.store.RateLimiter.SimpleRateLimiter;
  *  This is similar to {@link SimpleRateLimiter}, except it's merge-private,
  *  it will wake up if its rate changes while it's paused, it tracks how
  *  much time it spent stopped and paused, and it supports aborting.
+ *  It may be shared by the threads that merge the different formats of
+ *  a segment concurrently.
  *
  *  @lucene.internal */
 
 public class MergeRateLimiter extends RateLimiter {
 
   private final static int MIN_PAUSE_CHECK_MSEC = 25;
-  volatile long totalBytesWritten;
+  final AtomicLong totalBytesWritten = new AtomicLong();
 
   double mbPerSec;
   private long lastNS;
@@ -44,6 +48,10 @@ public class MergeRateLimiter extends RateLimiter {
   long totalStoppedNS;
   final MergePolicy.OneMerge merge;
 
+  /** If not null, called before every pause check, so that the merge
+   *  scheduler can update rates while this merge is running. */
+  volatile Runnable pauseListener;
+
   /** Returned by {@link #maybePause}. */
   private static enum PauseResult {NO, STOPPED, PAUSED};
 
@@ -65,7 +73,7 @@ public class MergeRateLimiter extends RateLimiter {
     // NOTE: Double.POSITIVE_INFINITY casts to Long.MAX_VALUE
     minPauseCheckBytes = Math.min(1024*1024, (long) ((MIN_PAUSE_CHECK_MSEC / 1000.0) * mbPerSec * 1024 * 1024));
     assert minPauseCheckBytes >= 0;
-    notify();
+    notifyAll();
   }
 
   @Override
@@ -75,13 +83,18 @@ public class MergeRateLimiter extends RateLimiter {
 
   /** Returns total bytes written by this merge. */
   public long getTotalBytesWritten() {
-    return totalBytesWritten;
+    return totalBytesWritten.get();
   }
 
   @Override
   public long pause(long bytes) throws MergePolicy.MergeAbortedException {
 
-    totalBytesWritten += bytes;
+    totalBytesWritten.addAndGet(bytes);
+
+    final Runnable listener = pauseListener;
+    if (listener != null) {
+      listener.run();
+    }
 
     long startNS = System.nanoTime();
     long curNS = startNS;
@@ -93,9 +106,6 @@ public class MergeRateLimiter extends RateLimiter {
     while (true) {
       PauseResult result = maybePause(bytes, curNS);
       if (result == PauseResult.NO) {
-        // Set to curNS, not targetNS, to enforce the instant rate, not
-        // the "averaaged over all history" rate:
-        lastNS = curNS;
         break;
       }
       curNS = System.nanoTime();
@@ -103,11 +113,13 @@ public class MergeRateLimiter extends RateLimiter {
       startNS = curNS;
 
       // Separately track when merge was stopped vs rate limited:
-      if (result == PauseResult.STOPPED) {
-        totalStoppedNS += ns;
-      } else {
-        assert result == PauseResult.PAUSED;
-        totalPausedNS += ns;
+      synchronized (this) {
+        if (result == PauseResult.STOPPED) {
+          totalStoppedNS += ns;
+        } else {
+          assert result == PauseResult.PAUSED;
+          totalPausedNS += ns;
+        }
       }
       pausedNS += ns;
     }
@@ -145,6 +157,9 @@ public class MergeRateLimiter extends RateLimiter {
     // rounds up to 1 msec, so we don't bother unless it's > 2 msec:
 
     if (curPauseNS <= 2000000) {
+      // Set to curNS, not targetNS, to enforce the instant rate, not
+      // the "averaaged over all history" rate:
+      lastNS = curNS;
       return PauseResult.NO;
     }
 
@@ -182,7 +197,7 @@ public class MergeRateLimiter extends RateLimiter {
   /** Mark this merge aborted. */
   public synchronized void setAbort() {
     abort = true;
-    notify();
+    notifyAll();
   }
 
   /** Returns true if this merge was aborted. */
@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.util.InfoStream;
 
@@ -45,6 +46,16 @@ public abstract class MergeScheduler implements Closeable {
    * */
   public abstract void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException;
 
+  /**
+   * Returns the executor that {@link IndexWriter} may use to merge the
+   * stored fields, term vectors, norms, postings, doc values and points of
+   * the given merge concurrently, or null (the default) to merge them one
+   * after another in the thread that runs the merge.
+   */
+  public Executor getIntraMergeExecutor(MergePolicy.OneMerge merge) {
+    return null;
+  }
+
   /** Close this MergeScheduler. */
   @Override
   public abstract void close() throws IOException;
@@ -146,6 +146,28 @@ public class MergeState {
     this.docMaps = buildDocMaps(readers, indexSort);
   }
 
+  /** Create a copy of the given state that shares its readers but whose
+   *  arrays and merged field infos can be changed independently, such as
+   *  by per-field formats that restrict the merge to some fields. This is
+   *  used to merge several formats concurrently. */
+  MergeState(MergeState other) {
+    docMaps = other.docMaps;
+    leafDocMaps = other.leafDocMaps;
+    segmentInfo = other.segmentInfo;
+    mergeFieldInfos = other.mergeFieldInfos;
+    storedFieldsReaders = other.storedFieldsReaders.clone();
+    termVectorsReaders = other.termVectorsReaders.clone();
+    normsProducers = other.normsProducers.clone();
+    docValuesProducers = other.docValuesProducers.clone();
+    fieldInfos = other.fieldInfos.clone();
+    liveDocs = other.liveDocs;
+    fieldsProducers = other.fieldsProducers.clone();
+    pointsReaders = other.pointsReaders.clone();
+    maxDocs = other.maxDocs;
+    infoStream = other.infoStream;
+    needsIndexSort = other.needsIndexSort;
+  }
+
   // Remap docIDs around deletions
   private DocMap[] buildDeletionDocMaps(List<CodecReader> readers) {
 
@@ -172,6 +172,33 @@ public class MultiDocValues {
     };
   }
 
+  /** Prefetches doc IDs of a single leaf, relative to its doc base. */
+  @FunctionalInterface
+  private interface LeafPrefetcher {
+    void prefetch(int leaf, int[] leafDocIDs) throws IOException;
+  }
+
+  /**
+   * Splits doc IDs that are sorted in increasing order per leaf, and passes
+   * the doc IDs of each leaf that has some to {@code prefetcher}.
+   */
+  private static void prefetchPerLeaf(int[] docIDs, int[] docStarts, LeafPrefetcher prefetcher) throws IOException {
+    for (int i = 0; i < docIDs.length; ) {
+      final int leaf = ReaderUtil.subIndex(docIDs[i], docStarts);
+      final int docBase = docStarts[leaf];
+      int end = i + 1;
+      while (end < docIDs.length && docIDs[end] < docStarts[leaf + 1]) {
+        end++;
+      }
+      final int[] leafDocIDs = new int[end - i];
+      for (int j = i; j < end; ++j) {
+        leafDocIDs[j - i] = docIDs[j] - docBase;
+      }
+      prefetcher.prefetch(leaf, leafDocIDs);
+      i = end;
+    }
+  }
+
   /** Returns a NumericDocValues for a reader's docvalues (potentially merging on-the-fly) */
   public static NumericDocValues getNumericValues(final IndexReader r, final String field) throws IOException {
     final List<LeafReaderContext> leaves = r.leaves();
@@ -197,7 +224,12 @@ public class MultiDocValues {
     if (anyReal == false) {
       return null;
     }
-    
+
+    final int[] docStarts = new int[size+1];
+    for (int i = 0; i < size; i++) {
+      docStarts[i] = leaves.get(i).docBase;
+    }
+    docStarts[size] = r.maxDoc();
 
     return new NumericDocValues() {
       private int nextLeaf;
@@ -289,6 +321,18 @@ public class MultiDocValues {
         return currentValues.longValue();
       }
 
+      @Override
+      public void prefetch(int[] docIDs) throws IOException {
+        prefetchPerLeaf(docIDs, docStarts, (leaf, leafDocIDs) -> {
+          // the hint applies to the leaf's files, so it also helps the instance
+          // that will be pulled when iteration reaches this leaf
+          NumericDocValues values = leaves.get(leaf).reader().getNumericDocValues(field);
+          if (values != null) {
+            values.prefetch(leafDocIDs);
+          }
+        });
+      }
+
       @Override
       public long cost() {
         // TODO
@@ -1047,6 +1091,11 @@ public class MultiDocValues {
     public long cost() {
       return totalCost;
     }
+
+    @Override
+    public void prefetch(int[] docIDs) throws IOException {
+      prefetchPerLeaf(docIDs, docStarts, (leaf, leafDocIDs) -> values[leaf].prefetch(leafDocIDs));
+    }
   }
   
   /** 
@@ -16,6 +16,7 @@
  */
 package org.apache.lucene.index;
 
+import java.util.concurrent.Executor;
 
 /**
  * A {@link MergeScheduler} which never executes any merges. It is also a
@@ -42,6 +43,11 @@ public final class NoMergeScheduler extends MergeScheduler {
   @Override
   public void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) {}
 
+  @Override
+  public Executor getIntraMergeExecutor(MergePolicy.OneMerge merge) {
+    return null;
+  }
+
   @Override
   public MergeScheduler clone() {
     return this;
@@ -36,4 +36,12 @@ public abstract class NumericDocValues extends DocValuesIterator {
    */
   public abstract long longValue() throws IOException;
 
+  /**
+   * Hint that the values of the given documents are going to be read soon,
+   * so that they can be loaded in the background. {@code docIDs} must be
+   * sorted in increasing order. The default implementation does nothing.
+   * @lucene.experimental
+   */
+  public void prefetch(int[] docIDs) throws IOException {}
+
 }
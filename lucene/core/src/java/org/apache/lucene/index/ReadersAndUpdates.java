@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -29,6 +30,7 @@ import org.apache.lucene.codecs.DocValuesConsumer;
 import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.FieldInfosFormat;
 import org.apache.lucene.codecs.LiveDocsFormat;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
@@ -303,6 +305,61 @@ class ReadersAndUpdates {
     return true;
   }
   
+  /** Maximum number of sparse overlays of a field, see {@link IndexWriterConfig#setMaxDocValuesOverlayRatio(double)}. */
+  static final int MAX_DOC_VALUES_OVERLAYS = 8;
+
+  /**
+   * Returns the overlays of the given field on top of which its updated
+   * documents should be written as a new sparse overlay, or null if the field
+   * should be rewritten in full, which also compacts its existing overlays.
+   */
+  private DocValuesOverlays getOverlaysForUpdates(SegmentReader reader, String field, int numUpdatedDocs) {
+    final double maxRatio = writer.getConfig().getMaxDocValuesOverlayRatio();
+    if (maxRatio == 0) {
+      return null;
+    }
+    final FieldInfo current = reader.getFieldInfos().fieldInfo(field);
+    if (current == null || current.getDocValuesType() == DocValuesType.NONE) {
+      // no values to overlay yet
+      return null;
+    }
+    DocValuesOverlays overlays = DocValuesOverlays.get(current);
+    if (overlays == null) {
+      overlays = DocValuesOverlays.empty(current.getDocValuesGen());
+    }
+    if (overlays.size() >= MAX_DOC_VALUES_OVERLAYS
+        || overlays.totalNumDocs() + numUpdatedDocs > maxRatio * reader.maxDoc()) {
+      return null;
+    }
+    return overlays;
+  }
+
+  private static int numUpdatedDocs(DocValuesFieldUpdates fieldUpdates) {
+    final DocValuesFieldUpdates.Iterator it = fieldUpdates.iterator();
+    int numDocs = 0;
+    while (it.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+      ++numDocs;
+    }
+    return numDocs;
+  }
+
+  /**
+   * Records the files of a new generation of the given field: these files
+   * replace the previous files of the field, unless the new generation is an
+   * overlay on top of them.
+   */
+  private void putFieldFiles(FieldInfo fieldInfo, DocValuesOverlays overlays, Set<String> newFiles, Map<Integer,Set<String>> fieldFiles) {
+    assert !fieldFiles.containsKey(fieldInfo.number);
+    final Set<String> previousFiles = info.getDocValuesUpdatesFiles().get(fieldInfo.number);
+    if (overlays != null && previousFiles != null) {
+      final Set<String> files = new HashSet<>(previousFiles);
+      files.addAll(newFiles);
+      fieldFiles.put(fieldInfo.number, files);
+    } else {
+      fieldFiles.put(fieldInfo.number, newFiles);
+    }
+  }
+
   @SuppressWarnings("synthetic-access")
   private void handleNumericDVUpdates(FieldInfos infos, Map<String,NumericDocValuesFieldUpdates> updates,
       Directory dir, DocValuesFormat dvFormat, final SegmentReader reader, Map<Integer,Set<String>> fieldFiles) throws IOException {
@@ -312,11 +369,20 @@ class ReadersAndUpdates {
 
       final long nextDocValuesGen = info.getNextDocValuesGen();
       final String segmentSuffix = Long.toString(nextDocValuesGen, Character.MAX_RADIX);
-      final long estUpdatesSize = fieldUpdates.ramBytesPerDoc() * info.info.maxDoc();
-      final IOContext updatesContext = new IOContext(new FlushInfo(info.info.maxDoc(), estUpdatesSize));
+      final int numUpdatedDocs = numUpdatedDocs(fieldUpdates);
+      // if not null, only the updated documents are written, as a new overlay
+      final DocValuesOverlays overlays = getOverlaysForUpdates(reader, field, numUpdatedDocs);
+      final int numWrittenDocs = overlays == null ? info.info.maxDoc() : numUpdatedDocs;
+      final long estUpdatesSize = fieldUpdates.ramBytesPerDoc() * numWrittenDocs;
+      final IOContext updatesContext = new IOContext(new FlushInfo(numWrittenDocs, estUpdatesSize));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
       fieldInfo.setDocValuesGen(nextDocValuesGen);
+      if (overlays == null) {
+        DocValuesOverlays.clear(fieldInfo);
+      } else {
+        overlays.push(nextDocValuesGen, numUpdatedDocs).set(fieldInfo);
+      }
       final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
       // separately also track which files were created for this gen
       final TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(dir);
@@ -333,7 +399,7 @@ class ReadersAndUpdates {
 
               final NumericDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
 
-              final NumericDocValues currentValues = reader.getNumericDocValues(field);
+              final NumericDocValues currentValues = overlays == null ? reader.getNumericDocValues(field) : null;
               updatesIter.reset();
 
               // Merge sort of the original doc values with updated doc values:
@@ -404,8 +470,7 @@ class ReadersAndUpdates {
           });
       }
       info.advanceDocValuesGen();
-      assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
+      putFieldFiles(fieldInfo, overlays, trackingDir.getCreatedFiles(), fieldFiles);
     }
   }
 
@@ -418,11 +483,20 @@ class ReadersAndUpdates {
 
       final long nextDocValuesGen = info.getNextDocValuesGen();
       final String segmentSuffix = Long.toString(nextDocValuesGen, Character.MAX_RADIX);
-      final long estUpdatesSize = fieldUpdates.ramBytesPerDoc() * info.info.maxDoc();
-      final IOContext updatesContext = new IOContext(new FlushInfo(info.info.maxDoc(), estUpdatesSize));
+      final int numUpdatedDocs = numUpdatedDocs(fieldUpdates);
+      // if not null, only the updated documents are written, as a new overlay
+      final DocValuesOverlays overlays = getOverlaysForUpdates(reader, field, numUpdatedDocs);
+      final int numWrittenDocs = overlays == null ? info.info.maxDoc() : numUpdatedDocs;
+      final long estUpdatesSize = fieldUpdates.ramBytesPerDoc() * numWrittenDocs;
+      final IOContext updatesContext = new IOContext(new FlushInfo(numWrittenDocs, estUpdatesSize));
       final FieldInfo fieldInfo = infos.fieldInfo(field);
       assert fieldInfo != null;
       fieldInfo.setDocValuesGen(nextDocValuesGen);
+      if (overlays == null) {
+        DocValuesOverlays.clear(fieldInfo);
+      } else {
+        overlays.push(nextDocValuesGen, numUpdatedDocs).set(fieldInfo);
+      }
       final FieldInfos fieldInfos = new FieldInfos(new FieldInfo[] { fieldInfo });
       // separately also track which files were created for this gen
       final TrackingDirectoryWrapper trackingDir = new TrackingDirectoryWrapper(dir);
@@ -441,7 +515,7 @@ class ReadersAndUpdates {
               final BinaryDocValuesFieldUpdates.Iterator updatesIter = fieldUpdates.iterator();
               updatesIter.reset();
 
-              final BinaryDocValues currentValues = reader.getBinaryDocValues(field);
+              final BinaryDocValues currentValues = overlays == null ? reader.getBinaryDocValues(field) : null;
 
               // Merge sort of the original doc values with updated doc values:
               return new BinaryDocValues() {
@@ -473,7 +547,7 @@ class ReadersAndUpdates {
 
                 @Override
                 public long cost() {
-                  return currentValues.cost();
+                  return currentValues == null ? numUpdatedDocs : currentValues.cost();
                 }
 
                 @Override
@@ -510,8 +584,7 @@ class ReadersAndUpdates {
           });
       }
       info.advanceDocValuesGen();
-      assert !fieldFiles.containsKey(fieldInfo.number);
-      fieldFiles.put(fieldInfo.number, trackingDir.getCreatedFiles());
+      putFieldFiles(fieldInfo, overlays, trackingDir.getCreatedFiles(), fieldFiles);
     }
   }
   
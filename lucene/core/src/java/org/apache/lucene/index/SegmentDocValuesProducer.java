@@ -45,6 +45,8 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   final Map<String,DocValuesProducer> dvProducersByField = new HashMap<>();
   final Set<DocValuesProducer> dvProducers = Collections.newSetFromMap(new IdentityHashMap<DocValuesProducer,Boolean>());
   final List<Long> dvGens = new ArrayList<>();
+  final Map<String,DocValuesProducer[]> dvOverlaysByField = new HashMap<>();
+  private DocValuesProducer baseProducer;
   
   /**
    * Creates a new producer that handles updated docvalues fields
@@ -57,27 +59,22 @@ class SegmentDocValuesProducer extends DocValuesProducer {
   SegmentDocValuesProducer(SegmentCommitInfo si, Directory dir, FieldInfos coreInfos, FieldInfos allInfos, SegmentDocValues segDocValues) throws IOException {
     boolean success = false;
     try {
-      DocValuesProducer baseProducer = null;
       for (FieldInfo fi : allInfos) {
         if (fi.getDocValuesType() == DocValuesType.NONE) {
           continue;
         }
-        long docValuesGen = fi.getDocValuesGen();
-        if (docValuesGen == -1) {
-          if (baseProducer == null) {
-            // the base producer gets the original fieldinfos it wrote
-            baseProducer = segDocValues.getDocValuesProducer(docValuesGen, si, dir, coreInfos);
-            dvGens.add(docValuesGen);
-            dvProducers.add(baseProducer);
-          }
-          dvProducersByField.put(fi.name, baseProducer);
+        final DocValuesOverlays overlays = DocValuesOverlays.get(fi);
+        if (overlays == null) {
+          dvProducersByField.put(fi.name, getProducer(fi.getDocValuesGen(), fi, si, dir, coreInfos, segDocValues));
         } else {
-          assert !dvGens.contains(docValuesGen);
-          // otherwise, producer sees only the one fieldinfo it wrote
-          final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, dir, new FieldInfos(new FieldInfo[] { fi }));
-          dvGens.add(docValuesGen);
-          dvProducers.add(dvp);
-          dvProducersByField.put(fi.name, dvp);
+          // the field's values are those of its base generation, overlaid by
+          // the generations that only hold the values of updated documents
+          dvProducersByField.put(fi.name, getProducer(overlays.baseGen, fi, si, dir, coreInfos, segDocValues));
+          final DocValuesProducer[] overlayProducers = new DocValuesProducer[overlays.size()];
+          for (int i = 0; i < overlayProducers.length; ++i) {
+            overlayProducers[i] = getProducer(overlays.gens[i], fi, si, dir, coreInfos, segDocValues);
+          }
+          dvOverlaysByField.put(fi.name, overlayProducers);
         }
       }
       success = true;
@@ -92,18 +89,56 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     }
   }
 
+  private DocValuesProducer getProducer(long docValuesGen, FieldInfo fi, SegmentCommitInfo si, Directory dir,
+      FieldInfos coreInfos, SegmentDocValues segDocValues) throws IOException {
+    if (docValuesGen == -1) {
+      if (baseProducer == null) {
+        // the base producer gets the original fieldinfos it wrote
+        baseProducer = segDocValues.getDocValuesProducer(docValuesGen, si, dir, coreInfos);
+        dvGens.add(docValuesGen);
+        dvProducers.add(baseProducer);
+      }
+      return baseProducer;
+    } else {
+      assert !dvGens.contains(docValuesGen);
+      // otherwise, producer sees only the one fieldinfo it wrote
+      final DocValuesProducer dvp = segDocValues.getDocValuesProducer(docValuesGen, si, dir, new FieldInfos(new FieldInfo[] { fi }));
+      dvGens.add(docValuesGen);
+      dvProducers.add(dvp);
+      return dvp;
+    }
+  }
+
   @Override
   public NumericDocValues getNumeric(FieldInfo field) throws IOException {
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
     assert dvProducer != null;
-    return dvProducer.getNumeric(field);
+    DocValuesProducer[] overlays = dvOverlaysByField.get(field.name);
+    if (overlays == null) {
+      return dvProducer.getNumeric(field);
+    }
+    NumericDocValues[] layers = new NumericDocValues[1 + overlays.length];
+    layers[0] = dvProducer.getNumeric(field);
+    for (int i = 0; i < overlays.length; ++i) {
+      layers[1 + i] = overlays[i].getNumeric(field);
+    }
+    return StackedDocValues.numeric(layers);
   }
 
   @Override
   public BinaryDocValues getBinary(FieldInfo field) throws IOException {
     DocValuesProducer dvProducer = dvProducersByField.get(field.name);
     assert dvProducer != null;
-    return dvProducer.getBinary(field);
+    DocValuesProducer[] overlays = dvOverlaysByField.get(field.name);
+    if (overlays == null) {
+      return dvProducer.getBinary(field);
+    }
+    BinaryDocValues[] layers = new BinaryDocValues[1 + overlays.length];
+    layers[0] = dvProducer.getBinary(field);
+    for (int i = 0; i < overlays.length; ++i) {
+      layers[1 + i] = overlays[i].getBinary(field);
+    }
+    return StackedDocValues.binary(layers);
   }
 
   @Override
@@ -145,6 +180,9 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     ramBytesUsed += dvGens.size() * LONG_RAM_BYTES_USED;
     ramBytesUsed += dvProducers.size() * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
     ramBytesUsed += dvProducersByField.size() * 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    for (DocValuesProducer[] overlays : dvOverlaysByField.values()) {
+      ramBytesUsed += 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.shallowSizeOf(overlays);
+    }
     for (DocValuesProducer producer : dvProducers) {
       ramBytesUsed += producer.ramBytesUsed();
     }
@@ -18,7 +18,12 @@ package org.apache.lucene.index;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesConsumer;
@@ -29,12 +34,15 @@ import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.codecs.TermVectorsWriter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /**
  * The SegmentMerger class combines two or more Segments, represented by an
  * IndexReader, into a single Segment.  Call the merge method to combine the
- * segments.
+ * segments.  If an executor is provided, the stored fields, term vectors,
+ * norms, postings, doc values and points are merged concurrently.
  *
  * @see #merge
  */
@@ -44,13 +52,15 @@ final class SegmentMerger {
   private final Codec codec;
   
   private final IOContext context;
+
+  private final Executor executor;
   
   final MergeState mergeState;
   private final FieldInfos.Builder fieldInfosBuilder;
 
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir,
-                FieldInfos.FieldNumbers fieldNumbers, IOContext context) throws IOException {
+                FieldInfos.FieldNumbers fieldNumbers, IOContext context, Executor executor) throws IOException {
     if (context.context != IOContext.Context.MERGE) {
       throw new IllegalArgumentException("IOContext.context should be MERGE; got: " + context.context);
     }
@@ -58,6 +68,7 @@ final class SegmentMerger {
     directory = dir;
     this.codec = segmentInfo.getCodec();
     this.context = context;
+    this.executor = executor;
     this.fieldInfosBuilder = new FieldInfos.Builder(fieldNumbers);
     if (mergeState.infoStream.isEnabled("SM")) {
       if (segmentInfo.getIndexSort() != null) {
@@ -82,99 +93,179 @@ final class SegmentMerger {
       throw new IllegalStateException("Merge would result in 0 document segment");
     }
     mergeFieldInfos();
-    long t0 = 0;
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    int numMerged = mergeFields();
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge stored fields [" + numMerged + " docs]");
-    }
-    assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
 
     final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
                                                                       mergeState.mergeFieldInfos, null, context);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
+
+    // Each format writes its own files and reads its own producers, so these
+    // steps are independent from each other:
+    final List<MergeStep> steps = new ArrayList<>();
+    steps.add(new MergeStep("stored fields") {
+      @Override
+      void merge(MergeState state) throws IOException {
+        int numMerged = mergeFields(state);
+        assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
+      }
+    });
+    steps.add(new MergeStep("postings") {
+      @Override
+      void merge(MergeState state) throws IOException {
+        mergeTerms(state, segmentWriteState);
+      }
+    });
+    if (mergeState.mergeFieldInfos.hasDocValues()) {
+      steps.add(new MergeStep("doc values") {
+        @Override
+        void merge(MergeState state) throws IOException {
+          mergeDocValues(state, segmentWriteState);
+        }
+      });
     }
-    mergeTerms(segmentWriteState);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge postings [" + numMerged + " docs]");
+    if (mergeState.mergeFieldInfos.hasPointValues()) {
+      steps.add(new MergeStep("points") {
+        @Override
+        void merge(MergeState state) throws IOException {
+          mergePoints(state, segmentWriteState);
+        }
+      });
+    }
+    if (mergeState.mergeFieldInfos.hasNorms()) {
+      steps.add(new MergeStep("norms") {
+        @Override
+        void merge(MergeState state) throws IOException {
+          mergeNorms(state, segmentWriteState);
+        }
+      });
+    }
+    if (mergeState.mergeFieldInfos.hasVectors()) {
+      steps.add(new MergeStep("vectors") {
+        @Override
+        void merge(MergeState state) throws IOException {
+          int numMerged = mergeVectors(state);
+          assert numMerged == mergeState.segmentInfo.maxDoc();
+        }
+      });
     }
 
+    long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
     }
-    if (mergeState.mergeFieldInfos.hasDocValues()) {
-      mergeDocValues(segmentWriteState);
-    }
-    if (mergeState.infoStream.isEnabled("SM")) {
+    runSteps(steps);
+    if (mergeState.infoStream.isEnabled("SM") && executor != null) {
       long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge doc values [" + numMerged + " docs]");
+      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to concurrently merge " + steps.size() + " formats [" + mergeState.segmentInfo.maxDoc() + " docs]");
     }
 
+    // write the merged infos, once all formats recorded their field attributes
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
     }
-    if (mergeState.mergeFieldInfos.hasPointValues()) {
-      mergePoints(segmentWriteState);
-    }
+    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
     if (mergeState.infoStream.isEnabled("SM")) {
       long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge points [" + numMerged + " docs]");
+      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + mergeState.segmentInfo.maxDoc() + " docs]");
     }
-    
-    if (mergeState.mergeFieldInfos.hasNorms()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
+
+    return mergeState;
+  }
+
+  /** Runs the given steps, on the executor if there is one. The current
+   *  thread runs the first step while the executor runs the other ones. */
+  private void runSteps(List<MergeStep> steps) throws IOException {
+    if (executor == null || steps.size() == 1) {
+      for (MergeStep step : steps) {
+        step.run(mergeState);
       }
-      mergeNorms(segmentWriteState);
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge norms [" + numMerged + " docs]");
+      return;
+    }
+
+    final List<FutureTask<Void>> tasks = new ArrayList<>();
+    for (MergeStep step : steps.subList(1, steps.size())) {
+      // per-field formats temporarily restrict the merge state to some fields,
+      // so each concurrent step needs its own copy
+      final MergeState stepMergeState = new MergeState(mergeState);
+      final FutureTask<Void> task = new FutureTask<>(() -> {
+        step.run(stepMergeState);
+        return null;
+      });
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();
       }
+      tasks.add(task);
     }
 
-    if (mergeState.mergeFieldInfos.hasVectors()) {
+    Throwable exc = null;
+    try {
+      steps.get(0).run(mergeState);
+    } catch (Throwable t) {
+      exc = t;
+    }
+
+    // wait for all tasks, even if one of them failed, since the readers
+    // must not be closed while they are still in use
+    InterruptedException interrupted = null;
+    for (FutureTask<Void> task : tasks) {
+      while (true) {
+        try {
+          task.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = e;
+        } catch (ExecutionException e) {
+          if (exc == null) {
+            exc = e.getCause();
+          } else {
+            exc.addSuppressed(e.getCause());
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted != null) {
+      throw new ThreadInterruptedException(interrupted);
+    }
+    IOUtils.reThrow(exc);
+  }
+
+  /** Merges one format of the segment. */
+  private abstract class MergeStep {
+    final String name;
+
+    MergeStep(String name) {
+      this.name = name;
+    }
+
+    abstract void merge(MergeState state) throws IOException;
+
+    final void run(MergeState state) throws IOException {
+      long t0 = 0;
       if (mergeState.infoStream.isEnabled("SM")) {
         t0 = System.nanoTime();
       }
-      numMerged = mergeVectors();
+      merge(state);
       if (mergeState.infoStream.isEnabled("SM")) {
         long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge vectors [" + numMerged + " docs]");
+        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + name + " [" + mergeState.segmentInfo.maxDoc() + " docs]");
       }
-      assert numMerged == mergeState.segmentInfo.maxDoc();
     }
-    
-    // write the merged infos
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + numMerged + " docs]");
-    }
-
-    return mergeState;
   }
 
-  private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeDocValues(MergeState mergeState, SegmentWriteState segmentWriteState) throws IOException {
     try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
   }
 
-  private void mergePoints(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergePoints(MergeState mergeState, SegmentWriteState segmentWriteState) throws IOException {
     try (PointsWriter writer = codec.pointsFormat().fieldsWriter(segmentWriteState)) {
       writer.merge(mergeState);
     }
   }
 
-  private void mergeNorms(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeNorms(MergeState mergeState, SegmentWriteState segmentWriteState) throws IOException {
     try (NormsConsumer consumer = codec.normsFormat().normsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
@@ -195,7 +286,7 @@ final class SegmentMerger {
    * @throws CorruptIndexException if the index is corrupt
    * @throws IOException if there is a low-level IO error
    */
-  private int mergeFields() throws IOException {
+  private int mergeFields(MergeState mergeState) throws IOException {
     try (StoredFieldsWriter fieldsWriter = codec.storedFieldsFormat().fieldsWriter(directory, mergeState.segmentInfo, context)) {
       return fieldsWriter.merge(mergeState);
     }
@@ -205,13 +296,13 @@ final class SegmentMerger {
    * Merge the TermVectors from each of the segments into the new one.
    * @throws IOException if there is a low-level IO error
    */
-  private int mergeVectors() throws IOException {
+  private int mergeVectors(MergeState mergeState) throws IOException {
     try (TermVectorsWriter termVectorsWriter = codec.termVectorsFormat().vectorsWriter(directory, mergeState.segmentInfo, context)) {
       return termVectorsWriter.merge(mergeState);
     }
   }
 
-  private void mergeTerms(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeTerms(MergeState mergeState, SegmentWriteState segmentWriteState) throws IOException {
     try (FieldsConsumer consumer = codec.postingsFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
@@ -48,6 +48,14 @@ public abstract class SortedDocValues extends BinaryDocValues {
    */
   public abstract int ordValue();
 
+  /**
+   * Hint that the ordinals of the given documents are going to be read soon,
+   * so that they can be loaded in the background. {@code docIDs} must be
+   * sorted in increasing order. The default implementation does nothing.
+   * @lucene.experimental
+   */
+  public void prefetch(int[] docIDs) throws IOException {}
+
   /** Retrieves the value for the specified ordinal. The returned
    * {@link BytesRef} may be re-used across calls to {@link #lookupOrd(int)}
    * so make sure to {@link BytesRef#deepCopyOf(BytesRef) copy it} if you want
@@ -27,15 +27,53 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.codecs.StoredFieldsWriter;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.ByteBlockPool;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 
+/**
+ * Writes the stored fields of a segment that will be sorted on flush. Stored
+ * fields are first buffered in memory, in a compact encoding, and written
+ * once in sorted order on flush. If they grow larger than
+ * {@link LiveIndexWriterConfig#getStoredFieldsSortBufferMB()}, buffered
+ * documents are written to a temporary file, as well as all documents that
+ * follow, and the temporary file is rewritten in sorted order on flush.
+ */
 final class SortingStoredFieldsConsumer extends StoredFieldsConsumer {
+
+  // type of the value of a buffered field, stored in the lower bits of the field number
+  private static final int STRING = 0x00;
+  private static final int BYTE_ARR = 0x01;
+  private static final int NUMERIC_INT = 0x02;
+  private static final int NUMERIC_FLOAT = 0x03;
+  private static final int NUMERIC_LONG = 0x04;
+  private static final int NUMERIC_DOUBLE = 0x05;
+  private static final int TYPE_BITS = 3;
+  private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
   TrackingTmpOutputDirectoryWrapper tmpDirectory;
 
+  private final long maxBufferedBytes;
+  /** Stored fields of the buffered docs, null if docs are written to a temporary file. */
+  private ByteBlockPool bufferedFields;
+  /** End offset of each buffered doc in {@link #bufferedFields}. */
+  private int[] docEnds = new int[0];
+  /** Buffered fields of the current doc. */
+  private final GrowableByteArrayDataOutput scratch = new GrowableByteArrayDataOutput(128);
+  /** Field infos of buffered fields, by field number. */
+  private FieldInfo[] fieldInfos = new FieldInfo[0];
+  private byte[] readBuffer = BytesRef.EMPTY_BYTES;
+
   SortingStoredFieldsConsumer(DocumentsWriterPerThread docWriter) {
     super(docWriter);
+    maxBufferedBytes = (long) (docWriter.getIndexWriterConfig().getStoredFieldsSortBufferMB() * 1024 * 1024);
+    if (maxBufferedBytes > 0) {
+      bufferedFields = new ByteBlockPool(docWriter.byteBlockAllocator);
+    }
   }
 
   @Override
@@ -47,8 +85,206 @@ final class SortingStoredFieldsConsumer extends StoredFieldsConsumer {
     }
   }
 
+  @Override
+  void startDocument(int docID) throws IOException {
+    if (bufferedFields == null) {
+      super.startDocument(docID);
+      return;
+    }
+    assert lastDoc < docID;
+    while (++lastDoc < docID) {
+      finishBufferedDocument();
+    }
+    scratch.reset();
+  }
+
+  @Override
+  void writeField(FieldInfo info, IndexableField field) throws IOException {
+    if (bufferedFields == null) {
+      super.writeField(info, field);
+      return;
+    }
+
+    final int bits;
+    final BytesRef bytes;
+    final String string;
+    Number number = field.numericValue();
+    if (number != null) {
+      if (number instanceof Byte || number instanceof Short || number instanceof Integer) {
+        bits = NUMERIC_INT;
+      } else if (number instanceof Long) {
+        bits = NUMERIC_LONG;
+      } else if (number instanceof Float) {
+        bits = NUMERIC_FLOAT;
+      } else if (number instanceof Double) {
+        bits = NUMERIC_DOUBLE;
+      } else {
+        throw new IllegalArgumentException("cannot store numeric type " + number.getClass());
+      }
+      string = null;
+      bytes = null;
+    } else {
+      bytes = field.binaryValue();
+      if (bytes != null) {
+        bits = BYTE_ARR;
+        string = null;
+      } else {
+        bits = STRING;
+        string = field.stringValue();
+        if (string == null) {
+          throw new IllegalArgumentException("field " + field.name() + " is stored but does not have binaryValue, stringValue nor numericValue");
+        }
+      }
+    }
+
+    if (info.number >= fieldInfos.length) {
+      fieldInfos = ArrayUtil.grow(fieldInfos, info.number + 1);
+    }
+    fieldInfos[info.number] = info;
+    scratch.writeVLong((((long) info.number) << TYPE_BITS) | bits);
+    switch (bits) {
+      case BYTE_ARR:
+        scratch.writeVInt(bytes.length);
+        scratch.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+        break;
+      case STRING:
+        scratch.writeString(string);
+        break;
+      case NUMERIC_INT:
+        scratch.writeZInt(number.intValue());
+        break;
+      case NUMERIC_LONG:
+        scratch.writeZLong(number.longValue());
+        break;
+      case NUMERIC_FLOAT:
+        scratch.writeInt(Float.floatToIntBits(number.floatValue()));
+        break;
+      case NUMERIC_DOUBLE:
+        scratch.writeLong(Double.doubleToLongBits(number.doubleValue()));
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  @Override
+  void finishDocument() throws IOException {
+    if (bufferedFields == null) {
+      super.finishDocument();
+      return;
+    }
+    finishBufferedDocument();
+    if (bufferedFields.byteOffset + bufferedFields.byteUpto > maxBufferedBytes) {
+      spill();
+    }
+  }
+
+  @Override
+  void finish(int maxDoc) throws IOException {
+    if (bufferedFields == null) {
+      super.finish(maxDoc);
+      return;
+    }
+    while (lastDoc < maxDoc-1) {
+      ++lastDoc;
+      scratch.reset();
+      finishBufferedDocument();
+    }
+  }
+
+  /** Append the fields of the current doc, {@code lastDoc}, to the buffer. */
+  private void finishBufferedDocument() {
+    bufferedFields.append(new BytesRef(scratch.getBytes(), 0, scratch.getPosition()));
+    scratch.reset();
+    if (lastDoc >= docEnds.length) {
+      final int oldLength = docEnds.length;
+      docEnds = ArrayUtil.grow(docEnds, lastDoc + 1);
+      docWriter.bytesUsed.addAndGet((docEnds.length - oldLength) * Integer.BYTES);
+    }
+    docEnds[lastDoc] = bufferedFields.byteOffset + bufferedFields.byteUpto;
+  }
+
+  /** Write the fields of a buffered doc to the given visitor. */
+  private void visitBufferedDocument(int docID, CopyVisitor visitor) throws IOException {
+    final int start = docID == 0 ? 0 : docEnds[docID - 1];
+    final int length = docEnds[docID] - start;
+    final byte[] bytes = readBuffer = ArrayUtil.grow(readBuffer, length);
+    bufferedFields.readBytes(start, bytes, 0, length);
+    final ByteArrayDataInput in = new ByteArrayDataInput(bytes, 0, length);
+    while (in.eof() == false) {
+      final long infoAndBits = in.readVLong();
+      visitor.reset(fieldInfos[(int) (infoAndBits >>> TYPE_BITS)]);
+      switch ((int) infoAndBits & TYPE_MASK) {
+        case BYTE_ARR:
+          final int binaryLength = in.readVInt();
+          visitor.binaryValue = new BytesRef(bytes, in.getPosition(), binaryLength);
+          in.skipBytes(binaryLength);
+          break;
+        case STRING:
+          final int stringLength = in.readVInt();
+          visitor.stringValue = new String(bytes, in.getPosition(), stringLength, StandardCharsets.UTF_8);
+          in.skipBytes(stringLength);
+          break;
+        case NUMERIC_INT:
+          visitor.numericValue = in.readZInt();
+          break;
+        case NUMERIC_LONG:
+          visitor.numericValue = in.readZLong();
+          break;
+        case NUMERIC_FLOAT:
+          visitor.numericValue = Float.intBitsToFloat(in.readInt());
+          break;
+        case NUMERIC_DOUBLE:
+          visitor.numericValue = Double.longBitsToDouble(in.readLong());
+          break;
+        default:
+          throw new AssertionError();
+      }
+      visitor.write();
+    }
+  }
+
+  /** Write all buffered docs to a temporary file, which receives all following docs. */
+  private void spill() throws IOException {
+    initStoredFieldsWriter();
+    final CopyVisitor visitor = new CopyVisitor(writer);
+    for (int docID = 0; docID <= lastDoc; docID++) {
+      writer.startDocument();
+      visitBufferedDocument(docID, visitor);
+      writer.finishDocument();
+    }
+    freeBuffer();
+  }
+
+  private void freeBuffer() {
+    if (bufferedFields != null) {
+      bufferedFields.reset(false, false);
+      bufferedFields = null;
+      docWriter.bytesUsed.addAndGet(-docEnds.length * Integer.BYTES);
+      docEnds = null;
+    }
+  }
+
   @Override
   void flush(SegmentWriteState state, Sorter.DocMap sortMap) throws IOException {
+    if (bufferedFields != null) {
+      // all docs are still in memory, write them once in sorted order
+      StoredFieldsWriter sortWriter = docWriter.codec.storedFieldsFormat()
+          .fieldsWriter(state.directory, state.segmentInfo, IOContext.DEFAULT);
+      try {
+        CopyVisitor visitor = new CopyVisitor(sortWriter);
+        for (int docID = 0; docID < state.segmentInfo.maxDoc(); docID++) {
+          sortWriter.startDocument();
+          visitBufferedDocument(sortMap == null ? docID : sortMap.newToOld(docID), visitor);
+          sortWriter.finishDocument();
+        }
+        sortWriter.finish(state.fieldInfos, state.segmentInfo.maxDoc());
+      } finally {
+        IOUtils.close(sortWriter);
+        freeBuffer();
+      }
+      return;
+    }
     super.flush(state, sortMap);
     if (sortMap == null) {
       // we're lucky the index is already sorted, just rename the temporary file and return
@@ -82,9 +318,12 @@ final class SortingStoredFieldsConsumer extends StoredFieldsConsumer {
   void abort() {
     try {
       super.abort();
+      freeBuffer();
     } finally {
-      IOUtils.deleteFilesIgnoringExceptions(tmpDirectory,
-          tmpDirectory.getTemporaryFiles().values());
+      if (tmpDirectory != null) {
+        IOUtils.deleteFilesIgnoringExceptions(tmpDirectory,
+            tmpDirectory.getTemporaryFiles().values());
+      }
     }
   }
 
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Doc values that are the union of several layers of doc values of the same
+ * field, such as the values of a field and the {@link DocValuesOverlays
+ * sparse overlays} of its updates: a document has a value if any layer has
+ * a value for it, and this value is the one of the top-most such layer.
+ */
+final class StackedDocValues {
+
+  private StackedDocValues() {}
+
+  /** Return numeric doc values that stack the given layers, from bottom to top. */
+  static NumericDocValues numeric(NumericDocValues[] layers) {
+    if (layers.length == 1) {
+      return layers[0];
+    }
+    return new StackedNumericDocValues(layers);
+  }
+
+  /** Return binary doc values that stack the given layers, from bottom to top. */
+  static BinaryDocValues binary(BinaryDocValues[] layers) {
+    if (layers.length == 1) {
+      return layers[0];
+    }
+    return new StackedBinaryDocValues(layers);
+  }
+
+  /** Positions all layers and tracks the top-most layer that has a value for the current document. */
+  private static final class Layers {
+
+    private final DocValuesIterator[] iterators;
+    // whether each iterator has a value for its current doc ID, which is
+    // only false after advanceExact returned false
+    private final boolean[] exists;
+    int doc = -1;
+    int top = -1;
+
+    Layers(DocValuesIterator[] iterators) {
+      this.iterators = iterators;
+      this.exists = new boolean[iterators.length];
+    }
+
+    int advance(int target) throws IOException {
+      int min = DocIdSetIterator.NO_MORE_DOCS;
+      for (int i = 0; i < iterators.length; ++i) {
+        final DocValuesIterator iterator = iterators[i];
+        int layerDoc = iterator.docID();
+        if (layerDoc < target) {
+          layerDoc = iterator.advance(target);
+          exists[i] = true;
+        }
+        min = Math.min(min, layerDoc);
+      }
+      doc = min;
+      top = topLayer();
+      return doc;
+    }
+
+    boolean advanceExact(int target) throws IOException {
+      for (int i = 0; i < iterators.length; ++i) {
+        final DocValuesIterator iterator = iterators[i];
+        if (iterator.docID() < target) {
+          exists[i] = iterator.advanceExact(target);
+        }
+      }
+      doc = target;
+      top = topLayer();
+      return top != -1;
+    }
+
+    private int topLayer() {
+      for (int i = iterators.length - 1; i >= 0; --i) {
+        if (iterators[i].docID() == doc && exists[i]) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    long cost() {
+      long cost = 0;
+      for (DocValuesIterator iterator : iterators) {
+        cost += iterator.cost();
+      }
+      return cost;
+    }
+  }
+
+  private static final class StackedNumericDocValues extends NumericDocValues {
+
+    private final NumericDocValues[] values;
+    private final Layers layers;
+
+    StackedNumericDocValues(NumericDocValues[] values) {
+      this.values = values;
+      this.layers = new Layers(values);
+    }
+
+    @Override
+    public int docID() {
+      return layers.doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return layers.advance(layers.doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return layers.advance(target);
+    }
+
+    @Override
+    public boolean advanceExact(int target) throws IOException {
+      return layers.advanceExact(target);
+    }
+
+    @Override
+    public long cost() {
+      return layers.cost();
+    }
+
+    @Override
+    public long longValue() throws IOException {
+      return values[layers.top].longValue();
+    }
+
+    @Override
+    public void prefetch(int[] docIDs) throws IOException {
+      // any layer may hold the values of these documents
+      for (NumericDocValues layer : values) {
+        layer.prefetch(docIDs);
+      }
+    }
+  }
+
+  private static final class StackedBinaryDocValues extends BinaryDocValues {
+
+    private final BinaryDocValues[] values;
+    private final Layers layers;
+
+    StackedBinaryDocValues(BinaryDocValues[] values) {
+      this.values = values;
+      this.layers = new Layers(values);
+    }
+
+    @Override
+    public int docID() {
+      return layers.doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return layers.advance(layers.doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return layers.advance(target);
+    }
+
+    @Override
+    public boolean advanceExact(int target) throws IOException {
+      return layers.advanceExact(target);
+    }
+
+    @Override
+    public long cost() {
+      return layers.cost();
+    }
+
+    @Override
+    public BytesRef binaryValue() throws IOException {
+      return values[layers.top].binaryValue();
+    }
+  }
+}
@@ -171,6 +171,17 @@ public abstract class TermsEnum implements BytesRefIterator {
    */
   public abstract PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException;
 
+  /** Return {@link Impacts} for the current term, which give upper bounds of
+   *  the frequency of the term in upcoming ranges of doc IDs.  Do not call this
+   *  when the enum is unpositioned.  The default implementation only exposes a
+   *  single level which is computed from {@link #docFreq()} and
+   *  {@link #totalTermFreq()}, codecs may override it in order to expose
+   *  information about smaller ranges of doc IDs.
+   *  @lucene.experimental */
+  public Impacts impacts() throws IOException {
+    return Impacts.singleLevel(Impacts.maxFreq(docFreq(), totalTermFreq()));
+  }
+
   /**
    * Expert: Returns the TermsEnums internal state to position the TermsEnum
    * without re-seeking the term dictionary.
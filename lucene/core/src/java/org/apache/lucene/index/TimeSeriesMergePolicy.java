@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.PointsFormat;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A {@link MergePolicy} for time-series indices, such as logs, that only
+ * merges segments whose documents belong to the same or adjacent time
+ * windows.
+ * <p>
+ * The time of documents is read from a field that is indexed with a
+ * single-dimension {@link LongPoint} or {@link IntPoint}. Windows are
+ * aligned on multiples of the window size, and segments are only merged
+ * together if all their documents fall into two adjacent windows. Old
+ * segments are never merged with segments of recent documents, which keeps
+ * them cold, and the wrapped merge policy picks merges within each pair of
+ * windows, including forced merges. Segments that have no values for the
+ * field are only merged together, and segments whose documents span more
+ * than two windows, for instance because of late documents, are not merged.
+ * <p>
+ * The minimum and maximum values of the field of each segment are read from
+ * the metadata of its points, the first time the segment is seen, and cached
+ * per segment. Doc values do not record such metadata. Since merge policies
+ * are called under the {@link IndexWriter}'s lock, the codec returned by
+ * {@link #wrapCodec} can optionally be set on the {@link IndexWriterConfig}:
+ * it records the range of every flushed or merged segment in its {@link
+ * SegmentInfo} attributes, so that picking merges never needs to open
+ * segment files. Segments where the field is not indexed with a
+ * single-dimension {@link LongPoint} or {@link IntPoint} are considered to
+ * have no values.
+ * <p>
+ * {@link #dropExpiredSegments} drops segments whose documents are all
+ * older than a given time, without running a delete-by-query or merging
+ * anything.
+ *
+ * @lucene.experimental
+ */
+public class TimeSeriesMergePolicy extends MergePolicyWrapper {
+
+  private final String field;
+  private final long windowSize;
+  private final String minKey;
+  private final String maxKey;
+  // min and max values of the field per segment whose range is not recorded
+  // in its attributes, by segment name and id
+  private final Map<String,long[]> ranges = new ConcurrentHashMap<>();
+
+  private static final long[] NO_VALUES = new long[0];
+
+  /**
+   * Creates a new merge policy instance.
+   *
+   * @param in the merge policy that picks merges within each pair of time windows
+   * @param field the point field that holds the time of documents
+   * @param windowSize the size of time windows, in the unit of {@code field}
+   */
+  public TimeSeriesMergePolicy(MergePolicy in, String field, long windowSize) {
+    super(in);
+    if (field == null) {
+      throw new NullPointerException("field must not be null");
+    }
+    if (windowSize <= 0) {
+      throw new IllegalArgumentException("windowSize must be > 0, got " + windowSize);
+    }
+    this.field = field;
+    this.windowSize = windowSize;
+    this.minKey = TimeSeriesMergePolicy.class.getSimpleName() + ".min." + field;
+    this.maxKey = TimeSeriesMergePolicy.class.getSimpleName() + ".max." + field;
+  }
+
+  /** Returns the field that holds the time of documents. */
+  public String getField() {
+    return field;
+  }
+
+  /** Returns the size of time windows. */
+  public long getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Returns a codec that writes the same files as the given codec, and that
+   * records the minimum and maximum values of the field of every flushed or
+   * merged segment, so that they do not need to be read from points. The
+   * returned codec has the same name as the given codec so that the index
+   * can be read without it.
+   */
+  public Codec wrapCodec(Codec codec) {
+    final PointsFormat pointsFormat = new TimeRangePointsFormat(codec.pointsFormat(), field, minKey, maxKey);
+    return new FilterCodec(codec.getName(), codec) {
+      @Override
+      public PointsFormat pointsFormat() {
+        return pointsFormat;
+      }
+    };
+  }
+
+  @Override
+  public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, IndexWriter writer) throws IOException {
+    return findMergesByWindows(segmentInfos, writer, infos -> in.findMerges(mergeTrigger, infos, writer));
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+      Map<SegmentCommitInfo,Boolean> segmentsToMerge, IndexWriter writer) throws IOException {
+    return findMergesByWindows(segmentInfos, writer, infos -> in.findForcedMerges(infos, maxSegmentCount, segmentsToMerge, writer));
+  }
+
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, IndexWriter writer) throws IOException {
+    return findMergesByWindows(segmentInfos, writer, infos -> in.findForcedDeletesMerges(infos, writer));
+  }
+
+  /**
+   * Drops the segments of the given writer whose documents all have a time
+   * that is less than {@code expireBefore}, and returns the number of
+   * dropped segments. Segments that are being merged are skipped, so they
+   * are dropped by a later call if the merged segment is expired too.
+   * Expired documents of other segments are not deleted: use {@link
+   * IndexWriter#deleteDocuments(org.apache.lucene.search.Query...)} with a
+   * range query to delete them.
+   */
+  public int dropExpiredSegments(IndexWriter writer, long expireBefore) throws IOException {
+    final List<SegmentCommitInfo> expired = new ArrayList<>();
+    for (SegmentCommitInfo info : writer.listOfSegmentCommitInfos()) {
+      final long[] range = getRange(info);
+      if (range != null && range[1] < expireBefore) {
+        expired.add(info);
+      }
+    }
+    if (expired.isEmpty()) {
+      return 0;
+    }
+    return writer.dropSegments(expired);
+  }
+
+  /** Picks merges among the given segments one group at a time. */
+  private interface MergeFinder {
+    MergeSpecification findMerges(SegmentInfos infos) throws IOException;
+  }
+
+  /**
+   * Calls the given finder on the segments of every pair of adjacent windows,
+   * from oldest to newest, and then on segments that have no values. Segments
+   * that are picked for a merge are not passed to later calls.
+   */
+  private MergeSpecification findMergesByWindows(SegmentInfos segmentInfos, IndexWriter writer, MergeFinder finder) throws IOException {
+    final TreeSet<Long> minWindows = new TreeSet<>();
+    final SegmentInfos noValues = new SegmentInfos();
+    final Set<String> keys = new HashSet<>();
+    for (SegmentCommitInfo info : segmentInfos) {
+      keys.add(key(info));
+      final long[] range = getRange(info);
+      if (range == null) {
+        noValues.add(info);
+      } else {
+        minWindows.add(Math.floorDiv(range[0], windowSize));
+      }
+    }
+    // forget about segments that are gone
+    ranges.keySet().retainAll(keys);
+    if (verbose(writer)) {
+      if (minWindows.isEmpty() && noValues.size() > 0) {
+        message("no segment has values for field \"" + field + "\", merging without time windows", writer);
+      } else if (noValues.size() > 0) {
+        message(noValues.size() + " segments have no values for field \"" + field + "\", merging them separately", writer);
+      }
+    }
+
+    MergeSpecification spec = null;
+    final Set<SegmentCommitInfo> merging = new HashSet<>();
+    for (long window : minWindows) {
+      final SegmentInfos infos = new SegmentInfos();
+      boolean hasOldest = false;
+      for (SegmentCommitInfo info : segmentInfos) {
+        final long[] range = getRange(info);
+        if (range == null || merging.contains(info)) {
+          continue;
+        }
+        final long minWindow = Math.floorDiv(range[0], windowSize);
+        final long maxWindow = Math.floorDiv(range[1], windowSize);
+        if (minWindow == window && maxWindow - window <= 1) {
+          infos.add(info);
+          hasOldest = true;
+        } else if (minWindow == maxWindow && minWindow - window == 1) {
+          infos.add(info);
+        }
+      }
+      // if all segments of this window are already merged, leave the next
+      // window to be paired with the one after it
+      if (hasOldest) {
+        spec = union(spec, merging, finder.findMerges(infos));
+      }
+    }
+    if (noValues.size() > 0) {
+      spec = union(spec, merging, finder.findMerges(noValues));
+    }
+    return spec;
+  }
+
+  private static MergeSpecification union(MergeSpecification spec, Set<SegmentCommitInfo> merging, MergeSpecification other) {
+    if (other == null) {
+      return spec;
+    }
+    for (OneMerge merge : other.merges) {
+      merging.addAll(merge.segments);
+    }
+    if (spec == null) {
+      return other;
+    }
+    for (OneMerge merge : other.merges) {
+      spec.add(merge);
+    }
+    return spec;
+  }
+
+  private static String key(SegmentCommitInfo info) {
+    // names may be reused after a rollback, ids may not
+    return info.info.name + "_" + StringHelper.idToString(info.info.getId());
+  }
+
+  /** Returns the min and max values of the field in the given segment, or null if it has no values. */
+  private long[] getRange(SegmentCommitInfo info) throws IOException {
+    final String min = info.info.getAttribute(minKey);
+    final String max = info.info.getAttribute(maxKey);
+    if (min != null && max != null) {
+      return new long[] {Long.parseLong(min), Long.parseLong(max)};
+    }
+    final String key = key(info);
+    long[] range = ranges.get(key);
+    if (range == null) {
+      // points are never updated, so the range of a segment never changes
+      range = readRange(info);
+      ranges.put(key, range);
+    }
+    return range == NO_VALUES ? null : range;
+  }
+
+  /** Reads the min and max values of the field from the points of the given segment. */
+  private long[] readRange(SegmentCommitInfo info) throws IOException {
+    final FieldInfos fieldInfos = IndexWriter.readFieldInfos(info);
+    final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+    if (fieldInfo == null || TimeRangePointsFormat.isTimeField(fieldInfo) == false) {
+      return NO_VALUES;
+    }
+    final Codec codec = info.info.getCodec();
+    Directory dir = info.info.dir;
+    Directory cfs = null;
+    if (info.info.getUseCompoundFile()) {
+      cfs = codec.compoundFormat().getCompoundReader(dir, info.info, IOContext.READ);
+      dir = cfs;
+    }
+    PointsReader reader = null;
+    try {
+      reader = codec.pointsFormat().fieldsReader(new SegmentReadState(dir, info.info, fieldInfos, IOContext.READ));
+      final PointValues values = reader.getValues(field);
+      if (values == null || values.size() == 0) {
+        return NO_VALUES;
+      }
+      final int numBytes = fieldInfo.getPointNumBytes();
+      return new long[] {TimeRangePointsFormat.decode(values.getMinPackedValue(), numBytes),
+                         TimeRangePointsFormat.decode(values.getMaxPackedValue(), numBytes)};
+    } finally {
+      IOUtils.close(reader, cfs);
+    }
+  }
+
+  private static boolean verbose(IndexWriter writer) {
+    return writer != null && writer.infoStream.isEnabled("TSMP");
+  }
+
+  private static void message(String message, IndexWriter writer) {
+    writer.infoStream.message("TSMP", message);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(field=" + field + " windowSize=" + windowSize + " in=" + in + ")";
+  }
+
+  /** Records the min and max values of a field in the attributes of written segments. */
+  private static class TimeRangePointsFormat extends PointsFormat {
+
+    private final PointsFormat in;
+    private final String field;
+    private final String minKey;
+    private final String maxKey;
+
+    TimeRangePointsFormat(PointsFormat in, String field, String minKey, String maxKey) {
+      this.in = in;
+      this.field = field;
+      this.minKey = minKey;
+      this.maxKey = maxKey;
+    }
+
+    @Override
+    public PointsWriter fieldsWriter(SegmentWriteState state) throws IOException {
+      return new TimeRangePointsWriter(in.fieldsWriter(state), state.segmentInfo);
+    }
+
+    @Override
+    public PointsReader fieldsReader(SegmentReadState state) throws IOException {
+      return in.fieldsReader(state);
+    }
+
+    private class TimeRangePointsWriter extends PointsWriter {
+
+      private final PointsWriter in;
+      private final SegmentInfo segmentInfo;
+      private long min = Long.MAX_VALUE;
+      private long max = Long.MIN_VALUE;
+
+      TimeRangePointsWriter(PointsWriter in, SegmentInfo segmentInfo) {
+        this.in = in;
+        this.segmentInfo = segmentInfo;
+      }
+
+      @Override
+      public void writeField(FieldInfo fieldInfo, PointsReader values) throws IOException {
+        final PointValues pointValues = values.getValues(fieldInfo.name);
+        if (fieldInfo.name.equals(field) && isTimeField(fieldInfo) && pointValues != null) {
+          final int numBytes = fieldInfo.getPointNumBytes();
+          pointValues.intersect(new IntersectVisitor() {
+            @Override
+            public void visit(int docID) {
+              throw new IllegalStateException();
+            }
+
+            @Override
+            public void visit(int docID, byte[] packedValue) {
+              final long value = decode(packedValue, numBytes);
+              min = Math.min(min, value);
+              max = Math.max(max, value);
+            }
+
+            @Override
+            public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+              return Relation.CELL_CROSSES_QUERY;
+            }
+          });
+        }
+        in.writeField(fieldInfo, values);
+      }
+
+      @Override
+      public void merge(MergeState mergeState) throws IOException {
+        // finish() is not called on merges
+        in.merge(mergeState);
+        final FieldInfo fieldInfo = mergeState.mergeFieldInfos.fieldInfo(field);
+        if (fieldInfo == null || isTimeField(fieldInfo) == false) {
+          return;
+        }
+        // the range of merged segments includes deleted documents, so it may be
+        // a bit wider than the range of the merged segment
+        for (int i = 0; i < mergeState.pointsReaders.length; ++i) {
+          final PointsReader reader = mergeState.pointsReaders[i];
+          final FieldInfo readerFieldInfo = mergeState.fieldInfos[i].fieldInfo(field);
+          if (reader == null || readerFieldInfo == null || readerFieldInfo.getPointDimensionCount() == 0) {
+            continue;
+          }
+          final PointValues values = reader.getValues(field);
+          if (values != null && values.size() > 0) {
+            min = Math.min(min, decode(values.getMinPackedValue(), fieldInfo.getPointNumBytes()));
+            max = Math.max(max, decode(values.getMaxPackedValue(), fieldInfo.getPointNumBytes()));
+          }
+        }
+        recordRange();
+      }
+
+      @Override
+      public void finish() throws IOException {
+        in.finish();
+        recordRange();
+      }
+
+      private void recordRange() {
+        // the segment info is written after points, on both flush and merge
+        if (min <= max) {
+          segmentInfo.putAttribute(minKey, Long.toString(min));
+          segmentInfo.putAttribute(maxKey, Long.toString(max));
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        in.close();
+      }
+    }
+
+    private static boolean isTimeField(FieldInfo fieldInfo) {
+      final int numBytes = fieldInfo.getPointNumBytes();
+      return fieldInfo.getPointDimensionCount() == 1 && (numBytes == Long.BYTES || numBytes == Integer.BYTES);
+    }
+
+    private static long decode(byte[] packedValue, int numBytes) {
+      if (numBytes == Long.BYTES) {
+        return NumericUtils.sortableBytesToLong(packedValue, 0);
+      } else {
+        return NumericUtils.sortableBytesToInt(packedValue, 0);
+      }
+    }
+  }
+}
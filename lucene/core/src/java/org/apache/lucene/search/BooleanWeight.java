@@ -290,6 +290,47 @@ final class BooleanWeight extends Weight {
     }
   }
 
+  @Override
+  public BulkScorer topScoresBulkScorer(LeafReaderContext context) throws IOException {
+    if (needsScores == false
+        || query.getMinimumNumberShouldMatch() > 1
+        || query.getClauses(Occur.MUST).isEmpty() == false
+        || query.getClauses(Occur.FILTER).isEmpty() == false) {
+      // only pure disjunctions can skip over non-competitive hits
+      return bulkScorer(context);
+    }
+
+    List<Scorer> optional = new ArrayList<>();
+    List<Scorer> prohibited = new ArrayList<>();
+    Iterator<BooleanClause> cIter = query.iterator();
+    for (Weight w  : weights) {
+      BooleanClause c =  cIter.next();
+      Scorer scorer = w.scorer(context);
+      if (scorer != null) {
+        if (c.isProhibited()) {
+          prohibited.add(scorer);
+        } else {
+          optional.add(scorer);
+        }
+      }
+    }
+
+    if (optional.isEmpty()) {
+      return null;
+    }
+
+    Scorer scorer = optional.size() == 1
+        ? optional.get(0)
+        : new WANDScorer(this, optional);
+    if (prohibited.isEmpty() == false) {
+      Scorer prohibitedScorer = prohibited.size() == 1
+          ? prohibited.get(0)
+          : new DisjunctionSumScorer(this, prohibited, false);
+      scorer = new ReqExclScorer(scorer, prohibitedScorer);
+    }
+    return new DefaultBulkScorer(scorer);
+  }
+
   @Override
   public Scorer scorer(LeafReaderContext context) throws IOException {
     ScorerSupplier scorerSupplier = scorerSupplier(context);
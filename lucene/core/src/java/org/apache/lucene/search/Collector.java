@@ -79,4 +79,20 @@ public interface Collector {
    * @return {@code true} if scores are needed.
    */
   boolean needsScores();
+
+  /**
+   * Indicates whether this collector only needs the top-scoring hits. If
+   * {@code true}, the collector may report a minimum competitive score
+   * through {@link Scorer#setMinCompetitiveScore(float)} and scorers are
+   * then free to skip documents that score less than it, which means that
+   * such a collector may not see all matching documents, for instance to
+   * count them. This is only taken into account if {@link #needsScores()}
+   * returns {@code true}. Default implementation returns {@code false}.
+   *
+   * @return {@code true} if non-competitive hits may be skipped.
+   * @lucene.experimental
+   */
+  default boolean needsTopScoresOnly() {
+    return false;
+  }
 }
@@ -31,6 +31,10 @@ public class DisiWrapper {
   public int doc; // the current doc, used for comparison
   public DisiWrapper next; // reference to a next element, see #topList
 
+  // An upper bound of the score of this scorer in the current window of doc
+  // IDs, scaled to a long, only used by WANDScorer
+  public long maxScore;
+
   // An approximation of the iterator, or the iterator itself if it does not
   // support two-phase iteration
   public final DocIdSetIterator approximation;
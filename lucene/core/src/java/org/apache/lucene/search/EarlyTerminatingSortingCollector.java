@@ -48,6 +48,11 @@ import org.apache.lucene.search.TotalHitCountCollector;
  * will be correct. However the total of {@link TopDocsCollector#getTotalHits()
  * hit count} will be vastly underestimated since not all matching documents will have
  * been collected.
+ * <p>
+ * <b>NOTE</b>: {@link TopFieldCollector}s that are created with a
+ * {@code totalHitsThreshold} early terminate sorted segments on their own and
+ * report that the total hit count is a lower bound, see
+ * {@link TopFieldCollector#create(Sort, int, FieldDoc, boolean, boolean, boolean, int)}.
  *
  * @lucene.experimental
  */
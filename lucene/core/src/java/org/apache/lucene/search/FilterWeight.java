@@ -27,9 +27,10 @@ import org.apache.lucene.index.Term;
  * all abstract methods by calling the contained weight's method.
  *
  * Note that {@code FilterWeight} does not override the non-abstract
- * {@link Weight#bulkScorer(LeafReaderContext)} method and subclasses of
- * {@code FilterWeight} must provide their bulkScorer implementation
- * if required.
+ * {@link Weight#bulkScorer(LeafReaderContext)} and
+ * {@link Weight#topScoresBulkScorer(LeafReaderContext)} methods and
+ * subclasses of {@code FilterWeight} must provide their bulkScorer
+ * implementation if required.
  *
  * @lucene.internal
  */
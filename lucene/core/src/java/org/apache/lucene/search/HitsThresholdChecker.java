@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells top-docs collectors when they collected enough hits to have an
+ * accurate hit count up to a threshold, after which they may let scorers
+ * skip non-competitive hits. The threshold is either tracked per collector
+ * or shared by all collectors of a {@link CollectorManager}.
+ */
+abstract class HitsThresholdChecker {
+
+  /** Return a checker that only counts the hits of a single collector. */
+  static HitsThresholdChecker create(final int totalHitsThreshold) {
+    checkThreshold(totalHitsThreshold);
+    return new LocalHitsThresholdChecker(totalHitsThreshold);
+  }
+
+  /** Return a checker that may be shared by the collectors of all slices of
+   *  an {@link IndexSearcher}. */
+  static HitsThresholdChecker createShared(final int totalHitsThreshold) {
+    checkThreshold(totalHitsThreshold);
+    return new GlobalHitsThresholdChecker(totalHitsThreshold);
+  }
+
+  private static void checkThreshold(int totalHitsThreshold) {
+    if (totalHitsThreshold < 0) {
+      throw new IllegalArgumentException("totalHitsThreshold must be >= 0, got " + totalHitsThreshold);
+    }
+  }
+
+  /** Record that a new hit has been collected. */
+  abstract void incrementHitCount();
+
+  /** Whether more than {@link #getHitsThreshold()} hits have been collected. */
+  abstract boolean isThresholdReached();
+
+  /** Return the number of hits to count accurately. */
+  abstract int getHitsThreshold();
+
+  private static final class LocalHitsThresholdChecker extends HitsThresholdChecker {
+    private final int totalHitsThreshold;
+    private int hitCount;
+
+    LocalHitsThresholdChecker(int totalHitsThreshold) {
+      this.totalHitsThreshold = totalHitsThreshold;
+    }
+
+    @Override
+    void incrementHitCount() {
+      ++hitCount;
+    }
+
+    @Override
+    boolean isThresholdReached() {
+      return hitCount > totalHitsThreshold;
+    }
+
+    @Override
+    int getHitsThreshold() {
+      return totalHitsThreshold;
+    }
+  }
+
+  private static final class GlobalHitsThresholdChecker extends HitsThresholdChecker {
+    private final int totalHitsThreshold;
+    private final AtomicLong globalHitCount = new AtomicLong();
+
+    GlobalHitsThresholdChecker(int totalHitsThreshold) {
+      this.totalHitsThreshold = totalHitsThreshold;
+    }
+
+    @Override
+    void incrementHitCount() {
+      // stop writing to the shared counter once the threshold is reached
+      // so that threads do not keep contending on it
+      if (globalHitCount.get() <= totalHitsThreshold) {
+        globalHitCount.incrementAndGet();
+      }
+    }
+
+    @Override
+    boolean isThresholdReached() {
+      return globalHitCount.get() > totalHitsThreshold;
+    }
+
+    @Override
+    int getHitsThreshold() {
+      return totalHitsThreshold;
+    }
+  }
+}
@@ -141,6 +141,7 @@ public class IndexSearcher {
 
   private QueryCache queryCache = DEFAULT_QUERY_CACHE;
   private QueryCachingPolicy queryCachingPolicy = DEFAULT_CACHING_POLICY;
+  private TermPostingsCache termPostingsCache;
 
   /**
    * Expert: returns a default Similarity instance.
@@ -269,6 +270,27 @@ public class IndexSearcher {
     return queryCache;
   }
 
+  /**
+   * Set the {@link TermPostingsCache} that {@link TermQuery} should use to
+   * cache the decoded postings of frequently scored terms. A value of
+   * {@code null}, the default, disables this cache. This method should be
+   * called <b>before</b> starting using this {@link IndexSearcher}.
+   * @see TermPostingsCache
+   * @lucene.experimental
+   */
+  public void setTermPostingsCache(TermPostingsCache termPostingsCache) {
+    this.termPostingsCache = termPostingsCache;
+  }
+
+  /**
+   * Return the {@link TermPostingsCache} of this {@link IndexSearcher}, or
+   * {@code null} if postings are not cached.
+   * @lucene.experimental
+   */
+  public TermPostingsCache getTermPostingsCache() {
+    return termPostingsCache;
+  }
+
   /**
    * Set the {@link QueryCachingPolicy} to use for query caching.
    * This method should be called <b>before</b> starting using this
@@ -302,6 +324,67 @@ public class IndexSearcher {
     }
     return slices;
   }
+
+  /**
+   * Expert: Creates slices whose sizes are balanced using the number of
+   * documents of the leaves as a proxy for the cost of searching them.
+   * Consecutive leaves are grouped into the same slice as long as the slice
+   * has at most {@code maxDocsPerSlice} documents and
+   * {@code maxSegmentsPerSlice} leaves, and leaves that have more than
+   * {@code maxDocsPerSlice} documents are split into ranges of doc IDs that
+   * are searched concurrently, see
+   * {@link BulkScorer#score(LeafCollector, Bits, int, int)}. Slices are
+   * returned in doc ID order, so that hits that compare equal are merged in
+   * the same order as with a single thread.
+   * <p>
+   * This can be used by sub-classes that override
+   * {@link #slices(List)}. Note that splitting leaves means that a
+   * {@link Collector} may not see all documents of a leaf, so this should
+   * only be used with collectors that do not make assumptions about
+   * collecting leaves entirely.
+   * @lucene.experimental
+   */
+  public static LeafSlice[] slices(List<LeafReaderContext> leaves, int maxDocsPerSlice, int maxSegmentsPerSlice) {
+    if (maxDocsPerSlice < 1) {
+      throw new IllegalArgumentException("maxDocsPerSlice must be >= 1, got " + maxDocsPerSlice);
+    }
+    if (maxSegmentsPerSlice < 1) {
+      throw new IllegalArgumentException("maxSegmentsPerSlice must be >= 1, got " + maxSegmentsPerSlice);
+    }
+    final List<LeafSlice> slices = new ArrayList<>();
+    final List<LeafReaderContextPartition> group = new ArrayList<>();
+    long docsInGroup = 0;
+    for (LeafReaderContext ctx : leaves) {
+      final int maxDoc = ctx.reader().maxDoc();
+      if (maxDoc > maxDocsPerSlice) {
+        // large leaf: give it slices of its own, each with a range of doc IDs
+        if (group.isEmpty() == false) {
+          slices.add(new LeafSlice(group.toArray(new LeafReaderContextPartition[0])));
+          group.clear();
+          docsInGroup = 0;
+        }
+        final int numPartitions = (int) ((maxDoc + (long) maxDocsPerSlice - 1) / maxDocsPerSlice);
+        final int partitionSize = (int) ((maxDoc + (long) numPartitions - 1) / numPartitions);
+        for (int minDoc = 0; minDoc < maxDoc; minDoc += partitionSize) {
+          final int maxDocExclusive = (int) Math.min(maxDoc, (long) minDoc + partitionSize);
+          slices.add(new LeafSlice(new LeafReaderContextPartition(ctx, minDoc, maxDocExclusive)));
+        }
+      } else {
+        if (group.isEmpty() == false
+            && (docsInGroup + maxDoc > maxDocsPerSlice || group.size() == maxSegmentsPerSlice)) {
+          slices.add(new LeafSlice(group.toArray(new LeafReaderContextPartition[0])));
+          group.clear();
+          docsInGroup = 0;
+        }
+        group.add(new LeafReaderContextPartition(ctx));
+        docsInGroup += maxDoc;
+      }
+    }
+    if (group.isEmpty() == false) {
+      slices.add(new LeafSlice(group.toArray(new LeafReaderContextPartition[0])));
+    }
+    return slices.toArray(new LeafSlice[0]);
+  }
   
   /** Return the {@link IndexReader} this searches. */
   public IndexReader getIndexReader() {
@@ -324,6 +407,15 @@ public class IndexSearcher {
     reader.document(docID, fieldVisitor);
   }
 
+  /** 
+   * Sugar for <code>.getIndexReader().document(docIDs, fieldVisitors)</code>
+   * @see IndexReader#document(int[], StoredFieldVisitor[]) 
+   * @lucene.experimental
+   */
+  public void doc(int[] docIDs, StoredFieldVisitor[] fieldVisitors) throws IOException {
+    reader.document(docIDs, fieldVisitors);
+  }
+
   /** 
    * Sugar for <code>.getIndexReader().document(docID, fieldsToLoad)</code>
    * @see IndexReader#document(int, Set) 
@@ -593,12 +685,16 @@ public class IndexSearcher {
       final Weight weight = createNormalizedWeight(query, needsScores);
       final List<Future<C>> topDocsFutures = new ArrayList<>(leafSlices.length);
       for (int i = 0; i < leafSlices.length; ++i) {
-        final LeafReaderContext[] leaves = leafSlices[i].leaves;
+        final LeafSlice slice = leafSlices[i];
         final C collector = collectors.get(i);
         topDocsFutures.add(executor.submit(new Callable<C>() {
           @Override
           public C call() throws Exception {
-            search(Arrays.asList(leaves), weight, collector);
+            if (slice.hasPartialLeaves()) {
+              search(slice.partitions, weight, collector);
+            } else {
+              search(Arrays.asList(slice.leaves), weight, collector);
+            }
             return collector;
           }
         }));
@@ -653,7 +749,13 @@ public class IndexSearcher {
         // continue with the following leaf
         continue;
       }
-      BulkScorer scorer = weight.bulkScorer(ctx);
+      BulkScorer scorer;
+      if (collector.needsScores() && collector.needsTopScoresOnly()) {
+        // non-competitive hits may be skipped
+        scorer = weight.topScoresBulkScorer(ctx);
+      } else {
+        scorer = weight.bulkScorer(ctx);
+      }
       if (scorer != null) {
         try {
           scorer.score(leafCollector, ctx.reader().getLiveDocs());
@@ -665,6 +767,40 @@ public class IndexSearcher {
     }
   }
 
+  /**
+   * Search ranges of doc IDs of leaves, see
+   * {@link #slices(List, int, int)}.
+   */
+  private void search(LeafReaderContextPartition[] partitions, Weight weight, Collector collector)
+      throws IOException {
+    for (LeafReaderContextPartition partition : partitions) {
+      final LeafReaderContext ctx = partition.ctx;
+      final LeafCollector leafCollector;
+      try {
+        leafCollector = collector.getLeafCollector(ctx);
+      } catch (CollectionTerminatedException e) {
+        // there is no doc of interest in this reader context
+        // continue with the following partition
+        continue;
+      }
+      BulkScorer scorer;
+      if (collector.needsScores() && collector.needsTopScoresOnly()) {
+        // non-competitive hits may be skipped
+        scorer = weight.topScoresBulkScorer(ctx);
+      } else {
+        scorer = weight.bulkScorer(ctx);
+      }
+      if (scorer != null) {
+        try {
+          scorer.score(leafCollector, ctx.reader().getLiveDocs(), partition.minDocId, partition.maxDocId);
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+          // continue with the following partition
+        }
+      }
+    }
+  }
+
   /** Expert: called to re-write queries into primitive queries.
    * @throws BooleanQuery.TooManyClauses If a query would exceed 
    *         {@link BooleanQuery#getMaxClauseCount()} clauses.
@@ -756,9 +892,73 @@ public class IndexSearcher {
    */
   public static class LeafSlice {
     final LeafReaderContext[] leaves;
+    final LeafReaderContextPartition[] partitions;
     
     public LeafSlice(LeafReaderContext... leaves) {
       this.leaves = leaves;
+      this.partitions = new LeafReaderContextPartition[leaves.length];
+      for (int i = 0; i < leaves.length; ++i) {
+        partitions[i] = new LeafReaderContextPartition(leaves[i]);
+      }
+    }
+
+    /** Create a slice out of ranges of doc IDs of leaves. A slice must not
+     *  contain several partitions of the same leaf. */
+    public LeafSlice(LeafReaderContextPartition... partitions) {
+      this.partitions = partitions;
+      this.leaves = new LeafReaderContext[partitions.length];
+      for (int i = 0; i < partitions.length; ++i) {
+        leaves[i] = partitions[i].ctx;
+        for (int j = 0; j < i; ++j) {
+          if (leaves[j] == leaves[i]) {
+            throw new IllegalArgumentException("A slice must not contain several partitions of the same leaf");
+          }
+        }
+      }
+    }
+
+    /** Whether some leaves of this slice are only partially searched. */
+    boolean hasPartialLeaves() {
+      for (LeafReaderContextPartition partition : partitions) {
+        if (partition.minDocId != 0 || partition.maxDocId != partition.ctx.reader().maxDoc()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A range of doc IDs of a {@link LeafReaderContext}, which allows large
+   * leaves to be searched by several threads concurrently.
+   *
+   * @lucene.experimental
+   */
+  public static class LeafReaderContextPartition {
+    final LeafReaderContext ctx;
+    final int minDocId;
+    final int maxDocId;
+
+    /** Create a partition that spans all documents of the given leaf. */
+    public LeafReaderContextPartition(LeafReaderContext ctx) {
+      this(ctx, 0, ctx.reader().maxDoc());
+    }
+
+    /** Create a partition that spans documents between {@code minDocId}
+     *  included and {@code maxDocId} excluded of the given leaf. */
+    public LeafReaderContextPartition(LeafReaderContext ctx, int minDocId, int maxDocId) {
+      if (minDocId < 0 || minDocId > maxDocId || maxDocId > ctx.reader().maxDoc()) {
+        throw new IllegalArgumentException("Illegal range of doc IDs: [" + minDocId + ", " + maxDocId
+            + ") for a leaf that has maxDoc=" + ctx.reader().maxDoc());
+      }
+      this.ctx = ctx;
+      this.minDocId = minDocId;
+      this.maxDocId = maxDocId;
+    }
+
+    @Override
+    public String toString() {
+      return "LeafReaderContextPartition(ord=" + ctx.ord + ", docs=[" + minDocId + ", " + maxDocId + "))";
     }
   }
 
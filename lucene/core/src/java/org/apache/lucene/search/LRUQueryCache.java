@@ -18,21 +18,26 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
 import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
@@ -81,6 +86,17 @@ import org.apache.lucene.util.RoaringDocIdSet;
  * It is better to not perform heavy computations in these methods though since
  * they are called synchronously and under a lock.
  *
+ * By default, cache entries are computed synchronously by the search that
+ * decides to cache a query, which may make this search significantly slower
+ * than the same search without caching. Alternatively, an {@link Executor}
+ * may be passed to
+ * {@link #LRUQueryCache(int, long, Predicate, Executor) the constructor}, in
+ * which case cache entries are computed in the background: the search that
+ * triggers caching runs the uncached query and later searches use the cache
+ * entry once it is ready. {@link #getPendingCount()},
+ * {@link #getFailedCount()} and {@link #getEvictedBeforeUseCount()} help
+ * monitor background caching.
+ *
  * @see QueryCachingPolicy
  * @lucene.experimental
  */
@@ -109,6 +125,10 @@ public class LRUQueryCache implements QueryCache, Accountable {
   private final Set<Query> mostRecentlyUsedQueries;
   private final Map<Object, LeafCache> cache;
   private final ReentrantLock lock;
+  // executor that computes cache entries in the background, or null to compute them synchronously
+  private final Executor populationExecutor;
+  // per core key, queries whose cache entry is being computed in the background
+  private final Map<Object, Set<Query>> pendingQueries;
 
   // these variables are volatile so that we do not need to sync reads
   // but increments need to be performed under the lock
@@ -117,24 +137,41 @@ public class LRUQueryCache implements QueryCache, Accountable {
   private volatile long missCount;
   private volatile long cacheCount;
   private volatile long cacheSize;
+  private volatile long pendingCount;
+  private volatile long failedCount;
+  private volatile long evictedBeforeUseCount;
 
   /**
    * Expert: Create a new instance that will cache at most <code>maxSize</code>
    * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
-   * leaves that satisfy {@code leavesToCache};
+   * leaves that satisfy {@code leavesToCache}. If {@code populationExecutor} is
+   * not null, cache entries will be computed in the background on this
+   * executor rather than by the search that decides to cache a query.
    */
   public LRUQueryCache(int maxSize, long maxRamBytesUsed,
-      Predicate<LeafReaderContext> leavesToCache) {
+      Predicate<LeafReaderContext> leavesToCache, Executor populationExecutor) {
     this.maxSize = maxSize;
     this.maxRamBytesUsed = maxRamBytesUsed;
     this.leavesToCache = leavesToCache;
+    this.populationExecutor = populationExecutor;
     uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
     mostRecentlyUsedQueries = uniqueQueries.keySet();
     cache = new IdentityHashMap<>();
+    pendingQueries = new IdentityHashMap<>();
     lock = new ReentrantLock();
     ramBytesUsed = 0;
   }
 
+  /**
+   * Expert: Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
+   * leaves that satisfy {@code leavesToCache};
+   */
+  public LRUQueryCache(int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache) {
+    this(maxSize, maxRamBytesUsed, leavesToCache, null);
+  }
+
   /**
    * Create a new instance that will cache at most <code>maxSize</code> queries
    * with at most <code>maxRamBytesUsed</code> bytes of memory. Queries will
@@ -301,23 +338,88 @@ public class LRUQueryCache implements QueryCache, Accountable {
       } else {
         query = singleton;
       }
-      final Object key = context.reader().getCoreCacheKey();
-      LeafCache leafCache = cache.get(key);
-      if (leafCache == null) {
-        leafCache = new LeafCache(key);
-        final LeafCache previous = cache.put(context.reader().getCoreCacheKey(), leafCache);
-        ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
-        assert previous == null;
-        // we just created a new leaf cache, need to register a close listener
-        context.reader().addCoreClosedListener(this::clearCoreCacheKey);
-      }
-      leafCache.putIfAbsent(query, set);
+      getOrCreateLeafCache(context).putIfAbsent(query, set);
       evictIfNecessary();
     } finally {
       lock.unlock();
     }
   }
 
+  private LeafCache getOrCreateLeafCache(LeafReaderContext context) {
+    assert lock.isHeldByCurrentThread();
+    final Object key = context.reader().getCoreCacheKey();
+    LeafCache leafCache = cache.get(key);
+    if (leafCache == null) {
+      leafCache = new LeafCache(key);
+      final LeafCache previous = cache.put(key, leafCache);
+      ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
+      assert previous == null;
+      // we just created a new leaf cache, need to register a close listener
+      context.reader().addCoreClosedListener(this::clearCoreCacheKey);
+    }
+    return leafCache;
+  }
+
+  /**
+   * Record that the cache entry of the given query on the given segment is
+   * going to be computed in the background. Returns false if it is already
+   * being computed.
+   */
+  private boolean markPending(Query query, LeafReaderContext context) {
+    assert lock.isHeldByCurrentThread();
+    // no need to create a leaf cache and its close listener here: the
+    // computation holds a reference to the reader so that the segment cannot
+    // be closed before the entry is added
+    final Set<Query> pending = pendingQueries.computeIfAbsent(context.reader().getCoreCacheKey(), k -> new HashSet<>());
+    if (pending.add(query)) {
+      pendingCount += 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stop tracking the given pending entry. Returns false if it is not pending
+   * anymore because its segment or query has been evicted in the meantime.
+   */
+  private boolean unmarkPending(Query query, Object coreKey) {
+    assert lock.isHeldByCurrentThread();
+    final Set<Query> pending = pendingQueries.get(coreKey);
+    if (pending != null && pending.remove(query)) {
+      if (pending.isEmpty()) {
+        pendingQueries.remove(coreKey);
+      }
+      pendingCount -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Add a cache entry that has been computed in the background, unless it
+   * has been invalidated while it was computed.
+   */
+  void putIfPending(Query query, LeafReaderContext context, DocIdSet set) {
+    lock.lock();
+    try {
+      if (unmarkPending(query, context.reader().getCoreCacheKey())) {
+        putIfAbsent(query, context, set);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void onPopulationFailure(Query query, Object coreKey) {
+    lock.lock();
+    try {
+      unmarkPending(query, coreKey);
+      failedCount += 1;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   void evictIfNecessary() {
     assert lock.isHeldByCurrentThread();
     // under a lock to make sure that mostRecentlyUsedQueries and cache keep sync'ed
@@ -347,9 +449,14 @@ public class LRUQueryCache implements QueryCache, Accountable {
   public void clearCoreCacheKey(Object coreKey) {
     lock.lock();
     try {
+      final Set<Query> pending = pendingQueries.remove(coreKey);
+      if (pending != null) {
+        pendingCount -= pending.size();
+      }
       final LeafCache leafCache = cache.remove(coreKey);
       if (leafCache != null) {
         ramBytesUsed -= HASHTABLE_RAM_BYTES_PER_ENTRY;
+        evictedBeforeUseCount += leafCache.unused.size();
         final int numEntries = leafCache.cache.size();
         if (numEntries > 0) {
           onDocIdSetEviction(coreKey, numEntries, leafCache.ramBytesUsed);
@@ -372,6 +479,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
       final Query singleton = uniqueQueries.remove(query);
       if (singleton != null) {
         onEviction(singleton);
+      } else {
+        unmarkPending(query);
       }
     } finally {
       lock.unlock();
@@ -384,6 +493,24 @@ public class LRUQueryCache implements QueryCache, Accountable {
     for (LeafCache leafCache : cache.values()) {
       leafCache.remove(singleton);
     }
+    unmarkPending(singleton);
+  }
+
+  /**
+   * Stop tracking pending entries of the given query on all segments, so
+   * that they get discarded once computed.
+   */
+  private void unmarkPending(Query query) {
+    assert lock.isHeldByCurrentThread();
+    for (Iterator<Set<Query>> it = pendingQueries.values().iterator(); it.hasNext(); ) {
+      final Set<Query> pending = it.next();
+      if (pending.remove(query)) {
+        pendingCount -= 1;
+        if (pending.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
   }
 
   /**
@@ -392,7 +519,12 @@ public class LRUQueryCache implements QueryCache, Accountable {
   public void clear() {
     lock.lock();
     try {
+      for (LeafCache leafCache : cache.values()) {
+        evictedBeforeUseCount += leafCache.unused.size();
+      }
       cache.clear();
+      pendingQueries.clear();
+      pendingCount = 0;
       // Note that this also clears the uniqueQueries map since mostRecentlyUsedQueries is the uniqueQueries.keySet view:
       mostRecentlyUsedQueries.clear();
       onClear();
@@ -614,16 +746,48 @@ public class LRUQueryCache implements QueryCache, Accountable {
     return getCacheCount() - getCacheSize();
   }
 
+  /**
+   * Return the number of cache entries that are currently being computed in
+   * the background. This is always 0 if this cache has no population
+   * executor.
+   * @see #getFailedCount()
+   */
+  public final long getPendingCount() {
+    return pendingCount;
+  }
+
+  /**
+   * Return the number of cache entries whose background computation failed
+   * or could not be scheduled on the population executor.
+   * @see #getPendingCount()
+   */
+  public final long getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+   * Return the number of cache entries that have been removed from the cache
+   * before any search used them. High numbers mean that the cache does not
+   * pay off the cost of computing its entries.
+   * @see #getEvictionCount()
+   */
+  public final long getEvictedBeforeUseCount() {
+    return evictedBeforeUseCount;
+  }
+
   // this class is not thread-safe, everything but ramBytesUsed needs to be called under a lock
   private class LeafCache implements Accountable {
 
     private final Object key;
     private final Map<Query, DocIdSet> cache;
+    // entries that have not been used by any search yet
+    private final Set<Query> unused;
     private volatile long ramBytesUsed;
 
     LeafCache(Object key) {
       this.key = key;
       cache = new IdentityHashMap<>();
+      unused = Collections.newSetFromMap(new IdentityHashMap<>());
       ramBytesUsed = 0;
     }
 
@@ -640,7 +804,11 @@ public class LRUQueryCache implements QueryCache, Accountable {
     DocIdSet get(Query query) {
       assert query instanceof BoostQuery == false;
       assert query instanceof ConstantScoreQuery == false;
-      return cache.get(query);
+      final DocIdSet set = cache.get(query);
+      if (set != null) {
+        unused.remove(query);
+      }
+      return set;
     }
 
     void putIfAbsent(Query query, DocIdSet set) {
@@ -648,6 +816,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
       assert query instanceof ConstantScoreQuery == false;
       if (cache.putIfAbsent(query, set) == null) {
         // the set was actually put
+        unused.add(query);
         onDocIdSetCache(HASHTABLE_RAM_BYTES_PER_ENTRY + set.ramBytesUsed());
       }
     }
@@ -657,6 +826,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
       assert query instanceof ConstantScoreQuery == false;
       DocIdSet removed = cache.remove(query);
       if (removed != null) {
+        if (unused.remove(query)) {
+          evictedBeforeUseCount += 1;
+        }
         onDocIdSetEviction(HASHTABLE_RAM_BYTES_PER_ENTRY + removed.ramBytesUsed());
       }
     }
@@ -670,7 +842,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   private class CachingWrapperWeight extends ConstantScoreWeight {
 
-    private final Weight in;
+    final Weight in;
     private final QueryCachingPolicy policy;
     // we use an AtomicBoolean because Weight.scorer may be called from multiple
     // threads when IndexSearcher is created with threads
@@ -709,6 +881,57 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
     }
 
+    /**
+     * Compute the cache entry of this query on the given segment on the
+     * population executor, unless it is already being computed.
+     */
+    private void populateInBackground(LeafReaderContext context) throws IOException {
+      final Query query = in.getQuery();
+      final LeafReader reader = context.reader();
+      final Object coreKey = reader.getCoreCacheKey();
+      // make sure the segment does not get closed before the entry is computed
+      if (reader.tryIncRef() == false) {
+        return;
+      }
+      boolean pending = false;
+      lock.lock();
+      try {
+        pending = markPending(query, context);
+      } finally {
+        lock.unlock();
+        if (pending == false) {
+          reader.decRef();
+        }
+      }
+      if (pending == false) {
+        return;
+      }
+      try {
+        populationExecutor.execute(() -> {
+          try {
+            final DocIdSet docIdSet;
+            try {
+              docIdSet = cache(context);
+            } catch (IOException | RuntimeException e) {
+              // the entry will be computed again the next time the policy decides to cache it
+              onPopulationFailure(query, coreKey);
+              return;
+            }
+            putIfPending(query, context, docIdSet);
+          } finally {
+            try {
+              reader.decRef();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        onPopulationFailure(query, coreKey);
+        reader.decRef();
+      }
+    }
+
     /** Check whether this segment is eligible for caching, regardless of the query. */
     private boolean shouldCache(LeafReaderContext context) throws IOException {
       return cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc())
@@ -739,12 +962,14 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       if (docIdSet == null) {
-        if (policy.shouldCache(in.getQuery())) {
-          docIdSet = cache(context);
-          putIfAbsent(in.getQuery(), context, docIdSet);
-        } else {
+        if (policy.shouldCache(in.getQuery()) == false) {
+          return in.scorer(context);
+        } else if (populationExecutor != null) {
+          populateInBackground(context);
           return in.scorer(context);
         }
+        docIdSet = cache(context);
+        putIfAbsent(in.getQuery(), context, docIdSet);
       }
 
       assert docIdSet != null;
@@ -783,12 +1008,14 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       if (docIdSet == null) {
-        if (policy.shouldCache(in.getQuery())) {
-          docIdSet = cache(context);
-          putIfAbsent(in.getQuery(), context, docIdSet);
-        } else {
+        if (policy.shouldCache(in.getQuery()) == false) {
+          return in.bulkScorer(context);
+        } else if (populationExecutor != null) {
+          populateInBackground(context);
           return in.bulkScorer(context);
         }
+        docIdSet = cache(context);
+        putIfAbsent(in.getQuery(), context, docIdSet);
       }
 
       assert docIdSet != null;
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * Maintains the maximum of the minimum competitive scores that the
+ * collectors of a {@link CollectorManager} have found so far, so that every
+ * slice of an {@link IndexSearcher} can skip hits that cannot make it to the
+ * merged top hits. Updates are lock-free.
+ */
+final class MaxScoreAccumulator {
+  // we use 2^10-1 to check the remainder with a bitwise operation
+  static final int DEFAULT_INTERVAL = 0x3ff;
+
+  // scores are encoded as sortable ints so that the maximum of the encoded
+  // values is the encoding of the maximum score
+  private final LongAccumulator acc = new LongAccumulator(Long::max, Long.MIN_VALUE);
+
+  /** Collectors check the global minimum competitive score every
+   *  {@code modInterval + 1} hits. Non-final and visible for tests. */
+  long modInterval;
+
+  MaxScoreAccumulator() {
+    this.modInterval = DEFAULT_INTERVAL;
+  }
+
+  /** Record that hits need to score at least {@code score} to be competitive. */
+  void accumulate(float score) {
+    acc.accumulate(NumericUtils.floatToSortableInt(score));
+  }
+
+  /** Return the greatest score that has been accumulated so far, or
+   *  {@link Float#NEGATIVE_INFINITY} if none. */
+  float get() {
+    final long value = acc.get();
+    if (value == Long.MIN_VALUE) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    return NumericUtils.sortableIntToFloat((int) value);
+  }
+
+  @Override
+  public String toString() {
+    return "MaxScoreAccumulator(" + get() + ")";
+  }
+}
@@ -70,6 +70,45 @@ public abstract class Scorer {
   /** Returns the freq of this Scorer on the current document */
   public abstract int freq() throws IOException;
 
+  /**
+   * Optional method: Tell the scorer that its iterator may safely ignore all
+   * documents whose score is less than the given {@code minScore}. This is a
+   * no-op by default.
+   *
+   * This method may only be called from collectors that return {@code true}
+   * from {@link Collector#needsTopScoresOnly()}, and {@code minScore} may
+   * only increase across calls.
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) {
+    // no-op by default
+  }
+
+  /**
+   * Advance to the block of documents that contains {@code target} in order to
+   * get scoring information about this block. This does not move the
+   * {@link #iterator()}. Targets must be passed in non-decreasing order.
+   * Returns the last doc ID of the block, which is
+   * {@link DocIdSetIterator#NO_MORE_DOCS} by default.
+   * @see #getMaxScore(int)
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  /**
+   * Return an upper bound of the score of the documents that are between the
+   * last target that was passed to {@link #advanceShallow(int)} and
+   * {@code upTo} included, or of all documents if {@link #advanceShallow(int)}
+   * has never been called. The default implementation returns
+   * {@link Float#POSITIVE_INFINITY}, which means that scores are not bounded.
+   * @lucene.experimental
+   */
+  public float getMaxScore(int upTo) throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /** returns parent Weight
    * @lucene.experimental
    */
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+
+/**
+ * A {@link QueryCache} that stripes queries across several independent
+ * {@link LRUQueryCache} shards based on their hash code, so that concurrent
+ * searches that use different queries rarely contend on the same lock.
+ * Each shard gets an equal part of the maximum number of queries and of the
+ * maximum number of bytes, and evicts in LRU order on its own: eviction is
+ * only approximately least-recently-used across the whole cache.
+ * <p>
+ * Statistics are summed across shards. In order to compute more
+ * fine-grained statistics, override {@link #newShard} to return an
+ * {@link LRUQueryCache} that overrides its callbacks such as
+ * {@link LRUQueryCache#onHit} or {@link LRUQueryCache#onMiss}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see LRUQueryCache
+ * @lucene.experimental
+ */
+public class ShardedLRUQueryCache implements QueryCache, Accountable {
+
+  private final Executor populationExecutor;
+  private final LRUQueryCache[] shards;
+
+  /**
+   * Create a new instance that will cache at most {@code maxSize} queries
+   * with at most {@code maxRamBytesUsed} bytes of memory across
+   * {@code numShards} shards, only on leaves that satisfy
+   * {@code leavesToCache}. If {@code populationExecutor} is not null, cache
+   * entries are computed in the background on this executor, see
+   * {@link LRUQueryCache#LRUQueryCache(int, long, Predicate, Executor)}.
+   */
+  public ShardedLRUQueryCache(int numShards, int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache, Executor populationExecutor) {
+    if (numShards < 1) {
+      throw new IllegalArgumentException("numShards must be >= 1, got " + numShards);
+    }
+    if (numShards > maxSize) {
+      // otherwise some shards would not be able to cache anything
+      throw new IllegalArgumentException("numShards must be <= maxSize, got numShards=" + numShards + ", maxSize=" + maxSize);
+    }
+    this.populationExecutor = populationExecutor;
+    shards = new LRUQueryCache[numShards];
+    for (int i = 0; i < numShards; ++i) {
+      // spread the remainders so that the sum of the limits of all shards matches the global limits
+      final int shardMaxSize = maxSize / numShards + (i < maxSize % numShards ? 1 : 0);
+      final long shardMaxRamBytesUsed = maxRamBytesUsed / numShards + (i < maxRamBytesUsed % numShards ? 1 : 0);
+      shards[i] = newShard(shardMaxSize, shardMaxRamBytesUsed, leavesToCache);
+    }
+  }
+
+  /**
+   * Create a new instance that will cache at most {@code maxSize} queries
+   * with at most {@code maxRamBytesUsed} bytes of memory across
+   * {@code numShards} shards, only on leaves that satisfy
+   * {@code leavesToCache}.
+   */
+  public ShardedLRUQueryCache(int numShards, int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache) {
+    this(numShards, maxSize, maxRamBytesUsed, leavesToCache, null);
+  }
+
+  /**
+   * Create a new instance that will cache at most {@code maxSize} queries
+   * with at most {@code maxRamBytesUsed} bytes of memory across
+   * {@code numShards} shards, using the same leaves selection as
+   * {@link LRUQueryCache#LRUQueryCache(int, long)}.
+   */
+  public ShardedLRUQueryCache(int numShards, int maxSize, long maxRamBytesUsed) {
+    this(numShards, maxSize, maxRamBytesUsed, new LRUQueryCache.MinSegmentSizePredicate(10000, .03f));
+  }
+
+  /**
+   * Create the cache that will hold one shard of the queries. This is called
+   * from the constructor. The default implementation returns a plain
+   * {@link LRUQueryCache} that uses the population executor of this cache.
+   */
+  protected LRUQueryCache newShard(int maxSize, long maxRamBytesUsed, Predicate<LeafReaderContext> leavesToCache) {
+    return new LRUQueryCache(maxSize, maxRamBytesUsed, leavesToCache, populationExecutor);
+  }
+
+  private LRUQueryCache shard(Query query) {
+    // mix the bits since many queries have poorly distributed low bits
+    final int h = query.hashCode() * 0x9E3779B9;
+    return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
+  }
+
+  /** Return the shards of this cache. */
+  public List<LRUQueryCache> getShards() {
+    return Collections.unmodifiableList(Arrays.asList(shards));
+  }
+
+  @Override
+  public Weight doCache(Weight weight, QueryCachingPolicy policy) {
+    // weights that are already cached wrap the same query, so they go back
+    // to the shard that cached them, which unwraps them
+    return shard(weight.getQuery()).doCache(weight, policy);
+  }
+
+  /**
+   * Remove all cache entries for the given core cache key.
+   */
+  public void clearCoreCacheKey(Object coreKey) {
+    for (LRUQueryCache shard : shards) {
+      shard.clearCoreCacheKey(coreKey);
+    }
+  }
+
+  /**
+   * Remove all cache entries for the given query.
+   */
+  public void clearQuery(Query query) {
+    shard(query).clearQuery(query);
+  }
+
+  /**
+   * Clear the content of this cache.
+   */
+  public void clear() {
+    for (LRUQueryCache shard : shards) {
+      shard.clear();
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long ramBytesUsed = 0;
+    for (LRUQueryCache shard : shards) {
+      ramBytesUsed += shard.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    final List<Accountable> resources = new ArrayList<>();
+    for (int i = 0; i < shards.length; ++i) {
+      resources.add(Accountables.namedAccountable("shard " + i, shards[i]));
+    }
+    return Collections.unmodifiableList(resources);
+  }
+
+  /**
+   * Return the total number of times that a {@link Query} has been looked up
+   * in this {@link QueryCache}.
+   * @see LRUQueryCache#getTotalCount()
+   */
+  public final long getTotalCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  /**
+   * Return the number of lookups that found a cached {@link DocIdSet}, summed
+   * across shards.
+   * @see LRUQueryCache#getHitCount()
+   */
+  public final long getHitCount() {
+    long hitCount = 0;
+    for (LRUQueryCache shard : shards) {
+      hitCount += shard.getHitCount();
+    }
+    return hitCount;
+  }
+
+  /**
+   * Return the number of lookups that did not find the query in the cache,
+   * summed across shards.
+   * @see LRUQueryCache#getMissCount()
+   */
+  public final long getMissCount() {
+    long missCount = 0;
+    for (LRUQueryCache shard : shards) {
+      missCount += shard.getMissCount();
+    }
+    return missCount;
+  }
+
+  /**
+   * Return the total number of {@link DocIdSet}s which are currently stored
+   * in the cache, summed across shards.
+   * @see LRUQueryCache#getCacheSize()
+   */
+  public final long getCacheSize() {
+    long cacheSize = 0;
+    for (LRUQueryCache shard : shards) {
+      cacheSize += shard.getCacheSize();
+    }
+    return cacheSize;
+  }
+
+  /**
+   * Return the total number of cache entries that have been generated and put
+   * in the cache, summed across shards.
+   * @see LRUQueryCache#getCacheCount()
+   */
+  public final long getCacheCount() {
+    long cacheCount = 0;
+    for (LRUQueryCache shard : shards) {
+      cacheCount += shard.getCacheCount();
+    }
+    return cacheCount;
+  }
+
+  /**
+   * Return the number of cache entries that have been removed from the
+   * cache, summed across shards.
+   * @see LRUQueryCache#getEvictionCount()
+   */
+  public final long getEvictionCount() {
+    return getCacheCount() - getCacheSize();
+  }
+
+  /**
+   * Return the number of cache entries that are currently being computed in
+   * the background, summed across shards.
+   * @see LRUQueryCache#getPendingCount()
+   */
+  public final long getPendingCount() {
+    long pendingCount = 0;
+    for (LRUQueryCache shard : shards) {
+      pendingCount += shard.getPendingCount();
+    }
+    return pendingCount;
+  }
+
+  /**
+   * Return the number of cache entries whose background computation failed,
+   * summed across shards.
+   * @see LRUQueryCache#getFailedCount()
+   */
+  public final long getFailedCount() {
+    long failedCount = 0;
+    for (LRUQueryCache shard : shards) {
+      failedCount += shard.getFailedCount();
+    }
+    return failedCount;
+  }
+
+  /**
+   * Return the number of cache entries that have been removed from the cache
+   * before any search used them, summed across shards.
+   * @see LRUQueryCache#getEvictedBeforeUseCount()
+   */
+  public final long getEvictedBeforeUseCount() {
+    long evictedBeforeUseCount = 0;
+    for (LRUQueryCache shard : shards) {
+      evictedBeforeUseCount += shard.getEvictedBeforeUseCount();
+    }
+    return evictedBeforeUseCount;
+  }
+}
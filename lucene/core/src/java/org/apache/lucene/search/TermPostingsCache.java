@@ -0,0 +1,543 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A cache of decoded postings (doc IDs and term frequencies) of frequently
+ * scored terms, keyed on the segment core and the term. Scorers of cached
+ * terms iterate over plain arrays instead of decoding postings blocks and
+ * traversing skip lists.
+ * <p>
+ * Postings lists are only cached if they have at most {@code maxDocFreq}
+ * documents and if their term has been scored at least {@code minFrequency}
+ * times among the recently scored terms. Recent requests are counted
+ * approximately, without locking. Postings are decoded and cached on an
+ * {@link Executor}, so the request that triggers caching scores with regular
+ * postings, and later requests use the cached ones. Entries are evicted in
+ * least-recently-used order when the cache uses more than
+ * {@code maxRamBytesUsed} bytes, and are dropped when their segment core gets
+ * closed. Since postings do not change with deletions, cached entries remain
+ * valid across reopens that only change live docs.
+ * <p>
+ * This cache is only used by {@link TermQuery} when scores are needed; use
+ * {@link IndexSearcher#setTermPostingsCache} to enable it.
+ * <p>
+ * This class is thread-safe. Lookups that cannot immediately acquire the lock
+ * bypass the cache rather than wait.
+ *
+ * @lucene.experimental
+ */
+public class TermPostingsCache implements Accountable {
+
+  private static final long KEY_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class)
+      + RamUsageEstimator.shallowSizeOfInstance(Term.class)
+      + RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+
+  private final long maxRamBytesUsed;
+  private final int maxDocFreq;
+  private final int minFrequency;
+  private final RequestSketch recentlyRequested;
+  private final Executor executor;
+  // access-ordered so that iteration starts with the least recently used entry
+  private final Map<Key, CachedPostings> cache;
+  private final Set<Object> registeredCoreKeys;
+  // keys whose postings are being loaded
+  private final Set<Key> pending;
+  private final ReentrantLock lock;
+
+  // these variables are volatile so that we do not need to sync reads
+  // but increments need to be performed under the lock
+  private volatile long ramBytesUsed;
+  private volatile long hitCount;
+  private volatile long missCount;
+  private volatile long evictionCount;
+
+  /**
+   * Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   * of memory, and that will only cache postings lists of at most
+   * {@code maxDocFreq} documents whose term has been requested at least
+   * {@code minFrequency} times among the last {@code historySize}
+   * requests. Postings are decoded and cached on {@code executor}.
+   */
+  public TermPostingsCache(long maxRamBytesUsed, int maxDocFreq, int minFrequency, int historySize, Executor executor) {
+    if (maxRamBytesUsed < 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be >= 0, got " + maxRamBytesUsed);
+    }
+    if (maxDocFreq < 1) {
+      throw new IllegalArgumentException("maxDocFreq must be >= 1, got " + maxDocFreq);
+    }
+    if (minFrequency < 1) {
+      throw new IllegalArgumentException("minFrequency must be >= 1, got " + minFrequency);
+    }
+    if (historySize < 2) {
+      throw new IllegalArgumentException("historySize must be >= 2, got " + historySize);
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("executor must not be null");
+    }
+    this.maxRamBytesUsed = maxRamBytesUsed;
+    this.maxDocFreq = maxDocFreq;
+    this.minFrequency = minFrequency;
+    this.recentlyRequested = new RequestSketch(historySize, minFrequency);
+    this.executor = executor;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    this.registeredCoreKeys = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.pending = ConcurrentHashMap.newKeySet();
+    this.lock = new ReentrantLock();
+  }
+
+  /**
+   * Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   * of memory and that will cache postings lists of at most
+   * {@code maxDocFreq} documents once their term has been requested twice
+   * among the last 256 requests. Postings are decoded and cached on
+   * {@code executor}.
+   */
+  public TermPostingsCache(long maxRamBytesUsed, int maxDocFreq, Executor executor) {
+    this(maxRamBytesUsed, maxDocFreq, 2, 256, executor);
+  }
+
+  /**
+   * Record that a query is about to score {@code term}. This is used to
+   * decide whether the postings of {@code term} are worth caching.
+   */
+  void onRequest(Term term) {
+    recentlyRequested.add(term.hashCode());
+  }
+
+  /**
+   * Return the cached postings of {@code term} in the given leaf, or
+   * {@code null} if they are not cached.
+   */
+  CachedPostings get(LeafReaderContext context, Term term) {
+    if (lock.tryLock() == false) {
+      return null;
+    }
+    try {
+      final CachedPostings cached = cache.get(new Key(context.reader().getCoreCacheKey(), term));
+      if (cached == null) {
+        missCount += 1;
+      } else {
+        hitCount += 1;
+      }
+      return cached;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Decode and cache the postings of the term {@code termsEnum} is positioned
+   * on in the background if it is eligible for caching. This should only be
+   * called after {@link #get} returned {@code null} for the same term.
+   */
+  void cacheInBackground(LeafReaderContext context, Term term, TermsEnum termsEnum) throws IOException {
+    final int docFreq = termsEnum.docFreq();
+    if (docFreq > maxDocFreq || recentlyRequested.frequency(term.hashCode()) < minFrequency) {
+      return;
+    }
+    final LeafReader reader = context.reader();
+    final Key key = new Key(reader.getCoreCacheKey(), term);
+    if (pending.add(key) == false) {
+      // already being loaded
+      return;
+    }
+    // make sure the reader does not get closed before postings are loaded
+    if (reader.tryIncRef() == false) {
+      pending.remove(key);
+      return;
+    }
+    final TermState termState = termsEnum.termState();
+    try {
+      executor.execute(() -> {
+        try {
+          load(reader, key, termState, docFreq);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          pending.remove(key);
+          try {
+            reader.decRef();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pending.remove(key);
+      reader.decRef();
+    }
+  }
+
+  private void load(LeafReader reader, Key key, TermState termState, int docFreq) throws IOException {
+    final Terms terms = reader.terms(key.term.field());
+    final TermsEnum termsEnum = terms.iterator();
+    termsEnum.seekExact(key.term.bytes(), termState);
+    final CachedPostings cached = CachedPostings.load(termsEnum.postings(null, PostingsEnum.FREQS), docFreq);
+    final long entryRamBytesUsed = ramBytesUsed(key, cached);
+    if (entryRamBytesUsed > maxRamBytesUsed) {
+      return;
+    }
+
+    lock.lock();
+    try {
+      final CachedPostings previous = cache.put(key, cached);
+      if (previous != null) {
+        ramBytesUsed -= ramBytesUsed(key, previous);
+      }
+      ramBytesUsed += entryRamBytesUsed;
+      if (registeredCoreKeys.add(key.coreKey)) {
+        reader.addCoreClosedListener(this::clearCoreCacheKey);
+      }
+      evictIfNecessary();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void evictIfNecessary() {
+    assert lock.isHeldByCurrentThread();
+    for (Iterator<Map.Entry<Key, CachedPostings>> it = cache.entrySet().iterator(); ramBytesUsed > maxRamBytesUsed && it.hasNext(); ) {
+      final Map.Entry<Key, CachedPostings> entry = it.next();
+      it.remove();
+      ramBytesUsed -= ramBytesUsed(entry.getKey(), entry.getValue());
+      evictionCount += 1;
+    }
+  }
+
+  /**
+   * Remove all cache entries for the given core cache key.
+   */
+  public void clearCoreCacheKey(Object coreKey) {
+    lock.lock();
+    try {
+      if (registeredCoreKeys.remove(coreKey)) {
+        for (Iterator<Map.Entry<Key, CachedPostings>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+          final Map.Entry<Key, CachedPostings> entry = it.next();
+          if (entry.getKey().coreKey == coreKey) {
+            it.remove();
+            ramBytesUsed -= ramBytesUsed(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Clear the content of this cache.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      cache.clear();
+      ramBytesUsed = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static long ramBytesUsed(Key key, CachedPostings cached) {
+    return LRUQueryCache.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY
+        + KEY_RAM_BYTES_USED + RamUsageEstimator.sizeOf(key.term.bytes().bytes)
+        + cached.ramBytesUsed();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /**
+   * Return the number of postings lists that are currently in the cache.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return cache.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Return the number of lookups that found cached postings.
+   */
+  public final long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Return the number of lookups that did not find cached postings.
+   */
+  public final long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Return the number of postings lists that have been evicted to stay
+   * under the memory limit.
+   */
+  public final long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Approximate counts of recent requests by term hash code, which can be
+   * updated concurrently without locking. This is a count-min sketch with two
+   * rows. Counters saturate so that requests for hot terms stop writing to
+   * them, and they are halved every {@code historySize} requests so that
+   * they reflect recent requests.
+   */
+  private static final class RequestSketch {
+
+    private final AtomicIntegerArray counts;
+    private final int rowSize;
+    private final int maxCount;
+    private final int historySize;
+    private final LongAdder requests = new LongAdder();
+    private final AtomicBoolean aging = new AtomicBoolean();
+
+    RequestSketch(int historySize, int minFrequency) {
+      // about 4 counters per row for every tracked request keeps collisions rare
+      this.rowSize = Integer.highestOneBit(4 * historySize - 1) << 1;
+      this.counts = new AtomicIntegerArray(2 * rowSize);
+      this.maxCount = Math.max(15, 2 * minFrequency);
+      this.historySize = historySize;
+    }
+
+    private int index0(int hash) {
+      final int h = hash * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & (rowSize - 1);
+    }
+
+    private int index1(int hash) {
+      final int h = Integer.rotateLeft(hash, 16) * 0x85EBCA6B;
+      return rowSize + ((h ^ (h >>> 15)) & (rowSize - 1));
+    }
+
+    private void increment(int index) {
+      for (int count = counts.get(index); count < maxCount; count = counts.get(index)) {
+        if (counts.compareAndSet(index, count, count + 1)) {
+          break;
+        }
+      }
+    }
+
+    void add(int hash) {
+      increment(index0(hash));
+      increment(index1(hash));
+      requests.increment();
+      if (requests.sum() >= historySize && aging.compareAndSet(false, true)) {
+        try {
+          requests.add(-historySize);
+          for (int i = 0; i < counts.length(); ++i) {
+            counts.updateAndGet(i, count -> count >>> 1);
+          }
+        } finally {
+          aging.set(false);
+        }
+      }
+    }
+
+    int frequency(int hash) {
+      return Math.min(counts.get(index0(hash)), counts.get(index1(hash)));
+    }
+  }
+
+  private static final class Key {
+
+    final Object coreKey;
+    final Term term;
+
+    Key(Object coreKey, Term term) {
+      this.coreKey = coreKey;
+      this.term = term;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != Key.class) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return coreKey == that.coreKey && term.equals(that.term);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(coreKey) + term.hashCode();
+    }
+  }
+
+  /** Decoded postings of a single term in a single segment. */
+  static final class CachedPostings implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(CachedPostings.class);
+
+    final int[] docs;
+    final int[] freqs;
+    final int length;
+    final int maxFreq;
+
+    private CachedPostings(int[] docs, int[] freqs, int length, int maxFreq) {
+      this.docs = docs;
+      this.freqs = freqs;
+      this.length = length;
+      this.maxFreq = maxFreq;
+    }
+
+    static CachedPostings load(PostingsEnum postings, int docFreq) throws IOException {
+      int[] docs = new int[docFreq];
+      int[] freqs = new int[docFreq];
+      int length = 0;
+      int maxFreq = 0;
+      for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+        if (length == docs.length) {
+          // can only happen if the index does not record docFreq accurately
+          docs = ArrayUtil.grow(docs, length + 1);
+          freqs = ArrayUtil.grow(freqs, length + 1);
+        }
+        final int freq = postings.freq();
+        docs[length] = doc;
+        freqs[length] = freq;
+        maxFreq = Math.max(maxFreq, freq);
+        length++;
+      }
+      return new CachedPostings(docs, freqs, length, maxFreq);
+    }
+
+    /** Return an iterator over the cached postings. */
+    PostingsEnum postings() {
+      return new CachedPostingsEnum(this);
+    }
+
+    /** Return impacts that bound term frequencies by the maximum frequency of the term. */
+    Impacts impacts() {
+      return Impacts.singleLevel(maxFreq);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(docs) + RamUsageEstimator.sizeOf(freqs);
+    }
+  }
+
+  private static final class CachedPostingsEnum extends PostingsEnum {
+
+    private final int[] docs;
+    private final int[] freqs;
+    private final int length;
+    private int upto = -1;
+    private int doc = -1;
+
+    CachedPostingsEnum(CachedPostings postings) {
+      this.docs = postings.docs;
+      this.freqs = postings.freqs;
+      this.length = postings.length;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (++upto >= length) {
+        upto = length;
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = docs[upto];
+    }
+
+    @Override
+    public int advance(int target) {
+      int index = Arrays.binarySearch(docs, upto + 1, length, target);
+      if (index < 0) {
+        index = -1 - index;
+      }
+      if (index >= length) {
+        upto = length;
+        return doc = NO_MORE_DOCS;
+      }
+      upto = index;
+      return doc = docs[upto];
+    }
+
+    @Override
+    public int freq() {
+      return freqs[upto];
+    }
+
+    @Override
+    public int nextPosition() {
+      return -1;
+    }
+
+    @Override
+    public int startOffset() {
+      return -1;
+    }
+
+    @Override
+    public int endOffset() {
+      return -1;
+    }
+
+    @Override
+    public BytesRef getPayload() {
+      return null;
+    }
+
+    @Override
+    public long cost() {
+      return length;
+    }
+  }
+}
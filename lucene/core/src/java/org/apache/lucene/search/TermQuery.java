@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -48,6 +49,7 @@ public class TermQuery extends Query {
     private final Similarity.SimWeight stats;
     private final TermContext termStates;
     private final boolean needsScores;
+    private final TermPostingsCache postingsCache;
 
     public TermWeight(IndexSearcher searcher, boolean needsScores,
         float boost, TermContext termStates) throws IOException {
@@ -58,6 +60,10 @@ public class TermQuery extends Query {
       this.needsScores = needsScores;
       this.termStates = termStates;
       this.similarity = searcher.getSimilarity(needsScores);
+      this.postingsCache = needsScores ? searcher.getTermPostingsCache() : null;
+      if (postingsCache != null) {
+        postingsCache.onRequest(term);
+      }
 
       final CollectionStatistics collectionStats;
       final TermStatistics termStats;
@@ -87,13 +93,24 @@ public class TermQuery extends Query {
     @Override
     public Scorer scorer(LeafReaderContext context) throws IOException {
       assert termStates == null || termStates.wasBuiltFor(ReaderUtil.getTopLevelContext(context)) : "The top-reader used to create Weight is not the same as the current reader's top-reader (" + ReaderUtil.getTopLevelContext(context);;
+      if (postingsCache != null) {
+        final TermPostingsCache.CachedPostings cached = postingsCache.get(context, term);
+        if (cached != null) {
+          return new TermScorer(this, cached.postings(), cached.impacts(), similarity.simScorer(stats, context));
+        }
+      }
       final TermsEnum termsEnum = getTermsEnum(context);
       if (termsEnum == null) {
         return null;
       }
+      if (postingsCache != null) {
+        postingsCache.cacheInBackground(context, term, termsEnum);
+      }
       PostingsEnum docs = termsEnum.postings(null, needsScores ? PostingsEnum.FREQS : PostingsEnum.NONE);
       assert docs != null;
-      return new TermScorer(this, docs, similarity.simScorer(stats, context));
+      // impacts are only useful to skip over non-competitive hits
+      final Impacts impacts = needsScores ? termsEnum.impacts() : null;
+      return new TermScorer(this, docs, impacts, similarity.simScorer(stats, context));
     }
 
     /**
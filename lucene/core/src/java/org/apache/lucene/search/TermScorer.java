@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.search.similarities.Similarity;
 
@@ -27,6 +28,7 @@ import org.apache.lucene.search.similarities.Similarity;
 final class TermScorer extends Scorer {
   private final PostingsEnum postingsEnum;
   private final Similarity.SimScorer docScorer;
+  private final Impacts impacts;
 
   /**
    * Construct a <code>TermScorer</code>.
@@ -40,9 +42,29 @@ final class TermScorer extends Scorer {
    *          to be used for score computations.
    */
   TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer) {
+    this(weight, td, null, docScorer);
+  }
+
+  /**
+   * Construct a <code>TermScorer</code> that can compute upper bounds of
+   * the scores of blocks of documents.
+   *
+   * @param weight
+   *          The weight of the <code>Term</code> in the query.
+   * @param td
+   *          An iterator over the documents matching the <code>Term</code>.
+   * @param impacts
+   *          The {@link Impacts} of the <code>Term</code>, or null if scores
+   *          should not be bounded.
+   * @param docScorer
+   *          The <code>Similarity.SimScorer</code> implementation
+   *          to be used for score computations.
+   */
+  TermScorer(Weight weight, PostingsEnum td, Impacts impacts, Similarity.SimScorer docScorer) {
     super(weight);
     this.docScorer = docScorer;
     this.postingsEnum = td;
+    this.impacts = impacts;
   }
 
   @Override
@@ -66,6 +88,29 @@ final class TermScorer extends Scorer {
     return docScorer.score(postingsEnum.docID(), postingsEnum.freq());
   }
 
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    if (impacts == null) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    impacts.advanceShallow(target);
+    return impacts.getDocIdUpTo(0);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    if (impacts == null) {
+      return Float.POSITIVE_INFINITY;
+    }
+    // find the narrowest level that covers all docs up to upTo
+    int level = 0;
+    final int numLevels = impacts.numLevels();
+    while (level < numLevels - 1 && impacts.getDocIdUpTo(level) < upTo) {
+      level++;
+    }
+    return docScorer.maxScore(impacts.getMaxFreq(level));
+  }
+
   /** Returns a string representation of this <code>TermScorer</code>. */
   @Override
   public String toString() { return "scorer(" + weight + ")[" + super.toString() + "]"; }
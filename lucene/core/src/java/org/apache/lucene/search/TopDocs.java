@@ -23,9 +23,22 @@ import org.apache.lucene.util.PriorityQueue;
  * IndexSearcher#search(Query,int)}. */
 public class TopDocs {
 
+  /** How the {@link TopDocs#totalHits} should be interpreted.
+   *  @lucene.experimental */
+  public enum TotalHitsRelation {
+    /** The total hit count is equal to {@link TopDocs#totalHits}. */
+    EQUAL_TO,
+    /** The total hit count is greater than or equal to {@link TopDocs#totalHits}. */
+    GREATER_THAN_OR_EQUAL_TO
+  }
+
   /** The total number of hits for the query. */
   public int totalHits;
 
+  /** Whether {@link #totalHits} is the exact hit count or a lower bound of it.
+   *  @lucene.experimental */
+  public TotalHitsRelation totalHitsRelation;
+
   /** The top hits for the query. */
   public ScoreDoc[] scoreDocs;
 
@@ -51,7 +64,18 @@ public class TopDocs {
   }
 
   public TopDocs(int totalHits, ScoreDoc[] scoreDocs, float maxScore) {
+    this(totalHits, TotalHitsRelation.EQUAL_TO, scoreDocs, maxScore);
+  }
+
+  /** Constructs a TopDocs whose {@code totalHits} may only be a lower bound
+   *  of the hit count, depending on {@code totalHitsRelation}.
+   *  @lucene.experimental */
+  public TopDocs(int totalHits, TotalHitsRelation totalHitsRelation, ScoreDoc[] scoreDocs, float maxScore) {
+    if (totalHitsRelation == null) {
+      throw new IllegalArgumentException("totalHitsRelation must not be null");
+    }
     this.totalHits = totalHits;
+    this.totalHitsRelation = totalHitsRelation;
     this.scoreDocs = scoreDocs;
     this.maxScore = maxScore;
   }
@@ -241,6 +265,7 @@ public class TopDocs {
     }
 
     int totalHitCount = 0;
+    TotalHitsRelation totalHitsRelation = TotalHitsRelation.EQUAL_TO;
     int availHitCount = 0;
     float maxScore = Float.MIN_VALUE;
     for(int shardIDX=0;shardIDX<shardHits.length;shardIDX++) {
@@ -248,6 +273,10 @@ public class TopDocs {
       // totalHits can be non-zero even if no hits were
       // collected, when searchAfter was used:
       totalHitCount += shard.totalHits;
+      if (shard.totalHitsRelation == TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO) {
+        // the merged hit count is a lower bound as soon as one shard's count is
+        totalHitsRelation = TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+      }
       if (shard.scoreDocs != null && shard.scoreDocs.length > 0) {
         availHitCount += shard.scoreDocs.length;
         queue.add(new ShardRef(shardIDX));
@@ -292,9 +321,9 @@ public class TopDocs {
     }
 
     if (sort == null) {
-      return new TopDocs(totalHitCount, hits, maxScore);
+      return new TopDocs(totalHitCount, totalHitsRelation, hits, maxScore);
     } else {
-      return new TopFieldDocs(totalHitCount, hits, sort.getSort(), maxScore);
+      return new TopFieldDocs(totalHitCount, totalHitsRelation, hits, sort.getSort(), maxScore);
     }
   }
 }
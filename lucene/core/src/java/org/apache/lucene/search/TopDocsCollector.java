@@ -47,6 +47,11 @@ public abstract class TopDocsCollector<T extends ScoreDoc> implements Collector
 
   /** The total number of documents that the collector encountered. */
   protected int totalHits;
+
+  /** Whether {@link #totalHits} is exact or a lower bound of the hit count,
+   *  which happens when scorers were allowed to skip non-competitive hits.
+   *  @lucene.experimental */
+  protected TopDocs.TotalHitsRelation totalHitsRelation = TopDocs.TotalHitsRelation.EQUAL_TO;
   
   protected TopDocsCollector(PriorityQueue<T> pq) {
     this.pq = pq;
@@ -69,13 +74,21 @@ public abstract class TopDocsCollector<T extends ScoreDoc> implements Collector
    * topDocs were invalid.
    */
   protected TopDocs newTopDocs(ScoreDoc[] results, int start) {
-    return results == null ? EMPTY_TOPDOCS : new TopDocs(totalHits, results);
+    return results == null ? EMPTY_TOPDOCS : new TopDocs(totalHits, totalHitsRelation, results, Float.NaN);
   }
   
-  /** The total number of documents that matched this query. */
+  /** The total number of documents that matched this query, or a lower bound
+   *  of it if {@link #getTotalHitsRelation()} is
+   *  {@link TopDocs.TotalHitsRelation#GREATER_THAN_OR_EQUAL_TO}. */
   public int getTotalHits() {
     return totalHits;
   }
+
+  /** Whether {@link #getTotalHits()} is exact or a lower bound of the hit count.
+   *  @lucene.experimental */
+  public TopDocs.TotalHitsRelation getTotalHitsRelation() {
+    return totalHitsRelation;
+  }
   
   /** The number of valid PQ entries */
   protected int topDocsSize() {
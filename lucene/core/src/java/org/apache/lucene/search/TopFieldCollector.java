@@ -18,7 +18,9 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.Collection;
 
+import org.apache.lucene.index.IndexWriterConfig; // javadocs
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.FieldValueHitQueue.Entry;
 import org.apache.lucene.util.PriorityQueue;
@@ -143,8 +145,8 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
     final boolean mayNeedScoresTwice;
 
     public SimpleFieldCollector(Sort sort, FieldValueHitQueue<Entry> queue, int numHits, boolean fillFields,
-        boolean trackDocScores, boolean trackMaxScore) {
-      super(queue, numHits, fillFields, sort.needsScores() || trackDocScores || trackMaxScore);
+        boolean trackDocScores, boolean trackMaxScore, HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
+      super(sort, queue, numHits, fillFields, sort.needsScores() || trackDocScores || trackMaxScore, hitsThresholdChecker, minScoreAcc);
       this.queue = queue;
       if (trackMaxScore) {
         maxScore = Float.NEGATIVE_INFINITY; // otherwise we would keep NaN
@@ -163,10 +165,20 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
 
       final LeafFieldComparator[] comparators = queue.getComparators(context);
       final int[] reverseMul = queue.getReverseMul();
+      final boolean canEarlyTerminate = trackMaxScore == false
+          && canEarlyTerminate(sort, context.reader().getIndexSort());
 
       if (comparators.length == 1) {
         return new OneComparatorLeafCollector(comparators[0], reverseMul[0], mayNeedScoresTwice) {
 
+          @Override
+          public void setScorer(Scorer scorer) throws IOException {
+            super.setScorer(scorer);
+            // the new scorer has not been told about the min competitive score yet
+            minCompetitiveScore = Float.NEGATIVE_INFINITY;
+            updateMinCompetitiveScore(scorer);
+          }
+
           @Override
           public void collect(int doc) throws IOException {
             float score = Float.NaN;
@@ -178,8 +190,21 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
             }
 
             ++totalHits;
+            hitsThresholdChecker.incrementHitCount();
             if (queueFull) {
               if (reverseMul * comparator.compareBottom(doc) <= 0) {
+                if (canEarlyTerminate) {
+                  // docs are visited in the order of the sort, so the remaining
+                  // docs of this leaf are not competitive either
+                  terminateLeafIfThresholdReached();
+                }
+                if (totalHitsRelation == TopDocs.TotalHitsRelation.EQUAL_TO) {
+                  // we might just have reached totalHitsThreshold
+                  updateMinCompetitiveScore(scorer);
+                } else if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+                  // other slices might have found more competitive hits in the meantime
+                  updateGlobalMinCompetitiveScore(scorer);
+                }
                 // since docs are visited in doc Id order, if compare is 0, it means
                 // this document is largest than anything else in the queue, and
                 // therefore not competitive.
@@ -194,6 +219,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
               comparator.copy(bottom.slot, doc);
               updateBottom(doc, score);
               comparator.setBottom(bottom.slot);
+              updateMinCompetitiveScore(scorer);
             } else {
               // Startup transient: queue hasn't gathered numHits yet
               final int slot = totalHits - 1;
@@ -207,6 +233,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
               add(slot, doc, score);
               if (queueFull) {
                 comparator.setBottom(bottom.slot);
+                updateMinCompetitiveScore(scorer);
               }
             }
           }
@@ -215,6 +242,14 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
       } else {
         return new MultiComparatorLeafCollector(comparators, reverseMul, mayNeedScoresTwice) {
 
+          @Override
+          public void setScorer(Scorer scorer) throws IOException {
+            super.setScorer(scorer);
+            // the new scorer has not been told about the min competitive score yet
+            minCompetitiveScore = Float.NEGATIVE_INFINITY;
+            updateMinCompetitiveScore(scorer);
+          }
+
           @Override
           public void collect(int doc) throws IOException {
             float score = Float.NaN;
@@ -226,8 +261,21 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
             }
 
             ++totalHits;
+            hitsThresholdChecker.incrementHitCount();
             if (queueFull) {
               if (compareBottom(doc) <= 0) {
+                if (canEarlyTerminate) {
+                  // docs are visited in the order of the sort, so the remaining
+                  // docs of this leaf are not competitive either
+                  terminateLeafIfThresholdReached();
+                }
+                if (totalHitsRelation == TopDocs.TotalHitsRelation.EQUAL_TO) {
+                  // we might just have reached totalHitsThreshold
+                  updateMinCompetitiveScore(scorer);
+                } else if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+                  // other slices might have found more competitive hits in the meantime
+                  updateGlobalMinCompetitiveScore(scorer);
+                }
                 // since docs are visited in doc Id order, if compare is 0, it means
                 // this document is largest than anything else in the queue, and
                 // therefore not competitive.
@@ -242,6 +290,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
               copy(bottom.slot, doc);
               updateBottom(doc, score);
               setBottom(bottom.slot);
+              updateMinCompetitiveScore(scorer);
             } else {
               // Startup transient: queue hasn't gathered numHits yet
               final int slot = totalHits - 1;
@@ -255,6 +304,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
               add(slot, doc, score);
               if (queueFull) {
                 setBottom(bottom.slot);
+                updateMinCompetitiveScore(scorer);
               }
             }
           }
@@ -278,8 +328,9 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
     final boolean mayNeedScoresTwice;
 
     public PagingFieldCollector(Sort sort, FieldValueHitQueue<Entry> queue, FieldDoc after, int numHits, boolean fillFields,
-                                boolean trackDocScores, boolean trackMaxScore) {
-      super(queue, numHits, fillFields, trackDocScores || trackMaxScore || sort.needsScores());
+                                boolean trackDocScores, boolean trackMaxScore, HitsThresholdChecker hitsThresholdChecker,
+                                MaxScoreAccumulator minScoreAcc) {
+      super(sort, queue, numHits, fillFields, trackDocScores || trackMaxScore || sort.needsScores(), hitsThresholdChecker, minScoreAcc);
       this.queue = queue;
       this.trackDocScores = trackDocScores;
       this.trackMaxScore = trackMaxScore;
@@ -302,13 +353,24 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
     public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
       docBase = context.docBase;
       final int afterDoc = after.doc - docBase;
+      final boolean canEarlyTerminate = trackMaxScore == false
+          && canEarlyTerminate(sort, context.reader().getIndexSort());
       return new MultiComparatorLeafCollector(queue.getComparators(context), queue.getReverseMul(), mayNeedScoresTwice) {
 
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+          super.setScorer(scorer);
+          // the new scorer has not been told about the min competitive score yet
+          minCompetitiveScore = Float.NEGATIVE_INFINITY;
+          updateMinCompetitiveScore(scorer);
+        }
+
         @Override
         public void collect(int doc) throws IOException {
           //System.out.println("  collect doc=" + doc);
 
           totalHits++;
+          hitsThresholdChecker.incrementHitCount();
 
           float score = Float.NaN;
           if (trackMaxScore) {
@@ -323,6 +385,18 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
             // the worst hit currently in the queue:
             final int cmp = compareBottom(doc);
             if (cmp <= 0) {
+              if (canEarlyTerminate) {
+                // docs are visited in the order of the sort, so the remaining
+                // docs of this leaf are not competitive either
+                terminateLeafIfThresholdReached();
+              }
+              if (totalHitsRelation == TopDocs.TotalHitsRelation.EQUAL_TO) {
+                // we might just have reached totalHitsThreshold
+                updateMinCompetitiveScore(scorer);
+              } else if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+                // other slices might have found more competitive hits in the meantime
+                updateGlobalMinCompetitiveScore(scorer);
+              }
               // not competitive since documents are visited in doc id order
               return;
             }
@@ -345,6 +419,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
             updateBottom(doc, score);
 
             setBottom(bottom.slot);
+            updateMinCompetitiveScore(scorer);
           } else {
             collectedHits++;
 
@@ -362,6 +437,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
             queueFull = collectedHits == numHits;
             if (queueFull) {
               setBottom(bottom.slot);
+              updateMinCompetitiveScore(scorer);
             }
           }
         }
@@ -372,6 +448,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
 
   private static final ScoreDoc[] EMPTY_SCOREDOCS = new ScoreDoc[0];
 
+  final Sort sort;
   private final boolean fillFields;
 
   /*
@@ -385,17 +462,38 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
   boolean queueFull;
   int docBase;
   final boolean needsScores;
+  final HitsThresholdChecker hitsThresholdChecker;
+  final MaxScoreAccumulator minScoreAcc;
+  // the last min competitive score that was passed to the current scorer
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  // the comparator of the primary sort if it sorts by descending score, null otherwise
+  final FieldComparator<?> scoreComparator;
+  // whether the primary sort is the only sort, so that ties are broken by doc ID
+  final boolean scoreIsOnlySort;
+  // whether the collection of some leaves was terminated early thanks to index sorting
+  boolean earlyTerminated;
 
   // Declaring the constructor private prevents extending this class by anyone
   // else. Note that the class cannot be final since it's extended by the
   // internal versions. If someone will define a constructor with any other
   // visibility, then anyone will be able to extend the class, which is not what
   // we want.
-  private TopFieldCollector(PriorityQueue<Entry> pq, int numHits, boolean fillFields, boolean needsScores) {
+  private TopFieldCollector(Sort sort, FieldValueHitQueue<Entry> pq, int numHits, boolean fillFields, boolean needsScores,
+      HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
     super(pq);
+    this.sort = sort;
     this.needsScores = needsScores;
     this.numHits = numHits;
     this.fillFields = fillFields;
+    this.hitsThresholdChecker = hitsThresholdChecker;
+    this.minScoreAcc = minScoreAcc;
+    final SortField[] fields = pq.getFields();
+    if (fields[0].getType() == SortField.Type.SCORE && fields[0].getReverse() == false) {
+      scoreComparator = pq.getComparators()[0];
+    } else {
+      scoreComparator = null;
+    }
+    scoreIsOnlySort = fields.length == 1;
   }
 
   @Override
@@ -403,6 +501,75 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
     return needsScores;
   }
 
+  /** Non-competitive hits can only be skipped if the primary sort is by descending score. */
+  @Override
+  public boolean needsTopScoresOnly() {
+    return scoreComparator != null && hitsThresholdChecker.getHitsThreshold() != Integer.MAX_VALUE;
+  }
+
+  /** Whether the documents of a leaf that is sorted with {@code indexSort}
+   *  are visited in the order of {@code searchSort}. */
+  static boolean canEarlyTerminate(Sort searchSort, Sort indexSort) {
+    return indexSort != null && EarlyTerminatingSortingCollector.canEarlyTerminate(searchSort, indexSort);
+  }
+
+  /** Stop collecting the current leaf, whose remaining documents are not
+   *  competitive, unless more hits need to be counted. */
+  final void terminateLeafIfThresholdReached() {
+    if (hitsThresholdChecker.isThresholdReached()) {
+      totalHitsRelation = TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+      earlyTerminated = true;
+      throw new CollectionTerminatedException();
+    }
+  }
+
+  /**
+   * Return whether the collection of some leaves was terminated early because
+   * their index sort showed that their remaining documents were not
+   * competitive. {@link #getTotalHits()} is then only a lower bound of the
+   * hit count.
+   * @see #create(Sort, int, FieldDoc, boolean, boolean, boolean, int)
+   */
+  public boolean isEarlyTerminated() {
+    return earlyTerminated;
+  }
+
+  final void updateMinCompetitiveScore(Scorer scorer) throws IOException {
+    if (scoreComparator != null && hitsThresholdChecker.isThresholdReached()) {
+      if (queueFull) {
+        final float bottomScore = (Float) scoreComparator.value(bottom.slot);
+        // hits that have the same score as the bottom may still be competitive
+        // through secondary sort fields, unless ties are broken by doc ID
+        final float localMinScore = scoreIsOnlySort ? Math.nextUp(bottomScore) : bottomScore;
+        if (localMinScore > minCompetitiveScore) {
+          scorer.setMinCompetitiveScore(localMinScore);
+          minCompetitiveScore = localMinScore;
+          totalHitsRelation = TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+          if (minScoreAcc != null) {
+            // hits from other slices that have the same score may still be
+            // competitive depending on their doc IDs
+            minScoreAcc.accumulate(bottomScore);
+          }
+        }
+      }
+      if (minScoreAcc != null) {
+        updateGlobalMinCompetitiveScore(scorer);
+      }
+    }
+  }
+
+  final void updateGlobalMinCompetitiveScore(Scorer scorer) throws IOException {
+    assert minScoreAcc != null;
+    if (scoreComparator != null && hitsThresholdChecker.isThresholdReached()) {
+      final float globalMinScore = minScoreAcc.get();
+      if (globalMinScore > minCompetitiveScore) {
+        scorer.setMinCompetitiveScore(globalMinScore);
+        minCompetitiveScore = globalMinScore;
+        totalHitsRelation = TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+      }
+    }
+  }
+
   /**
    * Creates a new {@link TopFieldCollector} from the given
    * arguments.
@@ -478,6 +645,65 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
    */
   public static TopFieldCollector create(Sort sort, int numHits, FieldDoc after,
       boolean fillFields, boolean trackDocScores, boolean trackMaxScore) {
+    return create(sort, numHits, after, fillFields, trackDocScores, trackMaxScore, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a new {@link TopFieldCollector} from the given
+   * arguments, which only counts hits accurately up to
+   * {@code totalHitsThreshold}.
+   *
+   * <p>If the primary sort is by descending score, then once more than
+   * {@code totalHitsThreshold} hits have been collected, the collector reports
+   * the score that a hit needs to be competitive to the {@link Scorer}, which
+   * may then skip over non-competitive hits. {@link TopDocs#totalHits} is then
+   * only a lower bound of the hit count, as reported by
+   * {@link TopDocs#totalHitsRelation}.
+   *
+   * <p>If the sort is a prefix of the {@link IndexWriterConfig#setIndexSort
+   * index sort} and {@code trackMaxScore} is false, then once more than
+   * {@code totalHitsThreshold} hits have been collected, the collection of
+   * each sorted leaf stops as soon as a hit is not competitive, since none of
+   * the following hits of the leaf can be competitive either. This is
+   * reported by {@link #isEarlyTerminated()}, and {@link TopDocs#totalHits}
+   * is then a lower bound of the hit count too. Other sorts always count hits
+   * accurately.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>.
+   *
+   * @param sort
+   *          the sort criteria (SortFields).
+   * @param numHits
+   *          the number of results to collect.
+   * @param after
+   *          only hits after this FieldDoc will be collected
+   * @param fillFields
+   *          specifies whether the actual field values should be returned on
+   *          the results (FieldDoc).
+   * @param trackDocScores
+   *          specifies whether document scores should be tracked and set on the
+   *          results.
+   * @param trackMaxScore
+   *          specifies whether the query's maxScore should be tracked and set
+   *          on the resulting {@link TopDocs}.
+   * @param totalHitsThreshold
+   *          the number of hits to count accurately, {@link Integer#MAX_VALUE}
+   *          to always count hits accurately.
+   * @return a {@link TopFieldCollector} instance which will sort the results by
+   *         the sort criteria.
+   * @lucene.experimental
+   */
+  public static TopFieldCollector create(Sort sort, int numHits, FieldDoc after,
+      boolean fillFields, boolean trackDocScores, boolean trackMaxScore, int totalHitsThreshold) {
+    return create(sort, numHits, after, fillFields, trackDocScores, trackMaxScore,
+        HitsThresholdChecker.create(totalHitsThreshold), null);
+  }
+
+  static TopFieldCollector create(Sort sort, int numHits, FieldDoc after,
+      boolean fillFields, boolean trackDocScores, boolean trackMaxScore,
+      HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
 
     if (sort.fields.length == 0) {
       throw new IllegalArgumentException("Sort must contain at least one field");
@@ -487,10 +713,14 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
     }
 
+    if (hitsThresholdChecker == null) {
+      throw new IllegalArgumentException("hitsThresholdChecker must be non null");
+    }
+
     FieldValueHitQueue<Entry> queue = FieldValueHitQueue.create(sort.fields, numHits);
 
     if (after == null) {
-      return new SimpleFieldCollector(sort, queue, numHits, fillFields, trackDocScores, trackMaxScore);
+      return new SimpleFieldCollector(sort, queue, numHits, fillFields, trackDocScores, trackMaxScore, hitsThresholdChecker, minScoreAcc);
     } else {
       if (after.fields == null) {
         throw new IllegalArgumentException("after.fields wasn't set; you must pass fillFields=true for the previous search");
@@ -500,10 +730,48 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
         throw new IllegalArgumentException("after.fields has " + after.fields.length + " values but sort has " + sort.getSort().length);
       }
 
-      return new PagingFieldCollector(sort, queue, after, numHits, fillFields, trackDocScores, trackMaxScore);
+      return new PagingFieldCollector(sort, queue, after, numHits, fillFields, trackDocScores, trackMaxScore,
+          hitsThresholdChecker, minScoreAcc);
     }
   }
 
+  /**
+   * Create a {@link CollectorManager} whose collectors count hits accurately
+   * up to {@code totalHitsThreshold} across all slices. If the primary sort is
+   * by descending score, collectors then share the score that hits need to
+   * make it to the merged top hits, so that the collector of every slice may
+   * skip hits based on the most competitive hits that any slice found so far,
+   * see {@link #create(Sort, int, FieldDoc, boolean, boolean, boolean, int)}.
+   * Field values are always filled since they are needed to merge the hits of
+   * the different slices.
+   * @lucene.experimental
+   */
+  public static CollectorManager<TopFieldCollector, TopFieldDocs> createSharedManager(Sort sort, int numHits, FieldDoc after,
+      boolean trackDocScores, boolean trackMaxScore, int totalHitsThreshold) {
+    return new CollectorManager<TopFieldCollector, TopFieldDocs>() {
+
+      private final HitsThresholdChecker hitsThresholdChecker = HitsThresholdChecker.createShared(totalHitsThreshold);
+      private final MaxScoreAccumulator minScoreAcc = new MaxScoreAccumulator();
+
+      @Override
+      public TopFieldCollector newCollector() throws IOException {
+        final boolean fillFields = true;
+        return create(sort, numHits, after, fillFields, trackDocScores, trackMaxScore, hitsThresholdChecker, minScoreAcc);
+      }
+
+      @Override
+      public TopFieldDocs reduce(Collection<TopFieldCollector> collectors) throws IOException {
+        final TopFieldDocs[] topDocs = new TopFieldDocs[collectors.size()];
+        int i = 0;
+        for (TopFieldCollector collector : collectors) {
+          topDocs[i++] = collector.topDocs();
+        }
+        return TopDocs.merge(sort, numHits, topDocs);
+      }
+
+    };
+  }
+
   final void add(int slot, int doc, float score) {
     bottom = pq.add(new Entry(slot, docBase + doc, score));
     queueFull = totalHits == numHits;
@@ -551,7 +819,7 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
     }
 
     // If this is a maxScoring tracking collector and there were no results,
-    return new TopFieldDocs(totalHits, results, ((FieldValueHitQueue<Entry>) pq).getFields(), maxScore);
+    return new TopFieldDocs(totalHits, totalHitsRelation, results, ((FieldValueHitQueue<Entry>) pq).getFields(), maxScore);
   }
 
   @Override
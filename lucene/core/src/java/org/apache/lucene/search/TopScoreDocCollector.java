@@ -18,6 +18,7 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.lucene.index.LeafReaderContext;
 
@@ -49,8 +50,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
   private static class SimpleTopScoreDocCollector extends TopScoreDocCollector {
 
-    SimpleTopScoreDocCollector(int numHits) {
-      super(numHits);
+    SimpleTopScoreDocCollector(int numHits, HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
+      super(numHits, hitsThresholdChecker, minScoreAcc);
     }
 
     @Override
@@ -59,6 +60,14 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       final int docBase = context.docBase;
       return new ScorerLeafCollector() {
 
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+          super.setScorer(scorer);
+          // the new scorer has not been told about the min competitive score yet
+          minCompetitiveScore = Float.NEGATIVE_INFINITY;
+          updateMinCompetitiveScore(scorer);
+        }
+
         @Override
         public void collect(int doc) throws IOException {
           float score = scorer.score();
@@ -68,7 +77,15 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           assert !Float.isNaN(score);
 
           totalHits++;
+          hitsThresholdChecker.incrementHitCount();
           if (score <= pqTop.score) {
+            if (totalHitsRelation == TopDocs.TotalHitsRelation.EQUAL_TO) {
+              // we might just have reached totalHitsThreshold
+              updateMinCompetitiveScore(scorer);
+            } else if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+              // other slices might have found more competitive hits in the meantime
+              updateGlobalMinCompetitiveScore(scorer);
+            }
             // Since docs are returned in-order (i.e., increasing doc Id), a document
             // with equal score to pqTop.score cannot compete since HitQueue favors
             // documents with lower doc Ids. Therefore reject those docs too.
@@ -77,6 +94,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          updateMinCompetitiveScore(scorer);
         }
 
       };
@@ -89,8 +107,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
     private final ScoreDoc after;
     private int collectedHits;
 
-    PagingTopScoreDocCollector(int numHits, ScoreDoc after) {
-      super(numHits);
+    PagingTopScoreDocCollector(int numHits, ScoreDoc after, HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
+      super(numHits, hitsThresholdChecker, minScoreAcc);
       this.after = after;
       this.collectedHits = 0;
     }
@@ -102,7 +120,9 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
     @Override
     protected TopDocs newTopDocs(ScoreDoc[] results, int start) {
-      return results == null ? new TopDocs(totalHits, new ScoreDoc[0], Float.NaN) : new TopDocs(totalHits, results);
+      return results == null
+          ? new TopDocs(totalHits, totalHitsRelation, new ScoreDoc[0], Float.NaN)
+          : new TopDocs(totalHits, totalHitsRelation, results, Float.NaN);
     }
 
     @Override
@@ -110,6 +130,15 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       final int docBase = context.docBase;
       final int afterDoc = after.doc - context.docBase;
       return new ScorerLeafCollector() {
+
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+          super.setScorer(scorer);
+          // the new scorer has not been told about the min competitive score yet
+          minCompetitiveScore = Float.NEGATIVE_INFINITY;
+          updateMinCompetitiveScore(scorer);
+        }
+
         @Override
         public void collect(int doc) throws IOException {
           float score = scorer.score();
@@ -119,6 +148,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           assert !Float.isNaN(score);
 
           totalHits++;
+          hitsThresholdChecker.incrementHitCount();
 
           if (score > after.score || (score == after.score && doc <= afterDoc)) {
             // hit was collected on a previous page
@@ -126,6 +156,13 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           }
 
           if (score <= pqTop.score) {
+            if (totalHitsRelation == TopDocs.TotalHitsRelation.EQUAL_TO) {
+              // we might just have reached totalHitsThreshold
+              updateMinCompetitiveScore(scorer);
+            } else if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+              // other slices might have found more competitive hits in the meantime
+              updateGlobalMinCompetitiveScore(scorer);
+            }
             // Since docs are returned in-order (i.e., increasing doc Id), a document
             // with equal score to pqTop.score cannot compete since HitQueue favors
             // documents with lower doc Ids. Therefore reject those docs too.
@@ -135,6 +172,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          updateMinCompetitiveScore(scorer);
         }
       };
     }
@@ -165,26 +203,133 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
    * objects.
    */
   public static TopScoreDocCollector create(int numHits, ScoreDoc after) {
+    return create(numHits, after, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a new {@link TopScoreDocCollector} given the number of hits to
+   * collect, the bottom of the previous page, and the number of hits to count
+   * accurately.
+   *
+   * <p>Once more than {@code totalHitsThreshold} hits have been collected,
+   * the collector reports the score that a hit needs to be competitive to the
+   * {@link Scorer}, which may then skip over non-competitive hits, see
+   * {@link Collector#needsTopScoresOnly()}. {@link TopDocs#totalHits} is then
+   * only a lower bound of the hit count, as reported by
+   * {@link TopDocs#totalHitsRelation}. Pass {@link Integer#MAX_VALUE} in order
+   * to always count hits accurately.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>, and fill the array with sentinel
+   * objects.
+   * @lucene.experimental
+   */
+  public static TopScoreDocCollector create(int numHits, ScoreDoc after, int totalHitsThreshold) {
+    return create(numHits, after, HitsThresholdChecker.create(totalHitsThreshold), null);
+  }
+
+  static TopScoreDocCollector create(int numHits, ScoreDoc after, HitsThresholdChecker hitsThresholdChecker,
+      MaxScoreAccumulator minScoreAcc) {
 
     if (numHits <= 0) {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
     }
 
+    if (hitsThresholdChecker == null) {
+      throw new IllegalArgumentException("hitsThresholdChecker must be non null");
+    }
+
     if (after == null) {
-      return new SimpleTopScoreDocCollector(numHits);
+      return new SimpleTopScoreDocCollector(numHits, hitsThresholdChecker, minScoreAcc);
     } else {
-      return new PagingTopScoreDocCollector(numHits, after);
+      return new PagingTopScoreDocCollector(numHits, after, hitsThresholdChecker, minScoreAcc);
     }
   }
 
+  /**
+   * Create a {@link CollectorManager} whose collectors count hits accurately
+   * up to {@code totalHitsThreshold} across all slices, and then share the
+   * score that hits need to make it to the merged top hits. This allows the
+   * collector of every slice to skip hits based on the most competitive hits
+   * that any slice found so far, see
+   * {@link #create(int, ScoreDoc, int)}.
+   * @lucene.experimental
+   */
+  public static CollectorManager<TopScoreDocCollector, TopDocs> createSharedManager(int numHits, ScoreDoc after,
+      int totalHitsThreshold) {
+    return new CollectorManager<TopScoreDocCollector, TopDocs>() {
+
+      private final HitsThresholdChecker hitsThresholdChecker = HitsThresholdChecker.createShared(totalHitsThreshold);
+      private final MaxScoreAccumulator minScoreAcc = new MaxScoreAccumulator();
+
+      @Override
+      public TopScoreDocCollector newCollector() throws IOException {
+        return TopScoreDocCollector.create(numHits, after, hitsThresholdChecker, minScoreAcc);
+      }
+
+      @Override
+      public TopDocs reduce(Collection<TopScoreDocCollector> collectors) throws IOException {
+        final TopDocs[] topDocs = new TopDocs[collectors.size()];
+        int i = 0;
+        for (TopScoreDocCollector collector : collectors) {
+          topDocs[i++] = collector.topDocs();
+        }
+        return TopDocs.merge(numHits, topDocs);
+      }
+
+    };
+  }
+
   ScoreDoc pqTop;
+  final HitsThresholdChecker hitsThresholdChecker;
+  final MaxScoreAccumulator minScoreAcc;
+  // the last min competitive score that was passed to the current scorer
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
 
   // prevents instantiation
-  TopScoreDocCollector(int numHits) {
+  TopScoreDocCollector(int numHits, HitsThresholdChecker hitsThresholdChecker, MaxScoreAccumulator minScoreAcc) {
     super(new HitQueue(numHits, true));
     // HitQueue implements getSentinelObject to return a ScoreDoc, so we know
     // that at this point top() is already initialized.
     pqTop = pq.top();
+    this.hitsThresholdChecker = hitsThresholdChecker;
+    this.minScoreAcc = minScoreAcc;
+  }
+
+  void updateMinCompetitiveScore(Scorer scorer) {
+    if (hitsThresholdChecker.isThresholdReached()) {
+      if (pqTop.score != Float.NEGATIVE_INFINITY) { // -Infinity is the score of sentinels
+        // since we tie-break on doc id and collect in doc id order, we can require
+        // the next float
+        final float localMinScore = Math.nextUp(pqTop.score);
+        if (localMinScore > minCompetitiveScore) {
+          scorer.setMinCompetitiveScore(localMinScore);
+          minCompetitiveScore = localMinScore;
+          totalHitsRelation = TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+          if (minScoreAcc != null) {
+            // hits from other slices that have the same score may still be
+            // competitive depending on their doc IDs
+            minScoreAcc.accumulate(pqTop.score);
+          }
+        }
+      }
+      if (minScoreAcc != null) {
+        updateGlobalMinCompetitiveScore(scorer);
+      }
+    }
+  }
+
+  void updateGlobalMinCompetitiveScore(Scorer scorer) {
+    assert minScoreAcc != null;
+    if (hitsThresholdChecker.isThresholdReached()) {
+      final float globalMinScore = minScoreAcc.get();
+      if (globalMinScore > minCompetitiveScore) {
+        scorer.setMinCompetitiveScore(globalMinScore);
+        minCompetitiveScore = globalMinScore;
+        totalHitsRelation = TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+      }
+    }
   }
 
   @Override
@@ -205,11 +350,16 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       maxScore = pq.pop().score;
     }
 
-    return new TopDocs(totalHits, results, maxScore);
+    return new TopDocs(totalHits, totalHitsRelation, results, maxScore);
   }
 
   @Override
   public boolean needsScores() {
     return true;
   }
+
+  @Override
+  public boolean needsTopScoresOnly() {
+    return hitsThresholdChecker.getHitsThreshold() != Integer.MAX_VALUE;
+  }
 }
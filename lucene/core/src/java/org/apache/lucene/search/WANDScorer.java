@@ -0,0 +1,542 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.lucene.search.DisiPriorityQueue.leftNode;
+import static org.apache.lucene.search.DisiPriorityQueue.parentNode;
+import static org.apache.lucene.search.DisiPriorityQueue.rightNode;
+
+/**
+ * A {@link Scorer} for pure disjunctions of {@link BooleanQuery} that is used
+ * when only the top-scoring hits are needed, see
+ * {@link Collector#needsTopScoresOnly()}. It implements block-max WAND: doc
+ * IDs are processed in windows whose bounds are given by
+ * {@link Scorer#advanceShallow(int)}, and within each window it skips over
+ * documents whose sum of the maximum scores of the matching clauses, as
+ * reported by {@link Scorer#getMaxScore(int)}, is less than the minimum
+ * competitive score that was set by the collector.
+ *
+ * Like {@link MinShouldMatchSumScorer}, this implementation keeps sub scorers
+ * in 3 different places:
+ *  - lead: a linked list of scorer that are positioned on the desired doc ID
+ *  - tail: a heap that contains scorers that are behind the desired doc ID
+ *    and whose sum of maximum scores is less than the minimum competitive
+ *    score. These scorers are ordered by maximum score so that we can advance
+ *    the greatest score contributors first.
+ *  - head: a heap that contains scorers which are beyond the desired doc ID,
+ *    ordered by doc ID in order to move quickly to the next candidate.
+ *
+ * Maximum scores are scaled to longs so that sums are computed exactly and
+ * never depend on the order of summation.
+ */
+final class WANDScorer extends Scorer {
+
+  /** Scaled maximum score that is used for clauses whose scores are unbounded. */
+  static final long MAX_SCALED_SCORE = (1L << 32) - 1;
+
+  /** Scaled minimum competitive score when no score has been set yet. */
+  static final long NO_MIN_COMPETITIVE_SCORE = Long.MIN_VALUE / 2;
+
+  /** Return the scaling factor to apply to the given positive finite score
+   *  so that it falls in [2^23, 2^24). */
+  static int scalingFactor(float f) {
+    if (f <= 0 || Float.isFinite(f) == false) {
+      throw new IllegalArgumentException("Expected a positive finite score, got " + f);
+    }
+    // doubles have more amplitude than floats for the exponent, so this is
+    // correct for subnormal floats too
+    return 23 - Math.getExponent((double) f);
+  }
+
+  /** Scale a maximum score, rounding up. */
+  static long scaleMaxScore(float maxScore, int scalingFactor) {
+    final double scaled = Math.scalb((double) maxScore, scalingFactor);
+    if (scaled < MAX_SCALED_SCORE == false) {
+      // includes +Infinity and NaN
+      return MAX_SCALED_SCORE;
+    } else if (scaled < -MAX_SCALED_SCORE) {
+      return -MAX_SCALED_SCORE;
+    }
+    return (long) Math.ceil(scaled);
+  }
+
+  /** Scale a minimum competitive score, rounding down. Scores are summed as
+   *  doubles and then cast to a float, so we leave some room for the error of
+   *  the cast. */
+  static long scaleMinScore(float minScore, int scalingFactor) {
+    if (minScore > 0 == false) {
+      return NO_MIN_COMPETITIVE_SCORE;
+    }
+    double scaled = Math.scalb((double) minScore, scalingFactor);
+    scaled -= scaled * 0x1p-22;
+    if (scaled >= MAX_SCALED_SCORE) {
+      // a clause with an unbounded score might still produce competitive hits
+      return MAX_SCALED_SCORE;
+    }
+    return (long) Math.floor(scaled);
+  }
+
+  private final int scalingFactor;
+  // scaled min competitive score
+  private long minCompetitiveScore = NO_MIN_COMPETITIVE_SCORE;
+
+  // list of scorers which 'lead' the iteration and are currently
+  // positioned on 'doc'. This is sometimes called the 'pivot' in
+  // some descriptions of WAND (Weak AND).
+  DisiWrapper lead;
+  int doc;  // current doc ID of the leads
+  long leadMaxScore; // sum of the max scores of scorers in 'lead'
+
+  // priority queue of scorers that are too advanced compared to the current
+  // doc. Ordered by doc ID.
+  final DisiPriorityQueue head;
+
+  // priority queue of scorers which are behind the current doc.
+  // Ordered by maxScore.
+  final DisiWrapper[] tail;
+  long tailMaxScore; // sum of the max scores of scorers in 'tail'
+  int tailSize;
+
+  final Collection<ChildScorer> childScorers;
+  final long cost;
+
+  int upTo; // upper bound for which max scores are valid
+
+  WANDScorer(Weight weight, Collection<Scorer> scorers) throws IOException {
+    super(weight);
+
+    this.doc = -1;
+    this.upTo = -1; // will be computed on the first call to nextDoc/advance
+
+    head = new DisiPriorityQueue(scorers.size());
+    // there can be at most num_scorers - 1 scorers beyond the current position
+    tail = new DisiWrapper[scorers.size()];
+
+    int scalingFactor = Integer.MAX_VALUE;
+    for (Scorer scorer : scorers) {
+      scorer.advanceShallow(0);
+      final float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+      if (maxScore > 0 && Float.isFinite(maxScore)) {
+        scalingFactor = Math.min(scalingFactor, scalingFactor(maxScore));
+      }
+    }
+    this.scalingFactor = scalingFactor == Integer.MAX_VALUE ? 0 : scalingFactor;
+
+    long cost = 0;
+    for (Scorer scorer : scorers) {
+      DisiWrapper w = new DisiWrapper(scorer);
+      cost += w.cost;
+      w.maxScore = scaleMaxScore(scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS), this.scalingFactor);
+      addLead(w);
+    }
+    this.cost = cost;
+
+    List<ChildScorer> children = new ArrayList<>();
+    for (Scorer scorer : scorers) {
+      children.add(new ChildScorer(scorer, "SHOULD"));
+    }
+    this.childScorers = Collections.unmodifiableCollection(children);
+  }
+
+  // returns a boolean so that it can be called from assert
+  // the return value is useless: it always returns true
+  private boolean ensureConsistent() {
+    long maxScoreSum = 0;
+    for (int i = 0; i < tailSize; ++i) {
+      assert tail[i].doc < doc;
+      maxScoreSum += tail[i].maxScore;
+    }
+    assert maxScoreSum == tailMaxScore : maxScoreSum + " " + tailMaxScore;
+    assert tailSize == 0 || tailMaxScore < minCompetitiveScore;
+
+    maxScoreSum = 0;
+    for (DisiWrapper w = lead; w != null; w = w.next) {
+      assert w.doc == doc;
+      maxScoreSum += w.maxScore;
+    }
+    assert maxScoreSum == leadMaxScore : maxScoreSum + " " + leadMaxScore;
+
+    for (DisiWrapper w : head) {
+      assert w.doc > doc;
+    }
+
+    return true;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    final long scaledMinScore = scaleMinScore(minScore, scalingFactor);
+    assert scaledMinScore >= minCompetitiveScore;
+    // since the min competitive score may only increase, entries of 'tail'
+    // remain unable to produce a competitive hit on their own
+    minCompetitiveScore = scaledMinScore;
+  }
+
+  @Override
+  public final Collection<ChildScorer> getChildren() {
+    return childScorers;
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    return new DocIdSetIterator() {
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        assert ensureConsistent();
+
+        // Move 'lead' iterators back to the tail
+        pushBackLeads(target);
+
+        // Advance 'head' as well
+        advanceHead(target);
+
+        // Pop the new 'lead' from the 'head'
+        setDocAndLeadMaxScore(target);
+
+        assert ensureConsistent();
+
+        // Advance to the next possible match
+        return doNextCompetitiveCandidate();
+      }
+
+      @Override
+      public long cost() {
+        return cost;
+      }
+    };
+  }
+
+  private void addLead(DisiWrapper lead) {
+    lead.next = this.lead;
+    this.lead = lead;
+    leadMaxScore += lead.maxScore;
+  }
+
+  private void pushBackLeads(int target) throws IOException {
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      final DisiWrapper evicted = insertTailWithOverFlow(s);
+      if (evicted != null) {
+        evicted.doc = evicted.iterator.advance(target);
+        head.add(evicted);
+      }
+    }
+    lead = null;
+    leadMaxScore = 0;
+  }
+
+  private void advanceHead(int target) throws IOException {
+    DisiWrapper headTop = head.top();
+    while (headTop != null && headTop.doc < target) {
+      final DisiWrapper evicted = insertTailWithOverFlow(headTop);
+      if (evicted != null) {
+        evicted.doc = evicted.iterator.advance(target);
+        headTop = head.updateTop(evicted);
+      } else {
+        head.pop();
+        headTop = head.top();
+      }
+    }
+  }
+
+  private void advanceTail(DisiWrapper disi) throws IOException {
+    disi.doc = disi.iterator.advance(doc);
+    if (disi.doc == doc) {
+      addLead(disi);
+    } else {
+      head.add(disi);
+    }
+  }
+
+  private void advanceTail() throws IOException {
+    final DisiWrapper top = popTail();
+    advanceTail(top);
+  }
+
+  /** Compute new max scores for the window of doc IDs that starts at
+   *  {@code target}. */
+  private void updateMaxScores(int target) throws IOException {
+    if (head.size() == 0) {
+      // If the head is empty we use the greatest score contributor as a lead
+      // like for conjunctions.
+      upTo = tail[0].scorer.advanceShallow(target);
+    } else {
+      // If we still have entries in 'head', we treat them all as leads and
+      // take the minimum of their next block boundaries as a next boundary.
+      // We don't take entries in 'tail' into account on purpose: 'tail' is
+      // supposed to contain the least score contributors, and taking them
+      // into account might not move the boundary fast enough, so we'd waste
+      // CPU re-computing the next boundary all the time.
+      int newUpTo = DocIdSetIterator.NO_MORE_DOCS;
+      for (DisiWrapper w : head) {
+        if (w.doc <= newUpTo) {
+          newUpTo = Math.min(w.scorer.advanceShallow(w.doc), newUpTo);
+          w.maxScore = scaleMaxScore(w.scorer.getMaxScore(newUpTo), scalingFactor);
+        }
+      }
+      upTo = newUpTo;
+    }
+
+    tailMaxScore = 0;
+    for (int i = 0; i < tailSize; ++i) {
+      final DisiWrapper w = tail[i];
+      w.scorer.advanceShallow(target);
+      w.maxScore = scaleMaxScore(w.scorer.getMaxScore(upTo), scalingFactor);
+      upHeapMaxScore(tail, i); // the heap might need to be reordered
+      tailMaxScore += w.maxScore;
+    }
+
+    // We need to make sure that entries in 'tail' alone cannot match
+    // a competitive hit.
+    while (tailSize > 0 && tailMaxScore >= minCompetitiveScore) {
+      final DisiWrapper w = popTail();
+      w.doc = w.iterator.advance(target);
+      head.add(w);
+    }
+  }
+
+  /**
+   * Update {@code upTo} and maximum scores of sub scorers so that {@code upTo}
+   * is greater than or equal to the next candidate after {@code target}, ie.
+   * the top of `head`.
+   */
+  private void updateMaxScoresIfNecessary(int target) throws IOException {
+    assert lead == null;
+
+    while (upTo < DocIdSetIterator.NO_MORE_DOCS) {
+      if (head.size() == 0) {
+        // All clauses could fit in the tail, which means that the sum of the
+        // maximum scores of sub clauses is less than the minimum competitive
+        // score. Move to the next block until this condition becomes false.
+        target = Math.max(target, upTo + 1);
+        updateMaxScores(target);
+      } else if (head.top().doc > upTo) {
+        // We have a next candidate but it's not in the current block. We need
+        // to move to the next block in order to not miss any potential hits
+        // between the last block and the current block.
+        updateMaxScores(target);
+        break;
+      } else {
+        break;
+      }
+    }
+
+    assert (head.size() == 0 && upTo == DocIdSetIterator.NO_MORE_DOCS)
+        || (head.size() > 0 && head.top().doc <= upTo);
+    assert upTo >= target;
+  }
+
+  /**
+   * Set 'doc' to the next potential match, and move all disis of 'head' that
+   * are on this doc into 'lead'.
+   */
+  private void setDocAndLeadMaxScore(int target) throws IOException {
+    updateMaxScoresIfNecessary(target);
+    assert lead == null;
+
+    if (head.size() == 0) {
+      assert upTo == DocIdSetIterator.NO_MORE_DOCS;
+      doc = DocIdSetIterator.NO_MORE_DOCS;
+    } else {
+      // The top of `head` defines the next potential match
+      // pop all documents which are on this doc
+      lead = head.pop();
+      lead.next = null;
+      leadMaxScore = lead.maxScore;
+      doc = lead.doc;
+      while (head.size() > 0 && head.top().doc == doc) {
+        addLead(head.pop());
+      }
+    }
+  }
+
+  /**
+   * Advance to the next doc that may be competitive, ie. whose scorers in
+   * 'lead' alone may produce a competitive score.
+   */
+  private int doNextCompetitiveCandidate() throws IOException {
+    while (doc != DocIdSetIterator.NO_MORE_DOCS && leadMaxScore < minCompetitiveScore) {
+      if (leadMaxScore + tailMaxScore >= minCompetitiveScore) {
+        // a competitive match on doc is still possible, try to advance the
+        // greatest score contributors from the tail
+        advanceTail();
+      } else {
+        // no competitive match is possible on doc, move to the next potential
+        // match
+        pushBackLeads(doc + 1);
+        setDocAndLeadMaxScore(doc + 1);
+      }
+      assert ensureConsistent();
+    }
+    return doc;
+  }
+
+  /** Advance all entries from the tail to know about all matches on the
+   *  current doc. */
+  private void updateFreq() throws IOException {
+    // we return the next doc when the sum of the scores of the potential
+    // matching clauses is high enough but some of the clauses in 'tail' might
+    // match as well
+    // in general we want to advance least-costly clauses first in order to
+    // skip over non-matching documents as fast as possible. However here,
+    // we are advancing everything anyway so iterating over clauses in
+    // (roughly) cost-descending order might help avoid some permutations in
+    // the head heap
+    for (int i = tailSize - 1; i >= 0; --i) {
+      advanceTail(tail[i]);
+    }
+    tailSize = 0;
+    tailMaxScore = 0;
+    assert ensureConsistent();
+  }
+
+  @Override
+  public int freq() throws IOException {
+    // we need to know about all matches
+    updateFreq();
+    int freq = 0;
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      freq += 1;
+    }
+    return freq;
+  }
+
+  @Override
+  public float score() throws IOException {
+    // we need to know about all matches
+    updateFreq();
+    double score = 0;
+    for (DisiWrapper s = lead; s != null; s = s.next) {
+      score += s.scorer.score();
+    }
+    return (float) score;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  /** Insert an entry in 'tail' and evict the least-costly scorer if full. */
+  private DisiWrapper insertTailWithOverFlow(DisiWrapper s) {
+    if (tailMaxScore + s.maxScore < minCompetitiveScore) {
+      // we have free room for this new entry
+      addTail(s);
+      tailMaxScore += s.maxScore;
+      return null;
+    } else if (tailSize == 0) {
+      return s;
+    } else {
+      final DisiWrapper top = tail[0];
+      if (greaterMaxScore(top, s) == false) {
+        return s;
+      }
+      // Swap top and s
+      tail[0] = s;
+      downHeapMaxScore(tail, tailSize);
+      tailMaxScore = tailMaxScore - top.maxScore + s.maxScore;
+      return top;
+    }
+  }
+
+  /** Add an entry to 'tail'. Fails if over capacity. */
+  private void addTail(DisiWrapper s) {
+    tail[tailSize] = s;
+    upHeapMaxScore(tail, tailSize);
+    tailSize += 1;
+  }
+
+  /** Pop the entry from the 'tail' that has the greatest score contribution. */
+  private DisiWrapper popTail() {
+    assert tailSize > 0;
+    final DisiWrapper result = tail[0];
+    tail[0] = tail[--tailSize];
+    downHeapMaxScore(tail, tailSize);
+    tailMaxScore -= result.maxScore;
+    return result;
+  }
+
+  /** Heap helpers */
+
+  private static void upHeapMaxScore(DisiWrapper[] heap, int i) {
+    final DisiWrapper node = heap[i];
+    int j = parentNode(i);
+    while (j >= 0 && greaterMaxScore(node, heap[j])) {
+      heap[i] = heap[j];
+      i = j;
+      j = parentNode(j);
+    }
+    heap[i] = node;
+  }
+
+  private static void downHeapMaxScore(DisiWrapper[] heap, int size) {
+    int i = 0;
+    final DisiWrapper node = heap[0];
+    int j = leftNode(i);
+    if (j < size) {
+      int k = rightNode(j);
+      if (k < size && greaterMaxScore(heap[k], heap[j])) {
+        j = k;
+      }
+      if (greaterMaxScore(heap[j], node)) {
+        do {
+          heap[i] = heap[j];
+          i = j;
+          j = leftNode(i);
+          k = rightNode(j);
+          if (k < size && greaterMaxScore(heap[k], heap[j])) {
+            j = k;
+          }
+        } while (j < size && greaterMaxScore(heap[j], node));
+        heap[i] = node;
+      }
+    }
+  }
+
+  /**
+   * In the tail, we want to get first entries that produce the maximum scores
+   * and in case of ties (eg. constant-score queries), those that have the least
+   * cost so that they are likely to advance further.
+   */
+  private static boolean greaterMaxScore(DisiWrapper w1, DisiWrapper w2) {
+    if (w1.maxScore > w2.maxScore) {
+      return true;
+    } else if (w1.maxScore < w2.maxScore) {
+      return false;
+    } else {
+      return w1.cost < w2.cost;
+    }
+  }
+
+}
@@ -155,6 +155,26 @@ public abstract class Weight {
     return new DefaultBulkScorer(scorer);
   }
 
+  /**
+   * Optional method, to return a {@link BulkScorer} for collectors that only
+   * need the top-scoring hits, see {@link Collector#needsTopScoresOnly()}.
+   * The returned bulk scorer may skip documents whose score is less than the
+   * minimum competitive score that collectors report through
+   * {@link Scorer#setMinCompetitiveScore(float)}. The default implementation
+   * returns {@link #bulkScorer(LeafReaderContext)}.
+   *
+   * @param context
+   *          the {@link org.apache.lucene.index.LeafReaderContext} for which to return the {@link Scorer}.
+   *
+   * @return a {@link BulkScorer} which scores documents and
+   * passes them to a collector.
+   * @throws IOException if there is a low-level I/O error
+   * @lucene.experimental
+   */
+  public BulkScorer topScoresBulkScorer(LeafReaderContext context) throws IOException {
+    return bulkScorer(context);
+  }
+
   /** Just wraps a Scorer and performs top scoring using it.
    *  @lucene.internal */
   protected static class DefaultBulkScorer extends BulkScorer {
@@ -229,12 +229,14 @@ public class BM25Similarity extends Similarity {
     private final float weightValue; // boost * idf * (k1 + 1)
     private final NumericDocValues norms;
     private final float[] cache;
+    private final float minNorm; // the least value of the freq-independent part of the denominator
     
     BM25DocScorer(BM25Stats stats, NumericDocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.weight * (k1 + 1);
       this.cache = stats.cache;
       this.norms = norms;
+      this.minNorm = norms == null ? k1 : stats.minCacheValue;
     }
     
     @Override
@@ -252,6 +254,14 @@ public class BM25Similarity extends Similarity {
       }
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(float maxFreq) {
+      // the score is increasing with the freq and decreasing with the norm,
+      // compute with doubles and leave room for the rounding errors of score()
+      final double maxScore = (double) weightValue * maxFreq / (maxFreq + (double) minNorm);
+      return (float) (maxScore * (1 + 0x1p-20));
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) throws IOException {
@@ -283,6 +293,8 @@ public class BM25Similarity extends Similarity {
     private final String field;
     /** precomputed norm[256] with k1 * ((1 - b) + b * dl / avgdl) */
     private final float cache[];
+    /** least value in {@link #cache} */
+    private final float minCacheValue;
 
     BM25Stats(String field, float boost, Explanation idf, float avgdl, float cache[]) {
       this.field = field;
@@ -291,6 +303,11 @@ public class BM25Similarity extends Similarity {
       this.avgdl = avgdl;
       this.cache = cache;
       this.weight = idf.getValue() * boost;
+      float minCacheValue = Float.POSITIVE_INFINITY;
+      for (float value : cache) {
+        minCacheValue = Math.min(minCacheValue, value);
+      }
+      this.minCacheValue = minCacheValue;
     }
 
   }
@@ -42,6 +42,7 @@ final class ByteBufferGuard {
   
   private final String resourceDescription;
   private final BufferCleaner cleaner;
+  private final MMapDirectory.PageCacheAccess pageCacheAccess;
   
   /** Not volatile; see comments on visibility below! */
   private boolean invalidated = false;
@@ -51,11 +52,14 @@ final class ByteBufferGuard {
   
   /**
    * Creates an instance to be used for a single {@link ByteBufferIndexInput} which
-   * must be shared by all of its clones.
+   * must be shared by all of its clones. If <code>pageCacheAccess</code> is
+   * not null, it gets {@link MMapDirectory.ReadAdvice#WILLNEED} advice for
+   * prefetched ranges of buffers.
    */
-  public ByteBufferGuard(String resourceDescription, BufferCleaner cleaner) {
+  public ByteBufferGuard(String resourceDescription, BufferCleaner cleaner, MMapDirectory.PageCacheAccess pageCacheAccess) {
     this.resourceDescription = resourceDescription;
     this.cleaner = cleaner;
+    this.pageCacheAccess = pageCacheAccess;
   }
   
   /**
@@ -132,5 +136,15 @@ final class ByteBufferGuard {
     ensureValid();
     return receiver.getLong(pos);
   }
+
+  public void prefetch(ByteBuffer receiver, int from, int to) throws IOException {
+    ensureValid();
+    if (pageCacheAccess != null) {
+      final ByteBuffer range = receiver.duplicate();
+      range.limit(to);
+      range.position(from);
+      pageCacheAccess.advise(range.slice(), MMapDirectory.ReadAdvice.WILLNEED);
+    }
+  }
     
 }
@@ -244,6 +244,33 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
     return length;
   }
 
+  @Override
+  public final void prefetch(long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + this.length + ": " + this);
+    }
+    if (buffers == null) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+    try {
+      prefetchBuffers(offset, length);
+    } catch (NullPointerException npe) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+  }
+
+  /** Prefetches the given range of {@link #buffers} (may apply extra offset in subclasses). */
+  protected void prefetchBuffers(long pos, long length) throws IOException {
+    while (length > 0) {
+      final ByteBuffer b = buffers[(int) (pos >>> chunkSizePower)];
+      final int from = (int) (pos & chunkSizeMask);
+      final int to = (int) Math.min(b.limit(), from + length);
+      guard.prefetch(b, from, to);
+      pos += to - from;
+      length -= to - from;
+    }
+  }
+
   @Override
   public final ByteBufferIndexInput clone() {
     final ByteBufferIndexInput clone = buildSlice((String) null, 0L, this.length);
@@ -465,6 +492,11 @@ abstract class ByteBufferIndexInput extends IndexInput implements RandomAccessIn
     public long getFilePointer() {
       return super.getFilePointer() - offset;
     }
+
+    @Override
+    protected void prefetchBuffers(long pos, long length) throws IOException {
+      super.prefetchBuffers(pos + offset, length);
+    }
     
     @Override
     public byte readByte(long pos) throws IOException {
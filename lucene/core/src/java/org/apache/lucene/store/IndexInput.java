@@ -112,6 +112,40 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
     }
   }
 
+  /**
+   * Hint that the bytes in <code>[offset, offset+length)</code> of this input
+   * are going to be read soon, so that they may be loaded in the background
+   * while other bytes are being read. Offsets are relative to this input, and
+   * the file pointer is not changed.
+   * <p>
+   * The default implementation does nothing.
+   */
+  public void prefetch(long offset, long length) throws IOException {
+  }
+
+  /**
+   * Read several ranges of bytes: <code>buffers[i]</code> is filled with the
+   * <code>buffers[i].length</code> bytes that start at <code>offsets[i]</code>.
+   * The file pointer is not changed.
+   * <p>
+   * The default implementation {@link #prefetch prefetches} all ranges before
+   * reading them one after the other, so that implementations that support
+   * prefetching read ranges concurrently.
+   */
+  public void readBatch(long[] offsets, byte[][] buffers) throws IOException {
+    if (offsets.length != buffers.length) {
+      throw new IllegalArgumentException("got " + offsets.length + " offsets but " + buffers.length + " buffers");
+    }
+    for (int i = 0; i < offsets.length; ++i) {
+      prefetch(offsets[i], buffers[i].length);
+    }
+    final IndexInput in = clone();
+    for (int i = 0; i < offsets.length; ++i) {
+      in.seek(offsets[i]);
+      in.readBytes(buffers[i], 0, buffers[i].length);
+    }
+  }
+
   /**
    * Creates a random-access slice of this index input, with the given offset and length. 
    * <p>
@@ -150,6 +184,11 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
           return slice.readLong();
         }
 
+        @Override
+        public void prefetch(long offset, long length) throws IOException {
+          slice.prefetch(offset, length);
+        }
+
         @Override
         public String toString() {
           return "RandomAccessInput(" + IndexInput.this.toString() + ")";
@@ -30,13 +30,17 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.store.ByteBufferGuard.BufferCleaner;
 import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.SuppressForbidden;
@@ -88,11 +92,110 @@ import org.apache.lucene.util.SuppressForbidden;
  * {@link Future#cancel(boolean)} you should use the legacy {@code RAFDirectory}
  * from the Lucene {@code misc} module in favor of {@link MMapDirectory}.
  * </p>
+ * <p>
+ * The operating system can be told how mapped files are going to be accessed
+ * (see {@link #setReadAdvice}), for instance so that merges do not evict
+ * frequently accessed pages from the page cache. Advice is passed to the
+ * operating system through a {@link PageCacheAccess}, which is pure Java and
+ * only supports {@link ReadAdvice#WILLNEED} by default. The {@code misc}
+ * module has a native implementation for POSIX systems.
+ * </p>
+ * <p>
+ * With a {@link PageCacheAccess} other than {@link #JAVA_PAGE_CACHE_ACCESS},
+ * {@link IndexInput#prefetch} gives {@link ReadAdvice#WILLNEED} advice to the
+ * prefetched pages so that the operating system reads them in the background.
+ * Otherwise prefetching does nothing, as loading pages from Java would block.
+ * </p>
  * @see <a href="http://blog.thetaphi.de/2012/07/use-lucenes-mmapdirectory-on-64bit.html">Blog post about MMapDirectory</a>
  */
 public class MMapDirectory extends FSDirectory {
   private boolean useUnmapHack = UNMAP_SUPPORTED;
   private boolean preload;
+  private BiFunction<String, IOContext, ReadAdvice> readAdvice = NO_READ_ADVICE;
+  private PageCacheAccess pageCacheAccess = JAVA_PAGE_CACHE_ACCESS;
+
+  /**
+   * Hints about how the pages of a mapped file are going to be accessed.
+   * @see #setReadAdvice
+   */
+  public enum ReadAdvice {
+    /** No specific advice: the operating system applies its default read-ahead. */
+    NORMAL,
+    /** Pages are going to be accessed in random order: read-ahead is pointless. */
+    RANDOM,
+    /** Pages are going to be accessed sequentially: read ahead aggressively, and pages may be freed soon after they are accessed. */
+    SEQUENTIAL,
+    /** Pages are going to be accessed soon: load them now. */
+    WILLNEED,
+    /** Pages are not going to be accessed soon: they may be evicted from the page cache. */
+    DONTNEED
+  }
+
+  /**
+   * Passes {@link ReadAdvice} about mapped buffers to the operating system
+   * and reports which parts of mapped buffers are in physical memory.
+   * Implementations may ignore advice that they do not support.
+   * @see #setPageCacheAccess
+   * @lucene.experimental
+   */
+  public interface PageCacheAccess {
+    /** Apply <code>advice</code> to the pages of the given mapped buffer. */
+    void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException;
+
+    /** Return the number of bytes of the given mapped buffer that are resident in physical memory. */
+    long residentBytes(ByteBuffer buffer) throws IOException;
+  }
+
+  /**
+   * A {@link PageCacheAccess} that only relies on {@link MappedByteBuffer}:
+   * {@link ReadAdvice#WILLNEED} loads the buffer, other advice is ignored, and
+   * a buffer is reported as either fully resident or not resident at all.
+   */
+  public static final PageCacheAccess JAVA_PAGE_CACHE_ACCESS = new PageCacheAccess() {
+    @Override
+    public void advise(ByteBuffer buffer, ReadAdvice advice) {
+      if (advice == ReadAdvice.WILLNEED) {
+        ((MappedByteBuffer) buffer).load();
+      }
+    }
+
+    @Override
+    public long residentBytes(ByteBuffer buffer) {
+      return ((MappedByteBuffer) buffer).isLoaded() ? buffer.capacity() : 0;
+    }
+
+    @Override
+    public String toString() {
+      return "JAVA_PAGE_CACHE_ACCESS";
+    }
+  };
+
+  /** Read advice that gives {@link ReadAdvice#NORMAL} for every file. This is the default. */
+  public static final BiFunction<String, IOContext, ReadAdvice> NO_READ_ADVICE = (name, context) -> ReadAdvice.NORMAL;
+
+  /**
+   * Return read advice that depends on the extension of files, for instance
+   * {@link ReadAdvice#RANDOM} for terms dictionaries, and on whether files are
+   * opened for merging. Files that are opened with a {@link IOContext.Context#MERGE}
+   * context get <code>mergeAdvice</code> if it is not null, otherwise files
+   * get the advice of their extension, or {@link ReadAdvice#NORMAL} if their
+   * extension has no advice. Note that compound files get the advice of the
+   * compound file extension, whatever files they contain.
+   * <p>
+   * Passing {@link ReadAdvice#SEQUENTIAL} as <code>mergeAdvice</code> helps
+   * prevent merges from evicting pages that searches need from the page cache.
+   */
+  public static BiFunction<String, IOContext, ReadAdvice> readAdviceByExtension(Map<String, ReadAdvice> adviceByExtension, ReadAdvice mergeAdvice) {
+    final Map<String, ReadAdvice> copy = new HashMap<>(adviceByExtension);
+    return (name, context) -> {
+      if (mergeAdvice != null && context.context == IOContext.Context.MERGE) {
+        return mergeAdvice;
+      }
+      final String extension = IndexFileNames.getExtension(name);
+      final ReadAdvice advice = extension == null ? null : copy.get(extension);
+      return advice == null ? ReadAdvice.NORMAL : advice;
+    };
+  }
 
   /** 
    * Default max chunk size.
@@ -220,6 +323,44 @@ public class MMapDirectory extends FSDirectory {
   public boolean getPreload() {
     return preload;
   }
+
+  /**
+   * Set the function that computes the {@link ReadAdvice} of files given
+   * their name and the {@link IOContext} that they are opened with. Advice
+   * other than {@link ReadAdvice#NORMAL} is applied to the mapped buffers of
+   * files when they are opened, through the {@link PageCacheAccess}.
+   * Advice is a hint: the behavior is best-effort and operating system
+   * dependent.
+   * @see #readAdviceByExtension
+   * @see #setPageCacheAccess
+   */
+  public void setReadAdvice(BiFunction<String, IOContext, ReadAdvice> readAdvice) {
+    this.readAdvice = Objects.requireNonNull(readAdvice);
+  }
+
+  /**
+   * Returns the function that computes the {@link ReadAdvice} of files.
+   * @see #setReadAdvice
+   */
+  public BiFunction<String, IOContext, ReadAdvice> getReadAdvice() {
+    return readAdvice;
+  }
+
+  /**
+   * Set the {@link PageCacheAccess} that applies {@link ReadAdvice} and
+   * computes resident bytes. The default is {@link #JAVA_PAGE_CACHE_ACCESS}.
+   */
+  public void setPageCacheAccess(PageCacheAccess pageCacheAccess) {
+    this.pageCacheAccess = Objects.requireNonNull(pageCacheAccess);
+  }
+
+  /**
+   * Returns the {@link PageCacheAccess}.
+   * @see #setPageCacheAccess
+   */
+  public PageCacheAccess getPageCacheAccess() {
+    return pageCacheAccess;
+  }
   
   /**
    * Returns the current mmap chunk size.
@@ -238,14 +379,75 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
-      return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null));
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size());
+      boolean success = false;
+      try {
+        final ReadAdvice advice = readAdvice.apply(name, context);
+        if (advice != ReadAdvice.NORMAL) {
+          for (ByteBuffer buffer : buffers) {
+            if (buffer.capacity() > 0) {
+              pageCacheAccess.advise(buffer, advice);
+            }
+          }
+        }
+        final IndexInput in = ByteBufferIndexInput.newInstance(resourceDescription,
+            buffers, 
+            c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null,
+                pageCacheAccess == JAVA_PAGE_CACHE_ACCESS ? null : pageCacheAccess));
+        success = true;
+        return in;
+      } finally {
+        if (success == false && useUnmap) {
+          for (ByteBuffer buffer : buffers) {
+            try {
+              CLEANER.freeBuffer(resourceDescription, buffer);
+            } catch (IOException | RuntimeException e) {
+              // keep the original exception
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes of the file with the given name that are
+   * resident in physical memory, as reported by the {@link PageCacheAccess}.
+   * The file is mapped but its pages are not accessed, so calling this
+   * method does not load the file into memory. Calling this method on every
+   * file of {@link #listAll()} gives a report of which files are hot.
+   */
+  public long residentBytes(String name) throws IOException {
+    ensureOpen();
+    ensureCanRead(name);
+    Path path = directory.resolve(name);
+    try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
+      final String resourceDescription = "MMapDirectory.residentBytes(path=\"" + path.toString() + "\")";
+      final ByteBuffer[] buffers = map(resourceDescription, c, 0, c.size(), false);
+      try {
+        long residentBytes = 0;
+        for (ByteBuffer buffer : buffers) {
+          if (buffer.capacity() > 0) {
+            residentBytes += pageCacheAccess.residentBytes(buffer);
+          }
+        }
+        return residentBytes;
+      } finally {
+        if (getUseUnmap()) {
+          for (ByteBuffer buffer : buffers) {
+            CLEANER.freeBuffer(resourceDescription, buffer);
+          }
+        }
+      }
     }
   }
 
   /** Maps a file into a set of buffers */
   final ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length) throws IOException {
+    return map(resourceDescription, fc, offset, length, preload);
+  }
+
+  private ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length, boolean preload) throws IOException {
     if ((length >>> chunkSizePower) >= Integer.MAX_VALUE)
       throw new IllegalArgumentException("RandomAccessFile too big for chunk size: " + resourceDescription);
     
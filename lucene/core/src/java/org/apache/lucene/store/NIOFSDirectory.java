@@ -19,11 +19,15 @@ package org.apache.lucene.store;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException; // javadoc @link
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future; // javadoc
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.util.IOUtils;
 
 /**
  * An {@link FSDirectory} implementation that uses java.nio's FileChannel's
@@ -49,9 +53,15 @@ import java.util.concurrent.Future; // javadoc
  * {@link Future#cancel(boolean)} you should use the legacy {@code RAFDirectory}
  * from the Lucene {@code misc} module in favor of {@link NIOFSDirectory}.
  * </p>
+ * <p>
+ * {@link IndexInput#prefetch} hints are ignored unless a prefetch executor is
+ * configured, see {@link #setPrefetchExecutor}.
+ * </p>
  */
 public class NIOFSDirectory extends FSDirectory {
 
+  private volatile Executor prefetchExecutor;
+
   /** Create a new NIOFSDirectory for the named location.
    *  The directory is created at the named location if it does not yet exist.
    * 
@@ -73,13 +83,101 @@ public class NIOFSDirectory extends FSDirectory {
     this(path, FSLockFactory.getDefault());
   }
 
+  /**
+   * Set the {@link Executor} that reads prefetched ranges of files, or
+   * {@code null} (the default) to ignore {@link IndexInput#prefetch} hints.
+   * Prefetched ranges are read in the background with positional reads, which
+   * loads them into the operating system's cache, so that random reads
+   * that would otherwise run one after the other are performed concurrently.
+   * This only applies to inputs that are opened after this method is called.
+   * <p>
+   * Prefetches read through a separate {@link FileChannel} that each input
+   * opens on its first prefetch and shares with its clones and slices, so
+   * interrupting the executor's threads only cancels pending prefetches and
+   * never closes the channels that inputs read from. A prefetch channel that
+   * an interrupt closed is reopened on the next prefetch. If the file cannot
+   * be opened anymore, e.g. because it has been deleted, prefetch hints are
+   * ignored for this input.
+   */
+  public void setPrefetchExecutor(Executor prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Returns the {@link Executor} that reads prefetched ranges of files.
+   * @see #setPrefetchExecutor
+   */
+  public Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
     ensureOpen();
     ensureCanRead(name);
     Path path = getDirectory().resolve(name);
     FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
-    return new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, context);
+    final Executor prefetchExecutor = this.prefetchExecutor;
+    final PrefetchChannel prefetchChannel = prefetchExecutor == null ? null : new PrefetchChannel(path);
+    return new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, context, prefetchChannel, prefetchExecutor);
+  }
+
+  /** Buffer that prefetched bytes are read into, one per thread of the prefetch executor. */
+  private static final ThreadLocal<ByteBuffer> PREFETCH_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(NIOFSIndexInput.CHUNK_SIZE));
+
+  /**
+   * The channel that prefetches of an input and of its clones and slices read
+   * from. It is opened lazily, and reopened if an interrupt closed it, until
+   * the input is closed or the file cannot be opened anymore.
+   */
+  static final class PrefetchChannel {
+    private final Path path;
+    private FileChannel channel;
+    private boolean closed;
+    /** number of times the channel has been opened, for testing */
+    int opens;
+
+    PrefetchChannel(Path path) {
+      this.path = path;
+    }
+
+    /** Return the channel to read prefetched ranges from, or null if prefetching is disabled. */
+    synchronized FileChannel get() {
+      if (closed) {
+        return null;
+      }
+      if (channel == null || channel.isOpen() == false) {
+        try {
+          channel = FileChannel.open(path, StandardOpenOption.READ);
+          opens++;
+        } catch (IOException e) {
+          // the file is gone: give up on prefetching rather than trying to open it on every hint
+          closed = true;
+          return null;
+        }
+      }
+      return channel;
+    }
+
+    /** Called when a read failed because an interrupt closed {@code channel}, so that the next prefetch reopens it. */
+    synchronized void interrupted(FileChannel channel) {
+      if (this.channel == channel) {
+        IOUtils.closeWhileHandlingException(channel);
+        this.channel = null;
+      }
+    }
+
+    synchronized boolean isClosed() {
+      return closed;
+    }
+
+    synchronized void close() throws IOException {
+      closed = true;
+      if (channel != null) {
+        channel.close();
+        channel = null;
+      }
+    }
   }
   
   /**
@@ -89,7 +187,7 @@ public class NIOFSDirectory extends FSDirectory {
     /**
      * The maximum chunk size for reads of 16384 bytes.
      */
-    private static final int CHUNK_SIZE = 16384;
+    static final int CHUNK_SIZE = 16384;
     
     /** the file channel we will read from */
     protected final FileChannel channel;
@@ -100,27 +198,42 @@ public class NIOFSDirectory extends FSDirectory {
     /** end offset (start+length) */
     protected final long end;
     
+    /** the channel prefetches read from, or null if prefetching is disabled */
+    final PrefetchChannel prefetchChannel;
+    /** reads prefetched ranges, or null if prefetching is disabled */
+    private final Executor prefetchExecutor;
+    
     private ByteBuffer byteBuf; // wraps the buffer for NIO
 
-    public NIOFSIndexInput(String resourceDesc, FileChannel fc, IOContext context) throws IOException {
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, IOContext context, PrefetchChannel prefetchChannel, Executor prefetchExecutor) throws IOException {
       super(resourceDesc, context);
       this.channel = fc; 
       this.off = 0L;
       this.end = fc.size();
+      this.prefetchChannel = prefetchChannel;
+      this.prefetchExecutor = prefetchExecutor;
     }
     
-    public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize) {
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize, PrefetchChannel prefetchChannel, Executor prefetchExecutor) {
       super(resourceDesc, bufferSize);
       this.channel = fc;
       this.off = off;
       this.end = off + length;
       this.isClone = true;
+      this.prefetchChannel = prefetchChannel;
+      this.prefetchExecutor = prefetchExecutor;
     }
     
     @Override
     public void close() throws IOException {
       if (!isClone) {
-        channel.close();
+        try {
+          channel.close();
+        } finally {
+          if (prefetchChannel != null) {
+            prefetchChannel.close();
+          }
+        }
       }
     }
     
@@ -136,7 +249,48 @@ public class NIOFSDirectory extends FSDirectory {
       if (offset < 0 || length < 0 || offset + length > this.length()) {
         throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
       }
-      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize());
+      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize(), prefetchChannel, prefetchExecutor);
+    }
+
+    @Override
+    public void prefetch(long offset, long length) throws IOException {
+      if (offset < 0 || length < 0 || offset + length > this.length()) {
+        throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
+      }
+      if (prefetchExecutor == null || length == 0 || prefetchChannel.isClosed()) {
+        return;
+      }
+      final long start = off + offset;
+      try {
+        prefetchExecutor.execute(() -> prefetchInternal(start, start + length));
+      } catch (RejectedExecutionException e) {
+        // prefetching is best-effort
+      }
+    }
+
+    private void prefetchInternal(long pos, long end) {
+      // use a separate channel: an interrupt of the executor's thread closes the
+      // channel it is reading from, which must not be the one of this input
+      final FileChannel fc = prefetchChannel.get();
+      if (fc == null) {
+        return;
+      }
+      final ByteBuffer bb = PREFETCH_BUFFER.get();
+      try {
+        while (pos < end) {
+          bb.clear();
+          bb.limit((int) Math.min(bb.capacity(), end - pos));
+          final int i = fc.read(bb, pos);
+          if (i < 0) {
+            break;
+          }
+          pos += i;
+        }
+      } catch (ClosedChannelException e) {
+        prefetchChannel.interrupted(fc);
+      } catch (IOException e) {
+        // prefetching is best-effort: errors are reported by actual reads
+      }
     }
 
     @Override
@@ -46,4 +46,11 @@ public interface RandomAccessInput {
    * @see DataInput#readLong
    */
   public long readLong(long pos) throws IOException;
+  /**
+   * Hint that the bytes in <code>[offset, offset+length)</code> are going to
+   * be read soon. The default implementation does nothing.
+   * @see IndexInput#prefetch
+   */
+  public default void prefetch(long offset, long length) throws IOException {
+  }
 }
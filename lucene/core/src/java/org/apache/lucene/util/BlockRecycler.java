@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded store of byte and int blocks that is shared by several
+ * {@link ByteBlockPool}s and {@link IntBlockPool}s which are used and
+ * discarded in turn, such as the pools of the per-thread writers of an
+ * {@code IndexWriter}. Blocks that a discarded pool handed back are given
+ * to the next pools instead of being garbage collected, so that large
+ * indexing buffers are not reallocated (and promoted to the old generation
+ * by the garbage collector) after every flush.
+ * <p>
+ * Pools do not allocate from this class directly but from the allocators
+ * returned by {@link #newByteBlockAllocator(Counter)} and
+ * {@link #newIntBlockAllocator(Counter)}. These allocators are not
+ * thread-safe: they are owned by a single consumer, which must call
+ * {@link ByteBlockAllocator#release()} or {@link IntBlockAllocator#release()}
+ * once it no longer uses any of the blocks that it obtained.
+ * <p>
+ * This class is thread-safe.
+ * @lucene.internal
+ */
+public final class BlockRecycler {
+
+  private final long maxBytes;
+  private final ArrayDeque<byte[]> byteBlocks = new ArrayDeque<>();
+  private final ArrayDeque<int[]> intBlocks = new ArrayDeque<>();
+  private long bytesUsed;
+
+  /**
+   * Create a new {@link BlockRecycler} that keeps at most {@code maxBytes}
+   * bytes of free blocks.
+   */
+  public BlockRecycler(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes must be >= 0, got " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /** Return the maximum number of bytes of free blocks that this recycler keeps. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Return the number of bytes of free blocks that are currently kept. */
+  public synchronized long bytesUsed() {
+    return bytesUsed;
+  }
+
+  /** Return the number of free byte blocks that are currently kept. */
+  public synchronized int numBufferedByteBlocks() {
+    return byteBlocks.size();
+  }
+
+  /** Return the number of free int blocks that are currently kept. */
+  public synchronized int numBufferedIntBlocks() {
+    return intBlocks.size();
+  }
+
+  /** Return a free byte block, or null if there is none. */
+  private synchronized byte[] pollByteBlock() {
+    final byte[] block = byteBlocks.pollFirst();
+    if (block != null) {
+      bytesUsed -= block.length;
+    }
+    return block;
+  }
+
+  /** Return a free int block, or null if there is none. */
+  private synchronized int[] pollIntBlock() {
+    final int[] block = intBlocks.pollFirst();
+    if (block != null) {
+      bytesUsed -= (long) block.length * Integer.BYTES;
+    }
+    return block;
+  }
+
+  private synchronized void offerByteBlocks(List<byte[]> blocks) {
+    for (byte[] block : blocks) {
+      if (bytesUsed + block.length > maxBytes) {
+        break;
+      }
+      byteBlocks.addFirst(block);
+      bytesUsed += block.length;
+    }
+  }
+
+  private synchronized void offerIntBlocks(List<int[]> blocks) {
+    for (int[] block : blocks) {
+      final long blockBytes = (long) block.length * Integer.BYTES;
+      if (bytesUsed + blockBytes > maxBytes) {
+        break;
+      }
+      intBlocks.addFirst(block);
+      bytesUsed += blockBytes;
+    }
+  }
+
+  /**
+   * Removes all free blocks from this recycler.
+   */
+  public synchronized void clear() {
+    byteBlocks.clear();
+    intBlocks.clear();
+    bytesUsed = 0;
+  }
+
+  /**
+   * Return a new {@link ByteBlockAllocator} of
+   * {@link ByteBlockPool#BYTE_BLOCK_SIZE} blocks that takes its blocks from
+   * this recycler and tracks the bytes of the blocks that are in use in the
+   * given {@link Counter}.
+   */
+  public ByteBlockAllocator newByteBlockAllocator(Counter bytesUsed) {
+    return new ByteBlockAllocator(ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed);
+  }
+
+  /**
+   * Return a new {@link IntBlockAllocator} of
+   * {@link IntBlockPool#INT_BLOCK_SIZE} blocks that takes its blocks from
+   * this recycler and tracks the bytes of the blocks that are in use in the
+   * given {@link Counter}.
+   */
+  public IntBlockAllocator newIntBlockAllocator(Counter bytesUsed) {
+    return new IntBlockAllocator(IntBlockPool.INT_BLOCK_SIZE, bytesUsed);
+  }
+
+  /**
+   * A {@link ByteBlockPool.Allocator} that takes its blocks from a
+   * {@link BlockRecycler}. Blocks that pools recycle are reused by the same
+   * allocator, and all blocks return to the {@link BlockRecycler} on
+   * {@link #release()}. Like blocks that are allocated with {@code new},
+   * recycled blocks are filled with <tt>0</tt> bytes before they are handed
+   * out again.
+   */
+  public final class ByteBlockAllocator extends ByteBlockPool.Allocator {
+
+    private final Counter bytesUsed;
+    private final List<byte[]> allocated = new ArrayList<>();
+    private final List<byte[]> free = new ArrayList<>();
+
+    ByteBlockAllocator(int blockSize, Counter bytesUsed) {
+      super(blockSize);
+      this.bytesUsed = bytesUsed;
+    }
+
+    @Override
+    public byte[] getByteBlock() {
+      byte[] block;
+      if (free.isEmpty() == false) {
+        block = free.remove(free.size() - 1);
+        Arrays.fill(block, (byte) 0);
+      } else {
+        block = pollByteBlock();
+        if (block == null) {
+          block = new byte[blockSize];
+        } else {
+          Arrays.fill(block, (byte) 0);
+        }
+        allocated.add(block);
+      }
+      bytesUsed.addAndGet(blockSize);
+      return block;
+    }
+
+    @Override
+    public void recycleByteBlocks(byte[][] blocks, int start, int end) {
+      bytesUsed.addAndGet(-((end-start) * blockSize));
+      for (int i = start; i < end; i++) {
+        free.add(blocks[i]);
+        blocks[i] = null;
+      }
+    }
+
+    /**
+     * Return all blocks that this allocator handed out to the
+     * {@link BlockRecycler}. This must only be called once none of these
+     * blocks is used anymore. This allocator may be used again afterwards.
+     */
+    public void release() {
+      offerByteBlocks(allocated);
+      allocated.clear();
+      free.clear();
+    }
+  }
+
+  /**
+   * An {@link IntBlockPool.Allocator} that takes its blocks from a
+   * {@link BlockRecycler}, see {@link ByteBlockAllocator}.
+   */
+  public final class IntBlockAllocator extends IntBlockPool.Allocator {
+
+    private final Counter bytesUsed;
+    private final List<int[]> allocated = new ArrayList<>();
+    private final List<int[]> free = new ArrayList<>();
+
+    IntBlockAllocator(int blockSize, Counter bytesUsed) {
+      super(blockSize);
+      this.bytesUsed = bytesUsed;
+    }
+
+    @Override
+    public int[] getIntBlock() {
+      int[] block;
+      if (free.isEmpty() == false) {
+        block = free.remove(free.size() - 1);
+        Arrays.fill(block, 0);
+      } else {
+        block = pollIntBlock();
+        if (block == null) {
+          block = new int[blockSize];
+        } else {
+          Arrays.fill(block, 0);
+        }
+        allocated.add(block);
+      }
+      bytesUsed.addAndGet(blockSize * Integer.BYTES);
+      return block;
+    }
+
+    @Override
+    public void recycleIntBlocks(int[][] blocks, int start, int end) {
+      bytesUsed.addAndGet(-((end-start) * (blockSize * Integer.BYTES)));
+      for (int i = start; i < end; i++) {
+        free.add(blocks[i]);
+        blocks[i] = null;
+      }
+    }
+
+    /**
+     * Return all blocks that this allocator handed out to the
+     * {@link BlockRecycler}. This must only be called once none of these
+     * blocks is used anymore. This allocator may be used again afterwards.
+     */
+    public void release() {
+      offerIntBlocks(allocated);
+      allocated.clear();
+      free.clear();
+    }
+  }
+}
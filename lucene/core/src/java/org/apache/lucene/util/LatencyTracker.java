@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the latencies of the most recent operations, such as searches or
+ * reads from the device that hosts the index, in a fixed-size ring buffer
+ * so that percentiles of recent latencies can be computed. For instance,
+ * searches could be timed this way:
+ * <pre class="prettyprint">
+ * final long start = System.nanoTime();
+ * TopDocs topDocs = searcher.search(query, 10);
+ * tracker.record(System.nanoTime() - start);
+ * </pre>
+ * <p>
+ * {@link #record} is lock-free and cheap so that it can be called for every
+ * operation. Percentiles are computed on demand by sorting a copy of the
+ * buffer.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @lucene.experimental
+ */
+public final class LatencyTracker {
+
+  private final AtomicLongArray latencies;
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * Create a tracker that keeps the latencies of the {@code windowSize}
+   * most recent operations.
+   */
+  public LatencyTracker(int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("windowSize must be >= 1, got " + windowSize);
+    }
+    latencies = new AtomicLongArray(windowSize);
+  }
+
+  /** Record the latency of an operation, in nanoseconds. */
+  public void record(long latencyNS) {
+    if (latencyNS < 0) {
+      throw new IllegalArgumentException("latencyNS must be >= 0, got " + latencyNS);
+    }
+    final long index = count.getAndIncrement();
+    latencies.lazySet((int) (index % latencies.length()), latencyNS);
+  }
+
+  /** Return the total number of latencies that have been recorded. */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Return the given percentile, between 0 (exclusive) and 100 (inclusive),
+   * of the latencies of the most recent operations, in nanoseconds, or -1 if
+   * no latency has been recorded yet.
+   */
+  public long getPercentile(double percentile) {
+    return getPercentile(percentile, latencies.length());
+  }
+
+  /**
+   * Same as {@link #getPercentile(double)} but only considers the
+   * {@code numLatencies} most recent latencies, which is useful to only look
+   * at the operations that happened since some point in time, see
+   * {@link #getCount()}.
+   */
+  public long getPercentile(double percentile, int numLatencies) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be in (0, 100], got " + percentile);
+    }
+    if (numLatencies < 1) {
+      throw new IllegalArgumentException("numLatencies must be >= 1, got " + numLatencies);
+    }
+    final long end = count.get();
+    final int n = (int) Math.min(Math.min(end, latencies.length()), numLatencies);
+    if (n == 0) {
+      return -1;
+    }
+    final long[] sorted = new long[n];
+    for (int i = 0; i < n; ++i) {
+      sorted[i] = latencies.get((int) ((end - 1 - i) % latencies.length()));
+    }
+    Arrays.sort(sorted);
+    final int rank = (int) Math.ceil(percentile / 100 * n);
+    return sorted[Math.max(0, rank - 1)];
+  }
+}
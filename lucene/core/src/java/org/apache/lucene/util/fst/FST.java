@@ -30,6 +30,7 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.store.RAMOutputStream;
@@ -150,6 +151,10 @@ public final class FST<T> implements Accountable {
   /** Used at read time when the FST fits into a single byte[]. */
   final byte[] bytesArray;
 
+  /** Used at read time when the FST is read off-heap: the slice of the input
+   *  that holds the bytes of the FST, which are not loaded into memory. */
+  private final IndexInput bytesInput;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -265,6 +270,7 @@ public final class FST<T> implements Accountable {
     this.outputs = outputs;
     version = VERSION_CURRENT;
     bytesArray = null;
+    bytesInput = null;
     bytes = new BytesStore(bytesPageBits);
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
@@ -283,6 +289,21 @@ public final class FST<T> implements Accountable {
   /** Load a previously saved FST; maxBlockBits allows you to
    *  control the size of the byte[] pages used to hold the FST bytes. */
   public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
+    this(in, outputs, maxBlockBits, false);
+  }
+
+  /** Load a previously saved FST. If {@code offHeap} is true, then the bytes
+   *  of the FST are not loaded into memory, but read from {@code in} on
+   *  demand through {@link IndexInput#randomAccessSlice}, so {@code in} must
+   *  remain open for as long as this FST is used. This saves heap, but is
+   *  only efficient if {@code in} supports random access natively, eg. if it
+   *  is memory-mapped.
+   *  @lucene.experimental */
+  public FST(IndexInput in, Outputs<T> outputs, boolean offHeap) throws IOException {
+    this(in, outputs, DEFAULT_MAX_BLOCK_BITS, offHeap);
+  }
+
+  private FST(DataInput in, Outputs<T> outputs, int maxBlockBits, boolean offHeap) throws IOException {
     this.outputs = outputs;
 
     if (maxBlockBits < 1 || maxBlockBits > 30) {
@@ -338,14 +359,23 @@ public final class FST<T> implements Accountable {
     }
 
     long numBytes = in.readVLong();
-    if (numBytes > 1 << maxBlockBits) {
+    if (offHeap) {
+      // leave the bytes on disk and read them on demand
+      final IndexInput indexIn = (IndexInput) in;
+      bytes = null;
+      bytesArray = null;
+      bytesInput = indexIn.slice("fst", indexIn.getFilePointer(), numBytes);
+      indexIn.seek(indexIn.getFilePointer() + numBytes);
+    } else if (numBytes > 1 << maxBlockBits) {
       // FST is big: we need multiple pages
       bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
       bytesArray = null;
+      bytesInput = null;
     } else {
       // FST fits into a single block: use ByteArrayBytesStoreReader for less overhead
       bytes = null;
       bytesArray = new byte[(int) numBytes];
+      bytesInput = null;
       in.readBytes(bytesArray, 0, bytesArray.length);
     }
     
@@ -382,7 +412,7 @@ public final class FST<T> implements Accountable {
     long size = BASE_RAM_BYTES_USED;
     if (bytesArray != null) {
       size += bytesArray.length;
-    } else {
+    } else if (bytes != null) {
       size += bytes.ramBytesUsed();
     }
     size += cachedArcsBytesUsed;
@@ -435,9 +465,11 @@ public final class FST<T> implements Accountable {
       }
 
       int cacheRAM = (int) ramBytesUsed(arcs);
+      // bytes of off-heap FSTs count too, even though they do not use RAM
+      long fstSize = ramBytesUsed() + (bytesInput == null ? 0 : bytesInput.length());
 
       // Don't cache if there are only a few arcs or if the cache would use > 20% RAM of the FST itself:
-      if (count >= FIXED_ARRAY_NUM_ARCS_SHALLOW && cacheRAM < ramBytesUsed()/5) {
+      if (count >= FIXED_ARRAY_NUM_ARCS_SHALLOW && cacheRAM < fstSize/5) {
         cachedRootArcs = arcs;
         cachedArcsBytesUsed = cacheRAM;
       }
@@ -502,6 +534,11 @@ public final class FST<T> implements Accountable {
       long numBytes = bytes.getPosition();
       out.writeVLong(numBytes);
       bytes.writeTo(out);
+    } else if (bytesInput != null) {
+      final IndexInput clone = bytesInput.clone();
+      clone.seek(0);
+      out.writeVLong(clone.length());
+      out.copyBytes(clone, clone.length());
     } else {
       assert bytesArray != null;
       out.writeVLong(bytesArray.length);
@@ -1206,6 +1243,9 @@ public final class FST<T> implements Accountable {
   public BytesReader getBytesReader() {
     if (bytesArray != null) {
       return new ReverseBytesReader(bytesArray);
+    } else if (bytesInput != null) {
+      // readers may be used by different threads, so each one gets its own clone
+      return new ReverseRandomAccessReader(bytesInput.clone());
     } else {
       return bytes.getReverseReader();
     }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.compressing;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.BytesRef;
+
+import com.carrotsearch.randomizedtesting.generators.RandomNumbers;
+
+public class TestFastDecompressionWithDictionaryMode extends AbstractTestCompressionMode {
+
+  BytesRef dictionary;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    mode = CompressionMode.FAST_DECOMPRESSION_WITH_DICTIONARY;
+    final byte[] sample = randomArray();
+    dictionary = mode.trainDictionary(sample, 0, sample.length);
+  }
+
+  @Override
+  byte[] compress(byte[] decompressed, int off, int len) throws IOException {
+    return compress(mode.newCompressor(dictionary), decompressed, off, len);
+  }
+
+  @Override
+  byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+    return decompress(mode.newDecompressor(dictionary), compressed, originalLength);
+  }
+
+  @Override
+  byte[] decompress(byte[] compressed, int originalLength, int offset, int length) throws IOException {
+    final BytesRef bytes = new BytesRef();
+    mode.newDecompressor(dictionary).decompress(new ByteArrayDataInput(compressed), originalLength, offset, length, bytes);
+    return Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length);
+  }
+
+  private static byte[] randomJson(int numDocs) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < numDocs; ++i) {
+      sb.append("{\"timestamp\":").append(random().nextInt(1000000))
+        .append(",\"hostname\":\"host-").append(random().nextInt(100))
+        .append("\",\"status_code\":").append(200 + random().nextInt(300))
+        .append(",\"user_agent\":\"Mozilla/5.0 (X11; Linux x86_64)\"}");
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  public void testDictionaryImprovesCompression() throws IOException {
+    final byte[] sample = randomJson(200);
+    dictionary = mode.trainDictionary(sample, 0, sample.length);
+    assertTrue(dictionary.length > 0);
+    assertTrue(dictionary.length <= CompressionMode.MAX_DICTIONARY_LENGTH);
+    final byte[] doc = randomJson(1);
+    final byte[] compressed = test(doc);
+    final byte[] compressedWithoutDictionary = compress(mode.newCompressor(), doc, 0, doc.length);
+    assertTrue(compressed.length + " >= " + compressedWithoutDictionary.length, compressed.length < compressedWithoutDictionary.length);
+  }
+
+  public void testNoDictionaryOnUniqueContent() throws IOException {
+    final byte[] sample = new byte[RandomNumbers.randomIntBetween(random(), 0, 256)];
+    for (int i = 0; i < sample.length; ++i) {
+      sample[i] = (byte) i;
+    }
+    dictionary = mode.trainDictionary(sample, 0, sample.length);
+    assertEquals(0, dictionary.length);
+    test(sample);
+  }
+
+  public void testDictionaryMismatch() throws IOException {
+    expectThrows(IllegalArgumentException.class, () -> {
+      CompressionMode.FAST.newCompressor(new BytesRef(new byte[] {1, 2, 3}));
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      CompressionMode.HIGH_COMPRESSION.newDecompressor(new BytesRef(new byte[] {1, 2, 3}));
+    });
+  }
+
+}
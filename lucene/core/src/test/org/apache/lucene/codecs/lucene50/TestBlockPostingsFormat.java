@@ -19,15 +19,34 @@ package org.apache.lucene.codecs.lucene50;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.codecs.blocktree.FieldReader;
 import org.apache.lucene.codecs.blocktree.Stats;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.BasePostingsFormatTestCase;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -65,6 +84,88 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     d.close();
   }
 
+  public void testOffHeapTermsIndex() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    // write the terms index without any idea of how it will be loaded
+    iwc.setCodec(new FilterCodec(TestUtil.getDefaultCodec().getName(), TestUtil.getDefaultCodec()) {
+      final PostingsFormat postingsFormat = new Lucene50PostingsFormat();
+      @Override
+      public PostingsFormat postingsFormat() {
+        return postingsFormat;
+      }
+    });
+    iwc.setMergePolicy(newLogMergePolicy(false));
+    iwc.setUseCompoundFile(false);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newStringField("body", Integer.toString(i % 10), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    // the same segment can be read with every mode
+    SegmentCommitInfo si = SegmentInfos.readLatestCommit(dir).info(0);
+    FieldInfos fieldInfos = si.info.getCodec().fieldInfosFormat().read(dir, si.info, "", IOContext.READ);
+    SegmentReadState state = new SegmentReadState(dir, si.info, fieldInfos, IOContext.READ);
+    long onHeapBytes = -1, offHeapBytes = -1;
+    for (FSTLoadMode mode : FSTLoadMode.values()) {
+      PostingsFormat format = new Lucene50PostingsFormat(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE,
+          field -> field.equals("id") ? mode : FSTLoadMode.ON_HEAP);
+      try (FieldsProducer fields = format.fieldsProducer(state)) {
+        TermsEnum te = fields.terms("id").iterator();
+        for (int i = 0; i < numDocs; ++i) {
+          assertTrue(te.seekExact(new BytesRef(Integer.toString(i))));
+          assertEquals(1, te.docFreq());
+        }
+        assertFalse(te.seekExact(new BytesRef("foo")));
+        assertEquals(TermsEnum.SeekStatus.NOT_FOUND, te.seekCeil(new BytesRef("10a")));
+        int count = 0;
+        for (te = fields.terms("id").iterator(); te.next() != null; ) {
+          count++;
+        }
+        assertEquals(numDocs, count);
+        assertEquals(10, fields.terms("body").size());
+        if (mode == FSTLoadMode.ON_HEAP) {
+          onHeapBytes = fields.ramBytesUsed();
+        } else if (mode == FSTLoadMode.OFF_HEAP) {
+          offHeapBytes = fields.ramBytesUsed();
+        }
+      }
+    }
+    assertTrue(offHeapBytes < onHeapBytes);
+    dir.close();
+  }
+
+  public void testDefaultCodecReadsPrimaryKeyIndexOffHeap() throws Exception {
+    try (Directory dir = new MMapDirectory(createTempDir())) {
+      IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setCodec(TestUtil.getDefaultCodec());
+      try (IndexWriter w = new IndexWriter(dir, iwc)) {
+        final int numDocs = atLeast(1000);
+        for (int i = 0; i < numDocs; ++i) {
+          Document doc = new Document();
+          doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+          doc.add(new StringField("body", Integer.toString(i % 10), Field.Store.NO));
+          w.addDocument(doc);
+        }
+        w.forceMerge(1);
+      }
+      try (DirectoryReader reader = DirectoryReader.open(dir)) {
+        LeafReader leaf = getOnlyLeafReader(reader);
+        assertTrue(((FieldReader) leaf.terms("id")).isFSTOffHeap());
+        assertFalse(((FieldReader) leaf.terms("body")).isFSTOffHeap());
+        TermsEnum te = leaf.terms("id").iterator();
+        assertTrue(te.seekExact(new BytesRef("42")));
+        assertFalse(te.seekExact(new BytesRef("foo")));
+      }
+    }
+  }
+
   private void shouldFail(int minItemsInBlock, int maxItemsInBlock) {
     expectThrows(IllegalArgumentException.class, () -> {
       new Lucene50PostingsFormat(minItemsInBlock, maxItemsInBlock);
@@ -78,4 +179,49 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     shouldFail(10, -1);
     shouldFail(10, 12);
   }
+
+  /** Make sure that impacts are upper bounds of the actual term frequencies. */
+  public void testImpacts() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(10) != 0) {
+        StringBuilder text = new StringBuilder();
+        final int freq = random().nextInt(5) == 0 ? TestUtil.nextInt(random(), 1, 100) : TestUtil.nextInt(random(), 1, 3);
+        for (int j = 0; j < freq; ++j) {
+          text.append("a ");
+        }
+        doc.add(new TextField("field", text.toString(), Field.Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+
+    DirectoryReader r = DirectoryReader.open(w);
+    TermsEnum te = getOnlyLeafReader(r).terms("field").iterator();
+    assertTrue(te.seekExact(new BytesRef("a")));
+    Impacts impacts = te.impacts();
+    PostingsEnum postings = te.postings(null, PostingsEnum.FREQS);
+    int shallowTarget = 0;
+    for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+      if (doc > shallowTarget && random().nextInt(10) == 0) {
+        shallowTarget = TestUtil.nextInt(random(), shallowTarget + 1, doc);
+        impacts.advanceShallow(shallowTarget);
+      }
+      final int numLevels = impacts.numLevels();
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, impacts.getDocIdUpTo(numLevels - 1));
+      for (int level = 0; level < numLevels; ++level) {
+        if (impacts.getDocIdUpTo(level) >= doc) {
+          assertTrue(postings.freq() <= impacts.getMaxFreq(level));
+        }
+      }
+    }
+    r.close();
+    w.close();
+    dir.close();
+  }
 }
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.LongSupplier;
@@ -557,6 +558,65 @@ public class TestLucene70DocValuesFormat extends BaseCompressingDocValuesFormatT
     doTestSparseNumericBlocksOfVariousBitsPerValue(random().nextDouble());
   }
 
+  public void testPrefetch() throws IOException {
+    doTestPrefetch(1);
+  }
+
+  public void testSparsePrefetch() throws IOException {
+    doTestPrefetch(random().nextDouble());
+  }
+
+  private void doTestPrefetch(double density) throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = new IndexWriterConfig(new MockAnalyzer(random()));
+    conf.setCodec(getCodec());
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final int numDocs = atLeast(1000);
+    final long[] values = new long[numDocs];
+    final int[] ords = new int[numDocs];
+    final long maxValue = 1L << TestUtil.nextInt(random(), 1, 62);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextDouble() <= density) {
+        values[i] = TestUtil.nextLong(random(), 0, maxValue);
+        ords[i] = random().nextInt(100);
+        doc.add(new NumericDocValuesField("numeric", values[i]));
+        doc.add(new SortedDocValuesField("sorted", new BytesRef(String.format(Locale.ROOT, "%03d", ords[i]))));
+      } else {
+        ords[i] = -1;
+      }
+      writer.addDocument(doc);
+    }
+    writer.forceMerge(1);
+    writer.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    LeafReader leaf = getOnlyLeafReader(reader);
+    int[] docIDs = new int[TestUtil.nextInt(random(), 1, 100)];
+    for (int i = 0; i < docIDs.length; ++i) {
+      docIDs[i] = random().nextInt(numDocs);
+    }
+    Arrays.sort(docIDs);
+
+    NumericDocValues numeric = leaf.getNumericDocValues("numeric");
+    SortedDocValues sorted = leaf.getSortedDocValues("sorted");
+    numeric.prefetch(docIDs);
+    sorted.prefetch(docIDs);
+    for (int docID : docIDs) {
+      if (ords[docID] == -1) {
+        assertFalse(numeric.advanceExact(docID));
+        assertFalse(sorted.advanceExact(docID));
+      } else {
+        assertTrue(numeric.advanceExact(docID));
+        assertEquals(values[docID], numeric.longValue());
+        assertTrue(sorted.advanceExact(docID));
+        assertEquals(String.format(Locale.ROOT, "%03d", ords[docID]), sorted.binaryValue().utf8ToString());
+      }
+    }
+    reader.close();
+    dir.close();
+  }
+
   private static LongSupplier blocksOfVariousBPV() {
     final long mul = TestUtil.nextInt(random(), 1, 100);
     final long min = random().nextInt();
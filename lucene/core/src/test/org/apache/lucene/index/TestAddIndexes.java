@@ -22,9 +22,13 @@ import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesProducer;
 import org.apache.lucene.codecs.FilterCodec;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.asserting.AssertingCodec;
@@ -49,6 +53,7 @@ import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestAddIndexes extends LuceneTestCase {
@@ -1332,4 +1337,113 @@ public class TestAddIndexes extends LuceneTestCase {
     assertEquals("cannot change index sort from <int: \"foo\"> to <string: \"foo\">", message);
     IOUtils.close(r1, dir1, w2, dir2);
   }
+
+  public void testAddIndexesConcurrently() throws Exception {
+    Directory src = newDirectory();
+    IndexWriterConfig srcConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    srcConf.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter srcWriter = new IndexWriter(src, srcConf);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("id", i));
+      srcWriter.addDocument(doc);
+      if (random().nextInt(20) == 0) {
+        srcWriter.commit();
+      }
+    }
+    srcWriter.close();
+
+    DirectoryReader srcReader = DirectoryReader.open(src);
+    CodecReader[] readers = new CodecReader[srcReader.leaves().size()];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = (CodecReader) srcReader.leaves().get(i).reader();
+    }
+
+    Directory dest = newDirectory();
+    IndexWriterConfig destConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    destConf.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter destWriter = new IndexWriter(dest, destConf);
+    final int maxSegments = TestUtil.nextInt(random(), 1, 5);
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestAddIndexes"));
+    try {
+      destWriter.addIndexes(random().nextBoolean() ? executor : null, maxSegments, readers);
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+    destWriter.close();
+
+    DirectoryReader destReader = DirectoryReader.open(dest);
+    assertEquals(numDocs, destReader.maxDoc());
+    assertTrue(destReader.leaves().size() <= Math.min(maxSegments, readers.length));
+    // documents keep their order
+    int expected = 0;
+    for (LeafReaderContext ctx : destReader.leaves()) {
+      NumericDocValues ids = ctx.reader().getNumericDocValues("id");
+      for (int doc = 0; doc < ctx.reader().maxDoc(); doc++) {
+        assertEquals(doc, ids.nextDoc());
+        assertEquals(expected++, ids.longValue());
+      }
+    }
+    IOUtils.close(destReader, srcReader, src, dest);
+  }
+
+  public void testAddIndexesConcurrentlyIsAtomic() throws Exception {
+    Directory src = newDirectory();
+    IndexWriter srcWriter = new IndexWriter(src, newIndexWriterConfig(new MockAnalyzer(random())).setMergePolicy(NoMergePolicy.INSTANCE));
+    final int numSegments = TestUtil.nextInt(random(), 2, 5);
+    for (int i = 0; i < numSegments; i++) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("id", i));
+      srcWriter.addDocument(doc);
+      srcWriter.commit();
+    }
+    srcWriter.close();
+
+    DirectoryReader srcReader = DirectoryReader.open(src);
+    assertEquals(numSegments, srcReader.leaves().size());
+    CodecReader[] readers = new CodecReader[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      readers[i] = (CodecReader) srcReader.leaves().get(i).reader();
+    }
+    // one of the groups fails to merge
+    final int failing = random().nextInt(numSegments);
+    readers[failing] = new FilterCodecReader(readers[failing]) {
+      @Override
+      public DocValuesProducer getDocValuesReader() {
+        throw new IllegalStateException("fake failure");
+      }
+    };
+
+    Directory dest = newDirectory();
+    IndexWriter destWriter = new IndexWriter(dest, newIndexWriterConfig(new MockAnalyzer(random())));
+    ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestAddIndexes"));
+    try {
+      IllegalStateException e = expectThrows(IllegalStateException.class, () -> {
+        destWriter.addIndexes(executor, numSegments, readers);
+      });
+      assertEquals("fake failure", e.getMessage());
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+    // none of the groups was added
+    assertEquals(0, destWriter.maxDoc());
+    destWriter.commit();
+    destWriter.close();
+
+    DirectoryReader destReader = DirectoryReader.open(dest);
+    assertEquals(0, destReader.maxDoc());
+    IOUtils.close(destReader, srcReader, src, dest);
+  }
+
+  public void testAddIndexesIllegalMaxSegments() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    expectThrows(IllegalArgumentException.class, () -> {
+      w.addIndexes(null, 0);
+    });
+    IOUtils.close(w, dir);
+  }
 }
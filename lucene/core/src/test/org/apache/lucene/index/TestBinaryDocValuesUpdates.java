@@ -1313,5 +1313,44 @@ public class TestBinaryDocValuesUpdates extends LuceneTestCase {
     
     IOUtils.close(reader, writer, cachingDir);
   }
-  
+
+  public void testSparseOverlays() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMergePolicy(newLogMergePolicy());
+    conf.setMaxDocValuesOverlayRatio(1);
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final int numDocs = atLeast(50);
+    final long[] expected = new long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      expected[i] = i + 1;
+      writer.addDocument(doc(i));
+    }
+    writer.forceMerge(1);
+
+    // every update is small enough to be written to an overlay, until there are too many of them
+    for (int iter = 0; iter < ReadersAndUpdates.MAX_DOC_VALUES_OVERLAYS + 2; iter++) {
+      final int id = random().nextInt(numDocs);
+      expected[id] = random().nextLong();
+      writer.updateBinaryDocValue(new Term("id", "doc-" + id), "val", toBytes(expected[id]));
+      final DirectoryReader reader = DirectoryReader.open(writer);
+      final LeafReader leaf = getOnlyLeafReader(reader);
+      final DocValuesOverlays overlays = DocValuesOverlays.get(leaf.getFieldInfos().fieldInfo("val"));
+      if (iter == ReadersAndUpdates.MAX_DOC_VALUES_OVERLAYS) {
+        assertNull(overlays);
+      } else {
+        assertEquals(iter < ReadersAndUpdates.MAX_DOC_VALUES_OVERLAYS ? iter + 1 : 1, overlays.size());
+      }
+      final BinaryDocValues values = leaf.getBinaryDocValues("val");
+      for (int doc = 0; doc < numDocs; doc++) {
+        assertEquals(doc, values.nextDoc());
+        assertEquals(expected[doc], getValue(values));
+      }
+      assertEquals(NO_MORE_DOCS, values.nextDoc());
+      reader.close();
+    }
+
+    IOUtils.close(writer, dir);
+  }
+
 }
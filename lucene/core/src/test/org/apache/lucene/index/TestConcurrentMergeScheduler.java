@@ -19,6 +19,8 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -26,13 +28,20 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.util.LatencyTracker;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestConcurrentMergeScheduler extends LuceneTestCase {
@@ -624,6 +633,68 @@ public class TestConcurrentMergeScheduler extends LuceneTestCase {
     assertTrue(cms.getAutoIOThrottle());
   }
 
+  public void testLatencyThrottle() throws Exception {
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
+    assertEquals(1.0, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals("disabled", cms.getLatencyThrottleDecision());
+    final double initialRate = cms.getIORateLimitMBPerSec();
+    LatencyTracker tracker = new LatencyTracker(100);
+    cms.setLatencyThrottle(tracker, 99, 10);
+    assertEquals("none", cms.getLatencyThrottleDecision());
+    long now = System.nanoTime();
+
+    // slow searches: back off
+    for (int i = 0; i < 50; ++i) {
+      tracker.record(50 * 1000000L);
+    }
+    now += 2000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(0.5, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals("above", cms.getLatencyThrottleDecision());
+    // no new check before the check interval elapsed
+    cms.updateLatencyThrottle(now + 1);
+    assertEquals(0.5, cms.getLatencyThrottleFactor(), 0.0);
+    for (int i = 0; i < 50; ++i) {
+      tracker.record(50 * 1000000L);
+    }
+    now += 2000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(0.25, cms.getLatencyThrottleFactor(), 0.0);
+    assertTrue(cms.getIORateLimitMBPerSec() < initialRate);
+
+    // fast searches: recover, only looking at latencies recorded since the last check
+    for (int i = 0; i < 10; ++i) {
+      tracker.record(1000000L);
+    }
+    now += 2000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(0.3125, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals("below", cms.getLatencyThrottleDecision());
+
+    // no searches: catch up
+    now += 2000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(0.3125, cms.getLatencyThrottleFactor(), 0.0);
+    now += 10000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(Double.POSITIVE_INFINITY, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals(Double.POSITIVE_INFINITY, cms.getIORateLimitMBPerSec(), 0.0);
+    assertEquals("idle", cms.getLatencyThrottleDecision());
+
+    // searches again
+    tracker.record(1000000L);
+    now += 2000000000L;
+    cms.updateLatencyThrottle(now);
+    assertEquals(1.0, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals(initialRate, cms.getIORateLimitMBPerSec(), 0.0);
+
+    cms.setLatencyThrottle(null, 0, 0);
+    assertEquals(1.0, cms.getLatencyThrottleFactor(), 0.0);
+    assertEquals("disabled", cms.getLatencyThrottleDecision());
+    expectThrows(IllegalArgumentException.class, () -> cms.setLatencyThrottle(tracker, 0, 10));
+    expectThrows(IllegalArgumentException.class, () -> cms.setLatencyThrottle(tracker, 99, 0));
+  }
+
   public void testNonSpinningDefaults() throws Exception {
     ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
     cms.setDefaultMaxMergesAndThreads(false);
@@ -670,4 +741,52 @@ public class TestConcurrentMergeScheduler extends LuceneTestCase {
 
     assertFalse(failed.get());
   }
+
+  public void testIntraMergeExecutor() throws Exception {
+    Directory dir = newDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestIntraMergeExecutor"));
+    AtomicInteger taskCount = new AtomicInteger();
+    ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
+    cms.setIntraMergeExecutor(task -> {
+        taskCount.incrementAndGet();
+        executor.execute(task);
+      });
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergeScheduler(cms);
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 2, 20));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+      doc.add(new Field("body", "text " + (i % 7), vectorsType));
+      doc.add(new NumericDocValuesField("dv", i));
+      doc.add(new IntPoint("point", i));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(taskCount.get() > 0);
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(1, reader.leaves().size());
+    assertEquals(numDocs, reader.numDocs());
+    LeafReader leaf = reader.leaves().get(0).reader();
+    NumericDocValues dv = leaf.getNumericDocValues("dv");
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(i, dv.nextDoc());
+      int id = Integer.parseInt(leaf.document(i).get("id"));
+      assertEquals(id, dv.longValue());
+      assertNotNull(leaf.getTermVector(i, "body"));
+    }
+    IndexSearcher searcher = newSearcher(reader);
+    assertEquals(1, searcher.count(IntPoint.newExactQuery("point", numDocs / 2)));
+    assertEquals(1, searcher.count(new TermQuery(new Term("id", Integer.toString(numDocs / 2)))));
+    reader.close();
+    dir.close();
+  }
 }
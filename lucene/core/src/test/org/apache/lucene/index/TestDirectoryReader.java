@@ -21,6 +21,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -30,6 +31,7 @@ import java.util.Set;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StoredField;
@@ -1050,6 +1052,53 @@ public class TestDirectoryReader extends LuceneTestCase {
     dir.close();
   }
 
+  public void testDocumentBatch() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StoredField("id", i));
+      doc.add(new StoredField("text", TestUtil.randomSimpleString(random())));
+      writer.addDocument(doc);
+      if (random().nextInt(20) == 0) {
+        writer.commit();
+      }
+    }
+    DirectoryReader r = writer.getReader();
+    writer.close();
+
+    // sorted, with duplicates
+    int[] docIDs = new int[atLeast(10)];
+    for (int i = 0; i < docIDs.length; i++) {
+      docIDs[i] = random().nextInt(numDocs);
+    }
+    Arrays.sort(docIDs);
+    DocumentStoredFieldVisitor[] visitors = new DocumentStoredFieldVisitor[docIDs.length];
+    for (int i = 0; i < visitors.length; i++) {
+      visitors[i] = new DocumentStoredFieldVisitor();
+    }
+    r.document(docIDs, visitors);
+    for (int i = 0; i < docIDs.length; i++) {
+      Document expected = r.document(docIDs[i]);
+      Document actual = visitors[i].getDocument();
+      assertEquals(expected.getField("id").numericValue(), actual.getField("id").numericValue());
+      assertEquals(expected.get("text"), actual.get("text"));
+    }
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      r.document(new int[] {numDocs - 1, 0}, new StoredFieldVisitor[] {new DocumentStoredFieldVisitor(), new DocumentStoredFieldVisitor()});
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      r.document(new int[] {0, numDocs}, new StoredFieldVisitor[] {new DocumentStoredFieldVisitor(), new DocumentStoredFieldVisitor()});
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      r.document(new int[] {0}, new StoredFieldVisitor[0]);
+    });
+    r.close();
+    dir.close();
+  }
+
   public void testIndexExistsOnNonExistentDirectory() throws Exception {
     Path tempDir = createTempDir("testIndexExistsOnNonExistentDirectory");
     Directory dir = newFSDirectory(tempDir);
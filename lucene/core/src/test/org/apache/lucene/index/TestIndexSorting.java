@@ -2401,4 +2401,75 @@ public class TestIndexSorting extends LuceneTestCase {
     }
     IOUtils.close(r, w, dir);
   }
+
+  public void testStoredFieldsSortBuffer() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setIndexSort(new Sort(new SortField("sort", SortField.Type.LONG)));
+    switch (random().nextInt(3)) {
+      case 0:
+        // always use temporary files
+        iwc.setStoredFieldsSortBufferMB(0);
+        break;
+      case 1:
+        // spill to temporary files in the middle of segments
+        iwc.setStoredFieldsSortBufferMB(0.05);
+        break;
+      default:
+        iwc.setStoredFieldsSortBufferMB(IndexWriterConfig.DEFAULT_STORED_FIELDS_SORT_BUFFER_MB);
+        break;
+    }
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 10, 500));
+    iwc.setMergePolicy(newLogMergePolicy());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    final String[] strings = new String[numDocs];
+    final byte[][] binaries = new byte[numDocs][];
+    for (int id = 0; id < numDocs; id++) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("sort", random().nextInt(100)));
+      doc.add(new StringField("id", Integer.toString(id), Store.YES));
+      if (id % 5 != 0) {
+        doc.add(new StoredField("int", id));
+        doc.add(new StoredField("long", -7L * id));
+        doc.add(new StoredField("float", id / 3f));
+        doc.add(new StoredField("double", id / 7d));
+        strings[id] = random().nextInt(50) == 0 ? TestUtil.randomUnicodeString(random(), 50000) : TestUtil.randomUnicodeString(random());
+        doc.add(new StoredField("string", strings[id]));
+        binaries[id] = new byte[random().nextInt(50) == 0 ? 70000 : random().nextInt(20)];
+        random().nextBytes(binaries[id]);
+        doc.add(new StoredField("binary", binaries[id]));
+      }
+      w.addDocument(doc);
+    }
+    DirectoryReader r = DirectoryReader.open(w);
+    assertEquals(numDocs, r.numDocs());
+    for (LeafReaderContext ctx : r.leaves()) {
+      LeafReader leaf = ctx.reader();
+      NumericDocValues values = leaf.getNumericDocValues("sort");
+      long previous = Long.MIN_VALUE;
+      for (int docID = 0; docID < leaf.maxDoc(); docID++) {
+        assertEquals(docID, values.nextDoc());
+        assertTrue(previous <= values.longValue());
+        previous = values.longValue();
+        Document doc = leaf.document(docID);
+        final int id = Integer.parseInt(doc.get("id"));
+        if (id % 5 == 0) {
+          assertEquals(1, doc.getFields().size());
+        } else {
+          assertEquals(id, doc.getField("int").numericValue());
+          assertEquals(-7L * id, doc.getField("long").numericValue());
+          assertEquals(id / 3f, doc.getField("float").numericValue());
+          assertEquals(id / 7d, doc.getField("double").numericValue());
+          assertEquals(strings[id], doc.get("string"));
+          assertEquals(new BytesRef(binaries[id]), doc.getBinaryValue("binary"));
+        }
+      }
+    }
+    IOUtils.close(r, w);
+    for (String file : dir.listAll()) {
+      assertFalse("temporary file left behind: " + file, file.endsWith(".tmp"));
+    }
+    dir.close();
+  }
 }
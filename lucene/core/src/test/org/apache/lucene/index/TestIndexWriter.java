@@ -53,6 +53,7 @@ import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
@@ -69,6 +70,7 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.BaseDirectoryWrapper;
 import org.apache.lucene.store.Directory;
@@ -2799,5 +2801,45 @@ public class TestIndexWriter extends LuceneTestCase {
     dir.close();
   }
 
-}
+  public void testRecycleIndexingBuffers() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxRecycledBufferMB(16);
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 2, 50));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    FieldType vectorsType = new FieldType(TextField.TYPE_NOT_STORED);
+    vectorsType.setStoreTermVectors(true);
+    vectorsType.setStoreTermVectorPositions(true);
+    final int numDocs = atLeast(300);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(new Field("body", "doc" + i + " mod" + (i % 7) + " mod" + (i % 7), vectorsType));
+      doc.add(new IntPoint("point", i));
+      w.addDocument(doc);
+    }
+    w.commit();
+    // the buffers of the last flushed DWPT are waiting for the next one
+    assertTrue(w.getDocsWriter().blockRecycler.bytesUsed() > 0);
 
+    DirectoryReader r = DirectoryReader.open(w);
+    IndexSearcher searcher = newSearcher(r);
+    for (int i = 0; i < numDocs; ++i) {
+      TopDocs hits = searcher.search(new TermQuery(new Term("id", Integer.toString(i))), 1);
+      assertEquals(1, hits.totalHits);
+      assertEquals(1, searcher.count(IntPoint.newExactQuery("point", i)));
+      Terms vectors = r.getTermVector(hits.scoreDocs[0].doc, "body");
+      TermsEnum termsEnum = vectors.iterator();
+      assertTrue(termsEnum.seekExact(new BytesRef("doc" + i)));
+      assertTrue(termsEnum.seekExact(new BytesRef("mod" + (i % 7))));
+      assertEquals(2, termsEnum.totalTermFreq());
+    }
+    for (int i = 0; i < 7; ++i) {
+      assertEquals((numDocs - i + 6) / 7, searcher.count(new TermQuery(new Term("body", "mod" + i))));
+    }
+    r.close();
+    w.close();
+    dir.close();
+  }
+}
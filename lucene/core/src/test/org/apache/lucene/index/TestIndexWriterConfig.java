@@ -75,6 +75,10 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(Codec.getDefault(), conf.getCodec());
     assertEquals(InfoStream.getDefault(), conf.getInfoStream());
     assertEquals(IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM, conf.getUseCompoundFile());
+    assertNull(conf.getApplyDeletesExecutor());
+    assertEquals(IndexWriterConfig.DEFAULT_MAX_RECYCLED_BUFFER_MB, conf.getMaxRecycledBufferMB(), 0.0);
+    assertEquals(IndexWriterConfig.DEFAULT_STORED_FIELDS_SORT_BUFFER_MB, conf.getStoredFieldsSortBufferMB(), 0.0);
+    assertEquals(IndexWriterConfig.DEFAULT_MAX_DOC_VALUES_OVERLAY_RATIO, conf.getMaxDocValuesOverlayRatio(), 0.0);
     // Sanity check - validate that all getters are covered.
     Set<String> getters = new HashSet<>();
     getters.add("getAnalyzer");
@@ -260,6 +264,22 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     expectThrows(IllegalArgumentException.class, () -> {
       conf.setRAMPerThreadHardLimitMB(0);
     });
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setMaxRecycledBufferMB(-1);
+    });
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setStoredFieldsSortBufferMB(-1);
+    });
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setStoredFieldsSortBufferMB(2048);
+    });
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setMaxDocValuesOverlayRatio(-1);
+    });
     
     // Test MergePolicy
     assertEquals(TieredMergePolicy.class, conf.getMergePolicy().getClass());
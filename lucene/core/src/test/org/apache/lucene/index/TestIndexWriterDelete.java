@@ -25,6 +25,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -40,11 +42,14 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 @SuppressCodecs("SimpleText") // too slow here
@@ -1400,4 +1405,247 @@ public class TestIndexWriterDelete extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  public void testApplyDeletesExecutor() throws Exception {
+    Directory dir = newDirectory();
+    ExecutorService executor = Executors.newFixedThreadPool(3, new NamedThreadFactory("TestIndexWriterDelete"));
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setApplyDeletesExecutor(executor)
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setMaxBufferedDocs(TestUtil.nextInt(random(), 5, 20));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(new StringField("group", Integer.toString(i % 5), Field.Store.NO));
+      doc.add(new NumericDocValuesField("id", i));
+      doc.add(new NumericDocValuesField("val", i));
+      w.addDocument(doc);
+      if (random().nextInt(30) == 0) {
+        // exercise segment-private packets too
+        DirectoryReader.open(w).close();
+      }
+    }
+    w.deleteDocuments(new TermQuery(new Term("group", "0")));
+    for (int i = 0; i < numDocs; i += 3) {
+      w.updateNumericDocValue(new Term("id", Integer.toString(i)), "val", -i);
+    }
+    w.deleteDocuments(new TermQuery(new Term("group", "1")));
+
+    DirectoryReader reader = DirectoryReader.open(w);
+    assertTrue(reader.leaves().size() > 1);
+    int numLiveDocs = 0;
+    for (LeafReaderContext context : reader.leaves()) {
+      LeafReader leaf = context.reader();
+      Bits liveDocs = leaf.getLiveDocs();
+      NumericDocValues ids = leaf.getNumericDocValues("id");
+      NumericDocValues vals = leaf.getNumericDocValues("val");
+      for (int doc = 0; doc < leaf.maxDoc(); ++doc) {
+        assertEquals(doc, ids.nextDoc());
+        assertEquals(doc, vals.nextDoc());
+        final int id = (int) ids.longValue();
+        final boolean deleted = id % 5 == 0 || id % 5 == 1;
+        assertEquals(deleted, liveDocs != null && liveDocs.get(doc) == false);
+        if (deleted == false) {
+          numLiveDocs++;
+          assertEquals(id % 3 == 0 ? -id : id, vals.longValue());
+        }
+      }
+    }
+    assertEquals(numLiveDocs, reader.numDocs());
+
+    reader.close();
+    w.close();
+    TestUtil.shutdownExecutorService(executor);
+    dir.close();
+  }
+  public void testResolveDeletesWithoutWriterLock() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setMergePolicy(NoMergePolicy.INSTANCE);
+    final IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 10; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.commit();
+
+    final AtomicInteger resolveCount = new AtomicInteger();
+    w.deleteDocuments(new TermQuery(new Term("id", "3")) {
+      @Override
+      public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+        assertFalse("deletes must be resolved without holding the writer's lock", Thread.holdsLock(w));
+        resolveCount.incrementAndGet();
+        return super.createWeight(searcher, needsScores, boost);
+      }
+    });
+    DirectoryReader reader = DirectoryReader.open(w);
+    assertEquals(1, resolveCount.get());
+    assertEquals(9, reader.numDocs());
+    reader.close();
+
+    w.close();
+    dir.close();
+  }
+
+  private static void addGroupDocs(IndexWriter w, int from, int to) throws IOException {
+    for (int i = from; i < to; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(new StringField("group", Integer.toString(i % 3), Field.Store.NO));
+      w.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        w.commit();
+      }
+    }
+  }
+
+  private static int count(IndexReader reader, String field, String value) throws IOException {
+    return new IndexSearcher(reader).count(new TermQuery(new Term(field, value)));
+  }
+
+  public void testDeleteInBackground() throws Exception {
+    Directory dir = newDirectory();
+    // the delete only runs when we run its task, so merges, which wait
+    // for it, could hang with a serial merge scheduler:
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+        .setMergePolicy(NoMergePolicy.INSTANCE));
+    final int numDocs = atLeast(300);
+    addGroupDocs(w, 0, numDocs);
+    final int numGroup0 = (numDocs + 2) / 3;
+
+    final List<Runnable> tasks = new ArrayList<>();
+    final long seqNo = w.deleteDocumentsInBackground(tasks::add, new TermQuery(new Term("group", "0")));
+    assertEquals(1, tasks.size());
+
+    // documents that are added after the delete are never deleted by it
+    final long addSeqNo = w.addDocument(Collections.singletonList(new StringField("group", "0", Field.Store.NO)));
+    assertTrue(addSeqNo > seqNo);
+
+    // not resolved yet
+    DirectoryReader reader = DirectoryReader.open(w);
+    assertEquals(numDocs + 1, reader.numDocs());
+    assertEquals(numGroup0 + 1, count(reader, "group", "0"));
+
+    tasks.get(0).run();
+    DirectoryReader newReader = DirectoryReader.openIfChanged(reader, w);
+    assertNotNull(newReader);
+    reader.close();
+    reader = newReader;
+    assertEquals(numDocs + 1 - numGroup0, reader.numDocs());
+    assertEquals(1, count(reader, "group", "0"));
+    assertEquals((numDocs + 1) / 3, count(reader, "group", "1"));
+    reader.close();
+
+    w.close();
+    reader = DirectoryReader.open(dir);
+    assertEquals(numDocs + 1 - numGroup0, reader.numDocs());
+    assertEquals(1, count(reader, "group", "0"));
+    reader.close();
+    dir.close();
+  }
+
+  public void testCommitWaitsForBackgroundDeletes() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    final int numDocs = atLeast(BackgroundQueryDelete.BUFFER_SIZE + 100);
+    addGroupDocs(w, 0, numDocs);
+    final int numGroup1 = (numDocs + 1) / 3;
+    final int numNewGroup1 = (numDocs + 11) / 3 - numGroup1;
+
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestIndexWriterDelete"));
+    w.deleteDocumentsInBackground(executor, new TermQuery(new Term("group", "1")));
+    addGroupDocs(w, numDocs, numDocs + 10);
+    w.commit();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(numDocs + 10 - numGroup1, reader.numDocs());
+    assertEquals(numNewGroup1, count(reader, "group", "1"));
+    reader.close();
+
+    w.close();
+    TestUtil.shutdownExecutorService(executor);
+    dir.close();
+  }
+
+  public void testMergeWaitsForBackgroundDeletes() throws Exception {
+    Directory dir = newDirectory();
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<Thread> threads = new ArrayList<>();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergeScheduler(new SerialMergeScheduler());
+    IndexWriter w = RandomIndexWriter.mockIndexWriter(random(), dir, iwc, new RandomIndexWriter.TestPoint() {
+      @Override
+      public void apply(String message) {
+        if ("startCommitMerge".equals(message) && tasks.isEmpty() == false) {
+          // resolve the delete while the merge is being committed
+          Thread thread = new Thread(tasks.remove(0));
+          threads.add(thread);
+          thread.start();
+        }
+      }
+    });
+    final int numDocs = atLeast(300);
+    addGroupDocs(w, 0, numDocs);
+    w.commit();
+    addGroupDocs(w, numDocs, numDocs + 10);
+    final int numGroup2 = (numDocs + 10) / 3;
+
+    w.deleteDocumentsInBackground(tasks::add, new TermQuery(new Term("group", "2")));
+    if (tasks.isEmpty() == false) {
+      w.forceMerge(1);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (Runnable task : tasks) {
+      task.run();
+    }
+
+    DirectoryReader reader = DirectoryReader.open(w);
+    assertEquals(numDocs + 10 - numGroup2, reader.numDocs());
+    assertEquals(0, count(reader, "group", "2"));
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testRollbackAbortsBackgroundDeletes() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    final int numDocs = atLeast(100);
+    addGroupDocs(w, 0, numDocs);
+    w.commit();
+
+    final List<Runnable> tasks = new ArrayList<>();
+    w.deleteDocumentsInBackground(tasks::add, new TermQuery(new Term("group", "0")));
+    w.rollback();
+    // the aborted delete does nothing when it eventually runs
+    tasks.get(0).run();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(numDocs, reader.numDocs());
+    reader.close();
+    dir.close();
+  }
+
+  public void testDeleteInBackgroundExceptionIsThrownOnCommit() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    addGroupDocs(w, 0, 10);
+    w.deleteDocumentsInBackground(Runnable::run, new TermQuery(new Term("group", "0")) {
+      @Override
+      public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+        throw new IOException("fake io exception");
+      }
+    });
+    IOException expected = expectThrows(IOException.class, w::commit);
+    assertEquals("fake io exception", expected.getMessage());
+    // the exception is only thrown once
+    w.commit();
+    w.close();
+    dir.close();
+  }
 }
@@ -17,9 +17,13 @@
 package org.apache.lucene.index;
 
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.lucene.document.Document;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestMergeRateLimiter extends LuceneTestCase {
   public void testInitDefaults() throws Exception {
@@ -33,4 +37,87 @@ public class TestMergeRateLimiter extends LuceneTestCase {
     assertTrue(rateLimiter.getMinPauseCheckBytes() > 0);
     dir.close();
   }
+
+  public void testConcurrentPauses() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    w.close();
+    MergePolicy.OneMerge merge = new MergePolicy.OneMerge(SegmentInfos.readLatestCommit(dir).asList());
+    final MergeRateLimiter rateLimiter = new MergeRateLimiter(merge);
+
+    final int numThreads = TestUtil.nextInt(random(), 2, 5);
+    final int numPauses = atLeast(1000);
+    Thread[] threads = new Thread[numThreads];
+    final CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < numThreads; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < numPauses; ++j) {
+              rateLimiter.pause(1024);
+            }
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // no bytes are lost when several threads write through the same limiter
+    assertEquals((long) numThreads * numPauses * 1024, rateLimiter.getTotalBytesWritten());
+
+    dir.close();
+  }
+
+  public void testAbortWakesUpAllPausedThreads() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    w.close();
+    MergePolicy.OneMerge merge = new MergePolicy.OneMerge(SegmentInfos.readLatestCommit(dir).asList());
+    final MergeRateLimiter rateLimiter = new MergeRateLimiter(merge);
+    // 1 MB takes more than 15 minutes to write at this rate
+    rateLimiter.setMBPerSec(0.001);
+
+    final int numThreads = TestUtil.nextInt(random(), 2, 5);
+    Thread[] threads = new Thread[numThreads];
+    final CountDownLatch paused = new CountDownLatch(numThreads);
+    final AtomicInteger aborted = new AtomicInteger();
+    for (int i = 0; i < numThreads; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            paused.countDown();
+            while (true) {
+              rateLimiter.pause(1024 * 1024);
+            }
+          } catch (MergePolicy.MergeAbortedException e) {
+            aborted.incrementAndGet();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    paused.await();
+    while (rateLimiter.getTotalPausedNS() == 0) {
+      Thread.sleep(10);
+    }
+    rateLimiter.setAbort();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numThreads, aborted.get());
+    assertEquals(0, rateLimiter.getTotalBytesWritten() % (1024 * 1024));
+    assertTrue(rateLimiter.getTotalBytesWritten() >= (long) numThreads * 1024 * 1024);
+
+    dir.close();
+  }
 }
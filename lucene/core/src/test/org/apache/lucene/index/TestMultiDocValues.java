@@ -19,6 +19,8 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
@@ -65,6 +67,7 @@ public class TestMultiDocValues extends LuceneTestCase {
     
     NumericDocValues multi = MultiDocValues.getNumericValues(ir, "numbers");
     NumericDocValues single = merged.getNumericDocValues("numbers");
+    multi.prefetch(randomDocIDs(ir.maxDoc()));
     for (int i = 0; i < numDocs; i++) {
       assertEquals(i, multi.nextDoc());
       assertEquals(i, single.nextDoc());
@@ -77,6 +80,61 @@ public class TestMultiDocValues extends LuceneTestCase {
     ir2.close();
     dir.close();
   }
+
+  /** Returns random doc IDs in increasing order, to prefetch. */
+  private static int[] randomDocIDs(int maxDoc) {
+    return random().ints(TestUtil.nextInt(random(), 0, 20), 0, maxDoc).distinct().sorted().toArray();
+  }
+
+  public void testPrefetchIsForwardedToLeaves() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(random(), null);
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter iw = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 30; i++) {
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("numbers", i));
+      iw.addDocument(doc);
+      if (i % 10 == 9) {
+        iw.commit();
+      }
+    }
+    iw.close();
+
+    DirectoryReader ir = DirectoryReader.open(dir);
+    assertEquals(3, ir.leaves().size());
+    List<String> prefetched = new ArrayList<>();
+    LeafReader[] leaves = new LeafReader[3];
+    for (int i = 0; i < leaves.length; i++) {
+      final int leaf = i;
+      leaves[i] = new FilterLeafReader(ir.leaves().get(i).reader()) {
+        @Override
+        public NumericDocValues getNumericDocValues(String field) throws IOException {
+          NumericDocValues recording = new FilterNumericDocValues(super.getNumericDocValues(field)) {
+            @Override
+            public void prefetch(int[] docIDs) throws IOException {
+              prefetched.add(leaf + ":" + Arrays.toString(docIDs));
+              super.prefetch(docIDs);
+            }
+          };
+          // must forward the hint to the wrapped values
+          return new FilterNumericDocValues(recording) {};
+        }
+      };
+    }
+    MultiReader multi = new MultiReader(leaves, false);
+    NumericDocValues values = MultiDocValues.getNumericValues(multi, "numbers");
+    values.prefetch(new int[] {1, 5, 12, 25, 29});
+    assertEquals(Arrays.asList("0:[1, 5]", "1:[2]", "2:[5, 9]"), prefetched);
+    for (int i = 0; i < 30; i++) {
+      assertEquals(i, values.nextDoc());
+      assertEquals(i, values.longValue());
+    }
+
+    multi.close();
+    ir.close();
+    dir.close();
+  }
   
   public void testBinary() throws Exception {
     Directory dir = newDirectory();
@@ -151,6 +209,7 @@ public class TestMultiDocValues extends LuceneTestCase {
     SortedDocValues multi = MultiDocValues.getSortedValues(ir, "bytes");
     SortedDocValues single = merged.getSortedDocValues("bytes");
     assertEquals(single.getValueCount(), multi.getValueCount());
+    multi.prefetch(randomDocIDs(ir.maxDoc()));
     while (true) {
       assertEquals(single.nextDoc(), multi.nextDoc());
       if (single.docID() == NO_MORE_DOCS) {
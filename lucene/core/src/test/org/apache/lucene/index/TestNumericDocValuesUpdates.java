@@ -37,6 +37,7 @@ import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Sort;
@@ -1480,6 +1481,88 @@ public class TestNumericDocValuesUpdates extends LuceneTestCase {
     dir.close();
   }
 
+  public void testSparseOverlays() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setMergePolicy(newLogMergePolicy());
+    conf.setMaxDocValuesOverlayRatio(0.1);
+    IndexWriter writer = new IndexWriter(dir, conf);
+    final int numDocs = atLeast(100);
+    final long[] expected = new long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      expected[i] = i + 1;
+      writer.addDocument(doc(i));
+    }
+    writer.forceMerge(1);
+
+    int numOverlays = 0;
+    int numOverlayDocs = 0;
+    for (int iter = 0; iter < 20; iter++) {
+      final int numUpdates = TestUtil.nextInt(random(), 1, numDocs / 20);
+      final Set<Integer> updatedDocs = new HashSet<>();
+      for (int i = 0; i < numUpdates; i++) {
+        final int id = random().nextInt(numDocs);
+        updatedDocs.add(id);
+        expected[id] = random().nextLong();
+        writer.updateNumericDocValue(new Term("id", "doc-" + id), "val", expected[id]);
+      }
+      if (numOverlays < ReadersAndUpdates.MAX_DOC_VALUES_OVERLAYS && numOverlayDocs + updatedDocs.size() <= 0.1 * numDocs) {
+        numOverlays++;
+        numOverlayDocs += updatedDocs.size();
+      } else {
+        numOverlays = 0;
+        numOverlayDocs = 0;
+      }
+
+      final DirectoryReader reader = random().nextBoolean() ? DirectoryReader.open(writer) : null;
+      if (reader == null) {
+        writer.commit();
+      }
+      final DirectoryReader r = reader == null ? DirectoryReader.open(dir) : reader;
+      assertEquals(1, r.leaves().size());
+      final LeafReader leaf = r.leaves().get(0).reader();
+      final DocValuesOverlays overlays = DocValuesOverlays.get(leaf.getFieldInfos().fieldInfo("val"));
+      if (numOverlays == 0) {
+        assertNull(overlays);
+      } else {
+        assertNotNull(overlays);
+        assertEquals(numOverlays, overlays.size());
+        assertEquals(numOverlayDocs, overlays.totalNumDocs());
+      }
+      final NumericDocValues values = leaf.getNumericDocValues("val");
+      // the hint goes to every layer, which must not change the values that are read
+      values.prefetch(updatedDocs.stream().mapToInt(Integer::intValue).sorted().toArray());
+      if (random().nextBoolean()) {
+        for (int doc = 0; doc < numDocs; doc++) {
+          assertEquals(doc, values.nextDoc());
+          assertEquals(expected[doc], values.longValue());
+        }
+        assertEquals(DocIdSetIterator.NO_MORE_DOCS, values.nextDoc());
+      } else {
+        for (int doc = random().nextInt(5); doc < numDocs; doc += 1 + random().nextInt(5)) {
+          assertTrue(values.advanceExact(doc));
+          assertEquals(expected[doc], values.longValue());
+        }
+      }
+      r.close();
+    }
+
+    // merges drop overlays
+    writer.addDocument(doc(numDocs));
+    writer.forceMerge(1);
+    final DirectoryReader reader = DirectoryReader.open(writer);
+    final LeafReader leaf = getOnlyLeafReader(reader);
+    assertNull(DocValuesOverlays.get(leaf.getFieldInfos().fieldInfo("val")));
+    final NumericDocValues values = leaf.getNumericDocValues("val");
+    for (int doc = 0; doc < numDocs; doc++) {
+      assertEquals(doc, values.nextDoc());
+      assertEquals(expected[doc], values.longValue());
+    }
+    assertEquals(numDocs, values.nextDoc());
+    assertEquals(numDocs + 1, values.longValue());
+    IOUtils.close(reader, writer, dir);
+  }
+
   @Test
   public void testIOContext() throws Exception {
     // LUCENE-5591: make sure we pass an IOContext with an approximate
@@ -89,7 +89,8 @@ public class TestSegmentMerger extends LuceneTestCase {
     SegmentMerger merger = new SegmentMerger(Arrays.<CodecReader>asList(reader1, reader2),
                                              si, InfoStream.getDefault(), mergedDir,
                                              new FieldInfos.FieldNumbers(),
-                                             newIOContext(random(), new IOContext(new MergeInfo(-1, -1, false, -1))));
+                                             newIOContext(random(), new IOContext(new MergeInfo(-1, -1, false, -1))),
+                                             random().nextBoolean() ? null : Runnable::run);
     MergeState mergeState = merger.merge();
     int docsMerged = mergeState.segmentInfo.maxDoc();
     assertTrue(docsMerged == 2);
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestTimeSeriesMergePolicy extends BaseMergePolicyTestCase {
+
+  private static final long WINDOW_SIZE = 1000;
+
+  @Override
+  public MergePolicy mergePolicy() {
+    return new TimeSeriesMergePolicy(newMergePolicy(random()), "timestamp", WINDOW_SIZE);
+  }
+
+  /** Index {@code numWindows} windows of documents, with several segments per window. */
+  private static int indexWindows(IndexWriter w, int numWindows) throws IOException {
+    int numDocs = 0;
+    for (int window = 0; window < numWindows; ++window) {
+      final int numSegments = TestUtil.nextInt(random(), 1, 5);
+      for (int i = 0; i < numSegments; ++i) {
+        for (int j = TestUtil.nextInt(random(), 1, 20); j > 0; --j) {
+          Document doc = new Document();
+          doc.add(new LongPoint("timestamp", window * WINDOW_SIZE + random().nextInt((int) WINDOW_SIZE)));
+          w.addDocument(doc);
+          numDocs++;
+        }
+        // segments never span several windows
+        w.getReader().close();
+      }
+    }
+    return numDocs;
+  }
+
+  private static long window(byte[] packedValue) {
+    return Math.floorDiv(LongPoint.decodeDimension(packedValue, 0), WINDOW_SIZE);
+  }
+
+  private static IndexWriterConfig newIndexWriterConfig(TimeSeriesMergePolicy mp) {
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(mp);
+    if (random().nextBoolean()) {
+      // record ranges in segment attributes rather than reading them from points
+      iwc.setCodec(mp.wrapCodec(iwc.getCodec()));
+    }
+    return iwc;
+  }
+
+  /** A merge policy that never merges on its own, so that only forced merges happen. */
+  private static MergePolicy newForcedOnlyMergePolicy() {
+    LogDocMergePolicy mp = new LogDocMergePolicy();
+    mp.setMergeFactor(1000);
+    return mp;
+  }
+
+  public void testMergesStayWithinAdjacentWindows() throws IOException {
+    Directory dir = newDirectory();
+    TieredMergePolicy tmp = newTieredMergePolicy();
+    tmp.setSegmentsPerTier(2);
+    tmp.setMaxMergeAtOnce(2);
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new TimeSeriesMergePolicy(tmp, "timestamp", WINDOW_SIZE)));
+    final int numWindows = TestUtil.nextInt(random(), 2, 5);
+    indexWindows(w, numWindows);
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+
+    DirectoryReader reader = w.getReader();
+    for (LeafReaderContext context : reader.leaves()) {
+      PointValues values = context.reader().getPointValues("timestamp");
+      assertTrue(window(values.getMaxPackedValue()) - window(values.getMinPackedValue()) <= 1);
+    }
+    reader.close();
+
+    w.forceMerge(1);
+    reader = w.getReader();
+    assertTrue(reader.leaves().size() >= (numWindows + 1) / 2);
+    assertTrue(reader.leaves().size() <= numWindows);
+    for (LeafReaderContext context : reader.leaves()) {
+      PointValues values = context.reader().getPointValues("timestamp");
+      assertTrue(window(values.getMaxPackedValue()) - window(values.getMinPackedValue()) <= 1);
+    }
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testForceMergePairsAdjacentWindows() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new TimeSeriesMergePolicy(newForcedOnlyMergePolicy(), "timestamp", WINDOW_SIZE)));
+    final int numWindows = TestUtil.nextInt(random(), 2, 5);
+    indexWindows(w, numWindows);
+    w.forceMerge(1);
+    DirectoryReader reader = w.getReader();
+    assertEquals((numWindows + 1) / 2, reader.leaves().size());
+    reader.close();
+
+    // merged segments are not merged again with the next windows
+    w.forceMerge(1);
+    reader = w.getReader();
+    assertEquals((numWindows + 1) / 2, reader.leaves().size());
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testSegmentsSpanningSeveralWindowsAreNotMerged() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new TimeSeriesMergePolicy(newForcedOnlyMergePolicy(), "timestamp", WINDOW_SIZE)));
+    for (long time : new long[] {0, 2 * WINDOW_SIZE}) {
+      Document doc = new Document();
+      doc.add(new LongPoint("timestamp", time));
+      w.addDocument(doc);
+    }
+    w.getReader().close();
+    indexWindows(w, 3);
+    w.forceMerge(1);
+    DirectoryReader reader = w.getReader();
+    assertEquals(3, reader.leaves().size());
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testRangesAreReadFromPoints() throws IOException {
+    Directory dir = newDirectory();
+    TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy(newForcedOnlyMergePolicy(), "timestamp", WINDOW_SIZE);
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    // no codec records ranges in segment attributes
+    iwc.setMergePolicy(mp);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    indexWindows(w, 3);
+    w.close();
+
+    // ranges are read from the points of segments that another writer wrote
+    iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(mp);
+    w = new IndexWriter(dir, iwc);
+    w.forceMerge(1);
+    DirectoryReader reader = w.getReader();
+    assertEquals(2, reader.leaves().size());
+    reader.close();
+    assertEquals(2, mp.dropExpiredSegments(w, Long.MAX_VALUE));
+    w.close();
+    dir.close();
+  }
+
+  public void testSegmentsWithoutValuesAreMergedTogether() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new TimeSeriesMergePolicy(newTieredMergePolicy(), "timestamp", WINDOW_SIZE));
+    IndexWriter w = new IndexWriter(dir, iwc);
+    indexWindows(w, 1);
+    for (int i = 0; i < 3; ++i) {
+      w.addDocument(new Document());
+      w.getReader().close();
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = w.getReader();
+    assertEquals(2, reader.leaves().size());
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testIntPoints() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new TimeSeriesMergePolicy(newForcedOnlyMergePolicy(), "timestamp", 10)));
+    for (int i = 0; i < 6; ++i) {
+      Document doc = new Document();
+      doc.add(new IntPoint("timestamp", -30 + 10 * (i / 2) + i % 2));
+      w.addDocument(doc);
+      w.getReader().close();
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = w.getReader();
+    assertEquals(2, reader.leaves().size());
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testDropExpiredSegments() throws IOException {
+    Directory dir = newDirectory();
+    TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy(newMergePolicy(), "timestamp", WINDOW_SIZE);
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(mp));
+    final int numWindows = TestUtil.nextInt(random(), 2, 5);
+    final int numDocs = indexWindows(w, numWindows);
+    w.waitForMerges();
+    final long expireBefore = random().nextInt(numWindows) * WINDOW_SIZE;
+
+    DirectoryReader reader = w.getReader();
+    int numExpiredDocs = 0;
+    int numExpiredSegments = 0;
+    for (LeafReaderContext context : reader.leaves()) {
+      PointValues values = context.reader().getPointValues("timestamp");
+      if (LongPoint.decodeDimension(values.getMaxPackedValue(), 0) < expireBefore) {
+        numExpiredDocs += context.reader().numDocs();
+        numExpiredSegments++;
+      }
+    }
+    reader.close();
+
+    assertEquals(numExpiredSegments, mp.dropExpiredSegments(w, expireBefore));
+    assertEquals(0, mp.dropExpiredSegments(w, expireBefore));
+    w.commit();
+
+    reader = DirectoryReader.open(dir);
+    assertEquals(numDocs - numExpiredDocs, reader.numDocs());
+    for (LeafReaderContext context : reader.leaves()) {
+      PointValues values = context.reader().getPointValues("timestamp");
+      assertTrue(LongPoint.decodeDimension(values.getMaxPackedValue(), 0) >= expireBefore);
+    }
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(NullPointerException.class, () -> new TimeSeriesMergePolicy(newMergePolicy(), null, WINDOW_SIZE));
+    expectThrows(IllegalArgumentException.class, () -> new TimeSeriesMergePolicy(newMergePolicy(), "timestamp", 0));
+  }
+
+  public void testMultiDimensionalField() throws IOException {
+    Directory dir = newDirectory();
+    TimeSeriesMergePolicy mp = new TimeSeriesMergePolicy(newMergePolicy(), "timestamp", WINDOW_SIZE);
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(mp));
+    Document doc = new Document();
+    doc.add(new LongPoint("timestamp", 1, 2));
+    w.addDocument(doc);
+    w.commit();
+    // the field is not a time field, so the segment has no range
+    assertEquals(0, mp.dropExpiredSegments(w, Long.MAX_VALUE));
+    w.close();
+    dir.close();
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -30,10 +31,14 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.IndexSearcher.LeafReaderContextPartition;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
@@ -219,4 +224,99 @@ public class TestIndexSearcher extends LuceneTestCase {
     searcher = new IndexSearcher(new MultiReader());
     assertEquals(dummyPolicy, searcher.getQueryCachingPolicy());
   }
+
+  public void testSlicesWithLimits() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      w.addDocument(new Document());
+      if (random().nextInt(20) == 0) {
+        w.commit();
+      }
+    }
+    IndexReader r = w.getReader();
+    w.close();
+
+    final List<LeafReaderContext> leaves = r.leaves();
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, 100);
+    final int maxSegmentsPerSlice = TestUtil.nextInt(random(), 1, 5);
+    LeafSlice[] slices = IndexSearcher.slices(leaves, maxDocsPerSlice, maxSegmentsPerSlice);
+    int expectedDocBase = 0;
+    for (LeafSlice slice : slices) {
+      assertTrue(slice.partitions.length >= 1);
+      assertTrue(slice.partitions.length <= maxSegmentsPerSlice);
+      long numDocsInSlice = 0;
+      for (LeafReaderContextPartition partition : slice.partitions) {
+        // partitions come in doc ID order and cover all documents
+        assertEquals(expectedDocBase, partition.ctx.docBase + partition.minDocId);
+        expectedDocBase = partition.ctx.docBase + partition.maxDocId;
+        numDocsInSlice += partition.maxDocId - partition.minDocId;
+      }
+      assertTrue(numDocsInSlice <= maxDocsPerSlice);
+    }
+    assertEquals(r.maxDoc(), expectedDocBase);
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.slices(leaves, 0, 1);
+    });
+    expectThrows(IllegalArgumentException.class, () -> {
+      IndexSearcher.slices(leaves, 1, 0);
+    });
+
+    IOUtils.close(r, dir);
+  }
+
+  public void testSearchWithSplitLeaves() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+      if (random().nextBoolean()) {
+        doc.add(new StringField("foo", "quux", Store.NO));
+      }
+      doc.add(new SortedDocValuesField("sort", new BytesRef(Integer.toString(random().nextInt(10)))));
+      w.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    IndexReader r = w.getReader();
+    w.close();
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestIndexSearcher"));
+    final int maxDocsPerSlice = TestUtil.nextInt(random(), 1, 100);
+    IndexSearcher serial = newSearcher(r, false);
+    IndexSearcher concurrent = new IndexSearcher(r, service) {
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return slices(leaves, maxDocsPerSlice, 3);
+      }
+    };
+    concurrent.setSimilarity(serial.getSimilarity(true));
+    concurrent.setQueryCache(null);
+
+    Query[] queries = new Query[] {
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("foo", "bar")),
+        new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
+          .add(new TermQuery(new Term("foo", "quux")), Occur.SHOULD)
+          .build()
+    };
+    Sort sort = new Sort(new SortField("sort", SortField.Type.STRING));
+    for (Query query : queries) {
+      assertEquals(serial.count(query), concurrent.count(query));
+      final int n = TestUtil.nextInt(random(), 1, 50);
+      CheckHits.checkEqual(query, serial.search(query, n).scoreDocs, concurrent.search(query, n).scoreDocs);
+      CheckHits.checkEqual(query, serial.search(query, n, sort).scoreDocs, concurrent.search(query, n, sort).scoreDocs);
+    }
+
+    TestUtil.shutdownExecutorService(service);
+    IOUtils.close(r, dir);
+  }
 }
@@ -30,6 +30,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -1218,4 +1219,192 @@ public class TestLRUQueryCache extends LuceneTestCase {
     w.close();
     dir.close();
   }
+
+  private static int countHits(IndexSearcher searcher, Query query) throws IOException {
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(query, collector);
+    return collector.getTotalHits();
+  }
+
+  public void testBackgroundPopulation() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("color", RandomPicks.randomFrom(random(), new String[] {"blue", "red"}), Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    final List<Runnable> tasks = new ArrayList<>();
+    final LRUQueryCache cache = new LRUQueryCache(10, 1 << 20, context -> true, tasks::add);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(cache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query query = new TermQuery(new Term("color", "blue"));
+    final int expected = reader.docFreq(new Term("color", "blue"));
+    // the first search does not wait for the cache entries
+    assertEquals(expected, countHits(searcher, query));
+    assertEquals(0, cache.getCacheSize());
+    // pending entries do not use memory in the cache
+    assertEquals(0, cache.ramBytesUsed());
+    assertEquals(reader.leaves().size(), cache.getPendingCount());
+    assertEquals(reader.leaves().size(), tasks.size());
+    // searching again does not schedule the same entries twice
+    assertEquals(expected, countHits(searcher, query));
+    assertEquals(reader.leaves().size(), tasks.size());
+
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    tasks.clear();
+    assertEquals(0, cache.getPendingCount());
+    assertEquals(reader.leaves().size(), cache.getCacheSize());
+    assertEquals(Collections.singletonList(query), cache.cachedQueries());
+    cache.assertConsistent();
+
+    final long hitCount = cache.getHitCount();
+    assertEquals(expected, countHits(searcher, query));
+    assertEquals(hitCount + reader.leaves().size(), cache.getHitCount());
+    assertTrue(tasks.isEmpty());
+
+    // pending entries keep their segment open until they are computed, and
+    // are discarded when the segment gets closed
+    assertEquals(numDocs - expected, countHits(searcher, new TermQuery(new Term("color", "red"))));
+    final int numLeaves = reader.leaves().size();
+    assertEquals(numLeaves, cache.getPendingCount());
+    reader.close();
+    assertEquals(numLeaves, cache.getPendingCount());
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    assertEquals(0, cache.getCacheSize());
+    assertEquals(0, cache.getPendingCount());
+    cache.assertConsistent();
+
+    dir.close();
+  }
+
+  public void testBackgroundPopulationOfEvictedQuery() throws IOException {
+    Directory dir1 = newDirectory();
+    RandomIndexWriter w1 = new RandomIndexWriter(random(), dir1);
+    Directory dir2 = newDirectory();
+    RandomIndexWriter w2 = new RandomIndexWriter(random(), dir2);
+    Document doc = new Document();
+    doc.add(new StringField("color", "blue", Store.NO));
+    w1.addDocument(doc);
+    w2.addDocument(doc);
+    IndexReader reader1 = w1.getReader();
+    IndexReader reader2 = w2.getReader();
+    w1.close();
+    w2.close();
+    final List<Runnable> tasks = new ArrayList<>();
+    final LRUQueryCache cache = new LRUQueryCache(1, 1 << 20, context -> true, tasks::add);
+    IndexSearcher searcher1 = new IndexSearcher(reader1);
+    searcher1.setQueryCache(cache);
+    searcher1.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    IndexSearcher searcher2 = new IndexSearcher(reader2);
+    searcher2.setQueryCache(cache);
+    searcher2.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query blue = new TermQuery(new Term("color", "blue"));
+    final Query red = new TermQuery(new Term("color", "red"));
+    countHits(searcher1, blue);
+    tasks.remove(0).run();
+    assertEquals(Collections.singletonList(blue), cache.cachedQueries());
+
+    countHits(searcher2, blue);
+    assertEquals(1, cache.getPendingCount());
+    countHits(searcher1, red);
+    assertEquals(2, cache.getPendingCount());
+    tasks.remove(1).run(); // caching red evicts blue, including its pending entry
+    assertEquals(Collections.singletonList(red), cache.cachedQueries());
+    assertEquals(0, cache.getPendingCount());
+    tasks.remove(0).run();
+    assertEquals(Collections.singletonList(red), cache.cachedQueries());
+    assertEquals(1, cache.getCacheSize());
+    cache.assertConsistent();
+
+    reader1.close();
+    reader2.close();
+    dir1.close();
+    dir2.close();
+  }
+
+  public void testBackgroundPopulationOfClosedReader() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    IndexReader reader = w.getReader();
+    w.close();
+    final List<Runnable> tasks = new ArrayList<>();
+    final LRUQueryCache cache = new LRUQueryCache(10, 1 << 20, context -> true, tasks::add);
+    final LeafReaderContext context = reader.leaves().get(0);
+    final Weight weight = cache.doCache(new MatchAllDocsQuery().createWeight(new IndexSearcher(reader), false, 1f),
+        QueryCachingPolicy.ALWAYS_CACHE);
+    reader.close();
+
+    // nothing gets scheduled since the segment cannot be kept open
+    weight.scorer(context);
+    assertTrue(tasks.isEmpty());
+    assertEquals(0, cache.getFailedCount());
+    assertEquals(0, cache.getPendingCount());
+    assertEquals(0, cache.getCacheSize());
+    cache.assertConsistent();
+
+    dir.close();
+  }
+
+  public void testBackgroundPopulationFailure() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    w.addDocument(new Document());
+    IndexReader reader = w.getReader();
+    w.close();
+    final LRUQueryCache cache = new LRUQueryCache(10, 1 << 20, context -> true, task -> {
+      throw new RejectedExecutionException();
+    });
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(cache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    assertEquals(1, countHits(searcher, new MatchAllDocsQuery()));
+    assertEquals(reader.leaves().size(), cache.getFailedCount());
+    assertEquals(0, cache.getPendingCount());
+    assertEquals(0, cache.getCacheSize());
+    cache.assertConsistent();
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testEvictedBeforeUse() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(new StringField("color", "blue", Store.NO));
+    w.addDocument(doc);
+    IndexReader reader = w.getReader();
+    w.close();
+    final LRUQueryCache cache = new LRUQueryCache(1, 1 << 20, context -> true);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(cache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    final Query blue = new TermQuery(new Term("color", "blue"));
+    final Query red = new TermQuery(new Term("color", "red"));
+    countHits(searcher, blue);
+    countHits(searcher, blue);
+    countHits(searcher, red); // evicts blue, which has been used
+    assertEquals(0, cache.getEvictedBeforeUseCount());
+    countHits(searcher, blue); // evicts red, which has never been used
+    assertEquals(1, cache.getEvictedBeforeUseCount());
+    cache.clear(); // blue has never been used since it was cached
+    assertEquals(2, cache.getEvictedBeforeUseCount());
+
+    reader.close();
+    dir.close();
+  }
 }
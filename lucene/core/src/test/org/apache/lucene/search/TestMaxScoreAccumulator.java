@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.Random;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestMaxScoreAccumulator extends LuceneTestCase {
+
+  public void testSimple() {
+    MaxScoreAccumulator acc = new MaxScoreAccumulator();
+    assertEquals(Float.NEGATIVE_INFINITY, acc.get(), 0f);
+    acc.accumulate(0f);
+    assertEquals(0f, acc.get(), 0f);
+    acc.accumulate(2.5f);
+    assertEquals(2.5f, acc.get(), 0f);
+    acc.accumulate(1f);
+    assertEquals(2.5f, acc.get(), 0f);
+    acc.accumulate(Float.MAX_VALUE);
+    assertEquals(Float.MAX_VALUE, acc.get(), 0f);
+  }
+
+  public void testConcurrent() throws Exception {
+    final MaxScoreAccumulator acc = new MaxScoreAccumulator();
+    final int numThreads = TestUtil.nextInt(random(), 2, 8);
+    final float[] maxScores = new float[numThreads];
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; ++i) {
+      final Random random = new Random(random().nextLong());
+      final int threadID = i;
+      threads[i] = new Thread(() -> {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < 1000; ++j) {
+          final float score = random.nextFloat() * 100;
+          max = Math.max(max, score);
+          acc.accumulate(score);
+        }
+        maxScores[threadID] = max;
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    float expected = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < numThreads; ++i) {
+      threads[i].join();
+      expected = Math.max(expected, maxScores[i]);
+    }
+    assertEquals(expected, acc.get(), 0f);
+  }
+}
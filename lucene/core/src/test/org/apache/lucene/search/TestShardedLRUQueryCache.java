@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestShardedLRUQueryCache extends LuceneTestCase {
+
+  private static Directory buildIndex(int numColors) throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("color", "color" + random().nextInt(numColors), Store.NO));
+      w.addDocument(doc);
+    }
+    w.close();
+    return dir;
+  }
+
+  public void testBasics() throws Exception {
+    final int numColors = 20;
+    Directory dir = buildIndex(numColors);
+    IndexReader reader = DirectoryReader.open(dir);
+    final int numShards = 4;
+    final ShardedLRUQueryCache queryCache = new ShardedLRUQueryCache(numShards, 1000, 1 << 20, context -> true);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    for (int i = 0; i < numColors; ++i) {
+      Query q = new TermQuery(new Term("color", "color" + i));
+      final int expected = searcher.search(q, 1).totalHits;
+      assertEquals(expected, count(searcher, q));
+      assertEquals(expected, count(searcher, q));
+    }
+
+    assertEquals(numShards, queryCache.getShards().size());
+    assertEquals(numShards, queryCache.getChildResources().size());
+    long ramBytesUsed = 0;
+    long cacheSize = 0;
+    int shardsInUse = 0;
+    Set<Query> cachedQueries = new HashSet<>();
+    for (LRUQueryCache shard : queryCache.getShards()) {
+      shard.assertConsistent();
+      ramBytesUsed += shard.ramBytesUsed();
+      cacheSize += shard.getCacheSize();
+      if (shard.cachedQueries().isEmpty() == false) {
+        shardsInUse++;
+      }
+      for (Query q : shard.cachedQueries()) {
+        // every query is cached in a single shard
+        assertTrue(cachedQueries.add(q));
+      }
+    }
+    assertEquals(numColors, cachedQueries.size());
+    assertTrue(shardsInUse > 1);
+    assertEquals(ramBytesUsed, queryCache.ramBytesUsed());
+    assertEquals(cacheSize, queryCache.getCacheSize());
+    assertTrue(queryCache.getHitCount() > 0);
+    assertEquals(queryCache.getHitCount() + queryCache.getMissCount(), queryCache.getTotalCount());
+
+    queryCache.clearQuery(new TermQuery(new Term("color", "color0")));
+    assertEquals(numColors - 1, countCachedQueries(queryCache));
+
+    reader.close();
+    // core closed listeners clear all shards
+    assertEquals(0, queryCache.getCacheSize());
+    assertEquals(queryCache.getCacheCount(), queryCache.getEvictionCount());
+    dir.close();
+  }
+
+  private static int count(IndexSearcher searcher, Query query) throws Exception {
+    // unlike IndexSearcher.count, this never bypasses the cache for term queries
+    TotalHitCountCollector collector = new TotalHitCountCollector();
+    searcher.search(query, collector);
+    return collector.getTotalHits();
+  }
+
+  private static int countCachedQueries(ShardedLRUQueryCache queryCache) {
+    int count = 0;
+    for (LRUQueryCache shard : queryCache.getShards()) {
+      count += shard.cachedQueries().size();
+    }
+    return count;
+  }
+
+  public void testLimitsAreSplit() throws Exception {
+    final int maxSize = 10;
+    final int numShards = 3;
+    final ShardedLRUQueryCache queryCache = new ShardedLRUQueryCache(numShards, maxSize, 1 << 20, context -> true);
+    Directory dir = buildIndex(50);
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    for (int i = 0; i < 50; ++i) {
+      count(searcher, new TermQuery(new Term("color", "color" + i)));
+      assertTrue(countCachedQueries(queryCache) <= maxSize);
+    }
+    for (LRUQueryCache shard : queryCache.getShards()) {
+      shard.assertConsistent();
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testStatisticsCallbacks() throws Exception {
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final ShardedLRUQueryCache queryCache = new ShardedLRUQueryCache(2, 100, 1 << 20, context -> true) {
+      @Override
+      protected LRUQueryCache newShard(int maxSize, long maxRamBytesUsed, Predicate<LeafReaderContext> leavesToCache) {
+        return new LRUQueryCache(maxSize, maxRamBytesUsed, leavesToCache) {
+          @Override
+          protected void onHit(Object readerCoreKey, Query query) {
+            super.onHit(readerCoreKey, query);
+            hits.incrementAndGet();
+          }
+
+          @Override
+          protected void onMiss(Object readerCoreKey, Query query) {
+            super.onMiss(readerCoreKey, query);
+            misses.incrementAndGet();
+          }
+        };
+      }
+    };
+    Directory dir = buildIndex(5);
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    for (int i = 0; i < 5; ++i) {
+      count(searcher, new TermQuery(new Term("color", "color" + i)));
+      count(searcher, new TermQuery(new Term("color", "color" + i)));
+    }
+    assertEquals(queryCache.getHitCount(), hits.get());
+    assertEquals(queryCache.getMissCount(), misses.get());
+    assertTrue(hits.get() > 0);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testConcurrency() throws Throwable {
+    final int numShards = 1 + random().nextInt(8);
+    final ShardedLRUQueryCache queryCache = new ShardedLRUQueryCache(numShards,
+        numShards + random().nextInt(20), 1 + random().nextInt(10000), context -> random().nextBoolean());
+    final int numColors = 10;
+    Directory dir = buildIndex(numColors);
+    final IndexReader reader = DirectoryReader.open(dir);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setQueryCache(queryCache);
+            searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+            for (int iter = 0; iter < 200; ++iter) {
+              Query q = new TermQuery(new Term("color", "color" + random().nextInt(numColors)));
+              assertEquals(searcher.search(q, 1).totalHits, count(searcher, q));
+              if (rarely()) {
+                queryCache.clear();
+              }
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+    for (LRUQueryCache shard : queryCache.getShards()) {
+      shard.assertConsistent();
+    }
+    reader.close();
+    dir.close();
+  }
+
+  public void testIllegalNumShards() {
+    expectThrows(IllegalArgumentException.class, () -> new ShardedLRUQueryCache(0, 10, 1000));
+    expectThrows(IllegalArgumentException.class, () -> new ShardedLRUQueryCache(4, 3, 1000));
+  }
+}
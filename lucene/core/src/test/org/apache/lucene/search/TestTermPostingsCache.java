@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestTermPostingsCache extends LuceneTestCase {
+
+  private static final String[] TERMS = new String[] { "a", "b", "c", "d" };
+
+  private static Directory buildIndex() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder text = new StringBuilder();
+      for (String term : TERMS) {
+        final int freq = random().nextInt(3);
+        for (int j = 0; j < freq; ++j) {
+          text.append(term).append(' ');
+        }
+      }
+      doc.add(new TextField("f", text.toString(), Store.NO));
+      w.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        w.deleteDocuments(new Term("f", TERMS[random().nextInt(TERMS.length)]));
+      }
+    }
+    w.close();
+    return dir;
+  }
+
+  public void testSameResults() throws Exception {
+    Directory dir = buildIndex();
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher plain = newSearcher(reader);
+    IndexSearcher cached = new IndexSearcher(reader);
+    cached.setSimilarity(plain.getSimilarity(true));
+    cached.setQueryCache(null);
+    final ExecutorService executor = Executors.newFixedThreadPool(2, new NamedThreadFactory("TestTermPostingsCache"));
+    final TermPostingsCache cache = new TermPostingsCache(1 << 20, Integer.MAX_VALUE, executor);
+    cached.setTermPostingsCache(cache);
+
+    for (int iter = 0; iter < 50; ++iter) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      final int numClauses = TestUtil.nextInt(random(), 1, 3);
+      for (int i = 0; i < numClauses; ++i) {
+        Occur occur = random().nextBoolean() ? Occur.SHOULD : Occur.MUST;
+        builder.add(new TermQuery(new Term("f", TERMS[random().nextInt(TERMS.length)])), occur);
+      }
+      Query query = builder.build();
+      TopDocs expected = plain.search(query, 10);
+      TopDocs actual = cached.search(query, 10);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+      assertEquals(expected.totalHits, actual.totalHits);
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertTrue(cache.size() > 0);
+    assertTrue(cache.getHitCount() > 0);
+    assertTrue(cache.ramBytesUsed() > 0);
+    assertTrue(cache.ramBytesUsed() <= 1 << 20);
+
+    reader.close();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.ramBytesUsed());
+    dir.close();
+  }
+
+  public void testOnlyCacheFrequentTerms() throws Exception {
+    Directory dir = buildIndex();
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final TermPostingsCache cache = new TermPostingsCache(1 << 20, Integer.MAX_VALUE, 3, 16, Runnable::run);
+    searcher.setTermPostingsCache(cache);
+
+    Query query = new TermQuery(new Term("f", "a"));
+    searcher.search(query, 10);
+    searcher.search(query, 10);
+    assertEquals(0, cache.size());
+    searcher.search(query, 10);
+    assertTrue(cache.size() > 0);
+
+    // filters are not cached
+    cache.clear();
+    for (int i = 0; i < 5; ++i) {
+      searcher.count(new TermQuery(new Term("f", "b")));
+    }
+    assertEquals(0, cache.size());
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testEviction() throws Exception {
+    Directory dir = buildIndex();
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final long maxRamBytesUsed = 2048;
+    final TermPostingsCache cache = new TermPostingsCache(maxRamBytesUsed, Integer.MAX_VALUE, 1, 16, Runnable::run);
+    searcher.setTermPostingsCache(cache);
+
+    for (int iter = 0; iter < 20; ++iter) {
+      for (String term : TERMS) {
+        searcher.search(new TermQuery(new Term("f", term)), 10);
+        assertTrue(cache.ramBytesUsed() <= maxRamBytesUsed);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testReaderClosedWhileLoading() throws Exception {
+    Directory dir = buildIndex();
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final List<Runnable> tasks = new ArrayList<>();
+    final TermPostingsCache cache = new TermPostingsCache(1 << 20, Integer.MAX_VALUE, 1, 16, tasks::add);
+    searcher.setTermPostingsCache(cache);
+
+    searcher.search(new TermQuery(new Term("f", "a")), 10);
+    assertFalse(tasks.isEmpty());
+    // postings of the same term are only loaded once at a time
+    final int numTasks = tasks.size();
+    searcher.search(new TermQuery(new Term("f", "a")), 10);
+    assertEquals(numTasks, tasks.size());
+    assertEquals(0, cache.size());
+
+    // pending tasks keep segments open
+    reader.close();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    // the last task closed the segments, which dropped their entries
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.ramBytesUsed());
+    dir.close();
+  }
+
+  public void testRejectedExecution() throws Exception {
+    Directory dir = buildIndex();
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    final TermPostingsCache cache = new TermPostingsCache(1 << 20, Integer.MAX_VALUE, 1, 16, command -> {
+      throw new RejectedExecutionException();
+    });
+    searcher.setTermPostingsCache(cache);
+    searcher.search(new TermQuery(new Term("f", "a")), 10);
+    assertEquals(0, cache.size());
+    // references taken on the segments have been released
+    final List<LeafReaderContext> leaves = reader.leaves();
+    reader.close();
+    for (LeafReaderContext context : leaves) {
+      assertEquals(0, context.reader().getRefCount());
+    }
+    dir.close();
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new TermPostingsCache(-1, 10, Runnable::run));
+    expectThrows(IllegalArgumentException.class, () -> new TermPostingsCache(100, 0, Runnable::run));
+    expectThrows(IllegalArgumentException.class, () -> new TermPostingsCache(100, 10, 0, 16, Runnable::run));
+    expectThrows(IllegalArgumentException.class, () -> new TermPostingsCache(100, 10, 2, 1, Runnable::run));
+    expectThrows(IllegalArgumentException.class, () -> new TermPostingsCache(100, 10, null));
+  }
+}
@@ -18,13 +18,28 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
 
 public class TestTopDocsCollector extends LuceneTestCase {
 
@@ -208,4 +223,54 @@ public class TestTopDocsCollector extends LuceneTestCase {
     }
   }
   
+  public void testSharedManager() throws Exception {
+    Directory dir = newDirectory();
+    // the default codec records maximum term frequencies in its skip data
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setCodec(TestUtil.getDefaultCodec())
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setMaxBufferedDocs(1000);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 50 == 0 ? "a b" : "a", Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    assertTrue(reader.leaves().size() > 1);
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestTopDocsCollector"));
+    try {
+      IndexSearcher searcher = new IndexSearcher(reader, service);
+      Query query = new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("foo", "a")), Occur.SHOULD)
+          .add(new TermQuery(new Term("foo", "b")), Occur.SHOULD)
+          .build();
+
+      TopDocs expected = searcher.search(query, 10);
+      TopDocs actual = searcher.search(query, TopScoreDocCollector.createSharedManager(10, null, 100));
+      assertEquals(numDocs, expected.totalHits);
+      assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, expected.totalHitsRelation);
+      assertTrue(actual.totalHits > 100);
+      assertTrue(actual.totalHits < numDocs);
+      assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, actual.totalHitsRelation);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+
+      // below the threshold, hits are counted accurately
+      actual = searcher.search(query, TopScoreDocCollector.createSharedManager(10, null, numDocs));
+      assertEquals(numDocs, actual.totalHits);
+      assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, actual.totalHitsRelation);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+    } finally {
+      TestUtil.shutdownExecutorService(service);
+    }
+
+    reader.close();
+    dir.close();
+  }
+
 }
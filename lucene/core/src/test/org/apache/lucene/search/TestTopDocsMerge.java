@@ -72,6 +72,20 @@ public class TestTopDocsMerge extends LuceneTestCase {
     testSort(true);
   }
 
+  public void testMergeTotalHitsRelation() {
+    TopDocs exact = new TopDocs(3, new ScoreDoc[] { new ScoreDoc(0, 2f) }, 2f);
+    TopDocs lowerBound = new TopDocs(5, TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO,
+        new ScoreDoc[] { new ScoreDoc(1, 1f) }, 1f);
+
+    TopDocs merged = TopDocs.merge(2, new TopDocs[] { exact, exact });
+    assertEquals(6, merged.totalHits);
+    assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, merged.totalHitsRelation);
+
+    merged = TopDocs.merge(2, new TopDocs[] { exact, lowerBound });
+    assertEquals(8, merged.totalHits);
+    assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, merged.totalHitsRelation);
+  }
+
   void testSort(boolean useFrom) throws Exception {
 
     IndexReader reader = null;
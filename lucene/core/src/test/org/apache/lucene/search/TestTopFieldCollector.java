@@ -18,19 +18,31 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.FieldValueHitQueue.Entry;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 
 public class TestTopFieldCollector extends LuceneTestCase {
@@ -259,4 +271,173 @@ public class TestTopFieldCollector extends LuceneTestCase {
     dir.close();
   }
 
+  public void testTotalHitsThreshold() throws Exception {
+    Directory dir = newDirectory();
+    // the default codec records maximum term frequencies in its skip data
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random())).setCodec(TestUtil.getDefaultCodec());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 50 == 0 ? "a b" : "a", Field.Store.NO));
+      doc.add(new NumericDocValuesField("bar", i % 7));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("foo", "a")), Occur.SHOULD)
+        .add(new TermQuery(new Term("foo", "b")), Occur.SHOULD)
+        .build();
+
+    for (Sort sort : new Sort[] {
+        Sort.RELEVANCE,
+        new Sort(SortField.FIELD_SCORE, new SortField("bar", SortField.Type.LONG)) }) {
+      TopFieldCollector expected = TopFieldCollector.create(sort, 10, null, true, true, false, Integer.MAX_VALUE);
+      searcher.search(query, expected);
+      TopFieldCollector actual = TopFieldCollector.create(sort, 10, null, true, true, false, 100);
+      searcher.search(query, actual);
+
+      TopDocs expectedTopDocs = expected.topDocs();
+      TopDocs actualTopDocs = actual.topDocs();
+      assertEquals(numDocs, expectedTopDocs.totalHits);
+      assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, expectedTopDocs.totalHitsRelation);
+      // documents that only contain "a" are not competitive once the threshold is reached
+      assertTrue(actualTopDocs.totalHits > 100);
+      assertTrue(actualTopDocs.totalHits < numDocs);
+      assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, actualTopDocs.totalHitsRelation);
+      CheckHits.checkEqual(query, expectedTopDocs.scoreDocs, actualTopDocs.scoreDocs);
+    }
+
+    // hits can only be skipped when sorting by descending score
+    Sort sort = new Sort(new SortField("bar", SortField.Type.LONG));
+    TopFieldCollector collector = TopFieldCollector.create(sort, 10, null, true, true, false, 100);
+    assertFalse(collector.needsTopScoresOnly());
+    searcher.search(query, collector);
+    TopDocs topDocs = collector.topDocs();
+    assertEquals(numDocs, topDocs.totalHits);
+    assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, topDocs.totalHitsRelation);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSharedManager() throws Exception {
+    Directory dir = newDirectory();
+    // the default codec records maximum term frequencies in its skip data
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setCodec(TestUtil.getDefaultCodec())
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setMaxBufferedDocs(1000);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 50 == 0 ? "a b" : "a", Field.Store.NO));
+      doc.add(new NumericDocValuesField("bar", i % 7));
+      w.addDocument(doc);
+    }
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    assertTrue(reader.leaves().size() > 1);
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new NamedThreadFactory("TestTopFieldCollector"));
+    try {
+      IndexSearcher searcher = new IndexSearcher(reader, service);
+      Query query = new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("foo", "a")), Occur.SHOULD)
+          .add(new TermQuery(new Term("foo", "b")), Occur.SHOULD)
+          .build();
+
+      for (Sort sort : new Sort[] {
+          Sort.RELEVANCE,
+          new Sort(SortField.FIELD_SCORE, new SortField("bar", SortField.Type.LONG)) }) {
+        TopFieldDocs expected = searcher.search(query, 10, sort, true, false);
+        TopFieldDocs actual = searcher.search(query, TopFieldCollector.createSharedManager(sort, 10, null, true, false, 100));
+        assertEquals(numDocs, expected.totalHits);
+        assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, expected.totalHitsRelation);
+        assertTrue(actual.totalHits > 100);
+        assertTrue(actual.totalHits < numDocs);
+        assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, actual.totalHitsRelation);
+        CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+      }
+    } finally {
+      TestUtil.shutdownExecutorService(service);
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testEarlyTerminationWithIndexSort() throws Exception {
+    Directory dir = newDirectory();
+    final Sort indexSort = new Sort(new SortField("bar", SortField.Type.LONG), new SortField("baz", SortField.Type.LONG));
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()))
+        .setIndexSort(indexSort)
+        .setMergePolicy(NoMergePolicy.INSTANCE)
+        .setMaxBufferedDocs(1000);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = 5000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", i % 3 == 0 ? "a" : "b", Store.NO));
+      doc.add(new NumericDocValuesField("bar", random().nextInt(100)));
+      doc.add(new NumericDocValuesField("baz", random().nextInt(100)));
+      w.addDocument(doc);
+    }
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    assertTrue(reader.leaves().size() > 1);
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "a")) }) {
+      for (Sort sort : new Sort[] { indexSort, new Sort(new SortField("bar", SortField.Type.LONG)) }) {
+        TopFieldCollector expected = TopFieldCollector.create(sort, 10, null, true, false, false, Integer.MAX_VALUE);
+        searcher.search(query, expected);
+        TopFieldCollector actual = TopFieldCollector.create(sort, 10, null, true, false, false, 10);
+        searcher.search(query, actual);
+
+        TopDocs expectedTopDocs = expected.topDocs();
+        TopDocs actualTopDocs = actual.topDocs();
+        assertFalse(expected.isEarlyTerminated());
+        assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, expectedTopDocs.totalHitsRelation);
+        assertTrue(actual.isEarlyTerminated());
+        assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, actualTopDocs.totalHitsRelation);
+        assertTrue(actualTopDocs.totalHits > 10);
+        assertTrue(actualTopDocs.totalHits < expectedTopDocs.totalHits);
+        CheckHits.checkEqual(query, expectedTopDocs.scoreDocs, actualTopDocs.scoreDocs);
+
+        // same with paging
+        FieldDoc after = (FieldDoc) expectedTopDocs.scoreDocs[4];
+        expected = TopFieldCollector.create(sort, 10, after, true, false, false, Integer.MAX_VALUE);
+        searcher.search(query, expected);
+        actual = TopFieldCollector.create(sort, 10, after, true, false, false, 10);
+        searcher.search(query, actual);
+        assertTrue(actual.isEarlyTerminated());
+        CheckHits.checkEqual(query, expected.topDocs().scoreDocs, actual.topDocs().scoreDocs);
+      }
+
+      // not a prefix of the index sort
+      Sort sort = new Sort(new SortField("baz", SortField.Type.LONG));
+      TopFieldCollector collector = TopFieldCollector.create(sort, 10, null, true, false, false, 10);
+      searcher.search(query, collector);
+      assertFalse(collector.isEarlyTerminated());
+      assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, collector.topDocs().totalHitsRelation);
+
+      // the max score needs all hits to be scored
+      collector = TopFieldCollector.create(indexSort, 10, null, true, true, true, 10);
+      searcher.search(query, collector);
+      assertFalse(collector.isEarlyTerminated());
+      assertEquals(searcher.count(query), collector.getTotalHits());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
 }
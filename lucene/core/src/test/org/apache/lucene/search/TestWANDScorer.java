@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestWANDScorer extends LuceneTestCase {
+
+  public void testScalingFactor() {
+    doTestScalingFactor(1);
+    doTestScalingFactor(2);
+    doTestScalingFactor(Math.nextDown(1f));
+    doTestScalingFactor(Math.nextUp(1f));
+    doTestScalingFactor(Float.MIN_VALUE);
+    doTestScalingFactor(Math.nextUp(Float.MIN_VALUE));
+    doTestScalingFactor(Float.MAX_VALUE);
+    doTestScalingFactor(Math.nextDown(Float.MAX_VALUE));
+
+    expectThrows(IllegalArgumentException.class, () -> WANDScorer.scalingFactor(0));
+    expectThrows(IllegalArgumentException.class, () -> WANDScorer.scalingFactor(-1));
+    expectThrows(IllegalArgumentException.class, () -> WANDScorer.scalingFactor(Float.POSITIVE_INFINITY));
+  }
+
+  private void doTestScalingFactor(float f) {
+    int scalingFactor = WANDScorer.scalingFactor(f);
+    float scaled = Math.scalb(f, scalingFactor);
+    assertTrue(""+scaled, scaled >= 1 << 23);
+    assertTrue(""+scaled, scaled < 1 << 24);
+  }
+
+  public void testScaleScores() {
+    final int scalingFactor = WANDScorer.scalingFactor(3f);
+    final long maxScore = WANDScorer.scaleMaxScore(3f, scalingFactor);
+    assertTrue(maxScore >= Math.scalb(3d, scalingFactor));
+    // max scores round up, min scores round down
+    assertTrue(WANDScorer.scaleMaxScore(1.1f, scalingFactor) >= Math.scalb(1.1d, scalingFactor));
+    assertTrue(WANDScorer.scaleMinScore(1.1f, scalingFactor) <= Math.scalb(1.1d, scalingFactor));
+    // unbounded scores
+    assertEquals(WANDScorer.MAX_SCALED_SCORE, WANDScorer.scaleMaxScore(Float.POSITIVE_INFINITY, scalingFactor));
+    assertEquals(WANDScorer.MAX_SCALED_SCORE, WANDScorer.scaleMaxScore(Float.MAX_VALUE, scalingFactor));
+    assertEquals(WANDScorer.MAX_SCALED_SCORE, WANDScorer.scaleMinScore(Float.MAX_VALUE, scalingFactor));
+    assertEquals(WANDScorer.NO_MIN_COMPETITIVE_SCORE, WANDScorer.scaleMinScore(0f, scalingFactor));
+  }
+
+  public void testSkipsNonCompetitiveHits() throws Exception {
+    Directory dir = newDirectory();
+    // the default codec records maximum term frequencies in its skip data
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random())).setCodec(TestUtil.getDefaultCodec());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 50 == 0 ? "a b" : "a", Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("foo", "a")), Occur.SHOULD)
+        .add(new TermQuery(new Term("foo", "b")), Occur.SHOULD)
+        .build();
+    TopScoreDocCollector expected = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE);
+    searcher.search(query, expected);
+    TopScoreDocCollector actual = TopScoreDocCollector.create(10, null, 1);
+    searcher.search(query, actual);
+
+    TopDocs expectedTopDocs = expected.topDocs();
+    TopDocs actualTopDocs = actual.topDocs();
+    assertEquals(numDocs, expectedTopDocs.totalHits);
+    assertEquals(TopDocs.TotalHitsRelation.EQUAL_TO, expectedTopDocs.totalHitsRelation);
+    // once the top hits are collected, documents that only contain "a" are
+    // not competitive anymore
+    assertTrue(actualTopDocs.totalHits < numDocs);
+    assertEquals(TopDocs.TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO, actualTopDocs.totalHitsRelation);
+    CheckHits.checkEqual(query, expectedTopDocs.scoreDocs, actualTopDocs.scoreDocs);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testRandom() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    final int numDocs = atLeast(2000);
+    final String[] terms = new String[] { "a", "b", "c", "d", "e" };
+    for (int i = 0; i < numDocs; ++i) {
+      StringBuilder text = new StringBuilder();
+      for (int t = 0; t < terms.length; ++t) {
+        // terms get sparser and sparser
+        if (random().nextInt(1 + t * 3) == 0) {
+          final int freq = random().nextInt(20) == 0 ? TestUtil.nextInt(random(), 1, 50) : TestUtil.nextInt(random(), 1, 3);
+          for (int j = 0; j < freq; ++j) {
+            text.append(terms[t]).append(' ');
+          }
+        }
+      }
+      // filler terms so that documents have different norms
+      final int numFillers = random().nextInt(10);
+      for (int j = 0; j < numFillers; ++j) {
+        text.append("z ");
+      }
+      Document doc = new Document();
+      doc.add(new TextField("foo", text.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; ++iter) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      final int numClauses = TestUtil.nextInt(random(), 2, terms.length);
+      for (int i = 0; i < numClauses; ++i) {
+        Query query = new TermQuery(new Term("foo", terms[random().nextInt(terms.length)]));
+        switch (random().nextInt(5)) {
+          case 0:
+            query = new BoostQuery(query, TestUtil.nextInt(random(), 1, 10));
+            break;
+          case 1:
+            query = new ConstantScoreQuery(query);
+            break;
+          default:
+            break;
+        }
+        builder.add(query, Occur.SHOULD);
+      }
+      if (random().nextInt(5) == 0) {
+        builder.add(new TermQuery(new Term("foo", terms[random().nextInt(terms.length)])), Occur.MUST_NOT);
+      }
+      Query query = builder.build();
+      final int numHits = TestUtil.nextInt(random(), 1, 100);
+
+      TopScoreDocCollector expected = TopScoreDocCollector.create(numHits, null, Integer.MAX_VALUE);
+      searcher.search(query, expected);
+      TopScoreDocCollector actual = TopScoreDocCollector.create(numHits, null, 1);
+      searcher.search(query, actual);
+
+      TopDocs expectedTopDocs = expected.topDocs();
+      TopDocs actualTopDocs = actual.topDocs();
+      assertTrue(actualTopDocs.totalHits <= expectedTopDocs.totalHits);
+      CheckHits.checkEqual(query, expectedTopDocs.scoreDocs, actualTopDocs.scoreDocs);
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+}
@@ -18,10 +18,17 @@ package org.apache.lucene.store;
 
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 
+import org.apache.lucene.store.MMapDirectory.PageCacheAccess;
+import org.apache.lucene.store.MMapDirectory.ReadAdvice;
+
 import org.junit.Ignore;
 
 /**
@@ -33,6 +40,10 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
   protected Directory getDirectory(Path path) throws IOException {
     MMapDirectory m = new MMapDirectory(path);
     m.setPreload(random().nextBoolean());
+    if (random().nextBoolean()) {
+      final ReadAdvice[] values = ReadAdvice.values();
+      m.setReadAdvice((name, context) -> values[Math.floorMod(name.hashCode(), values.length)]);
+    }
     return m;
   }
   
@@ -42,6 +53,130 @@ public class TestMmapDirectory extends BaseDirectoryTestCase {
     assumeTrue(MMapDirectory.UNMAP_NOT_SUPPORTED_REASON, MMapDirectory.UNMAP_SUPPORTED);
   }
   
+  /** Records the advice that is applied to buffers. */
+  private static class RecordingPageCacheAccess implements PageCacheAccess {
+    final List<ReadAdvice> advice = new ArrayList<>();
+
+    @Override
+    public void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+      this.advice.add(advice);
+    }
+
+    @Override
+    public long residentBytes(ByteBuffer buffer) {
+      // pretend that the first half of every buffer is resident
+      return buffer.capacity() / 2;
+    }
+  }
+
+  public void testReadAdvice() throws Exception {
+    try (MMapDirectory dir = new MMapDirectory(createTempDir("testReadAdvice"), 1 << 10)) {
+      RecordingPageCacheAccess access = new RecordingPageCacheAccess();
+      dir.setPageCacheAccess(access);
+      dir.setReadAdvice(MMapDirectory.readAdviceByExtension(Collections.singletonMap("tim", ReadAdvice.RANDOM), ReadAdvice.SEQUENTIAL));
+      for (String name : new String[] {"_0.tim", "_0.doc"}) {
+        try (IndexOutput out = dir.createOutput(name, IOContext.DEFAULT)) {
+          out.writeBytes(new byte[3000], 3000);
+        }
+      }
+
+      dir.openInput("_0.tim", IOContext.READ).close();
+      // 3 buffers of 1kB, the last one is not full
+      assertEquals(Collections.nCopies(3, ReadAdvice.RANDOM), access.advice);
+
+      access.advice.clear();
+      dir.openInput("_0.doc", IOContext.READ).close();
+      assertEquals(Collections.emptyList(), access.advice);
+
+      access.advice.clear();
+      dir.openInput("_0.tim", new IOContext(new MergeInfo(1, 3000, false, 1))).close();
+      assertEquals(Collections.nCopies(3, ReadAdvice.SEQUENTIAL), access.advice);
+    }
+  }
+
+  public void testFailingReadAdvice() throws Exception {
+    try (MMapDirectory dir = new MMapDirectory(createTempDir("testFailingReadAdvice"), 1 << 10)) {
+      RecordingPageCacheAccess access = new RecordingPageCacheAccess() {
+        @Override
+        public void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+          super.advise(buffer, advice);
+          if (this.advice.size() == 2) {
+            throw new IOException("advise failed");
+          }
+        }
+      };
+      dir.setPageCacheAccess(access);
+      dir.setReadAdvice((name, context) -> ReadAdvice.RANDOM);
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        out.writeBytes(new byte[3000], 3000);
+      }
+      // the mapped buffers are released when advice fails
+      expectThrows(IOException.class, () -> dir.openInput("foo", IOContext.READ));
+      assertEquals(2, access.advice.size());
+      dir.deleteFile("foo");
+      assertEquals(0, dir.listAll().length);
+    }
+  }
+
+  public void testResidentBytes() throws Exception {
+    try (MMapDirectory dir = new MMapDirectory(createTempDir("testResidentBytes"), 1 << 10)) {
+      dir.setPageCacheAccess(new RecordingPageCacheAccess());
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        out.writeBytes(new byte[3000], 3000);
+      }
+      assertEquals(512 + 512 + 476, dir.residentBytes("foo"));
+
+      dir.setPageCacheAccess(MMapDirectory.JAVA_PAGE_CACHE_ACCESS);
+      final long residentBytes = dir.residentBytes("foo");
+      assertTrue(residentBytes >= 0 && residentBytes <= 3000);
+    }
+  }
+
+  /** Records the number of bytes that get {@link ReadAdvice#WILLNEED} advice. */
+  private static class PrefetchRecordingPageCacheAccess extends RecordingPageCacheAccess {
+    long willNeedBytes;
+
+    @Override
+    public void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+      super.advise(buffer, advice);
+      if (advice == ReadAdvice.WILLNEED) {
+        willNeedBytes += buffer.remaining();
+      }
+    }
+  }
+
+  public void testPrefetch() throws Exception {
+    try (MMapDirectory dir = new MMapDirectory(createTempDir("testPrefetch"), 1 << 10)) {
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        out.writeBytes(new byte[3000], 3000);
+      }
+
+      // prefetching is a no-op with the pure Java implementation
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        in.prefetch(0, 3000);
+      }
+
+      PrefetchRecordingPageCacheAccess access = new PrefetchRecordingPageCacheAccess();
+      dir.setPageCacheAccess(access);
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        in.prefetch(100, 2000);
+        // 3 buffers of 1kB
+        assertEquals(3, access.advice.size());
+        assertEquals(2000, access.willNeedBytes);
+
+        access.advice.clear();
+        access.willNeedBytes = 0;
+        IndexInput slice = in.slice("slice", 1000, 2000);
+        slice.prefetch(10, 30);
+        // crosses a buffer boundary
+        assertEquals(2, access.advice.size());
+        assertEquals(30, access.willNeedBytes);
+
+        expectThrows(IllegalArgumentException.class, () -> slice.prefetch(1990, 20));
+      }
+    }
+  }
+
   @Ignore("This test is for JVM testing purposes. There are no guarantees that it may not fail with SIGSEGV!")
   public void testAceWithThreads() throws Exception {
     for (int iter = 0; iter < 10; iter++) {
@@ -19,6 +19,7 @@ package org.apache.lucene.store;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests NIOFSDirectory
@@ -27,6 +28,84 @@ public class TestNIOFSDirectory extends BaseDirectoryTestCase {
 
   @Override
   protected Directory getDirectory(Path path) throws IOException {
-    return new NIOFSDirectory(path);
+    NIOFSDirectory dir = new NIOFSDirectory(path);
+    if (random().nextBoolean()) {
+      // prefetch in the calling thread
+      dir.setPrefetchExecutor(Runnable::run);
+    }
+    return dir;
+  }
+
+  public void testPrefetchExecutor() throws IOException {
+    try (NIOFSDirectory dir = new NIOFSDirectory(createTempDir("testPrefetchExecutor"))) {
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        out.writeBytes(new byte[100], 100);
+      }
+      AtomicInteger prefetches = new AtomicInteger();
+      dir.setPrefetchExecutor(task -> {
+        prefetches.incrementAndGet();
+        task.run();
+      });
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        in.prefetch(10, 20);
+        assertEquals(1, prefetches.get());
+        in.slice("slice", 50, 50).prefetch(0, 50);
+        assertEquals(2, prefetches.get());
+        in.prefetch(10, 0); // empty range
+        assertEquals(2, prefetches.get());
+        expectThrows(IllegalArgumentException.class, () -> in.prefetch(90, 20));
+      }
+    }
+  }
+
+  public void testInterruptedPrefetch() throws IOException {
+    try (NIOFSDirectory dir = new NIOFSDirectory(createTempDir("testInterruptedPrefetch"))) {
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        for (int i = 0; i < 100; ++i) {
+          out.writeByte((byte) i);
+        }
+      }
+      dir.setPrefetchExecutor(task -> {
+        Thread.currentThread().interrupt();
+        try {
+          task.run();
+        } finally {
+          Thread.interrupted();
+        }
+      });
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        in.prefetch(0, 100);
+        // the interrupt must not have closed the channel of the input
+        in.seek(42);
+        assertEquals(42, in.readByte());
+        // but it closed the prefetch channel, which the next prefetch reopens
+        NIOFSDirectory.PrefetchChannel prefetchChannel = ((NIOFSDirectory.NIOFSIndexInput) in).prefetchChannel;
+        assertEquals(1, prefetchChannel.opens);
+        in.prefetch(0, 100);
+        assertEquals(2, prefetchChannel.opens);
+      }
+    }
+  }
+
+  public void testPrefetchChannelIsReused() throws IOException {
+    try (NIOFSDirectory dir = new NIOFSDirectory(createTempDir("testPrefetchChannelIsReused"))) {
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        out.writeBytes(new byte[100], 100);
+      }
+      dir.setPrefetchExecutor(Runnable::run);
+      NIOFSDirectory.PrefetchChannel prefetchChannel;
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        prefetchChannel = ((NIOFSDirectory.NIOFSIndexInput) in).prefetchChannel;
+        assertEquals(0, prefetchChannel.opens); // opened lazily
+        for (int i = 0; i < 10; ++i) {
+          in.prefetch(i * 8, 8);
+        }
+        in.clone().prefetch(0, 100);
+        in.slice("slice", 50, 50).prefetch(0, 50);
+        assertEquals(1, prefetchChannel.opens);
+      }
+      // closing the input closes its prefetch channel
+      assertNull(prefetchChannel.get());
+    }
   }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class TestBlockRecycler extends LuceneTestCase {
+
+  public void testReuseAcrossAllocators() {
+    BlockRecycler recycler = new BlockRecycler(Long.MAX_VALUE);
+    Counter bytesUsed = Counter.newCounter();
+    BlockRecycler.ByteBlockAllocator allocator = recycler.newByteBlockAllocator(bytesUsed);
+    Set<byte[]> blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+    final int numBlocks = TestUtil.nextInt(random(), 1, 20);
+    for (int i = 0; i < numBlocks; ++i) {
+      byte[] block = allocator.getByteBlock();
+      assertEquals(ByteBlockPool.BYTE_BLOCK_SIZE, block.length);
+      block[random().nextInt(block.length)] = 42;
+      assertTrue(blocks.add(block));
+    }
+    assertEquals(numBlocks * ByteBlockPool.BYTE_BLOCK_SIZE, bytesUsed.get());
+    assertEquals(0, recycler.numBufferedByteBlocks());
+
+    allocator.release();
+    assertEquals(numBlocks, recycler.numBufferedByteBlocks());
+    assertEquals((long) numBlocks * ByteBlockPool.BYTE_BLOCK_SIZE, recycler.bytesUsed());
+
+    BlockRecycler.ByteBlockAllocator allocator2 = recycler.newByteBlockAllocator(Counter.newCounter());
+    for (int i = 0; i < numBlocks; ++i) {
+      byte[] block = allocator2.getByteBlock();
+      assertTrue(blocks.contains(block));
+      for (byte b : block) {
+        assertEquals(0, b);
+      }
+    }
+    assertEquals(0, recycler.numBufferedByteBlocks());
+    assertEquals(0, recycler.bytesUsed());
+    assertFalse(blocks.contains(allocator2.getByteBlock()));
+  }
+
+  public void testRecycleWithinAllocator() {
+    BlockRecycler recycler = new BlockRecycler(Long.MAX_VALUE);
+    Counter bytesUsed = Counter.newCounter();
+    BlockRecycler.IntBlockAllocator allocator = recycler.newIntBlockAllocator(bytesUsed);
+    IntBlockPool pool = new IntBlockPool(allocator);
+    pool.nextBuffer();
+    pool.nextBuffer();
+    int[] first = pool.buffers[0];
+    int[] second = pool.buffers[1];
+    first[0] = 42;
+    second[0] = 42;
+    assertEquals(2 * IntBlockPool.INT_BLOCK_SIZE * Integer.BYTES, bytesUsed.get());
+
+    pool.reset(false, false);
+    assertEquals(0, bytesUsed.get());
+    // recycled blocks are reused by the same allocator first
+    assertEquals(0, recycler.numBufferedIntBlocks());
+    int[] block = allocator.getIntBlock();
+    assertTrue(block == first || block == second);
+    assertEquals(0, block[0]);
+
+    allocator.release();
+    assertEquals(2, recycler.numBufferedIntBlocks());
+  }
+
+  public void testMaxBytes() {
+    final int maxBlocks = random().nextInt(5);
+    BlockRecycler recycler = new BlockRecycler((long) maxBlocks * ByteBlockPool.BYTE_BLOCK_SIZE);
+    BlockRecycler.ByteBlockAllocator allocator = recycler.newByteBlockAllocator(Counter.newCounter());
+    for (int i = 0; i < maxBlocks + 3; ++i) {
+      allocator.getByteBlock();
+    }
+    allocator.release();
+    assertEquals(maxBlocks, recycler.numBufferedByteBlocks());
+    assertEquals((long) maxBlocks * ByteBlockPool.BYTE_BLOCK_SIZE, recycler.bytesUsed());
+
+    recycler.clear();
+    assertEquals(0, recycler.numBufferedByteBlocks());
+    assertEquals(0, recycler.bytesUsed());
+  }
+
+  public void testIllegalMaxBytes() {
+    expectThrows(IllegalArgumentException.class, () -> new BlockRecycler(-1));
+  }
+}
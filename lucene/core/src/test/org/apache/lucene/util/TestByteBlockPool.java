@@ -77,4 +77,17 @@ public class TestByteBlockPool extends LuceneTestCase {
       }
     }
   } 
+
+  public void testReadAcrossManyBlocks() {
+    ByteBlockPool pool = new ByteBlockPool(new ByteBlockPool.DirectAllocator());
+    pool.nextBuffer();
+    final byte[] bytes = new byte[TestUtil.nextInt(random(), 2, 4) * ByteBlockPool.BYTE_BLOCK_SIZE + random().nextInt(1000)];
+    random().nextBytes(bytes);
+    final int offset = random().nextInt(ByteBlockPool.BYTE_BLOCK_SIZE);
+    pool.append(new BytesRef(new byte[offset]));
+    pool.append(new BytesRef(bytes));
+    final byte[] read = new byte[bytes.length];
+    pool.readBytes(offset, read, 0, read.length);
+    assertArrayEquals(bytes, read);
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestLatencyTracker extends LuceneTestCase {
+
+  public void testEmpty() {
+    LatencyTracker tracker = new LatencyTracker(10);
+    assertEquals(0, tracker.getCount());
+    assertEquals(-1, tracker.getPercentile(99));
+  }
+
+  public void testPercentiles() {
+    final int windowSize = TestUtil.nextInt(random(), 1, 200);
+    final int numLatencies = random().nextInt(1000);
+    LatencyTracker tracker = new LatencyTracker(windowSize);
+    List<Long> latencies = new ArrayList<>();
+    for (int i = 0; i < numLatencies; ++i) {
+      final long latency = TestUtil.nextLong(random(), 0, 1000000);
+      tracker.record(latency);
+      latencies.add(latency);
+    }
+    assertEquals(numLatencies, tracker.getCount());
+    if (numLatencies == 0) {
+      return;
+    }
+
+    for (int iter = 0; iter < 10; ++iter) {
+      final double percentile = 1 + random().nextInt(100);
+      final int n = TestUtil.nextInt(random(), 1, windowSize + 10);
+      final int expectedN = Math.min(Math.min(numLatencies, windowSize), n);
+      List<Long> recent = new ArrayList<>(latencies.subList(numLatencies - expectedN, numLatencies));
+      Collections.sort(recent);
+      final int rank = (int) Math.ceil(percentile / 100 * expectedN);
+      assertEquals(recent.get(Math.max(0, rank - 1)).longValue(), tracker.getPercentile(percentile, n));
+    }
+
+    List<Long> window = new ArrayList<>(latencies.subList(Math.max(0, numLatencies - windowSize), numLatencies));
+    Collections.sort(window);
+    assertEquals(window.get(window.size() - 1).longValue(), tracker.getPercentile(100));
+  }
+
+  public void testIllegalArguments() {
+    expectThrows(IllegalArgumentException.class, () -> new LatencyTracker(0));
+    LatencyTracker tracker = new LatencyTracker(10);
+    expectThrows(IllegalArgumentException.class, () -> tracker.record(-1));
+    expectThrows(IllegalArgumentException.class, () -> tracker.getPercentile(0));
+    expectThrows(IllegalArgumentException.class, () -> tracker.getPercentile(101));
+    expectThrows(IllegalArgumentException.class, () -> tracker.getPercentile(50, 0));
+  }
+}
@@ -839,6 +839,50 @@ public class TestFSTs extends LuceneTestCase {
                  Util.getByOutput(fst, 17));
   }
 
+  public void testOffHeap() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+    final int numTerms = atLeast(1000);
+    final BytesRef[] terms = new BytesRef[numTerms];
+    for (int i = 0; i < numTerms; ++i) {
+      terms[i] = new BytesRef(String.format(Locale.ROOT, "%08d", i));
+      builder.add(Util.toIntsRef(terms[i], new IntsRefBuilder()), (long) i);
+    }
+    final FST<Long> fst = builder.finish();
+
+    Directory dir = newDirectory();
+    IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+    out.writeVInt(42); // the FST does not need to start at offset 0
+    fst.save(out);
+    out.writeVInt(43);
+    out.close();
+
+    IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+    assertEquals(42, in.readVInt());
+    final FST<Long> offHeapFST = new FST<>(in, outputs, true);
+    // the input is positioned after the FST
+    assertEquals(43, in.readVInt());
+    assertTrue(offHeapFST.ramBytesUsed() < fst.ramBytesUsed());
+    for (int i = 0; i < numTerms; ++i) {
+      assertEquals(i, (long) Util.get(offHeapFST, terms[i]));
+    }
+    assertNull(Util.get(offHeapFST, new BytesRef("foo")));
+
+    // off-heap FSTs can be saved too
+    out = dir.createOutput("fst2", IOContext.DEFAULT);
+    offHeapFST.save(out);
+    out.close();
+    in.close();
+
+    in = dir.openInput("fst2", IOContext.DEFAULT);
+    final FST<Long> fst2 = new FST<>(in, outputs);
+    for (int i = 0; i < numTerms; ++i) {
+      assertEquals(i, (long) Util.get(fst2, terms[i]));
+    }
+    in.close();
+    dir.close();
+  }
+
   public void testPrimaryKeys() throws Exception {
     Directory dir = newDirectory();
 
@@ -429,13 +429,16 @@ public class PostingsHighlighter {
     for (int i = 0; i < fields.length; i++) {
       valueSeparators[i] = getMultiValuedSeparator(fields[i]);
     }
-    LimitedStoredFieldVisitor visitor = new LimitedStoredFieldVisitor(fields, valueSeparators, maxLength);
+    // docids are sorted: fetch them all at once so that documents that are stored together are read together
+    LimitedStoredFieldVisitor visitors[] = new LimitedStoredFieldVisitor[docids.length];
+    for (int i = 0; i < docids.length; i++) {
+      visitors[i] = new LimitedStoredFieldVisitor(fields, valueSeparators, maxLength);
+    }
+    searcher.doc(docids, visitors);
     for (int i = 0; i < docids.length; i++) {
-      searcher.doc(docids[i], visitor);
       for (int j = 0; j < fields.length; j++) {
-        contents[j][i] = visitor.getValue(j).toString();
+        contents[j][i] = visitors[i].getValue(j).toString();
       }
-      visitor.reset();
     }
     return contents;
   }
@@ -809,12 +812,5 @@ public class PostingsHighlighter {
     String getValue(int i) {
       return builders[i].toString();
     }
-    
-    void reset() {
-      currentField = -1;
-      for (int i = 0; i < fields.length; i++) {
-        builders[i].setLength(0);
-      }
-    }
   }
 }
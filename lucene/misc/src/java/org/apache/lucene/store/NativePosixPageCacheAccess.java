@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.lucene.store.MMapDirectory.PageCacheAccess;
+import org.apache.lucene.store.MMapDirectory.ReadAdvice;
+
+/**
+ * A {@link PageCacheAccess} that calls madvise() and mincore() through
+ * {@link NativePosixUtil}, so that all {@link ReadAdvice} reach the
+ * operating system and resident bytes are counted page by page:
+ * <pre class="prettyprint">
+ * MMapDirectory dir = new MMapDirectory(path);
+ * dir.setPageCacheAccess(NativePosixPageCacheAccess.INSTANCE);
+ * dir.setReadAdvice(MMapDirectory.readAdviceByExtension(
+ *     Collections.singletonMap("tim", ReadAdvice.RANDOM), ReadAdvice.SEQUENTIAL));
+ * </pre>
+ * <p>
+ * This requires the native library to be compiled, see {@link NativeUnixDirectory}.
+ * @lucene.experimental
+ */
+public final class NativePosixPageCacheAccess implements PageCacheAccess {
+
+  /** Sole instance. */
+  public static final NativePosixPageCacheAccess INSTANCE = new NativePosixPageCacheAccess();
+
+  private NativePosixPageCacheAccess() {}
+
+  @Override
+  public void advise(ByteBuffer buffer, ReadAdvice advice) throws IOException {
+    final int code;
+    switch (advice) {
+      case NORMAL:
+        code = NativePosixUtil.NORMAL;
+        break;
+      case RANDOM:
+        code = NativePosixUtil.RANDOM;
+        break;
+      case SEQUENTIAL:
+        code = NativePosixUtil.SEQUENTIAL;
+        break;
+      case WILLNEED:
+        code = NativePosixUtil.WILLNEED;
+        break;
+      case DONTNEED:
+        code = NativePosixUtil.DONTNEED;
+        break;
+      default:
+        throw new AssertionError("Unknown advice: " + advice);
+    }
+    if (NativePosixUtil.madvise(buffer, code) != 0) {
+      throw new IOException("madvise(" + advice + ") failed on buffer " + buffer);
+    }
+  }
+
+  @Override
+  public long residentBytes(ByteBuffer buffer) throws IOException {
+    final long residentBytes = NativePosixUtil.mincore(buffer);
+    if (residentBytes < 0) {
+      throw new IOException("mincore failed on buffer " + buffer);
+    }
+    return residentBytes;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -29,6 +29,7 @@
 #include <fcntl.h>   // posix_fadvise, constants for open
 #include <string.h>   // strerror
 #include <errno.h>   // errno
+#include <stdlib.h>   // malloc, free
 #include <unistd.h>   // pread
 #include <sys/mman.h>   // posix_madvise, madvise
 #include <sys/types.h>  // constants for open
@@ -344,3 +345,71 @@ JNIEXPORT jint JNICALL Java_org_apache_lucene_store_NativePosixUtil_madvise(JNIE
   
   return 0;
 }
+
+
+/*
+ * Class:     org_apache_lucene_store_NativePosixUtil
+ * Method:    mincore
+ * Signature: (Ljava/nio/ByteBuffer;)J
+ */
+extern "C"
+JNIEXPORT jlong JNICALL Java_org_apache_lucene_store_NativePosixUtil_mincore(JNIEnv *env, jclass _ignore, jobject buffer) {
+  void *p = env->GetDirectBufferAddress(buffer);
+  if (p == NULL) {
+    return -1;
+  }
+
+  size_t size = (size_t) env->GetDirectBufferCapacity(buffer);
+  if (size <= 0) {
+    return -1;
+  }
+
+  long long page = getpagesize();
+
+  // round start down to start of page
+  long long start = (long long) p;
+  start = start & (~(page-1));
+
+  // round end up to start of page
+  long long end = (long long) p + size;
+  end = (end + page-1)&(~(page-1));
+
+  size_t numPages = (size_t) ((end-start) / page);
+#ifdef OSX
+  char *vec = (char *) malloc(numPages);
+#else
+  unsigned char *vec = (unsigned char *) malloc(numPages);
+#endif
+  if (vec == NULL) {
+    jclass class_oom = env->FindClass("java/lang/OutOfMemoryError");
+    if (class_oom != NULL) {
+      env->ThrowNew(class_oom, "could not allocate mincore vector");
+    }
+    return -1;
+  }
+
+  if (mincore((void *) start, (size_t) (end-start), vec) != 0) {
+    free(vec);
+    jclass class_ioex = env->FindClass("java/io/IOException");
+    if (class_ioex == NULL) {
+      return -1;
+    }
+
+    env->ThrowNew(class_ioex, strerror(errno));
+    return -1;
+  }
+
+  jlong resident = 0;
+  for (size_t i = 0; i < numPages; i++) {
+    if (vec[i] & 1) {
+      // count the bytes of this page that belong to the buffer
+      long long pageStart = start + i * page;
+      long long from = pageStart < (long long) p ? (long long) p : pageStart;
+      long long to = pageStart + page > (long long) p + (long long) size ? (long long) p + (long long) size : pageStart + page;
+      resident += to - from;
+    }
+  }
+  free(vec);
+
+  return resident;
+}
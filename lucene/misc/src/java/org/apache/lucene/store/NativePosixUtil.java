@@ -22,7 +22,7 @@ import java.nio.ByteBuffer;
 
 /**
  * Provides JNI access to native methods such as madvise() for
- * {@link NativeUnixDirectory}
+ * {@link NativeUnixDirectory} and {@link NativePosixPageCacheAccess}
  */
 public final class NativePosixUtil {
   public final static int NORMAL = 0;
@@ -39,6 +39,8 @@ public final class NativePosixUtil {
   private static native int posix_fadvise(FileDescriptor fd, long offset, long len, int advise) throws IOException;
   public static native int posix_madvise(ByteBuffer buf, int advise) throws IOException;
   public static native int madvise(ByteBuffer buf, int advise) throws IOException;
+  /** Returns the number of bytes of the given direct buffer that are resident in physical memory. */
+  public static native long mincore(ByteBuffer buf) throws IOException;
   public static native FileDescriptor open_direct(String filename, boolean read) throws IOException;
   public static native long pread(FileDescriptor fd, long pos, ByteBuffer byteBuf) throws IOException;
 
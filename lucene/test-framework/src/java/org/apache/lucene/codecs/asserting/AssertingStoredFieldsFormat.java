@@ -73,6 +73,16 @@ public class AssertingStoredFieldsFormat extends StoredFieldsFormat {
       in.visitDocument(n, visitor);
     }
 
+    @Override
+    public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+      assert docIDs.length == visitors.length;
+      for (int i = 0; i < docIDs.length; ++i) {
+        assert docIDs[i] >= 0 && docIDs[i] < maxDoc;
+        assert i == 0 || docIDs[i] >= docIDs[i - 1];
+      }
+      in.visitDocuments(docIDs, visitors);
+    }
+
     @Override
     public StoredFieldsReader clone() {
       return new AssertingStoredFieldsReader(in.clone(), maxDoc);
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs.columnar;
+
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.util.TestUtil;
+
+/** Codec that uses {@link ColumnarStoredFieldsFormat} for stored fields. */
+public class ColumnarStoredFieldsCodec extends FilterCodec {
+
+  private final StoredFieldsFormat storedFieldsFormat;
+
+  /** Constructor that allows to configure the chunk size. */
+  public ColumnarStoredFieldsCodec(int chunkSize, int maxDocsPerChunk) {
+    super("ColumnarStoredFields", TestUtil.getDefaultCodec());
+    this.storedFieldsFormat = new ColumnarStoredFieldsFormat(CompressionMode.FAST, chunkSize, maxDocsPerChunk);
+  }
+
+  /** Default constructor. */
+  public ColumnarStoredFieldsCodec() {
+    this(1 << 14, 256);
+  }
+
+  @Override
+  public StoredFieldsFormat storedFieldsFormat() {
+    return storedFieldsFormat;
+  }
+}
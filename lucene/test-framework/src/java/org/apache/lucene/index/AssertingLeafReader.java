@@ -43,6 +43,13 @@ public class AssertingLeafReader extends FilterLeafReader {
     }
   }
 
+  private static void assertPrefetchDocIDs(int[] docIDs, int maxDoc) {
+    for (int i = 0; i < docIDs.length; ++i) {
+      assert docIDs[i] >= 0 && docIDs[i] < maxDoc : "doc " + docIDs[i] + " is out of bounds for maxDoc=" + maxDoc;
+      assert i == 0 || docIDs[i] > docIDs[i - 1] : "doc IDs must be sorted in increasing order, got " + docIDs[i - 1] + " before " + docIDs[i];
+    }
+  }
+
   public AssertingLeafReader(LeafReader in) {
     super(in);
     // check some basic reader sanity
@@ -465,6 +472,13 @@ public class AssertingLeafReader extends FilterLeafReader {
       return in.longValue();
     }    
 
+    @Override
+    public void prefetch(int[] docIDs) throws IOException {
+      assertThread("Numeric doc values", creationThread);
+      assertPrefetchDocIDs(docIDs, maxDoc);
+      in.prefetch(docIDs);
+    }
+
     @Override
     public String toString() {
       return "AssertingNumericDocValues(" + in + ")";
@@ -626,6 +640,13 @@ public class AssertingLeafReader extends FilterLeafReader {
       return ord;
     }
 
+    @Override
+    public void prefetch(int[] docIDs) throws IOException {
+      assertThread("Sorted doc values", creationThread);
+      assertPrefetchDocIDs(docIDs, maxDoc);
+      in.prefetch(docIDs);
+    }
+
     @Override
     public BytesRef lookupOrd(int ord) throws IOException {
       assertThread("Sorted doc values", creationThread);
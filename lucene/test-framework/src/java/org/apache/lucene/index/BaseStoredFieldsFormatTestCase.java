@@ -33,6 +33,7 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.StoredFieldsFormat;
 import org.apache.lucene.codecs.simpletext.SimpleTextCodec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntPoint;
@@ -395,6 +396,52 @@ public abstract class BaseStoredFieldsFormatTestCase extends BaseIndexFileFormat
     dir.close();
   }
   
+  public void testVisitDocuments() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setMaxBufferedDocs(RandomNumbers.randomIntBetween(random(), 2, 30));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), dir, iwConf);
+    final int numDocs = atLeast(300);
+    for (int i = 0; i < numDocs; ++i) {
+      final Document doc = new Document();
+      doc.add(new StoredField("id", i));
+      for (int j = random().nextInt(4); j > 0; --j) {
+        doc.add(new StoredField("text", TestUtil.randomSimpleString(random(), random().nextInt(10) == 0 ? 20000 : 100)));
+      }
+      if (random().nextInt(5) == 0) {
+        doc.add(new StoredField("bytes", randomByteArray(random().nextInt(100), 256)));
+      }
+      iw.addDocument(doc);
+    }
+    iw.commit();
+    iw.close();
+
+    final DirectoryReader rd = DirectoryReader.open(dir);
+    for (LeafReaderContext context : rd.leaves()) {
+      final CodecReader reader = (CodecReader) context.reader();
+      for (int iter = 0; iter < 10; ++iter) {
+        final int[] docIDs = new int[random().nextInt(50)];
+        for (int i = 0; i < docIDs.length; ++i) {
+          docIDs[i] = random().nextInt(reader.maxDoc());
+        }
+        Arrays.sort(docIDs);
+        final DocumentStoredFieldVisitor[] visitors = new DocumentStoredFieldVisitor[docIDs.length];
+        for (int i = 0; i < visitors.length; ++i) {
+          visitors[i] = new DocumentStoredFieldVisitor();
+        }
+        reader.getFieldsReader().visitDocuments(docIDs, visitors);
+        for (int i = 0; i < docIDs.length; ++i) {
+          assertEquals(reader.document(docIDs[i]).toString(), visitors[i].getDocument().toString());
+        }
+      }
+      expectThrows(IllegalArgumentException.class, () -> {
+        reader.getFieldsReader().visitDocuments(new int[1], new StoredFieldVisitor[0]);
+      });
+    }
+    rd.close();
+    dir.close();
+  }
+
   public void testConcurrentReads() throws Exception {
     Directory dir = newDirectory();
     IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
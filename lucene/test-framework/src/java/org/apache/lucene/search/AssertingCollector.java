@@ -59,4 +59,9 @@ class AssertingCollector extends FilterCollector {
     };
   }
 
+  @Override
+  public boolean needsTopScoresOnly() {
+    return in.needsTopScoresOnly();
+  }
+
 }
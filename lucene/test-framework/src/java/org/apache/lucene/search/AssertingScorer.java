@@ -39,6 +39,8 @@ public class AssertingScorer extends Scorer {
 
   IteratorState state = IteratorState.START;
   int doc;
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  int lastShallowTarget = -1;
 
   private AssertingScorer(Random random, Scorer in, boolean needsScores) {
     super(in.weight);
@@ -72,6 +74,30 @@ public class AssertingScorer extends Scorer {
     return score;
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    assert needsScores;
+    assert minScore >= minCompetitiveScore : "min competitive score went backwards: " + minCompetitiveScore + " -> " + minScore;
+    minCompetitiveScore = minScore;
+    in.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    assert target >= lastShallowTarget : "shallow targets must not go backwards: " + lastShallowTarget + " -> " + target;
+    lastShallowTarget = target;
+    final int upTo = in.advanceShallow(target);
+    assert upTo >= target : upTo + " < " + target;
+    return upTo;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    final float maxScore = in.getMaxScore(upTo);
+    assert Float.isNaN(maxScore) == false : "NaN max score for in=" + in;
+    return maxScore;
+  }
+
   @Override
   public Collection<ChildScorer> getChildren() {
     // We cannot hide that we hold a single child, else
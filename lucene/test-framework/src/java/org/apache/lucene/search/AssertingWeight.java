@@ -83,4 +83,14 @@ class AssertingWeight extends FilterWeight {
 
     return AssertingBulkScorer.wrap(new Random(random.nextLong()), inScorer, context.reader().maxDoc());
   }
+
+  @Override
+  public BulkScorer topScoresBulkScorer(LeafReaderContext context) throws IOException {
+    BulkScorer inScorer = in.topScoresBulkScorer(context);
+    if (inScorer == null) {
+      return null;
+    }
+
+    return AssertingBulkScorer.wrap(new Random(random.nextLong()), inScorer, context.reader().maxDoc());
+  }
 }
@@ -1206,4 +1206,42 @@ public abstract class BaseDirectoryTestCase extends LuceneTestCase {
       assertEquals(expected, actual);
     }
   }
+
+  public void testPrefetchAndReadBatch() throws IOException {
+    try (Directory dir = getDirectory(createTempDir("testPrefetchAndReadBatch"))) {
+      final byte[] bytes = new byte[TestUtil.nextInt(random(), 1, 100000)];
+      random().nextBytes(bytes);
+      try (IndexOutput out = dir.createOutput("bytes", newIOContext(random()))) {
+        out.writeBytes(bytes, bytes.length);
+      }
+
+      try (IndexInput in = dir.openInput("bytes", newIOContext(random()))) {
+        final int sliceOffset = random().nextInt(bytes.length);
+        final IndexInput input = random().nextBoolean() ? in : in.slice("slice", sliceOffset, bytes.length - sliceOffset);
+        final int offset = input == in ? 0 : sliceOffset;
+
+        final long fp = TestUtil.nextLong(random(), 0, input.length());
+        input.seek(fp);
+        final int numRanges = TestUtil.nextInt(random(), 1, 20);
+        final long[] offsets = new long[numRanges];
+        final byte[][] buffers = new byte[numRanges][];
+        for (int i = 0; i < numRanges; ++i) {
+          offsets[i] = TestUtil.nextLong(random(), 0, input.length());
+          buffers[i] = new byte[TestUtil.nextInt(random(), 0, (int) (input.length() - offsets[i]))];
+          input.prefetch(offsets[i], buffers[i].length);
+          assertEquals(fp, input.getFilePointer());
+        }
+
+        input.readBatch(offsets, buffers);
+        assertEquals(fp, input.getFilePointer());
+        for (int i = 0; i < numRanges; ++i) {
+          assertArrayEquals(Arrays.copyOfRange(bytes, offset + (int) offsets[i], offset + (int) offsets[i] + buffers[i].length), buffers[i]);
+        }
+
+        final RandomAccessInput randomAccess = in.randomAccessSlice(0, bytes.length);
+        randomAccess.prefetch(0, bytes.length);
+        assertEquals(bytes[bytes.length - 1], randomAccess.readByte(bytes.length - 1));
+      }
+    }
+  }
 }
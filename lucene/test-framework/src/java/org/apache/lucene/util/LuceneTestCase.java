@@ -990,6 +990,16 @@ public abstract class LuceneTestCase extends Assert {
     }
     c.setUseCompoundFile(r.nextBoolean());
     c.setReaderPooling(r.nextBoolean());
+    if (rarely(r)) {
+      c.setMaxRecycledBufferMB(TestUtil.nextInt(r, 1, 64));
+    }
+    if (rarely(r)) {
+      // either always use temporary files for stored fields of sorted segments, or spill early
+      c.setStoredFieldsSortBufferMB(r.nextBoolean() ? 0 : 0.001 * TestUtil.nextInt(r, 1, 100));
+    }
+    if (rarely(r)) {
+      c.setMaxDocValuesOverlayRatio(r.nextBoolean() ? 1 : 0.01 * TestUtil.nextInt(r, 1, 100));
+    }
     return c;
   }
 
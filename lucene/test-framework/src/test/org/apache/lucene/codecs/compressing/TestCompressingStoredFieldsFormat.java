@@ -21,7 +21,10 @@ import java.util.Random;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.IntPoint;
@@ -311,4 +314,149 @@ public class TestCompressingStoredFieldsFormat extends BaseStoredFieldsFormatTes
     iw.close();
     dir.close();
   }
+
+  private static final int CHUNK_CACHE_NUM_DOCS = 100;
+
+  /** Index documents into a single segment with small chunks so that it has many of them. */
+  private static IndexWriter newChunkCacheWriter(Directory dir, Codec codec) throws IOException {
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwConf.setRAMBufferSizeMB(16);
+    iwConf.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwConf.setCodec(codec);
+    IndexWriter iw = new IndexWriter(dir, iwConf);
+    for (int i = 0; i < CHUNK_CACHE_NUM_DOCS; i++) {
+      Document doc = new Document();
+      doc.add(new StoredField("id", i));
+      iw.addDocument(doc);
+    }
+    return iw;
+  }
+
+  private static void assertVisitAllDocuments(CompressingStoredFieldsReader reader) throws IOException {
+    int[] docIDs = new int[CHUNK_CACHE_NUM_DOCS];
+    DocumentStoredFieldVisitor[] visitors = new DocumentStoredFieldVisitor[CHUNK_CACHE_NUM_DOCS];
+    for (int i = 0; i < CHUNK_CACHE_NUM_DOCS; i++) {
+      docIDs[i] = i;
+      visitors[i] = new DocumentStoredFieldVisitor();
+    }
+    reader.visitDocuments(docIDs, visitors);
+    for (int i = 0; i < CHUNK_CACHE_NUM_DOCS; i++) {
+      assertEquals(i, visitors[i].getDocument().getField("id").numericValue().intValue());
+    }
+  }
+
+  /**
+   * ensures that clones of a reader share decompressed chunks, that chunks
+   * are only cached once they are requested again, and that the number of
+   * cached chunks is bounded.
+   */
+  public void testChunkCacheIsShared() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriter iw = newChunkCacheWriter(dir, CompressingCodec.randomInstance(random(), 4*1024, 10, false, 8));
+    DirectoryReader ir = DirectoryReader.open(iw);
+    CodecReader sr = (CodecReader) getOnlyLeafReader(ir);
+    CompressingStoredFieldsReader reader1 = (CompressingStoredFieldsReader) sr.getFieldsReader();
+    CompressingStoredFieldsReader reader2 = (CompressingStoredFieldsReader) reader1.clone();
+    DecompressedChunkCache cache = reader1.getChunkCache();
+    assertSame(cache, reader2.getChunkCache());
+    assertTrue(reader1.getNumChunks() > CompressingStoredFieldsReader.MAX_CACHED_CHUNKS);
+    assertEquals(0, cache.size());
+
+    // a chunk that is read once is not cached
+    reader1.visitDocument(9, new DocumentStoredFieldVisitor());
+    assertEquals(0, cache.size());
+    // the last document of the first chunk decompresses the whole chunk
+    reader2.visitDocument(9, new DocumentStoredFieldVisitor());
+    assertEquals(1, cache.size());
+    long ramBytesUsed = cache.ramBytesUsed();
+    // the other clone reuses it
+    DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor();
+    reader1.visitDocument(3, visitor);
+    assertEquals(3, visitor.getDocument().getField("id").numericValue().intValue());
+    assertEquals(1, cache.size());
+    assertEquals(ramBytesUsed, cache.ramBytesUsed());
+
+    assertVisitAllDocuments(reader2);
+    assertVisitAllDocuments(reader1);
+    assertTrue(cache.size() >= 1);
+    assertTrue(cache.size() <= CompressingStoredFieldsReader.MAX_CACHED_CHUNKS);
+
+    // merge instances do not use the cache
+    assertNull(((CompressingStoredFieldsReader) reader1.getMergeInstance()).getChunkCache());
+
+    ir.close();
+    iw.close();
+    dir.close();
+  }
+
+  /** ensures that documents can be read when the chunk cache is disabled. */
+  public void testChunkCacheDisabled() throws IOException {
+    Directory dir = newDirectory();
+    // same name and compression mode as FastCompressingCodec so that the index can be checked on close
+    final CompressingCodec in = new FastCompressingCodec(4*1024, 10, false, 8);
+    final StoredFieldsFormat storedFieldsFormat = new CompressingStoredFieldsFormat(in.getName(), "", CompressionMode.FAST, 4*1024, 10, 8, 0);
+    final Codec codec = new FilterCodec(in.getName(), in) {
+      @Override
+      public StoredFieldsFormat storedFieldsFormat() {
+        return storedFieldsFormat;
+      }
+    };
+    IndexWriter iw = newChunkCacheWriter(dir, codec);
+    DirectoryReader ir = DirectoryReader.open(iw);
+    CodecReader sr = (CodecReader) getOnlyLeafReader(ir);
+    CompressingStoredFieldsReader reader = (CompressingStoredFieldsReader) sr.getFieldsReader();
+    assertNull(reader.getChunkCache());
+    for (int i = 0; i < 2; ++i) {
+      assertVisitAllDocuments(reader);
+      DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor();
+      reader.visitDocument(42, visitor);
+      assertEquals(42, visitor.getDocument().getField("id").numericValue().intValue());
+    }
+    ir.close();
+    iw.close();
+    dir.close();
+  }
+
+  /**
+   * ensures that segments of a compression mode that uses dictionaries
+   * train a dictionary, including merged segments, whose chunks can't be
+   * bulk-copied.
+   */
+  public void testDictionary() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwConf = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwConf.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwConf.setCodec(new FastDecompressionWithDictionaryCompressingCodec(4*1024, 128, false, 8));
+    IndexWriter iw = new IndexWriter(dir, iwConf);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StoredField("json", "{\"id\":" + i + ",\"host\":\"host-" + random().nextInt(10) + "\",\"status\":\"ok\"}"));
+      iw.addDocument(doc);
+      if (i == numDocs / 2) {
+        iw.commit();
+      }
+    }
+    iw.commit();
+    DirectoryReader ir = DirectoryReader.open(iw);
+    assertTrue(ir.leaves().size() >= 2);
+    for (LeafReaderContext leaf : ir.leaves()) {
+      CompressingStoredFieldsReader reader = (CompressingStoredFieldsReader) ((CodecReader) leaf.reader()).getFieldsReader();
+      assertTrue(reader.getDictionary().length > 0);
+    }
+    ir.close();
+
+    iw.getConfig().setMergePolicy(newLogMergePolicy());
+    iw.forceMerge(1);
+    ir = DirectoryReader.open(iw);
+    CompressingStoredFieldsReader reader = (CompressingStoredFieldsReader) ((CodecReader) getOnlyLeafReader(ir)).getFieldsReader();
+    assertTrue(reader.getDictionary().length > 0);
+    for (int i = 0; i < numDocs; i++) {
+      assertTrue(ir.document(i).get("json").startsWith("{\"id\":" + i + ","));
+    }
+    ir.close();
+    iw.close();
+    dir.close();
+  }
 }
@@ -393,6 +393,10 @@ public class QueryComponent extends SearchComponent
     if (cmd.getSegmentTerminateEarly()) {
       result.setSegmentTerminatedEarly(Boolean.FALSE);
     }
+    // if asked for, let sorted segments be terminated early once the requested
+    // number of hits has been counted
+    cmd.setAutoSegmentTerminateEarly(!cmd.getSegmentTerminateEarly()
+        && params.getBool(CommonParams.SEGMENT_TERMINATE_EARLY_AUTO, CommonParams.SEGMENT_TERMINATE_EARLY_AUTO_DEFAULT));
 
     //
     // grouping / field collapsing
@@ -400,6 +404,7 @@ public class QueryComponent extends SearchComponent
     GroupingSpecification groupingSpec = rb.getGroupingSpec();
     if (groupingSpec != null) {
       cmd.setSegmentTerminateEarly(false); // not supported, silently ignore any segmentTerminateEarly flag
+      cmd.setAutoSegmentTerminateEarly(false);
       try {
         boolean needScores = (cmd.getFlags() & SolrIndexSearcher.GET_SCORES) != 0;
         if (params.getBool(GroupParams.GROUP_DISTRIBUTED_FIRST, false)) {
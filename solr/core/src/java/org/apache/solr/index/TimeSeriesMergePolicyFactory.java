@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.index;
+
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.TimeSeriesMergePolicy;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.schema.IndexSchema;
+
+/**
+ * A {@link MergePolicyFactory} for {@link TimeSeriesMergePolicy} objects.
+ * It requires a '{@value #TIME_FIELD}' argument, the point field that holds
+ * the time of documents, and a '{@value #WINDOW_SIZE}' argument, the size of
+ * time windows in the unit of this field.
+ */
+public class TimeSeriesMergePolicyFactory extends WrapperMergePolicyFactory {
+
+  static final String TIME_FIELD = "timeField"; // not private so that test(s) can use it
+  static final String WINDOW_SIZE = "windowSize"; // not private so that test(s) can use it
+
+  protected final String timeField;
+  protected final long windowSize;
+
+  public TimeSeriesMergePolicyFactory(SolrResourceLoader resourceLoader, MergePolicyFactoryArgs args, IndexSchema schema) {
+    super(resourceLoader, args, schema);
+    final Object timeFieldArg = args.remove(TIME_FIELD);
+    if (timeFieldArg == null) {
+      throw new IllegalArgumentException(TimeSeriesMergePolicyFactory.class.getSimpleName()+" requires a '"+TIME_FIELD+"' argument.");
+    }
+    this.timeField = timeFieldArg.toString();
+    final Object windowSizeArg = args.remove(WINDOW_SIZE);
+    if (windowSizeArg == null) {
+      throw new IllegalArgumentException(TimeSeriesMergePolicyFactory.class.getSimpleName()+" requires a '"+WINDOW_SIZE+"' argument.");
+    }
+    this.windowSize = windowSizeArg instanceof Number ? ((Number) windowSizeArg).longValue() : Long.parseLong(windowSizeArg.toString());
+  }
+
+  @Override
+  protected MergePolicy getMergePolicyInstance(MergePolicy wrappedMP) {
+    return new TimeSeriesMergePolicy(wrappedMP, timeField, windowSize);
+  }
+
+}
@@ -219,4 +219,21 @@ public class QueryCommand {
     }
   }
 
+  public boolean getAutoSegmentTerminateEarly() {
+    return (flags & SolrIndexSearcher.AUTO_SEGMENT_TERMINATE_EARLY) != 0;
+  }
+
+  /**
+   * When set, sorted queries only count hits accurately up to the number of
+   * requested documents, so that segments whose index sort is compatible with
+   * the query sort may be terminated early.
+   */
+  public QueryCommand setAutoSegmentTerminateEarly(boolean autoSegmentTerminateEarly) {
+    if (autoSegmentTerminateEarly) {
+      return setFlags(SolrIndexSearcher.AUTO_SEGMENT_TERMINATE_EARLY);
+    } else {
+      return clearFlags(SolrIndexSearcher.AUTO_SEGMENT_TERMINATE_EARLY);
+    }
+  }
+
 }
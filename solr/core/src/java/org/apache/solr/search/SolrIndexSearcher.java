@@ -98,6 +98,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LatencyTracker;
 import org.apache.solr.common.SolrDocumentBase;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
@@ -151,6 +152,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private static final SolrCache[] NO_CACHES = new SolrCache[0];
 
   private final SolrCore core;
+  // records search latencies for the merge scheduler, or null
+  private final LatencyTracker searchLatencyTracker;
   private final IndexSchema schema;
 
   private final String name;
@@ -319,6 +322,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     setSimilarity(schema.getSimilarity());
 
     final SolrConfig solrConfig = core.getSolrConfig();
+    this.searchLatencyTracker = solrConfig.indexConfig.isLatencyThrottleEnabled()
+        ? core.getSolrCoreState().getSearchLatencyTracker() : null;
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
@@ -645,7 +650,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   }
 
   public QueryResult search(QueryResult qr, QueryCommand cmd) throws IOException {
+    final long startNS = searchLatencyTracker == null ? 0 : System.nanoTime();
     getDocListC(qr, cmd);
+    if (searchLatencyTracker != null) {
+      searchLatencyTracker.record(System.nanoTime() - startNS);
+    }
     return qr;
   }
 
@@ -723,6 +732,37 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     getIndexReader().document(n, visitor);
   }
 
+  /**
+   * Visit the fields of several documents, see {@link #doc(int, StoredFieldVisitor)}. Documents that are not in the
+   * document cache are read at once.
+   * 
+   * @see IndexReader#document(int[], StoredFieldVisitor[])
+   */
+  @Override
+  public void doc(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (documentCache == null) {
+      getIndexReader().document(docIDs, visitors);
+      return;
+    }
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("got " + docIDs.length + " doc IDs but " + visitors.length + " visitors");
+    }
+    int numUncached = 0;
+    final int[] uncachedDocIDs = new int[docIDs.length];
+    final StoredFieldVisitor[] uncachedVisitors = new StoredFieldVisitor[docIDs.length];
+    for (int i = 0; i < docIDs.length; i++) {
+      Document cached = documentCache.get(docIDs[i]);
+      if (cached != null) {
+        visitFromCached(cached, visitors[i]);
+      } else {
+        uncachedDocIDs[numUncached] = docIDs[i];
+        uncachedVisitors[numUncached] = visitors[i];
+        numUncached++;
+      }
+    }
+    getIndexReader().document(Arrays.copyOf(uncachedDocIDs, numUncached), Arrays.copyOf(uncachedVisitors, numUncached));
+  }
+
   /** Executes a stored field visitor against a hit from the document cache */
   private void visitFromCached(Document document, StoredFieldVisitor visitor) throws IOException {
     for (IndexableField f : document) {
@@ -1616,6 +1656,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public static final int GET_DOCSET = 0x40000000;
   static final int NO_CHECK_FILTERCACHE = 0x20000000;
   static final int NO_SET_QCACHE = 0x10000000;
+  static final int AUTO_SEGMENT_TERMINATE_EARLY = 0x10;
   static final int SEGMENT_TERMINATE_EARLY = 0x08;
   public static final int TERMINATE_EARLY = 0x04;
   public static final int GET_DOCLIST = 0x02; // get the documents actually returned in a response
@@ -1768,7 +1809,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
     // lastly, put the superset in the cache if the size is less than or equal
     // to queryResultMaxDocsCached
-    if (key != null && superset.size() <= queryResultMaxDocsCached && !qr.isPartialResults()) {
+    // hit counts of segments that were terminated early are not accurate, so
+    // they must not be served to requests that did not opt in
+    final boolean inexactHitCount = cmd.getAutoSegmentTerminateEarly() && Boolean.TRUE.equals(qr.getSegmentTerminatedEarly());
+    if (key != null && superset.size() <= queryResultMaxDocsCached && !qr.isPartialResults() && !inexactHitCount) {
       queryResultCache.put(key, superset);
     }
   }
@@ -1846,10 +1890,16 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       // ... see comments in populateNextCursorMarkFromTopDocs for cache issues (SOLR-5595)
       final boolean fillFields = (null != cursor);
       final FieldDoc searchAfter = (null != cursor ? cursor.getSearchAfterFieldDoc() : null);
-      return TopFieldCollector.create(weightedSort, len, searchAfter, fillFields, needScores, needScores);
+      // only count hits accurately up to len so that sorted segments may be terminated early
+      final int totalHitsThreshold = cmd.getAutoSegmentTerminateEarly() ? len : Integer.MAX_VALUE;
+      return TopFieldCollector.create(weightedSort, len, searchAfter, fillFields, needScores, needScores, totalHitsThreshold);
     }
   }
 
+  private static boolean isEarlyTerminated(TopDocsCollector topCollector) {
+    return topCollector instanceof TopFieldCollector && ((TopFieldCollector) topCollector).isEarlyTerminated();
+  }
+
   private void getDocListNC(QueryResult qr, QueryCommand cmd) throws IOException {
     int len = cmd.getSupersetMaxDoc();
     int last = len;
@@ -1927,6 +1977,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
 
       totalHits = topCollector.getTotalHits();
+      if (isEarlyTerminated(topCollector)) {
+        qr.setSegmentTerminatedEarly(Boolean.TRUE);
+      }
       TopDocs topDocs = topCollector.topDocs(0, len);
       populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
 
@@ -2025,6 +2078,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       set = DocSetUtil.getDocSet(setCollector, this);
 
       totalHits = topCollector.getTotalHits();
+      if (isEarlyTerminated(topCollector)) {
+        // the top docs collector stopped counting hits, but the doc set has them all
+        totalHits = set.size();
+      }
       assert (totalHits == set.size());
 
       TopDocs topDocs = topCollector.topDocs(0, len);
@@ -22,6 +22,7 @@ import java.util.concurrent.locks.Lock;
 
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.util.LatencyTracker;
 import org.apache.solr.cloud.ActionThrottle;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.CoreDescriptor;
@@ -41,10 +42,22 @@ public abstract class SolrCoreState {
   
   protected boolean closed = false;
   private final Object updateLock = new Object();
+  private final LatencyTracker searchLatencyTracker = new LatencyTracker(1024);
   
   public Object getUpdateLock() {
     return updateLock;
   }
+
+  /**
+   * Latencies of the searches of the cores that share this state, which the
+   * merge scheduler watches if it is configured to back off when searches
+   * slow down.
+   *
+   * @see SolrIndexConfig#isLatencyThrottleEnabled()
+   */
+  public LatencyTracker getSearchLatencyTracker() {
+    return searchLatencyTracker;
+  }
   
   private int solrCoreStateRefCnt = 1;
 
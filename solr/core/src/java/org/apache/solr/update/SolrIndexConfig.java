@@ -33,6 +33,7 @@ import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.LatencyTracker;
 import org.apache.lucene.util.Version;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.Utils;
@@ -64,6 +65,11 @@ public class SolrIndexConfig implements MapSerializable {
 
   private static final String DEFAULT_MERGE_POLICY_FACTORY_CLASSNAME = DefaultMergePolicyFactory.class.getName();
   public static final String DEFAULT_MERGE_SCHEDULER_CLASSNAME = ConcurrentMergeScheduler.class.getName();
+  /** {@link ConcurrentMergeScheduler} argument: the search latency, in milliseconds, above which merges back off */
+  public static final String LATENCY_THROTTLE_MAX_MS = "latencyThrottleMaxMS";
+  /** {@link ConcurrentMergeScheduler} argument: the percentile of search latencies that is compared to {@value #LATENCY_THROTTLE_MAX_MS} */
+  public static final String LATENCY_THROTTLE_PERCENTILE = "latencyThrottlePercentile";
+  private static final double DEFAULT_LATENCY_THROTTLE_PERCENTILE = 99;
   public final Version luceneVersion;
 
   private boolean effectiveUseCompoundFileSetting;
@@ -250,7 +256,7 @@ public class SolrIndexConfig implements MapSerializable {
     iwc.setSimilarity(schema.getSimilarity());
     MergePolicy mergePolicy = buildMergePolicy(schema);
     iwc.setMergePolicy(mergePolicy);
-    MergeScheduler mergeScheduler = buildMergeScheduler(schema);
+    MergeScheduler mergeScheduler = buildMergeScheduler(schema, core.getSolrCoreState().getSearchLatencyTracker());
     iwc.setMergeScheduler(mergeScheduler);
     iwc.setInfoStream(infoStream);
 
@@ -364,7 +370,15 @@ public class SolrIndexConfig implements MapSerializable {
     return policy;
   }
 
-  private MergeScheduler buildMergeScheduler(IndexSchema schema) {
+  /**
+   * Returns true if the merge scheduler is configured to back off when search
+   * latencies climb, in which case searchers record their latencies.
+   */
+  public boolean isLatencyThrottleEnabled() {
+    return mergeSchedulerInfo != null && mergeSchedulerInfo.initArgs.get(LATENCY_THROTTLE_MAX_MS) != null;
+  }
+
+  private MergeScheduler buildMergeScheduler(IndexSchema schema, LatencyTracker searchLatencyTracker) {
     String msClassName = mergeSchedulerInfo == null ? SolrIndexConfig.DEFAULT_MERGE_SCHEDULER_CLASSNAME : mergeSchedulerInfo.className;
     MergeScheduler scheduler = schema.getResourceLoader().newInstance(msClassName, MergeScheduler.class);
 
@@ -382,6 +396,13 @@ public class SolrIndexConfig implements MapSerializable {
           maxThreadCount = ((ConcurrentMergeScheduler) scheduler).getMaxThreadCount();
         }
         ((ConcurrentMergeScheduler)scheduler).setMaxMergesAndThreads(maxMergeCount, maxThreadCount);
+        Object maxLatencyMS = args.remove(LATENCY_THROTTLE_MAX_MS);
+        Object percentile = args.remove(LATENCY_THROTTLE_PERCENTILE);
+        if (maxLatencyMS != null) {
+          ((ConcurrentMergeScheduler) scheduler).setLatencyThrottle(searchLatencyTracker,
+              percentile == null ? DEFAULT_LATENCY_THROTTLE_PERCENTILE : Double.parseDouble(percentile.toString()),
+              Long.parseLong(maxLatencyMS.toString()));
+        }
         SolrPluginUtils.invokeSetters(scheduler, args);
       } else {
         SolrPluginUtils.invokeSetters(scheduler, mergeSchedulerInfo.initArgs);
@@ -28,10 +28,12 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexDeletionPolicy;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.InfoStream;
@@ -160,6 +162,17 @@ public class SolrIndexWriter extends IndexWriter {
     metricManager.register(registry, runningMajorMergesSegmentsGauge, true, "running.segments", SolrInfoMBean.Category.INDEX.toString(), "merge", "major");
     metricManager.register(registry, runningMinorMergesSegmentsGauge, true, "running.segments", SolrInfoMBean.Category.INDEX.toString(), "merge", "minor");
     flushMeter = metricManager.meter(registry, "flush", SolrInfoMBean.Category.INDEX.toString());
+    MergeScheduler mergeScheduler = getConfig().getMergeScheduler();
+    if (mergeScheduler instanceof ConcurrentMergeScheduler) {
+      // current merge IO throttle, including the latency throttle if enabled
+      ConcurrentMergeScheduler cms = (ConcurrentMergeScheduler) mergeScheduler;
+      Gauge<Double> ioRateLimitGauge = () -> cms.getIORateLimitMBPerSec();
+      Gauge<Double> latencyThrottleFactorGauge = () -> cms.getLatencyThrottleFactor();
+      Gauge<String> latencyThrottleDecisionGauge = () -> cms.getLatencyThrottleDecision();
+      metricManager.register(registry, ioRateLimitGauge, true, "ioRateLimitMBPerSec", SolrInfoMBean.Category.INDEX.toString(), "merge");
+      metricManager.register(registry, latencyThrottleFactorGauge, true, "latencyThrottleFactor", SolrInfoMBean.Category.INDEX.toString(), "merge");
+      metricManager.register(registry, latencyThrottleDecisionGauge, true, "latencyThrottleDecision", SolrInfoMBean.Category.INDEX.toString(), "merge");
+    }
     if (config.metricsInfo != null && config.metricsInfo.initArgs != null) {
       Object v = config.metricsInfo.initArgs.get("majorMergeDocs");
       if (v != null) {
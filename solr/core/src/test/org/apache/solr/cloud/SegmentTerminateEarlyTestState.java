@@ -115,6 +115,37 @@ class SegmentTerminateEarlyTestState {
         rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY));
   }
 
+  void queryTimestampDescendingSegmentTerminateEarlyAuto(CloudSolrClient cloudSolrClient) throws Exception {
+    TestMiniSolrCloudCluster.assertFalse(maxTimestampDocKeys.isEmpty());
+    TestMiniSolrCloudCluster.assertTrue("numDocs="+numDocs+" is not even", (numDocs%2)==0);
+    final Long oddFieldValue = new Long(maxTimestampDocKeys.iterator().next().intValue()%2);
+    final SolrQuery query = new SolrQuery(oddField+":"+oddFieldValue);
+    query.setSort(timestampField, SolrQuery.ORDER.desc);
+    query.setFields(keyField, oddField, timestampField);
+    final int rowsWanted = 1;
+    query.setRows(rowsWanted);
+    query.set(CommonParams.SEGMENT_TERMINATE_EARLY_AUTO, true);
+    final QueryResponse rsp = cloudSolrClient.query(query);
+    // check correctness of the results count: sorted segments may be terminated
+    // early, in which case the results count is a lower bound and the
+    // segmentTerminatedEarly flag is set
+    final Object segmentTerminatedEarly = rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
+    if (segmentTerminatedEarly == null) {
+      TestMiniSolrCloudCluster.assertEquals("numFound", numDocs/2, rsp.getResults().getNumFound());
+    } else {
+      TestMiniSolrCloudCluster.assertEquals("responseHeader.segmentTerminatedEarly", Boolean.TRUE, segmentTerminatedEarly);
+      TestMiniSolrCloudCluster.assertTrue("numFound", rowsWanted <= rsp.getResults().getNumFound());
+      TestMiniSolrCloudCluster.assertTrue("numFound", rsp.getResults().getNumFound() <= numDocs/2);
+    }
+    // check correctness of the first result
+    if (rsp.getResults().getNumFound() > 0) {
+      final SolrDocument solrDocument0 = rsp.getResults().get(0);
+      TestMiniSolrCloudCluster.assertTrue(keyField+" of ("+solrDocument0+") is not in maxTimestampDocKeys("+maxTimestampDocKeys+")",
+          maxTimestampDocKeys.contains(solrDocument0.getFieldValue(keyField)));
+      TestMiniSolrCloudCluster.assertEquals(oddField, oddFieldValue, solrDocument0.getFieldValue(oddField));
+    }
+  }
+
   void queryTimestampDescendingSegmentTerminateEarlyYes(CloudSolrClient cloudSolrClient) throws Exception {
     TestMiniSolrCloudCluster.assertFalse(maxTimestampDocKeys.isEmpty());
     TestMiniSolrCloudCluster.assertTrue("numDocs="+numDocs+" is not even", (numDocs%2)==0);
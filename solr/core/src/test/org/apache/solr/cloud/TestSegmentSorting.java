@@ -108,6 +108,9 @@ public class TestSegmentSorting extends SolrCloudTestCase {
     // CommonParams.SEGMENT_TERMINATE_EARLY parameter now present
     tstes.queryTimestampDescendingSegmentTerminateEarlyYes(cloudSolrClient);
     tstes.queryTimestampDescendingSegmentTerminateEarlyNo(cloudSolrClient);
+
+    // CommonParams.SEGMENT_TERMINATE_EARLY_AUTO parameter present
+    tstes.queryTimestampDescendingSegmentTerminateEarlyAuto(cloudSolrClient);
     
     // CommonParams.SEGMENT_TERMINATE_EARLY parameter present but it won't be used
     tstes.queryTimestampDescendingSegmentTerminateEarlyYesGrouped(cloudSolrClient);
@@ -25,6 +25,7 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.SimpleMergedSegmentWarmer;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.index.TimeSeriesMergePolicy;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.solr.SolrTestCaseJ4;
@@ -51,6 +52,8 @@ public class SolrIndexConfigTest extends SolrTestCaseJ4 {
   private static final String solrConfigFileNameTieredMergePolicy = "solrconfig-tieredmergepolicy.xml";
   private static final String solrConfigFileNameTieredMergePolicyFactory = "solrconfig-tieredmergepolicyfactory.xml";
   private static final String solrConfigFileNameSortingMergePolicyFactory = "solrconfig-sortingmergepolicyfactory.xml";
+  private static final String solrConfigFileNameTimeSeriesMergePolicyFactory = "solrconfig-timeseriesmergepolicyfactory.xml";
+  private static final String solrConfigFileNameLatencyThrottle = "solrconfig-latencythrottle.xml";
   private static final String schemaFileName = "schema.xml";
 
   @BeforeClass
@@ -120,6 +123,43 @@ public class SolrIndexConfigTest extends SolrTestCaseJ4 {
     assertEquals("SortingMergePolicy.getSort", expected, actual);
   }
 
+  public void testTimeSeriesMPSolrIndexConfigCreation() throws Exception {
+    SolrConfig solrConfig = new SolrConfig(instanceDir, solrConfigFileNameTimeSeriesMergePolicyFactory, null);
+    SolrIndexConfig solrIndexConfig = new SolrIndexConfig(solrConfig, null, null);
+    assertNotNull(solrIndexConfig);
+    IndexSchema indexSchema = IndexSchemaFactory.buildIndexSchema(schemaFileName, solrConfig);
+
+    h.getCore().setLatestSchema(indexSchema);
+    IndexWriterConfig iwc = solrIndexConfig.toIndexWriterConfig(h.getCore());
+
+    final MergePolicy mergePolicy = iwc.getMergePolicy();
+    assertNotNull("null mergePolicy", mergePolicy);
+    assertTrue("mergePolicy ("+mergePolicy+") is not a TimeSeriesMergePolicy", mergePolicy instanceof TimeSeriesMergePolicy);
+    final TimeSeriesMergePolicy timeSeriesMergePolicy = (TimeSeriesMergePolicy) mergePolicy;
+    assertEquals("TimeSeriesMergePolicy.getField", "timestamp", timeSeriesMergePolicy.getField());
+    assertEquals("TimeSeriesMergePolicy.getWindowSize", 86400000L, timeSeriesMergePolicy.getWindowSize());
+  }
+
+  public void testLatencyThrottleIndexConfigCreation() throws Exception {
+    SolrConfig solrConfig = new SolrConfig(instanceDir, solrConfigFileNameLatencyThrottle, null);
+    SolrIndexConfig solrIndexConfig = new SolrIndexConfig(solrConfig, null, null);
+    assertTrue(solrIndexConfig.isLatencyThrottleEnabled());
+    IndexSchema indexSchema = IndexSchemaFactory.buildIndexSchema(schemaFileName, solrConfig);
+    h.getCore().setLatestSchema(indexSchema);
+    IndexWriterConfig iwc = solrIndexConfig.toIndexWriterConfig(h.getCore());
+
+    assertTrue("ms is not CMS", iwc.getMergeScheduler() instanceof ConcurrentMergeScheduler);
+    ConcurrentMergeScheduler ms = (ConcurrentMergeScheduler) iwc.getMergeScheduler();
+    assertEquals("none", ms.getLatencyThrottleDecision());
+    assertEquals(1.0, ms.getLatencyThrottleFactor(), 0.0);
+
+    // the default config does not throttle on latencies
+    solrIndexConfig = new SolrIndexConfig(new SolrConfig(instanceDir, solrConfigFileNameTieredMergePolicyFactory, null), null, null);
+    assertFalse(solrIndexConfig.isLatencyThrottleEnabled());
+    iwc = solrIndexConfig.toIndexWriterConfig(h.getCore());
+    assertEquals("disabled", ((ConcurrentMergeScheduler) iwc.getMergeScheduler()).getLatencyThrottleDecision());
+  }
+
   public void testMergedSegmentWarmerIndexConfigCreation() throws Exception {
     SolrConfig solrConfig = new SolrConfig(instanceDir, random().nextBoolean() ? solrConfigFileNameWarmerRandomMergePolicy : solrConfigFileNameWarmerRandomMergePolicyFactory, null);
     SolrIndexConfig solrIndexConfig = new SolrIndexConfig(solrConfig, null, null);
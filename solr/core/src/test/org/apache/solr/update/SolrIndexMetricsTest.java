@@ -18,6 +18,7 @@ package org.apache.solr.update;
 
 import java.util.Map;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Metric;
@@ -74,6 +75,10 @@ public class SolrIndexMetricsTest extends SolrTestCaseJ4 {
     assertEquals("majorMergeDocs: " + meter.getCount(), 0, meter.getCount());
     meter = (Meter)metrics.get("INDEX.flush");
     assertTrue("flush: " + meter.getCount(), meter.getCount() > 10);
+    // merge throttling gauges, the latency throttle is disabled by default
+    assertTrue(metrics.get("INDEX.merge.ioRateLimitMBPerSec") instanceof Gauge);
+    assertEquals(1.0, ((Gauge)metrics.get("INDEX.merge.latencyThrottleFactor")).getValue());
+    assertEquals("disabled", ((Gauge)metrics.get("INDEX.merge.latencyThrottleDecision")).getValue());
 
     // check basic directory meters
     meter = (Meter)metrics.get("DIRECTORY.total.reads");
@@ -160,6 +160,14 @@ public interface CommonParams {
   String SEGMENT_TERMINATE_EARLY = "segmentTerminateEarly";
   boolean SEGMENT_TERMINATE_EARLY_DEFAULT = false;
 
+  /**
+   * Whether or not sorted searches may count hits accurately only up to the number of
+   * requested rows, so that segments whose index sort is compatible with the search sort
+   * can be terminated early. numFound is then a lower bound.
+   */
+  String SEGMENT_TERMINATE_EARLY_AUTO = "segmentTerminateEarlyAuto";
+  boolean SEGMENT_TERMINATE_EARLY_AUTO_DEFAULT = false;
+
   /**
    * Timeout value in milliseconds.  If not set, or the value is &gt;= 0, there is no timeout.
    */